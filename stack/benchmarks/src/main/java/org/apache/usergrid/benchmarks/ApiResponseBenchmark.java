@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.apache.usergrid.persistence.Entity;
+import org.apache.usergrid.rest.ApiResponse;
+import org.apache.usergrid.rest.JacksonCustomMapperProvider;
+import org.apache.usergrid.rest.ServerEnvironmentProperties;
+import org.apache.usergrid.utils.UUIDUtils;
+
+
+/**
+ * Rendering a page of entities the way the rest tier writes every collection GET.  Sample time mode reports the
+ * percentiles of a render, and the returned size is the number of bytes sent to the client
+ */
+@BenchmarkMode( { Mode.Throughput, Mode.SampleTime } )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class ApiResponseBenchmark {
+
+    @Param( { "10", "100", "1000" } )
+    public int entities;
+
+    @Param( { "false", "true" } )
+    public boolean pretty;
+
+    @Param( { "false", "true" } )
+    public boolean gzip;
+
+    private ServerEnvironmentProperties serverProperties;
+    private ObjectMapper mapper;
+    private List<Entity> page;
+    private ByteArrayOutputStream out;
+
+
+    @Setup
+    public void setup() {
+        Properties properties = new Properties();
+        properties.setProperty( ServerEnvironmentProperties.API_BASE, "http://localhost:8080" );
+
+        serverProperties = new ServerEnvironmentProperties( properties );
+        mapper = new JacksonCustomMapperProvider().getMapper( pretty );
+        page = SyntheticData.users( entities );
+        out = new ByteArrayOutputStream( entities * 1024 );
+    }
+
+
+    @Benchmark
+    public int render() throws IOException {
+        ApiResponse response = new ApiResponse( serverProperties );
+        response.setAction( "get" );
+        response.setPath( "/users" );
+        response.setEntities( page );
+        response.setCursor( UUIDUtils.newTimeUUID().toString() );
+        response.setCount( page.size() );
+
+        out.reset();
+
+        OutputStream stream = gzip ? new GZIPOutputStream( out ) : out;
+        mapper.writeValue( stream, response );
+        stream.close();
+
+        return out.size();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.apache.usergrid.locking.Lock;
+import org.apache.usergrid.locking.LockManager;
+import org.apache.usergrid.locking.lease.LeasedLockManagerImpl;
+import org.apache.usergrid.locking.singlenode.SingleNodeLockManagerImpl;
+import org.apache.usergrid.utils.UUIDUtils;
+
+
+/** The consumer lock taken around every transactional queue read, with and without a lease */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class ConsumerLockBenchmark {
+
+    @Param( { "lock", "lease" } )
+    public String mode;
+
+    private LockManager lockManager;
+    private UUID applicationId;
+    private UUID queueId;
+    private UUID consumerId;
+
+
+    @Setup
+    public void setup() {
+        LockManager singleNode = new SingleNodeLockManagerImpl();
+
+        lockManager = "lease".equals( mode ) ? new LeasedLockManagerImpl( singleNode, 60000, 10 ) : singleNode;
+
+        applicationId = UUIDUtils.newTimeUUID();
+        queueId = UUIDUtils.newTimeUUID();
+        consumerId = UUIDUtils.newTimeUUID();
+    }
+
+
+    @TearDown
+    public void tearDown() {
+        if ( lockManager instanceof LeasedLockManagerImpl ) {
+            ( ( LeasedLockManagerImpl ) lockManager ).destroy();
+        }
+    }
+
+
+    @Benchmark
+    public boolean read() throws Exception {
+        Lock lock = lockManager.createLock( applicationId, queueId.toString(), consumerId.toString() );
+
+        boolean locked = lock.tryLock( 1, TimeUnit.SECONDS );
+        lock.unlock();
+
+        return locked;
+    }
+}
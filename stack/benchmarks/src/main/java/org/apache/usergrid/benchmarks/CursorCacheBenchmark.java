@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.apache.usergrid.persistence.cassandra.CursorCache;
+
+import static org.apache.usergrid.persistence.cassandra.Serializers.ue;
+
+
+/** Encoding the cursor returned with every page of results and decoding it on the next request */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class CursorCacheBenchmark {
+
+    /** The number of slices in the query, one for a simple scan, more for queries with and/or clauses */
+    @Param( { "1", "4", "16" } )
+    public int slices;
+
+    private ByteBuffer[] cursors;
+    private String encoded;
+
+
+    @Setup
+    public void setup() {
+        UUID[] ids = SyntheticData.randomUuids( slices );
+
+        cursors = new ByteBuffer[slices];
+
+        for ( int i = 0; i < slices; i++ ) {
+            cursors[i] = ue.toByteBuffer( ids[i] );
+        }
+
+        encoded = encode();
+    }
+
+
+    @Benchmark
+    public String encode() {
+        CursorCache cache = new CursorCache();
+
+        for ( int i = 0; i < cursors.length; i++ ) {
+            cache.setNextCursor( i, cursors[i].duplicate() );
+        }
+
+        return cache.asString();
+    }
+
+
+    @Benchmark
+    public ByteBuffer decode() {
+        CursorCache cache = new CursorCache( encoded );
+
+        return cache.getCursorBytes( slices - 1 );
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.apache.usergrid.persistence.Schema;
+
+import static org.apache.usergrid.persistence.Schema.PROPERTY_TYPE;
+import static org.apache.usergrid.persistence.Schema.PROPERTY_UUID;
+
+
+/** Encoding and decoding of the Entity_Properties columns of a typical user entity */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class EntityPropertyBenchmark {
+
+    private static final String ENTITY_TYPE = "user";
+
+    private Map<String, Object> properties;
+    private Map<String, ByteBuffer> columns;
+
+
+    @Setup
+    public void setup() {
+        properties = SyntheticData.userProperties( UUID.randomUUID(), 0 );
+
+        columns = new LinkedHashMap<String, ByteBuffer>();
+
+        for ( Map.Entry<String, Object> property : properties.entrySet() ) {
+            columns.put( property.getKey(),
+                    Schema.serializeEntityProperty( ENTITY_TYPE, property.getKey(), property.getValue() ) );
+        }
+    }
+
+
+    @Benchmark
+    public Map<String, ByteBuffer> serializeEntityProperties() {
+        Map<String, ByteBuffer> serialized = new LinkedHashMap<String, ByteBuffer>();
+
+        for ( Map.Entry<String, Object> property : properties.entrySet() ) {
+            serialized.put( property.getKey(),
+                    Schema.serializeEntityProperty( ENTITY_TYPE, property.getKey(), property.getValue() ) );
+        }
+
+        return serialized;
+    }
+
+
+    @Benchmark
+    public Map<String, Object> deserializeEntityProperties() {
+        Map<String, ByteBuffer> read = new LinkedHashMap<String, ByteBuffer>( columns.size() );
+
+        //every read from cassandra hands out fresh buffers
+        for ( Map.Entry<String, ByteBuffer> column : columns.entrySet() ) {
+            read.put( column.getKey(), column.getValue().duplicate() );
+        }
+
+        return Schema.deserializeEntityProperties( read );
+    }
+
+
+    @Benchmark
+    public Object deserializeUuid() {
+        return Schema.deserializeEntityProperty( ENTITY_TYPE, PROPERTY_UUID, columns.get( PROPERTY_UUID ).duplicate() );
+    }
+
+
+    @Benchmark
+    public Object deserializeType() {
+        return Schema.deserializeEntityProperty( ENTITY_TYPE, PROPERTY_TYPE, columns.get( PROPERTY_TYPE ).duplicate() );
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.apache.usergrid.persistence.IndexBucketLocator.IndexType;
+import org.apache.usergrid.persistence.cassandra.SimpleIndexBucketLocatorImpl;
+
+
+/** Locating the index bucket of an entity, done for every index entry written */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class IndexBucketLocatorBenchmark {
+
+    private static final int IDS = 1024;
+
+    @Param( { "1", "20", "100" } )
+    public int buckets;
+
+    private SimpleIndexBucketLocatorImpl locator;
+    private UUID applicationId;
+    private UUID[] ids;
+    private int next;
+
+
+    @Setup
+    public void setup() {
+        locator = new SimpleIndexBucketLocatorImpl( buckets );
+        applicationId = UUID.randomUUID();
+        ids = SyntheticData.randomUuids( IDS );
+    }
+
+
+    @Benchmark
+    public String getBucket() {
+        next = ( next + 1 ) & ( IDS - 1 );
+
+        return locator.getBucket( applicationId, IndexType.COLLECTION, ids[next], "users" );
+    }
+}
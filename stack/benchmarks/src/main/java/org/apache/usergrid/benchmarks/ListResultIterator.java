@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.usergrid.persistence.cassandra.CursorCache;
+import org.apache.usergrid.persistence.query.ir.result.ResultIterator;
+import org.apache.usergrid.persistence.query.ir.result.ScanColumn;
+import org.apache.usergrid.persistence.query.ir.result.UUIDIndexSliceParser;
+
+
+/** Iterates pages of an in memory list of ids, standing in for a slice read from an index */
+final class ListResultIterator implements ResultIterator {
+
+    private final ScanColumn[] columns;
+    private final int pageSize;
+    private int position;
+
+
+    ListResultIterator( List<UUID> ids, int pageSize ) {
+        this.columns = new ScanColumn[ids.size()];
+        this.pageSize = pageSize;
+
+        for ( int i = 0; i < columns.length; i++ ) {
+            columns[i] = new UUIDIndexSliceParser.UUIDColumn( ids.get( i ), ByteBuffer.allocate( 0 ) );
+        }
+    }
+
+
+    @Override
+    public void reset() {
+        position = 0;
+    }
+
+
+    @Override
+    public void finalizeCursor( CursorCache cache, UUID lastValue ) {
+        //no cursor, it's a static list
+    }
+
+
+    @Override
+    public Iterator<Set<ScanColumn>> iterator() {
+        return this;
+    }
+
+
+    @Override
+    public boolean hasNext() {
+        return position < columns.length;
+    }
+
+
+    @Override
+    public Set<ScanColumn> next() {
+        int end = Math.min( position + pageSize, columns.length );
+
+        Set<ScanColumn> page = new LinkedHashSet<ScanColumn>( end - position );
+
+        for ( ; position < end; position++ ) {
+            page.add( columns[position] );
+        }
+
+        return page;
+    }
+
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException( "This iterator does not support remove" );
+    }
+}
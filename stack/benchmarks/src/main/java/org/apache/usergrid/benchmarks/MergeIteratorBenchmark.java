@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.apache.usergrid.persistence.query.ir.result.IntersectionIterator;
+import org.apache.usergrid.persistence.query.ir.result.MultiIterator;
+import org.apache.usergrid.persistence.query.ir.result.ScanColumn;
+import org.apache.usergrid.persistence.query.ir.result.UnionIterator;
+
+
+/**
+ * Merging the slices of an and/or query.  Each slice holds a random sample of the same ordered ids, so the selectivity
+ * controls how many ids the slices have in common.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class MergeIteratorBenchmark {
+
+    private static final int PAGE_SIZE = 1000;
+
+    @Param( { "10000" } )
+    public int ids;
+
+    @Param( { "2", "3" } )
+    public int slices;
+
+    @Param( { "0.1", "0.5" } )
+    public double selectivity;
+
+    private ListResultIterator[] iterators;
+
+
+    @Setup
+    public void setup() {
+        List<UUID> all = SyntheticData.timeUuids( ids );
+
+        iterators = new ListResultIterator[slices];
+
+        for ( int i = 0; i < slices; i++ ) {
+            iterators[i] = new ListResultIterator( SyntheticData.sample( all, selectivity, i ), PAGE_SIZE );
+        }
+    }
+
+
+    @Benchmark
+    public int intersection() {
+        return drain( new IntersectionIterator( PAGE_SIZE ) );
+    }
+
+
+    @Benchmark
+    public int union() {
+        return drain( new UnionIterator( PAGE_SIZE, 0, null ) );
+    }
+
+
+    private int drain( MultiIterator merge ) {
+        for ( ListResultIterator itr : iterators ) {
+            itr.reset();
+            merge.addIterator( itr );
+        }
+
+        int count = 0;
+
+        for ( Set<ScanColumn> page : merge ) {
+            count += page.size();
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import org.apache.usergrid.persistence.DynamicEntity;
+import org.apache.usergrid.persistence.Entity;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import static org.apache.usergrid.persistence.Schema.PROPERTY_CREATED;
+import static org.apache.usergrid.persistence.Schema.PROPERTY_MODIFIED;
+import static org.apache.usergrid.persistence.Schema.PROPERTY_TYPE;
+import static org.apache.usergrid.persistence.Schema.PROPERTY_UUID;
+
+
+/** Generates the entities and ids the benchmarks run on, seeded so every run sees the same data */
+final class SyntheticData {
+
+    private static final long SEED = 42;
+
+    private static final String[] CITIES = { "San Francisco", "New York", "Austin", "Berlin", "Tokyo" };
+
+
+    private SyntheticData() {
+    }
+
+
+    /** @return the properties of a user entity as stored by the entity manager */
+    static Map<String, Object> userProperties( UUID id, int index ) {
+        long now = 1390000000000L + index;
+
+        Map<String, Object> location = new LinkedHashMap<String, Object>();
+        location.put( "latitude", 37.776753 + index * 0.0001 );
+        location.put( "longitude", -122.407846 );
+
+        Map<String, Object> properties = new LinkedHashMap<String, Object>();
+        properties.put( PROPERTY_UUID, id );
+        properties.put( PROPERTY_TYPE, "user" );
+        properties.put( PROPERTY_CREATED, now );
+        properties.put( PROPERTY_MODIFIED, now );
+        properties.put( "username", "user" + index );
+        properties.put( "email", "user" + index + "@example.com" );
+        properties.put( "name", "Benchmark User " + index );
+        properties.put( "activated", true );
+        properties.put( "age", 20 + index % 50 );
+        properties.put( "city", CITIES[index % CITIES.length] );
+        properties.put( "location", location );
+        properties.put( "tags", Arrays.asList( "alpha", "beta", "gamma" ) );
+
+        return properties;
+    }
+
+
+    /** @return count user entities */
+    static List<Entity> users( int count ) {
+        List<Entity> entities = new ArrayList<Entity>( count );
+
+        for ( UUID id : timeUuids( count ) ) {
+            entities.add( new DynamicEntity( "user", id, userProperties( id, entities.size() ) ) );
+        }
+
+        return entities;
+    }
+
+
+    /** @return count time uuids in ascending order */
+    static List<UUID> timeUuids( int count ) {
+        List<UUID> ids = new ArrayList<UUID>( count );
+
+        long start = 1390000000000L;
+
+        for ( int i = 0; i < count; i++ ) {
+            ids.add( UUIDUtils.newTimeUUID( start + i ) );
+        }
+
+        return ids;
+    }
+
+
+    /** @return a sorted random subset of the ids, each id is kept with the given probability */
+    static List<UUID> sample( List<UUID> ids, double probability, long salt ) {
+        Random random = new Random( SEED + salt );
+
+        List<UUID> sample = new ArrayList<UUID>();
+
+        for ( UUID id : ids ) {
+            if ( random.nextDouble() < probability ) {
+                sample.add( id );
+            }
+        }
+
+        return Collections.unmodifiableList( sample );
+    }
+
+
+    /** @return count random uuids */
+    static UUID[] randomUuids( int count ) {
+        Random random = new Random( SEED );
+
+        UUID[] ids = new UUID[count];
+
+        for ( int i = 0; i < count; i++ ) {
+            ids[i] = new UUID( random.nextLong(), random.nextLong() );
+        }
+
+        return ids;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.benchmarks;
+
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.apache.usergrid.utils.UUIDUtils;
+
+
+/**
+ * Time uuid generation.  Every uuid claims the next timestamp with a CAS on a single counter shared by all threads, so
+ * the contended variants show the cost of retried CAS operations when many request threads write entities at once.
+ * No more than 1000 uuids are issued per millisecond, so throughput is capped by the clock at any thread count.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class UUIDUtilsBenchmark {
+
+    @Benchmark
+    @Threads( 1 )
+    public UUID newTimeUUID() {
+        return UUIDUtils.newTimeUUID();
+    }
+
+
+    @Benchmark
+    @Threads( 4 )
+    public UUID newTimeUUIDContended4() {
+        return UUIDUtils.newTimeUUID();
+    }
+
+
+    @Benchmark
+    @Threads( 16 )
+    public UUID newTimeUUIDContended16() {
+        return UUIDUtils.newTimeUUID();
+    }
+}
@@ -46,6 +46,7 @@ public class JobExecutionImpl implements JobExecution, JobRuntime {
     private JobData data;
     private JobStat stats;
     private long delay = -1;
+    private String queuePath;
 
 
     public JobExecutionImpl( JobDescriptor jobDescriptor ) {
@@ -56,6 +57,7 @@ public class JobExecutionImpl implements JobExecution, JobRuntime {
         this.transactionId = jobDescriptor.getTransactionId();
         this.data = jobDescriptor.getData();
         this.stats = jobDescriptor.getStats();
+        this.queuePath = jobDescriptor.getQueuePath();
     }
 
 
@@ -215,4 +217,13 @@ public class JobExecutionImpl implements JobExecution, JobRuntime {
     public JobExecution getExecution() {
         return this;
     }
+
+
+    /* (non-Javadoc)
+     * @see org.apache.usergrid.batch.JobRuntime#getQueuePath()
+     */
+    @Override
+    public String getQueuePath() {
+        return queuePath;
+    }
 }
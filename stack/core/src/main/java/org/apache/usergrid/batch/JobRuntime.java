@@ -38,4 +38,7 @@ public interface JobRuntime {
 
     /** Get the job execution */
     public JobExecution getExecution();
+
+    /** Get the path of the queue the job was read from, or null if it isn't known */
+    public String getQueuePath();
 }
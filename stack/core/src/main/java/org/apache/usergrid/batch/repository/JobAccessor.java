@@ -20,6 +20,7 @@ package org.apache.usergrid.batch.repository;
 import java.util.List;
 
 import org.apache.usergrid.batch.JobExecution;
+import org.apache.usergrid.batch.service.JobScheduleListener;
 
 
 public interface JobAccessor {
@@ -32,4 +33,7 @@ public interface JobAccessor {
 
     /** Don't remove the execution, but rather schedule it to be fired after the given delay */
     void delayRetry( JobExecution execution, long delay );
+
+    /** Set the listener notified of every job scheduled on this node */
+    void setScheduleListener( JobScheduleListener listener );
 }
@@ -39,10 +39,22 @@ public class JobDescriptor extends TypedEntity {
     private final JobData data;
     private final JobStat stats;
     private final JobRuntimeService runtime;
+    private final String queuePath;
+    private final long fireTime;
 
 
     public JobDescriptor( String jobName, UUID jobId, UUID transactionId, JobData data, JobStat stats,
                           JobRuntimeService runtime ) {
+        this( jobName, jobId, transactionId, data, stats, runtime, null, 0 );
+    }
+
+
+    /**
+     * @param queuePath the queue the job was read from
+     * @param fireTime the time in millis the job was due
+     */
+    public JobDescriptor( String jobName, UUID jobId, UUID transactionId, JobData data, JobStat stats,
+                          JobRuntimeService runtime, String queuePath, long fireTime ) {
         Assert.notNull( jobName, "Job name cannot be null" );
         Assert.notNull( jobId != null, "A JobId is required" );
         Assert.notNull( transactionId != null, "A transactionId is required" );
@@ -56,6 +68,8 @@ public class JobDescriptor extends TypedEntity {
         this.data = data;
         this.stats = stats;
         this.runtime = runtime;
+        this.queuePath = queuePath;
+        this.fireTime = fireTime;
     }
 
 
@@ -93,4 +107,16 @@ public class JobDescriptor extends TypedEntity {
     public JobStat getStats() {
         return stats;
     }
+
+
+    /** @return the path of the queue the job was read from */
+    public String getQueuePath() {
+        return queuePath;
+    }
+
+
+    /** @return the time in millis the job was due */
+    public long getFireTime() {
+        return fireTime;
+    }
 }
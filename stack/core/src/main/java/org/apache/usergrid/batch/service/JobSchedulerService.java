@@ -39,6 +39,7 @@ import org.apache.usergrid.batch.repository.JobDescriptor;
 import org.apache.usergrid.metrics.MetricsFactory;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Timer;
 import com.google.common.util.concurrent.AbstractScheduledService;
 import com.google.common.util.concurrent.FutureCallback;
@@ -51,11 +52,15 @@ import com.yammer.metrics.annotation.Timed;
 
 
 /**
- * Service that schedules itself, then schedules jobs in the same pool
+ * Service that schedules itself, then schedules jobs in the same pool.  The queue is polled every interval, and right
+ * away when a job due before the next poll is scheduled on this node.
  */
 public class JobSchedulerService extends AbstractScheduledService {
     protected static final long DEFAULT_DELAY = 1000;
 
+    /** The longest we wait for a wake up without checking if the service is stopping */
+    private static final long MAX_WAIT = 100;
+
     private static final Logger LOG = LoggerFactory.getLogger( JobSchedulerService.class );
 
     private long interval = DEFAULT_DELAY;
@@ -67,10 +72,20 @@ public class JobSchedulerService extends AbstractScheduledService {
 
     private Semaphore capacitySemaphore;
 
+    /** Released when a job due before the next poll is scheduled */
+    private final Semaphore wakeUpSemaphore = new Semaphore( 0 );
+
+    /** The earliest fire time of the jobs scheduled since the last poll */
+    private final AtomicLong nextWakeUp = new AtomicLong( Long.MAX_VALUE );
+
+    private volatile long lastPoll;
+
     private ListeningScheduledExecutorService service;
     private JobListener jobListener;
 
     private Timer jobTimer;
+    private Timer dispatchTimer;
+    private Histogram queueLag;
     private Counter runCounter;
     private Counter successCounter;
     private Counter failCounter;
@@ -87,6 +102,10 @@ public class JobSchedulerService extends AbstractScheduledService {
     protected void runOneIteration() throws Exception {
 
         try {
+            if ( !awaitNextPoll() ) {
+                return;
+            }
+
             LOG.info( "Running one check iteration ..." );
             List<JobDescriptor> activeJobs;
 
@@ -99,16 +118,25 @@ public class JobSchedulerService extends AbstractScheduledService {
                     LOG.debug( "About to acquire semaphore.  Capacity is {}", capacitySemaphore.availablePermits() );
                 }
 
+                // take every free worker, each job we read holds one of them until it's done so we never read more
+                // jobs than we can run before their transactions time out
                 capacitySemaphore.acquire();
-                // release the sempaphore we only need to acquire as a way to stop the
-                // loop if there's no capacity
-                capacitySemaphore.release();
 
-                int capacity = capacitySemaphore.availablePermits();
+                int capacity = 1 + capacitySemaphore.drainPermits();
 
                 LOG.debug( "Capacity is {}", capacity );
 
-                activeJobs = jobAccessor.getJobs( capacity );
+                try {
+                    activeJobs = jobAccessor.getJobs( capacity );
+                }
+                catch ( RuntimeException e ) {
+                    capacitySemaphore.release( capacity );
+                    throw e;
+                }
+
+                long now = System.currentTimeMillis();
+
+                capacitySemaphore.release( capacity - activeJobs.size() );
 
                 // nothing to do, we don't have any jobs to run
                 if ( activeJobs.size() == 0 ) {
@@ -116,9 +144,24 @@ public class JobSchedulerService extends AbstractScheduledService {
                     return;
                 }
 
-                for ( JobDescriptor jd : activeJobs ) {
+                for ( int i = 0; i < activeJobs.size(); i++ ) {
+                    JobDescriptor jd = activeJobs.get( i );
+
+                    if ( jd.getFireTime() > 0 ) {
+                        queueLag.update( Math.max( 0, now - jd.getFireTime() ) );
+                    }
+
                     LOG.info( "Submitting work for {}", jd );
-                    submitWork( jd );
+
+                    try {
+                        submitWork( jd );
+                    }
+                    catch ( RuntimeException e ) {
+                        // give back the workers held for this job and the ones we didn't get to
+                        capacitySemaphore.release( activeJobs.size() - i );
+                        throw e;
+                    }
+
                     LOG.info( "Work submitted for {}", jd );
                 }
             }
@@ -136,12 +179,63 @@ public class JobSchedulerService extends AbstractScheduledService {
      */
     @Override
     protected Scheduler scheduler() {
-        return Scheduler.newFixedDelaySchedule( 0, interval, TimeUnit.MILLISECONDS );
+        // the iteration itself waits for the interval, so it can be woken up early
+        return Scheduler.newFixedDelaySchedule( 0, 1, TimeUnit.MILLISECONDS );
     }
 
 
     /**
-     * Use the provided BulkJobFactory to build and submit BulkJob items as ListenableFuture objects
+     * Wait until the interval has passed since the last poll, or a job due before then is scheduled
+     *
+     * @return false if the service is stopping
+     */
+    private boolean awaitNextPoll() throws InterruptedException {
+        while ( isRunning() || state() == State.STARTING ) {
+            long now = System.currentTimeMillis();
+            long pollAt = Math.min( lastPoll + interval, nextWakeUp.get() );
+
+            if ( now >= pollAt ) {
+                // jobs scheduled from now on wake up the next wait
+                nextWakeUp.set( Long.MAX_VALUE );
+                wakeUpSemaphore.drainPermits();
+                lastPoll = now;
+                return true;
+            }
+
+            wakeUpSemaphore.tryAcquire( Math.min( pollAt - now, MAX_WAIT ), TimeUnit.MILLISECONDS );
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Poll the queue as soon as the fire time has passed, if that is before the next scheduled poll
+     *
+     * @param fireTime the time in millis a job scheduled on this node is due
+     */
+    public void wakeUp( long fireTime ) {
+        if ( fireTime >= lastPoll + interval ) {
+            return;
+        }
+
+        long current;
+
+        do {
+            current = nextWakeUp.get();
+            if ( fireTime >= current ) {
+                return;
+            }
+        }
+        while ( !nextWakeUp.compareAndSet( current, fireTime ) );
+
+        wakeUpSemaphore.release();
+    }
+
+
+    /**
+     * Use the provided BulkJobFactory to build and submit BulkJob items as ListenableFuture objects.  The caller must
+     * hold a permit of the capacity semaphore for the job, it's released when the job is done
      */
     @ExceptionMetered( name = "BulkJobScheduledService_submitWork_exceptions", group = "scheduler" )
     private void submitWork( final JobDescriptor jobDescriptor ) {
@@ -152,6 +246,7 @@ public class JobSchedulerService extends AbstractScheduledService {
         }
         catch ( JobNotFoundException e ) {
             LOG.error( "Could not create jobs", e );
+            capacitySemaphore.release();
             return;
         }
 
@@ -165,21 +260,8 @@ public class JobSchedulerService extends AbstractScheduledService {
         // we just need to prevent NPEs from ever occurring
         final JobListener currentListener = this.jobListener;
 
-        /**
-         * Acquire the semaphore before we schedule.  This way we wont' take things from the Q that end up
-         * stuck in the queue for the scheduler and then time out their distributed heartbeat
-         */
-        try {
-            capacitySemaphore.acquire();
-        }
-        catch ( InterruptedException e ) {
-            LOG.error( "Unable to acquire semaphore capacity before submitting job", e );
-            //just return, they'll get picked up again later
-            return;
-        }
-
-
         final Timer.Context timer = jobTimer.time();
+        final long submitted = System.nanoTime();
 
 
         ListenableFuture<Void> future = service.submit( new Callable<Void>() {
@@ -187,6 +269,7 @@ public class JobSchedulerService extends AbstractScheduledService {
             public Void call() throws Exception {
 
                 LOG.debug( "Starting the job with job id {}", execution.getJobId() );
+                dispatchTimer.update( System.nanoTime() - submitted, TimeUnit.NANOSECONDS );
                 runCounter.inc();
 
                 execution.start( maxFailCount );
@@ -340,6 +423,8 @@ public class JobSchedulerService extends AbstractScheduledService {
      */
     public void setMetricsFactory( MetricsFactory metricsFactory ) {
         jobTimer = metricsFactory.getTimer( JobSchedulerService.class, "job_execution_timer" );
+        dispatchTimer = metricsFactory.getTimer( JobSchedulerService.class, "dispatch_latency" );
+        queueLag = metricsFactory.getHistogram( JobSchedulerService.class, "queue_lag" );
         runCounter = metricsFactory.getCounter( JobSchedulerService.class, "running_workers" );
         successCounter = metricsFactory.getCounter( JobSchedulerService.class, "successful_jobs" );
         failCounter = metricsFactory.getCounter( JobSchedulerService.class, "failed_jobs" );
@@ -359,6 +444,13 @@ public class JobSchedulerService extends AbstractScheduledService {
 
         LOG.info( "Starting executor pool.  Capacity is {}", workerSize );
 
+        jobAccessor.setScheduleListener( new JobScheduleListener() {
+            @Override
+            public void onScheduled( long fireTime ) {
+                wakeUp( fireTime );
+            }
+        } );
+
         super.startUp();
 
         LOG.info( "Job Scheduler started" );
@@ -374,6 +466,8 @@ public class JobSchedulerService extends AbstractScheduledService {
     protected void shutDown() throws Exception {
         LOG.info( "Shutting down job scheduler" );
 
+        jobAccessor.setScheduleListener( null );
+
         service.shutdown();
 
         LOG.info( "Job scheduler shut down" );
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.batch.service;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.util.Assert;
+
+
+/**
+ * Spreads the jobs over a number of queues so nodes don't all compete for the same one.  A job is hashed onto a shard
+ * by the id of its data, shard 0 is the job queue itself, so jobs scheduled before sharding was enabled still run, and
+ * shard n is the job queue's child queue n.
+ * <p/>
+ * A node only polls the shards it owns, all of them unless configured otherwise.  Every node starts polling at a
+ * random shard and moves on by one shard on each poll, so nodes owning the same shards rarely read the same queue
+ * at once.
+ */
+public class JobShards {
+
+    private final String queueName;
+    private final int count;
+    private final int[] owned;
+    private final AtomicInteger next = new AtomicInteger( new Random().nextInt( 1000 ) );
+
+
+    /**
+     * @param owned comma separated shard numbers this node polls, all shards if null or empty
+     */
+    public JobShards( String queueName, int count, String owned ) {
+        Assert.notNull( queueName, "queueName is required" );
+        Assert.isTrue( count > 0, "count must be positive" );
+
+        this.queueName = queueName;
+        this.count = count;
+        this.owned = parseOwned( owned );
+    }
+
+
+    private int[] parseOwned( String owned ) {
+        if ( owned == null || owned.trim().length() == 0 ) {
+            int[] all = new int[count];
+            for ( int i = 0; i < count; i++ ) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        String[] shards = owned.split( "," );
+        int[] parsed = new int[shards.length];
+
+        for ( int i = 0; i < shards.length; i++ ) {
+            parsed[i] = Integer.parseInt( shards[i].trim() );
+            Assert.isTrue( parsed[i] >= 0 && parsed[i] < count, "Owned shard " + parsed[i] + " does not exist" );
+        }
+
+        return parsed;
+    }
+
+
+    public int getCount() {
+        return count;
+    }
+
+
+    /** @return the shard the job with the data id is scheduled on */
+    public int getShard( UUID jobDataId ) {
+        return ( jobDataId.hashCode() & Integer.MAX_VALUE ) % count;
+    }
+
+
+    /** @return the path of the queue of the shard */
+    public String getQueuePath( int shard ) {
+        if ( shard == 0 ) {
+            return queueName;
+        }
+
+        return queueName + "/" + shard;
+    }
+
+
+    /** @return the shards owned by this node, in the order they should be polled this time */
+    public List<Integer> getPollOrder() {
+        int start = next.getAndIncrement() & Integer.MAX_VALUE;
+
+        List<Integer> order = new ArrayList<Integer>( owned.length );
+        for ( int i = 0; i < owned.length; i++ ) {
+            order.add( owned[( start + i ) % owned.length] );
+        }
+
+        return order;
+    }
+
+
+    public int[] getOwned() {
+        return owned.clone();
+    }
+}
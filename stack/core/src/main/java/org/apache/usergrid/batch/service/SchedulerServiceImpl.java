@@ -18,8 +18,12 @@ package org.apache.usergrid.batch.service;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.PostConstruct;
 
@@ -29,6 +33,7 @@ import org.apache.usergrid.batch.JobRuntime;
 import org.apache.usergrid.batch.JobRuntimeException;
 import org.apache.usergrid.batch.repository.JobAccessor;
 import org.apache.usergrid.batch.repository.JobDescriptor;
+import org.apache.usergrid.metrics.MetricsFactory;
 import org.apache.usergrid.mq.Message;
 import org.apache.usergrid.mq.QueueManager;
 import org.apache.usergrid.mq.QueueManagerFactory;
@@ -49,6 +54,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.Assert;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
 import static org.apache.usergrid.persistence.cassandra.CassandraService.MANAGEMENT_APPLICATION_ID;
 
 
@@ -88,6 +96,21 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
     /** Timeout for how long to set the transaction timeout from the queue. Default is 30000 */
     private long jobTimeout = 30000;
 
+    /** The number of queues the jobs are spread over. Default is 1 */
+    private int shards = 1;
+
+    /** The shards this node polls, all of them if not set */
+    private String ownedShards;
+
+    private volatile JobShards jobShards;
+
+    /** The number of jobs ready in each shard the last time it was polled */
+    private final ConcurrentMap<Integer, Integer> shardDepths = new ConcurrentHashMap<Integer, Integer>();
+
+    private volatile JobScheduleListener scheduleListener;
+
+    private MetricsFactory metricsFactory;
+
 
     /**
      *
@@ -136,7 +159,15 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
         message.setProperty( JOB_ID, jobDataId );
         message.setProperty( STATS_ID, jobStatId );
 
-        qm.postToQueue( jobQueueName, message );
+        JobShards jobShards = getJobShards();
+
+        qm.postToQueue( jobShards.getQueuePath( jobShards.getShard( jobDataId ) ), message );
+
+        JobScheduleListener listener = scheduleListener;
+
+        if ( listener != null ) {
+            listener.onScheduled( fireTime );
+        }
     }
 
 
@@ -169,13 +200,32 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
      */
     @Override
     public List<JobDescriptor> getJobs( int size ) {
+        JobShards jobShards = getJobShards();
+
+        List<JobDescriptor> results = new ArrayList<JobDescriptor>( size );
+
+        // start at a different shard on each poll so a busy shard can't starve the others
+        for ( int shard : jobShards.getPollOrder() ) {
+            if ( results.size() >= size ) {
+                break;
+            }
+
+            getJobs( jobShards.getQueuePath( shard ), shard, size - results.size(), results );
+        }
+
+        return results;
+    }
+
+
+    /** Read up to size jobs from the queue of the shard into the results */
+    private void getJobs( String queuePath, int shard, int size, List<JobDescriptor> results ) {
         QueueQuery query = new QueueQuery();
         query.setTimeout( jobTimeout );
         query.setLimit( size );
 
-        QueueResults jobs = qm.getFromQueue( jobQueueName, query );
+        QueueResults jobs = qm.getFromQueue( queuePath, query );
 
-        List<JobDescriptor> results = new ArrayList<JobDescriptor>( jobs.size() );
+        shardDepths.put( shard, jobs.size() );
 
         for ( Message job : jobs.getMessages() ) {
 
@@ -195,7 +245,7 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
                 if ( data == null || stats == null ) {
                     LOG.info( "Received job with data id '{}' from the queue, but no data was found.  Dropping job",
                             jobUuid );
-                    qm.deleteTransaction( jobQueueName, job.getTransaction(), null );
+                    qm.deleteTransaction( queuePath, job.getTransaction(), null );
 
                     if ( data != null ) {
                         em.delete( data );
@@ -208,7 +258,8 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
                     continue;
                 }
 
-                results.add( new JobDescriptor( jobName, job.getUuid(), job.getTransaction(), data, stats, this ) );
+                results.add( new JobDescriptor( jobName, job.getUuid(), job.getTransaction(), data, stats, this,
+                        queuePath, job.getTimestamp() ) );
             }
             catch ( Exception e ) {
                 // log and skip. This is a catastrophic runtime error if we see an
@@ -219,8 +270,6 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
                                 + "loss", new Object[] { jobName, jobUuid, statsUuid, e } );
             }
         }
-
-        return results;
     }
 
 
@@ -230,7 +279,7 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
         try {
             // @TODO - what's the point to this sychronized block on an argument?
             synchronized ( execution ) {
-                UUID newId = qm.renewTransaction( jobQueueName, execution.getTransactionId(),
+                UUID newId = qm.renewTransaction( getQueuePath( execution ), execution.getTransactionId(),
                         new QueueQuery().withTimeout( delay ) );
 
                 execution.setTransactionId( newId );
@@ -285,7 +334,7 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
             // we're done. Mark the transaction as complete and delete the job info
             if ( jobStatus == Status.COMPLETED ) {
                 LOG.info( "Job {} is complete id: {}", data.getJobName(), bulkJobExecution.getTransactionId() );
-                qm.deleteTransaction( jobQueueName, bulkJobExecution.getTransactionId(), null );
+                qm.deleteTransaction( getQueuePath( bulkJobExecution ), bulkJobExecution.getTransactionId(), null );
                 LOG.debug( "delete job data {}", data.getUuid() );
                 em.delete( data );
             }
@@ -294,7 +343,7 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
             // running again and save it for querying later
             else if ( jobStatus == Status.DEAD ) {
                 LOG.warn( "Job {} is dead.  Removing", data.getJobName() );
-                qm.deleteTransaction( jobQueueName, bulkJobExecution.getTransactionId(), null );
+                qm.deleteTransaction( getQueuePath( bulkJobExecution ), bulkJobExecution.getTransactionId(), null );
                 em.update( data );
             }
 
@@ -348,7 +397,7 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
 
             // if it's a dead status, it's failed too many times, just kill the job
             if ( execution.getStatus() == Status.DEAD ) {
-                qm.deleteTransaction( jobQueueName, execution.getTransactionId(), null );
+                qm.deleteTransaction( getQueuePath( execution ), execution.getTransactionId(), null );
                 em.update( data );
                 em.update( stat );
                 return;
@@ -358,7 +407,7 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
             scheduleJob( execution.getJobName(), System.currentTimeMillis() + delay, data.getUuid(), stat.getUuid() );
 
             // delete the pending transaction
-            qm.deleteTransaction( jobQueueName, execution.getTransactionId(), null );
+            qm.deleteTransaction( getQueuePath( execution ), execution.getTransactionId(), null );
 
             // update the data for the next run
 
@@ -372,6 +421,51 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
     }
 
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.usergrid.batch.repository.JobAccessor#setScheduleListener(org.apache.usergrid.batch.service
+     * .JobScheduleListener)
+     */
+    @Override
+    public void setScheduleListener( JobScheduleListener listener ) {
+        this.scheduleListener = listener;
+    }
+
+
+    /** @return the number of jobs that were ready in each shard polled by this node, the last time it was polled */
+    public Map<Integer, Integer> getShardDepths() {
+        return Collections.unmodifiableMap( shardDepths );
+    }
+
+
+    /** @return the queue the execution was read from, the unsharded job queue if it isn't known */
+    private String getQueuePath( Object execution ) {
+        if ( execution instanceof JobRuntime ) {
+            String queuePath = ( ( JobRuntime ) execution ).getQueuePath();
+
+            if ( queuePath != null ) {
+                return queuePath;
+            }
+        }
+
+        return jobQueueName;
+    }
+
+
+    private JobShards getJobShards() {
+        if ( jobShards == null ) {
+            synchronized ( this ) {
+                if ( jobShards == null ) {
+                    jobShards = new JobShards( jobQueueName, shards, ownedShards );
+                }
+            }
+        }
+
+        return jobShards;
+    }
+
+
     /* (non-Javadoc)
      * @see org.apache.usergrid.batch.service.SchedulerService#getStatsForJob(java.lang.String, java.util.UUID)
      */
@@ -398,6 +492,27 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
     public void init() {
         qm = qmf.getQueueManager( CassandraService.MANAGEMENT_APPLICATION_ID );
         em = emf.getEntityManager( CassandraService.MANAGEMENT_APPLICATION_ID );
+
+        if ( metricsFactory != null ) {
+            registerShardGauges();
+        }
+    }
+
+
+    private void registerShardGauges() {
+        MetricRegistry registry = metricsFactory.getRegistry();
+
+        for ( final int shard : getJobShards().getOwned() ) {
+            String name = MetricRegistry.name( SchedulerServiceImpl.class, "shard_depth", String.valueOf( shard ) );
+
+            registry.register( name, new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    Integer depth = shardDepths.get( shard );
+                    return depth == null ? 0 : depth;
+                }
+            } );
+        }
     }
 
 
@@ -427,4 +542,22 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
     public void setJobTimeout( long timeout ) {
         this.jobTimeout = timeout;
     }
+
+
+    /** @param shards the number of queues to spread the jobs over */
+    public void setShards( int shards ) {
+        this.shards = shards;
+    }
+
+
+    /** @param ownedShards comma separated shards this node polls, all of them if empty */
+    public void setOwnedShards( String ownedShards ) {
+        this.ownedShards = ownedShards;
+    }
+
+
+    /** @param metricsFactory the metrics factory to register the shard depth gauges with */
+    public void setMetricsFactory( MetricsFactory metricsFactory ) {
+        this.metricsFactory = metricsFactory;
+    }
 }
@@ -45,9 +45,15 @@ public class CassandraSubmitter implements BatchSubmitter {
     private final CassandraCounterStore cassandraCounterStore;
 
     private final ExecutorService executor = Executors.newFixedThreadPool( threadCount );
+
+    /** Time from the submission until the counts are written, including the time queued behind other writes */
     private final Timer addTimer =
             Metrics.newTimer( CassandraSubmitter.class, "submit_invocation", TimeUnit.MICROSECONDS, TimeUnit.SECONDS );
 
+    /** Time of the write alone */
+    private final Timer saveTimer =
+            Metrics.newTimer( CassandraSubmitter.class, "save", TimeUnit.MICROSECONDS, TimeUnit.SECONDS );
+
 
     public CassandraSubmitter( CassandraCounterStore cassandraCounterStore ) {
         this.cassandraCounterStore = cassandraCounterStore;
@@ -62,7 +68,9 @@ public class CassandraSubmitter implements BatchSubmitter {
 
             @Override
             public Object call() throws Exception {
+                TimerContext save = saveTimer.time();
                 cassandraCounterStore.save( counts );
+                save.stop();
                 timer.stop();
                 return true;
             }
@@ -0,0 +1,350 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.count;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.count.common.Count;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Timer;
+
+
+/**
+ * Batcher that sums the increments of the same counter before they are submitted, so a hot counter costs a single
+ * column write per flush no matter how often it is incremented.  Pending counts are flushed once the number of
+ * distinct counters reaches the batch size, or when the flush interval elapses, whichever comes first, so counters of
+ * quiet applications are never held longer than the interval.
+ * <p/>
+ * Adding a count never blocks: the pending counts live in a concurrent map updated with CAS operations and all
+ * submissions happen on the flush thread.
+ */
+public class CoalescingBatcher implements Batcher {
+
+    private static final Logger logger = LoggerFactory.getLogger( CoalescingBatcher.class );
+
+    /** Value of a pending count that has been taken by a flush and must no longer be incremented */
+    private static final long FLUSHED = Long.MIN_VALUE;
+
+    private final ConcurrentHashMap<String, PendingCount> pending = new ConcurrentHashMap<String, PendingCount>();
+    private final AtomicInteger pendingSize = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean( false );
+
+    private final AtomicLong opCount = new AtomicLong();
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong batchSubmissionCount = new AtomicLong();
+
+    private final Counter invocationCounter = Metrics.newCounter( CoalescingBatcher.class, "batch_add_invocations" );
+    private final Counter failedSubmissions = Metrics.newCounter( CoalescingBatcher.class, "failed_submissions" );
+
+    /** Time to take the pending counts and hand them to the submitter, the write itself is timed by the submitter */
+    private final Timer collectTimer =
+            Metrics.newTimer( CoalescingBatcher.class, "collect", TimeUnit.MILLISECONDS, TimeUnit.SECONDS );
+
+    private final ScheduledExecutorService flushExecutor =
+            Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+                @Override
+                public Thread newThread( Runnable r ) {
+                    Thread thread = new Thread( r, "CoalescingBatcher-flush" );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushRequested.set( false );
+            try {
+                flush();
+            }
+            catch ( Throwable t ) {
+                logger.error( "Unable to flush counters", t );
+            }
+        }
+    };
+
+    private BatchSubmitter batchSubmitter;
+    private int batchSize = 500;
+    private long flushInterval = 30;
+    private boolean blockingSubmit = false;
+
+
+    public CoalescingBatcher() {
+        Metrics.newGauge( CoalescingBatcher.class, "pending_counters", new Gauge<Integer>() {
+            @Override
+            public Integer value() {
+                return pendingSize.get();
+            }
+        } );
+
+        Metrics.newGauge( CoalescingBatcher.class, "coalesce_ratio", new Gauge<Double>() {
+            @Override
+            public Double value() {
+                return getCoalesceRatio();
+            }
+        } );
+    }
+
+
+    @Override
+    public void setBatchSubmitter( BatchSubmitter batchSubmitter ) {
+        this.batchSubmitter = batchSubmitter;
+    }
+
+
+    /** Set the number of distinct counters that triggers a flush */
+    public void setBatchSize( int batchSize ) {
+        this.batchSize = batchSize;
+    }
+
+
+    /** Set the max number of seconds a count is held before it is submitted */
+    public void setFlushInterval( long flushInterval ) {
+        this.flushInterval = flushInterval;
+    }
+
+
+    /** Submit every count as soon as it is added and wait for the write.  Only meant for tests */
+    public void setBlockingSubmit( boolean blockingSubmit ) {
+        this.blockingSubmit = blockingSubmit;
+    }
+
+
+    /** Start the periodic flush */
+    public void init() {
+        flushExecutor.scheduleWithFixedDelay( flushTask, flushInterval, flushInterval, TimeUnit.SECONDS );
+    }
+
+
+    /** Flush what is pending and stop the flush thread */
+    public void shutdown() {
+        flushExecutor.shutdown();
+        flush();
+    }
+
+
+    @Override
+    public void add( Count count ) {
+        invocationCounter.inc();
+        opCount.incrementAndGet();
+
+        if ( blockingSubmit ) {
+            submitNow( count );
+            return;
+        }
+
+        if ( addPending( count ) >= batchSize ) {
+            requestFlush();
+        }
+    }
+
+
+    /**
+     * Add the count to the running total of its counter
+     *
+     * @return the number of distinct pending counters if this count started a new one, otherwise 0
+     */
+    private int addPending( Count count ) {
+        String name = count.getCounterName();
+        long value = count.getValue();
+
+        while ( true ) {
+            PendingCount existing = pending.get( name );
+
+            if ( existing == null ) {
+                existing = pending.putIfAbsent( name, new PendingCount( count, value ) );
+
+                if ( existing == null ) {
+                    return pendingSize.incrementAndGet();
+                }
+            }
+
+            if ( existing.add( value ) ) {
+                return 0;
+            }
+
+            //a flush took this counter after we read it, clear it out and start a new one
+            pending.remove( name, existing );
+        }
+    }
+
+
+    /** Take every pending count and hand them to the submitter */
+    public synchronized void flush() {
+        if ( pending.isEmpty() ) {
+            return;
+        }
+
+        long start = System.nanoTime();
+
+        List<Count> counts = new ArrayList<Count>( pendingSize.get() );
+
+        for ( Map.Entry<String, PendingCount> entry : pending.entrySet() ) {
+            PendingCount pendingCount = entry.getValue();
+
+            if ( pending.remove( entry.getKey(), pendingCount ) ) {
+                pendingSize.decrementAndGet();
+            }
+
+            long value = pendingCount.take();
+
+            if ( value != 0 ) {
+                counts.add( pendingCount.toCount( value ) );
+            }
+        }
+
+        if ( counts.isEmpty() ) {
+            return;
+        }
+
+        try {
+            batchSubmitter.submit( counts );
+        }
+        catch ( RuntimeException e ) {
+            //put the counts back for the next flush, without requesting one so a failing submitter isn't retried
+            //in a tight loop
+            for ( Count count : counts ) {
+                addPending( count );
+            }
+
+            failedSubmissions.inc();
+            logger.error( "Unable to submit {} counters, they remain pending", counts.size(), e );
+            return;
+        }
+
+        submittedCount.addAndGet( counts.size() );
+        batchSubmissionCount.incrementAndGet();
+
+        collectTimer.update( System.nanoTime() - start, TimeUnit.NANOSECONDS );
+    }
+
+
+    @Override
+    public long getOpCount() {
+        return opCount.get();
+    }
+
+
+    @Override
+    public long getBatchSubmissionCount() {
+        return batchSubmissionCount.get();
+    }
+
+
+    /** @return the number of distinct counters waiting to be flushed */
+    public int getPendingCount() {
+        return pendingSize.get();
+    }
+
+
+    /** @return the number of counts added for every counter write, 1 means nothing was coalesced */
+    public double getCoalesceRatio() {
+        long writes = submittedCount.get() + pendingSize.get();
+        if ( writes == 0 ) {
+            return 0;
+        }
+        return ( double ) opCount.get() / writes;
+    }
+
+
+    private void requestFlush() {
+        if ( flushRequested.compareAndSet( false, true ) ) {
+            try {
+                flushExecutor.execute( flushTask );
+            }
+            catch ( Exception e ) {
+                flushRequested.set( false );
+                logger.warn( "Unable to schedule a counter flush, counts remain pending", e );
+            }
+        }
+    }
+
+
+    private void submitNow( Count count ) {
+        Future<?> future = batchSubmitter.submit( Arrays.asList( count ) );
+
+        try {
+            if ( future != null ) {
+                future.get();
+            }
+        }
+        catch ( Exception e ) {
+            logger.error( "Unable to submit counter {}", count.getCounterName(), e );
+        }
+
+        submittedCount.incrementAndGet();
+        batchSubmissionCount.incrementAndGet();
+    }
+
+
+    /** The running total of a counter, which is taken exactly once by a flush */
+    private static final class PendingCount {
+        private final Count template;
+        private final AtomicLong value;
+
+
+        private PendingCount( Count template, long value ) {
+            this.template = template;
+            this.value = new AtomicLong( value );
+        }
+
+
+        /** @return false if the count has been taken by a flush */
+        private boolean add( long delta ) {
+            while ( true ) {
+                long current = value.get();
+
+                if ( current == FLUSHED ) {
+                    return false;
+                }
+
+                if ( value.compareAndSet( current, current + delta ) ) {
+                    return true;
+                }
+            }
+        }
+
+
+        private long take() {
+            return value.getAndSet( FLUSHED );
+        }
+
+
+        @SuppressWarnings( "unchecked" )
+        private Count toCount( long total ) {
+            return new Count( template.getTableName(), template.getKeyName(), template.getColumnName(), total );
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.locking.lease;
+
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.usergrid.locking.Lock;
+
+
+/** The underlying lock of a path, held on a lease thread, and the in memory lock taken by every use of the path */
+class Lease {
+
+    private static final Logger logger = LoggerFactory.getLogger( Lease.class );
+
+    final String key;
+    final ReentrantLock local = new ReentrantLock( true );
+
+    /** Set once the underlying lock has been acquired, guarded by the local lock */
+    boolean held;
+
+    /** Set once the lease can't be used anymore, the next use creates a new lease */
+    volatile boolean released;
+
+    volatile long lastUsed = System.currentTimeMillis();
+
+    private final Lock lock;
+    private final CountDownLatch acquired = new CountDownLatch( 1 );
+    private final CountDownLatch releaseRequested = new CountDownLatch( 1 );
+    private volatile boolean acquireSucceeded;
+
+
+    Lease( String key, Lock lock ) {
+        this.key = key;
+        this.lock = lock;
+    }
+
+
+    /** @return the task that acquires the underlying lock and holds it until the lease is released */
+    Runnable holder( final Semaphore leaseSlots, final long timeoutMillis ) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    acquireSucceeded = lock.tryLock( timeoutMillis, TimeUnit.MILLISECONDS );
+                }
+                catch ( Exception e ) {
+                    logger.warn( "Unable to acquire the lock of lease {}", key, e );
+                }
+                finally {
+                    acquired.countDown();
+                }
+
+                if ( !acquireSucceeded ) {
+                    leaseSlots.release();
+                    return;
+                }
+
+                try {
+                    releaseRequested.await();
+                }
+                catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+                finally {
+                    try {
+                        lock.unlock();
+                    }
+                    catch ( Exception e ) {
+                        logger.warn( "Unable to release the lock of lease {}", key, e );
+                    }
+                    leaseSlots.release();
+                }
+            }
+        };
+    }
+
+
+    /** Wait for the lease thread to acquire the underlying lock */
+    boolean awaitHeld() {
+        try {
+            acquired.await();
+        }
+        catch ( InterruptedException e ) {
+            //the lease thread may still get the lock, make sure it lets go of it right away
+            release();
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        held = acquireSucceeded;
+
+        return held;
+    }
+
+
+    /** Let the lease thread release the underlying lock */
+    void release() {
+        releaseRequested.countDown();
+    }
+}
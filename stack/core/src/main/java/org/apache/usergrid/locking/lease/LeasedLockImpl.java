@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.locking.lease;
+
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.usergrid.locking.Lock;
+import org.apache.usergrid.locking.exception.UGLockException;
+
+
+/**
+ * Lock of a path of the {@link LeasedLockManagerImpl}.  Locking takes the in memory lock of the lease of the path,
+ * acquiring the lease first if this node doesn't hold it
+ */
+public class LeasedLockImpl implements Lock {
+
+    private final LeasedLockManagerImpl manager;
+    private final UUID applicationId;
+    private final String[] path;
+
+    /** The lease locked by this lock, or the lock acquired on this use when no lease was available */
+    private Lease lease;
+    private Lock unleased;
+
+
+    LeasedLockImpl( LeasedLockManagerImpl manager, UUID applicationId, String... path ) {
+        this.manager = manager;
+        this.applicationId = applicationId;
+        this.path = path;
+    }
+
+
+    @Override
+    public boolean tryLock( long timeout, TimeUnit time ) throws UGLockException {
+        long now = System.currentTimeMillis();
+        long timeoutMillis = time.toMillis( timeout );
+        long deadline = now + timeoutMillis < now ? Long.MAX_VALUE : now + timeoutMillis;
+
+        while ( true ) {
+            Lease current = manager.getLease( applicationId, path );
+
+            try {
+                if ( !current.local.tryLock( Math.max( deadline - now, 0 ), TimeUnit.MILLISECONDS ) ) {
+                    return false;
+                }
+            }
+            catch ( InterruptedException e ) {
+                throw new UGLockException( "Couldn't get the lock", e );
+            }
+
+            if ( current.released ) {
+                //released while we waited for it, start over with a new lease
+                current.local.unlock();
+                now = System.currentTimeMillis();
+                continue;
+            }
+
+            if ( !current.held ) {
+                LeasedLockManagerImpl.Hold hold = manager.hold( current, Math.max( deadline - now, 0 ) );
+
+                if ( hold != LeasedLockManagerImpl.Hold.HELD ) {
+                    current.local.unlock();
+
+                    if ( hold == LeasedLockManagerImpl.Hold.TIMED_OUT ) {
+                        return false;
+                    }
+
+                    //every lease thread is busy, lock on this thread for this use only
+                    return tryUnleased( Math.max( deadline - System.currentTimeMillis(), 0 ) );
+                }
+            }
+
+            current.lastUsed = System.currentTimeMillis();
+            lease = current;
+
+            return true;
+        }
+    }
+
+
+    @Override
+    public void lock() throws UGLockException {
+        if ( !tryLock( Long.MAX_VALUE, TimeUnit.MILLISECONDS ) ) {
+            throw new UGLockException( "Couldn't get the lock" );
+        }
+    }
+
+
+    @Override
+    public void unlock() throws UGLockException {
+        if ( unleased != null ) {
+            Lock acquired = unleased;
+            unleased = null;
+            acquired.unlock();
+            return;
+        }
+
+        if ( lease == null || !lease.local.isHeldByCurrentThread() ) {
+            return;
+        }
+
+        Lease current = lease;
+        current.lastUsed = System.currentTimeMillis();
+        current.local.unlock();
+
+        if ( !current.local.isHeldByCurrentThread() ) {
+            lease = null;
+        }
+    }
+
+
+    private boolean tryUnleased( long timeoutMillis ) throws UGLockException {
+        Lock acquiring = manager.createUnleasedLock( applicationId, path );
+
+        if ( !acquiring.tryLock( timeoutMillis, TimeUnit.MILLISECONDS ) ) {
+            return false;
+        }
+
+        unleased = acquiring;
+
+        return true;
+    }
+}
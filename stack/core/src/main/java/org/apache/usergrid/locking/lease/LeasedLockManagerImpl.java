@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.locking.lease;
+
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.usergrid.locking.Lock;
+import org.apache.usergrid.locking.LockManager;
+import org.apache.usergrid.locking.LockPathBuilder;
+
+
+/**
+ * {@link LockManager} that keeps the locks of another lock manager held between uses.  The first lock of a path
+ * acquires the underlying lock and holds it as a lease on this node, every following lock of the path on this node
+ * only takes an in memory lock, so a steady stream of locks of the same path costs a single round trip to the lock
+ * service.  A lease is released once it hasn't been used for the lease time.
+ * <p/>
+ * The underlying lock is acquired and released on a lease thread, since the ZooKeeper and single node locks must be
+ * released by the thread that acquired them.  The underlying lock manager keeps the lock alive while it is held, the
+ * hector locks are renewed by its heartbeat threads and the ZooKeeper locks by the session.  When all the lease
+ * threads are in use, locks fall back to acquiring the underlying lock on every use.
+ * <p/>
+ * Other nodes wait for the lease to be released, so this is only meant for locks that are mostly taken on the same
+ * node, such as the lock of a queue consumer, and the lease time must be well below the time other nodes wait for a
+ * lock.  A lease time of 0 disables the leases and returns the locks of the underlying lock manager.
+ */
+public class LeasedLockManagerImpl implements LockManager {
+
+    private static final Logger logger = LoggerFactory.getLogger( LeasedLockManagerImpl.class );
+
+    /** The outcome of acquiring the underlying lock of a lease */
+    enum Hold {
+        HELD, NO_LEASE, TIMED_OUT
+    }
+
+
+    private final LockManager lockManager;
+    private final long leaseMillis;
+
+    private final ConcurrentHashMap<String, Lease> leases = new ConcurrentHashMap<String, Lease>();
+
+    /** The lease threads that are free to hold another lease */
+    private final Semaphore leaseSlots;
+
+    private final ExecutorService leaseHolders;
+    private final ScheduledExecutorService leaseReaper;
+
+
+    /**
+     * Create a new lease manager
+     *
+     * @param lockManager The lock manager of the leased locks
+     * @param leaseMillis The number of milliseconds a lease is held after its last use.  0 disables the leases
+     * @param maxLeases The max number of leases held at the same time
+     */
+    public LeasedLockManagerImpl( LockManager lockManager, long leaseMillis, int maxLeases ) {
+        this.lockManager = lockManager;
+        this.leaseMillis = maxLeases > 0 ? leaseMillis : 0;
+        this.leaseSlots = new Semaphore( Math.max( maxLeases, 0 ) );
+
+        if ( this.leaseMillis <= 0 ) {
+            leaseHolders = null;
+            leaseReaper = null;
+            return;
+        }
+
+        leaseHolders = Executors.newCachedThreadPool( new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread thread = new Thread( r, "LockLease-" + count.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+
+        leaseReaper = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread thread = new Thread( r, "LockLease-reaper" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+
+        long interval = Math.max( this.leaseMillis / 2, 1 );
+
+        leaseReaper.scheduleWithFixedDelay( new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    releaseIdleLeases();
+                }
+                catch ( Throwable t ) {
+                    logger.error( "Unable to release idle leases", t );
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS );
+    }
+
+
+    @Override
+    public Lock createLock( UUID applicationId, String... path ) {
+        if ( leaseMillis <= 0 ) {
+            return lockManager.createLock( applicationId, path );
+        }
+
+        return new LeasedLockImpl( this, applicationId, path );
+    }
+
+
+    /** Release every lease and stop the lease threads */
+    public void destroy() {
+        if ( leaseReaper == null ) {
+            return;
+        }
+
+        leaseReaper.shutdownNow();
+
+        //locks in use at shutdown are released without waiting for them
+        for ( Lease lease : leases.values() ) {
+            release( lease );
+        }
+
+        leaseHolders.shutdown();
+    }
+
+
+    /** @return the number of leases currently held */
+    public int getLeaseCount() {
+        return leases.size();
+    }
+
+
+    /** @return the lease of the path, creating it if it doesn't exist */
+    Lease getLease( UUID applicationId, String... path ) {
+        String key = LockPathBuilder.buildPath( applicationId, path );
+
+        Lease lease = leases.get( key );
+
+        if ( lease == null ) {
+            lease = new Lease( key, lockManager.createLock( applicationId, path ) );
+            Lease existing = leases.putIfAbsent( key, lease );
+            if ( existing != null ) {
+                lease = existing;
+            }
+        }
+
+        return lease;
+    }
+
+
+    /** Create a lock that is acquired on every use, for when no lease thread is available */
+    Lock createUnleasedLock( UUID applicationId, String... path ) {
+        return lockManager.createLock( applicationId, path );
+    }
+
+
+    /**
+     * Acquire the underlying lock of a new lease on a lease thread.  Must be called holding the local lock of the
+     * lease.  Unless the lease is held, it is discarded
+     */
+    Hold hold( final Lease lease, final long timeoutMillis ) {
+        if ( !leaseSlots.tryAcquire() ) {
+            logger.debug( "No lease thread available for {}", lease.key );
+            discard( lease );
+            return Hold.NO_LEASE;
+        }
+
+        try {
+            leaseHolders.execute( lease.holder( leaseSlots, timeoutMillis ) );
+        }
+        catch ( Exception e ) {
+            leaseSlots.release();
+            discard( lease );
+            return Hold.NO_LEASE;
+        }
+
+        if ( !lease.awaitHeld() ) {
+            discard( lease );
+            return Hold.TIMED_OUT;
+        }
+
+        return Hold.HELD;
+    }
+
+
+    /** Release the lease and remove it.  Must be called holding the local lock of the lease, unless shutting down */
+    void release( Lease lease ) {
+        discard( lease );
+        lease.release();
+    }
+
+
+    private void discard( Lease lease ) {
+        lease.released = true;
+        leases.remove( lease.key, lease );
+    }
+
+
+    private void releaseIdleLeases() {
+        long idleSince = System.currentTimeMillis() - leaseMillis;
+
+        for ( Lease lease : leases.values() ) {
+            if ( lease.lastUsed > idleSince || !lease.local.tryLock() ) {
+                continue;
+            }
+
+            try {
+                if ( lease.lastUsed <= idleSince && !lease.released ) {
+                    logger.debug( "Releasing idle lease {}", lease.key );
+                    release( lease );
+                }
+            }
+            finally {
+                lease.local.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mq;
+
+
+import java.util.UUID;
+
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+import org.codehaus.jackson.map.annotate.JsonSerialize.Inclusion;
+
+
+/** A message of a batch post that could not be written to the queue */
+public class MessageFailure {
+
+    private int index;
+    private UUID uuid;
+    private String error;
+    private Throwable cause;
+
+
+    public MessageFailure() {
+    }
+
+
+    public MessageFailure( int index, UUID uuid, Throwable cause ) {
+        this.index = index;
+        this.uuid = uuid;
+        this.cause = cause;
+        this.error = cause != null ? cause.getClass().getSimpleName() + ": " + cause.getMessage() : null;
+    }
+
+
+    /** @return the position of the message in the posted list */
+    public int getIndex() {
+        return index;
+    }
+
+
+    public void setIndex( int index ) {
+        this.index = index;
+    }
+
+
+    @JsonSerialize(include = Inclusion.NON_NULL)
+    public UUID getUuid() {
+        return uuid;
+    }
+
+
+    public void setUuid( UUID uuid ) {
+        this.uuid = uuid;
+    }
+
+
+    @JsonSerialize(include = Inclusion.NON_NULL)
+    public String getError() {
+        return error;
+    }
+
+
+    public void setError( String error ) {
+        this.error = error;
+    }
+
+
+    @JsonIgnore
+    public Throwable getCause() {
+        return cause;
+    }
+}
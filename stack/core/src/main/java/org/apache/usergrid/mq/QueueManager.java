@@ -39,6 +39,12 @@ public interface QueueManager {
 
     public List<Message> postToQueue( String queuePath, List<Message> messages );
 
+    /**
+     * Post the messages in concurrent batches.  The results hold the messages that were written, in order, and a
+     * failure for every message that wasn't
+     */
+    public QueueResults postMessagesToQueue( String queuePath, List<Message> messages );
+
     public QueueResults getFromQueue( String queuePath, QueueQuery query );
 
     public Message getMessage( UUID messageId );
@@ -41,6 +41,7 @@ public class QueueQuery extends Query {
     boolean _synchronized;
     boolean update = true;
     long timeout;
+    long wait;
 
 
     public QueueQuery() {
@@ -61,6 +62,7 @@ public class QueueQuery extends Query {
             position = q.position;
             _synchronized = q._synchronized;
             update = q.update;
+            wait = q.wait;
         }
     }
 
@@ -138,6 +140,11 @@ public class QueueQuery extends Query {
             query.setTimeout( ConversionUtils.getLong( first( params.get( "timeout" ) ) ) );
         }
 
+        if ( params.containsKey( "wait" ) ) {
+            query = newQueryIfNull( query );
+            query.setWait( ConversionUtils.getLong( first( params.get( "wait" ) ) ) );
+        }
+
         if ( ( query != null ) && ( consumer != null ) ) {
             query.setPositionIfUnset( QueuePosition.CONSUMER );
         }
@@ -304,4 +311,22 @@ public class QueueQuery extends Query {
         setTimeout( timeout );
         return this;
     }
+
+
+    /** @return the max number of milliseconds to wait for messages when the queue is empty */
+    public long getWait() {
+        return wait;
+    }
+
+
+    /** @param wait the max number of milliseconds to wait for messages when the queue is empty, 0 to not wait */
+    public void setWait( long wait ) {
+        this.wait = wait;
+    }
+
+
+    public QueueQuery withWait( long wait ) {
+        setWait( wait );
+        return this;
+    }
 }
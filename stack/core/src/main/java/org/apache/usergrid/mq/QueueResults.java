@@ -35,6 +35,7 @@ public class QueueResults {
     private List<Message> messages = new ArrayList<Message>();
     private UUID last;
     private UUID consumer;
+    private List<MessageFailure> failures;
 
 
     public QueueResults() {
@@ -123,6 +124,18 @@ public class QueueResults {
     }
 
 
+    /** @return the messages of a batch post that were not written, null if all of them were */
+    @JsonSerialize(include = Inclusion.NON_NULL)
+    public List<MessageFailure> getFailures() {
+        return failures;
+    }
+
+
+    public void setFailures( List<MessageFailure> failures ) {
+        this.failures = failures;
+    }
+
+
     public int size() {
         return messages.size();
     }
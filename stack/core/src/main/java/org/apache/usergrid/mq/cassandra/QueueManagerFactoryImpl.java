@@ -18,6 +18,12 @@ package org.apache.usergrid.mq.cassandra;
 
 
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +47,20 @@ public class QueueManagerFactoryImpl implements QueueManagerFactory {
     private LockManager lockManager;
     private int lockTimeout;
 
+    private int postThreads = 16;
+    private int postBatchSize = 100;
+    private int postConcurrency = 4;
+
+    private long maxWait = 30000;
+    private long waitPollInterval = 1000;
+    private int maxWaiters = 100;
+
+    /** Writes the batches of messages posted together, shared by all the queue managers */
+    private ExecutorService postExecutor;
+
+    /** Wakes up the reads waiting on a queue, shared by all the queue managers */
+    private QueueNotifier notifier;
+
     /**
      * Must be constructed with a CassandraClientPool.
      *
@@ -55,6 +75,80 @@ public class QueueManagerFactoryImpl implements QueueManagerFactory {
     }
 
 
+    /** Set the number of threads writing batches of posted messages.  0 writes them on the calling thread */
+    public void setPostThreads( int postThreads ) {
+        this.postThreads = postThreads;
+    }
+
+
+    /** Set the number of messages written in a single batch */
+    public void setPostBatchSize( int postBatchSize ) {
+        this.postBatchSize = postBatchSize;
+    }
+
+
+    /** Set the number of batches of a single post that are written at the same time */
+    public void setPostConcurrency( int postConcurrency ) {
+        this.postConcurrency = postConcurrency;
+    }
+
+
+    /** Set the max number of milliseconds a read of an empty queue waits for messages.  0 never waits */
+    public void setMaxWait( long maxWait ) {
+        this.maxWait = maxWait;
+    }
+
+
+    /** Set the number of milliseconds between the reads of a waiting read, to see the posts made on other nodes */
+    public void setWaitPollInterval( long waitPollInterval ) {
+        this.waitPollInterval = waitPollInterval;
+    }
+
+
+    /**
+     * Set the max number of reads waiting at the same time, further reads return immediately.  Each waiting read holds a
+     * request thread, so this must stay well below the request threads of the container
+     */
+    public void setMaxWaiters( int maxWaiters ) {
+        this.maxWaiters = maxWaiters;
+    }
+
+
+    public void init() {
+        if ( maxWait > 0 ) {
+            notifier = new QueueNotifier( maxWaiters );
+        }
+
+        if ( postThreads <= 0 ) {
+            return;
+        }
+
+        //a full executor rejects the batch and the queue manager writes it on the calling thread instead
+        ThreadPoolExecutor executor = new ThreadPoolExecutor( postThreads, postThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>( postThreads * 4 ), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread thread = new Thread( r, "QueuePost-" + count.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        }, new ThreadPoolExecutor.AbortPolicy() );
+        executor.allowCoreThreadTimeOut( true );
+
+        postExecutor = executor;
+    }
+
+
+    public void destroy() {
+        if ( postExecutor != null ) {
+            postExecutor.shutdown();
+        }
+    }
+
+
     @Override
     public String getImpementationDescription() throws Exception {
         return IMPLEMENTATION_DESCRIPTION;
@@ -64,7 +158,9 @@ public class QueueManagerFactoryImpl implements QueueManagerFactory {
     @Override
     public QueueManager getQueueManager( UUID applicationId ) {
         QueueManagerImpl qm = new QueueManagerImpl();
-        qm.init( cass, counterUtils, lockManager, applicationId, lockTimeout );
+        qm.init( cass, counterUtils, lockManager, applicationId, lockTimeout )
+          .withBatchPosting( postExecutor, postBatchSize, postConcurrency )
+          .withWaiting( notifier, maxWait, waitPollInterval );
         return qm;
         //return applicationContext.getAutowireCapableBeanFactory()
         //		.createBean(QueueManagerImpl.class)
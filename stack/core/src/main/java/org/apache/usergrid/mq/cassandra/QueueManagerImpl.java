@@ -28,12 +28,18 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.usergrid.locking.LockManager;
 import org.apache.usergrid.mq.CounterQuery;
 import org.apache.usergrid.mq.Message;
+import org.apache.usergrid.mq.MessageFailure;
 import org.apache.usergrid.mq.Query;
 import org.apache.usergrid.mq.Query.CounterFilterPredicate;
 import org.apache.usergrid.mq.QueryProcessor;
@@ -65,6 +71,7 @@ import org.apache.usergrid.persistence.hector.CountingMutator;
 import org.apache.usergrid.utils.UUIDUtils;
 
 import com.fasterxml.uuid.UUIDComparator;
+import com.google.common.collect.Lists;
 
 import me.prettyprint.hector.api.Keyspace;
 import me.prettyprint.hector.api.beans.AbstractComposite.ComponentEquality;
@@ -149,6 +156,15 @@ public class QueueManagerImpl implements QueueManager {
     private LockManager lockManager;
     private int lockTimeout;
 
+    /** Writes the batches of messages posted together, null to write them on the calling thread */
+    private ExecutorService postExecutor;
+    private int postBatchSize = 100;
+    private int postConcurrency = 4;
+
+    /** Wakes up the reads waiting on the queues of this node, null if reads never wait */
+    private QueueNotifier notifier;
+    private long maxWait;
+    private long waitPollInterval = 1000;
 
 
     public QueueManagerImpl() {
@@ -166,6 +182,30 @@ public class QueueManagerImpl implements QueueManager {
     }
 
 
+    /**
+     * Write messages posted together in batches of batchSize messages, concurrency batches at a time, on the executor
+     */
+    public QueueManagerImpl withBatchPosting( ExecutorService postExecutor, int batchSize, int concurrency ) {
+        this.postExecutor = postExecutor;
+        this.postBatchSize = batchSize;
+        this.postConcurrency = Math.max( concurrency, 1 );
+        return this;
+    }
+
+
+    /**
+     * Let reads of an empty queue wait up to maxWait milliseconds for messages.  Waiting reads are woken up by the
+     * posts made through the notifier's node, and read the queue again every pollInterval milliseconds to see the
+     * posts made on other nodes
+     */
+    public QueueManagerImpl withWaiting( QueueNotifier notifier, long maxWait, long pollInterval ) {
+        this.notifier = notifier;
+        this.maxWait = maxWait;
+        this.waitPollInterval = Math.max( pollInterval, 1 );
+        return this;
+    }
+
+
     @Override
     public Message getMessage( UUID messageId ) {
         SliceQuery<UUID, String, ByteBuffer> q =
@@ -188,6 +228,18 @@ public class QueueManagerImpl implements QueueManager {
 
         message.sync();
 
+        batchAddMessageToQueue( batch, queueId, message, indexUpdate, timestamp );
+
+        batchUpdateQueueForMessages( batch, queuePath, queueId, message.getUuid(), message.getUuid(), 1L, timestamp );
+
+        return message;
+    }
+
+
+    /** Add the message, its inbox entry, its indexes and its counters to the batch */
+    private void batchAddMessageToQueue( Mutator<ByteBuffer> batch, UUID queueId, Message message,
+                                         MessageIndexUpdate indexUpdate, long timestamp ) {
+
         addMessageToMutator( batch, message, timestamp );
 
         long shard_ts = roundLong( message.getTimestamp(), QUEUE_SHARD_INTERVAL );
@@ -197,33 +249,40 @@ public class QueueManagerImpl implements QueueManager {
         batch.addInsertion( getQueueShardRowKey( queueId, shard_ts ), QUEUE_INBOX.getColumnFamily(),
                 createColumn( message.getUuid(), ByteBuffer.allocate( 0 ), timestamp, ue, be ) );
 
-        long oldest_ts = Long.MAX_VALUE - getTimestampInMicros( message.getUuid() );
+        if ( indexUpdate == null ) {
+            indexUpdate = new MessageIndexUpdate( message );
+        }
+        indexUpdate.addToMutation( batch, queueId, shard_ts, timestamp );
+
+        counterUtils.addMessageCounterMutations( batch, applicationId, queueId, message, timestamp );
+    }
+
+
+    /**
+     * Update the oldest and newest pointers, the message counter and the timestamps of a queue that has been posted
+     * count messages, the oldest and newest of which are given
+     */
+    private void batchUpdateQueueForMessages( Mutator<ByteBuffer> batch, String queuePath, UUID queueId, UUID oldest,
+                                              UUID newest, long count, long timestamp ) {
+
+        long oldest_ts = Long.MAX_VALUE - getTimestampInMicros( oldest );
         batch.addInsertion( bytebuffer( queueId ), QUEUE_PROPERTIES.getColumnFamily(),
-                createColumn( QUEUE_OLDEST, message.getUuid(), oldest_ts, se, ue ) );
+                createColumn( QUEUE_OLDEST, oldest, oldest_ts, se, ue ) );
 
-        long newest_ts = getTimestampInMicros( message.getUuid() );
+        long newest_ts = getTimestampInMicros( newest );
         batch.addInsertion( bytebuffer( queueId ), QUEUE_PROPERTIES.getColumnFamily(),
-                createColumn( QUEUE_NEWEST, message.getUuid(), newest_ts, se, ue ) );
+                createColumn( QUEUE_NEWEST, newest, newest_ts, se, ue ) );
 
         batch.addInsertion( bytebuffer( getQueueId( "/" ) ), QUEUE_SUBSCRIBERS.getColumnFamily(),
                 createColumn( queuePath, queueId, timestamp, se, ue ) );
 
-        counterUtils.batchIncrementQueueCounter( batch, getQueueId( "/" ), queuePath, 1L, timestamp, applicationId );
-
-        if ( indexUpdate == null ) {
-            indexUpdate = new MessageIndexUpdate( message );
-        }
-        indexUpdate.addToMutation( batch, queueId, shard_ts, timestamp );
-
-        counterUtils.addMessageCounterMutations( batch, applicationId, queueId, message, timestamp );
+        counterUtils.batchIncrementQueueCounter( batch, getQueueId( "/" ), queuePath, count, timestamp, applicationId );
 
         batch.addInsertion( bytebuffer( queueId ), QUEUE_PROPERTIES.getColumnFamily(),
                 createColumn( QUEUE_CREATED, timestamp / 1000, Long.MAX_VALUE - timestamp, se, le ) );
 
         batch.addInsertion( bytebuffer( queueId ), QUEUE_PROPERTIES.getColumnFamily(),
                 createColumn( QUEUE_MODIFIED, timestamp / 1000, timestamp, se, le ) );
-
-        return message;
     }
 
 
@@ -241,6 +300,8 @@ public class QueueManagerImpl implements QueueManager {
 
         batchExecute( batch, RETRY_COUNT );
 
+        notifyWaiters( queuePath );
+
         String firstSubscriberQueuePath = null;
         while ( true ) {
 
@@ -258,6 +319,10 @@ public class QueueManagerImpl implements QueueManager {
             }
             batchExecute( batch, RETRY_COUNT );
 
+            for ( QueueInfo q : subscribers.getQueues() ) {
+                notifyWaiters( q.getPath() );
+            }
+
             if ( !subscribers.hasMore() ) {
                 break;
             }
@@ -270,17 +335,249 @@ public class QueueManagerImpl implements QueueManager {
     @Override
     public List<Message> postToQueue( String queuePath, List<Message> messages ) {
 
-        // Can't do this as one big batch operation because it will
-        // time out
+        QueueResults results = postMessagesToQueue( queuePath, messages );
 
-        for ( Message message : messages ) {
-            postToQueue( queuePath, message );
+        if ( results.getFailures() != null ) {
+            Throwable cause = results.getFailures().get( 0 ).getCause();
+            if ( cause instanceof RuntimeException ) {
+                throw ( RuntimeException ) cause;
+            }
+            throw new RuntimeException( "Unable to post messages to queue " + queuePath, cause );
         }
 
         return messages;
     }
 
 
+    @Override
+    public QueueResults postMessagesToQueue( String queuePath, List<Message> messages ) {
+
+        queuePath = normalizeQueuePath( queuePath );
+
+        QueueResults results = new QueueResults();
+        results.setPath( queuePath );
+        results.setQueue( getQueueId( queuePath ) );
+
+        if ( messages == null || messages.isEmpty() ) {
+            return results;
+        }
+
+        // the ids are assigned here so the messages are ordered in the queue as they were posted, whichever batch is
+        // written first
+        for ( Message message : messages ) {
+            message.sync();
+        }
+
+        List<String> subscriberQueuePaths = getAllSubscriberPaths( queuePath );
+
+        // one big batch times out, so the messages are written in batches of postBatchSize, postConcurrency of which
+        // are in flight at any time
+        List<List<Message>> batches = Lists.partition( messages, Math.max( postBatchSize, 1 ) );
+        List<Future<?>> inFlight = new ArrayList<Future<?>>( batches.size() );
+        Throwable[] errors = new Throwable[batches.size()];
+
+        for ( int i = 0; i < batches.size(); i++ ) {
+            PostBatch post = new PostBatch( queuePath, subscriberQueuePaths, batches.get( i ) );
+
+            if ( postExecutor == null || batches.size() == 1 ) {
+                errors[i] = post.callQuietly();
+                inFlight.add( null );
+                continue;
+            }
+
+            if ( i >= postConcurrency ) {
+                await( inFlight, errors, i - postConcurrency );
+            }
+
+            try {
+                inFlight.add( postExecutor.submit( post ) );
+            }
+            catch ( RejectedExecutionException e ) {
+                // the executor is saturated, write the batch on this thread
+                errors[i] = post.callQuietly();
+                inFlight.add( null );
+            }
+        }
+
+        for ( int i = Math.max( batches.size() - postConcurrency, 0 ); i < batches.size(); i++ ) {
+            await( inFlight, errors, i );
+        }
+
+        List<Message> posted = new ArrayList<Message>( messages.size() );
+        List<MessageFailure> failures = new ArrayList<MessageFailure>();
+
+        int index = 0;
+        for ( int i = 0; i < batches.size(); i++ ) {
+            for ( Message message : batches.get( i ) ) {
+                if ( errors[i] == null ) {
+                    posted.add( message );
+                }
+                else {
+                    failures.add( new MessageFailure( index, message.getUuid(), errors[i] ) );
+                }
+                index++;
+            }
+
+            if ( errors[i] != null ) {
+                logger.error( "Unable to post {} messages to queue {}",
+                        new Object[] { batches.get( i ).size(), queuePath, errors[i] } );
+            }
+        }
+
+        if ( !posted.isEmpty() ) {
+            notifyWaiters( queuePath );
+            for ( String subscriberQueuePath : subscriberQueuePaths ) {
+                notifyWaiters( subscriberQueuePath );
+            }
+        }
+
+        results.setMessages( posted );
+        if ( !failures.isEmpty() ) {
+            results.setFailures( failures );
+        }
+
+        return results;
+    }
+
+
+    /** Wait for the batch at the index to be written, recording its error */
+    private void await( List<Future<?>> inFlight, Throwable[] errors, int index ) {
+        Future<?> future = inFlight.get( index );
+
+        if ( future == null ) {
+            return;
+        }
+
+        try {
+            future.get();
+        }
+        catch ( ExecutionException e ) {
+            errors[index] = e.getCause();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            future.cancel( true );
+            errors[index] = e;
+        }
+    }
+
+
+    /** Wake up the reads of this node waiting on the queue */
+    private void notifyWaiters( String queuePath ) {
+        if ( notifier != null ) {
+            notifier.wake( applicationId, normalizeQueuePath( queuePath ) );
+        }
+    }
+
+
+    /** @return the paths of all the queues subscribed to the queue */
+    private List<String> getAllSubscriberPaths( String queuePath ) {
+        List<String> paths = new ArrayList<String>();
+
+        String firstSubscriberQueuePath = null;
+        while ( true ) {
+
+            QueueSet subscribers = getSubscribers( queuePath, firstSubscriberQueuePath, 1000 );
+
+            for ( QueueInfo q : subscribers.getQueues() ) {
+                paths.add( q.getPath() );
+                firstSubscriberQueuePath = q.getPath();
+            }
+
+            if ( subscribers.getQueues().isEmpty() || !subscribers.hasMore() ) {
+                break;
+            }
+        }
+
+        return paths;
+    }
+
+
+    /**
+     * Writes a batch of messages to a queue and its subscribers.  The queue counter and properties are updated once per
+     * queue for the whole batch rather than once per message
+     */
+    private final class PostBatch implements Callable<Void> {
+
+        private final String queuePath;
+        private final List<String> subscriberQueuePaths;
+        private final List<Message> messages;
+
+
+        private PostBatch( String queuePath, List<String> subscriberQueuePaths, List<Message> messages ) {
+            this.queuePath = queuePath;
+            this.subscriberQueuePaths = subscriberQueuePaths;
+            this.messages = messages;
+        }
+
+
+        @Override
+        public Void call() {
+            long timestamp = cass.createTimestamp();
+
+            List<MessageIndexUpdate> indexUpdates = new ArrayList<MessageIndexUpdate>( messages.size() );
+
+            UUID oldest = messages.get( 0 ).getUuid();
+            UUID newest = oldest;
+
+            for ( Message message : messages ) {
+                indexUpdates.add( new MessageIndexUpdate( message ) );
+
+                if ( UUIDComparator.staticCompare( message.getUuid(), oldest ) < 0 ) {
+                    oldest = message.getUuid();
+                }
+                if ( UUIDComparator.staticCompare( message.getUuid(), newest ) > 0 ) {
+                    newest = message.getUuid();
+                }
+            }
+
+            Mutator<ByteBuffer> batch =
+                    CountingMutator.createFlushingMutator( cass.getApplicationKeyspace( applicationId ), be );
+
+            addToQueue( batch, queuePath, indexUpdates, oldest, newest, timestamp );
+
+            batchExecute( batch, RETRY_COUNT );
+
+            for ( List<String> page : Lists.partition( subscriberQueuePaths, 1000 ) ) {
+
+                batch = CountingMutator.createFlushingMutator( cass.getApplicationKeyspace( applicationId ), be );
+
+                for ( String subscriberQueuePath : page ) {
+                    addToQueue( batch, subscriberQueuePath, indexUpdates, oldest, newest, timestamp );
+                }
+
+                batchExecute( batch, RETRY_COUNT );
+            }
+
+            return null;
+        }
+
+
+        /** @return the error that stopped the batch from being written, null if it was */
+        private Throwable callQuietly() {
+            try {
+                call();
+                return null;
+            }
+            catch ( Throwable t ) {
+                return t;
+            }
+        }
+
+
+        private void addToQueue( Mutator<ByteBuffer> batch, String path, List<MessageIndexUpdate> indexUpdates,
+                                 UUID oldest, UUID newest, long timestamp ) {
+            UUID queueId = getQueueId( path );
+
+            for ( int i = 0; i < messages.size(); i++ ) {
+                batchAddMessageToQueue( batch, queueId, messages.get( i ), indexUpdates.get( i ), timestamp );
+            }
+
+            batchUpdateQueueForMessages( batch, path, queueId, oldest, newest, messages.size(), timestamp );
+        }
+    }
+
+
     static TreeSet<UUID> add( TreeSet<UUID> a, UUID uuid, boolean reversed, int limit ) {
 
         if ( a == null ) {
@@ -376,6 +673,52 @@ public class QueueManagerImpl implements QueueManager {
             query = new QueueQuery();
         }
 
+        long wait = Math.min( query.getWait(), maxWait );
+
+        if ( wait <= 0 || notifier == null ) {
+            return readFromQueue( queuePath, query );
+        }
+
+        queuePath = normalizeQueuePath( queuePath );
+
+        // registered before the first read so a post made while the queue is read still wakes us up
+        QueueNotifier.Waiter waiter = notifier.register( applicationId, queuePath );
+
+        if ( waiter == null ) {
+            logger.debug( "Too many reads waiting, reading {} without waiting", queuePath );
+            return readFromQueue( queuePath, query );
+        }
+
+        QueueResults results = null;
+
+        try {
+            long deadline = System.currentTimeMillis() + wait;
+
+            while ( true ) {
+                results = readFromQueue( queuePath, query );
+
+                long remaining = deadline - System.currentTimeMillis();
+
+                if ( results.getMessages() == null || !results.getMessages().isEmpty() || remaining <= 0 ) {
+                    return results;
+                }
+
+                // posts made on other nodes are only seen by reading the queue again
+                waiter.await( Math.min( remaining, waitPollInterval ) );
+            }
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            return results;
+        }
+        finally {
+            waiter.close();
+        }
+    }
+
+
+    private QueueResults readFromQueue( String queuePath, QueueQuery query ) {
+
         Keyspace ko = cass.getApplicationKeyspace( applicationId );
 
         QueueSearch search = null;
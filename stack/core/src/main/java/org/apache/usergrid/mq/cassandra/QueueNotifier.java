@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mq.cassandra;
+
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Wakes up the reads waiting on a queue of this node when messages are posted to it on this node.  Posts made on other
+ * nodes are not seen, so waiting reads must still poll the queue at an interval.
+ * <p/>
+ * A waiter is registered before the queue is read, so a post made between the read and the wait is never missed.
+ * Nothing is kept for queues nobody is waiting on, so notifying them is a single map lookup.
+ */
+public class QueueNotifier {
+
+    private final ConcurrentHashMap<String, Signal> signals = new ConcurrentHashMap<String, Signal>();
+    private final AtomicInteger waiterCount = new AtomicInteger();
+    private final int maxWaiters;
+
+
+    /** @param maxWaiters the max number of reads waiting on this node at any time */
+    public QueueNotifier( int maxWaiters ) {
+        this.maxWaiters = maxWaiters;
+    }
+
+
+    /**
+     * Register a waiter on the queue, which must be closed once the read is done
+     *
+     * @return the waiter, or null if too many reads are already waiting
+     */
+    public Waiter register( UUID applicationId, String queuePath ) {
+        if ( waiterCount.incrementAndGet() > maxWaiters ) {
+            waiterCount.decrementAndGet();
+            return null;
+        }
+
+        String key = key( applicationId, queuePath );
+
+        while ( true ) {
+            Signal signal = signals.get( key );
+
+            if ( signal == null ) {
+                Signal created = new Signal();
+                signal = signals.putIfAbsent( key, created );
+                if ( signal == null ) {
+                    signal = created;
+                }
+            }
+
+            synchronized ( signal ) {
+                //the last waiter of the signal removed it after we read it
+                if ( signal.removed ) {
+                    continue;
+                }
+
+                signal.waiters++;
+                return new Waiter( key, signal, signal.version );
+            }
+        }
+    }
+
+
+    /** Wake up the reads waiting on the queue */
+    public void wake( UUID applicationId, String queuePath ) {
+        Signal signal = signals.get( key( applicationId, queuePath ) );
+
+        if ( signal == null ) {
+            return;
+        }
+
+        synchronized ( signal ) {
+            signal.version++;
+            signal.notifyAll();
+        }
+    }
+
+
+    /** @return the number of reads waiting on this node */
+    public int getWaiterCount() {
+        return waiterCount.get();
+    }
+
+
+    private static String key( UUID applicationId, String queuePath ) {
+        return applicationId + queuePath;
+    }
+
+
+    /** The posts to a queue, shared by every waiter of the queue */
+    private static final class Signal {
+        private long version;
+        private int waiters;
+        private boolean removed;
+    }
+
+
+    /** A read waiting on a queue */
+    public final class Waiter {
+
+        private final String key;
+        private final Signal signal;
+        private long seen;
+        private boolean closed;
+
+
+        private Waiter( String key, Signal signal, long seen ) {
+            this.key = key;
+            this.signal = signal;
+            this.seen = seen;
+        }
+
+
+        /**
+         * Wait for a post to the queue since the last call, or since the waiter was registered
+         *
+         * @return true if the queue was posted to, false if the timeout elapsed first
+         */
+        public boolean await( long timeoutMillis ) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeoutMillis );
+
+            synchronized ( signal ) {
+                while ( signal.version == seen ) {
+                    long remaining = TimeUnit.NANOSECONDS.toMillis( deadline - System.nanoTime() );
+
+                    if ( remaining <= 0 ) {
+                        return false;
+                    }
+
+                    signal.wait( remaining );
+                }
+
+                seen = signal.version;
+                return true;
+            }
+        }
+
+
+        public void close() {
+            synchronized ( signal ) {
+                if ( closed ) {
+                    return;
+                }
+
+                closed = true;
+
+                if ( --signal.waiters == 0 ) {
+                    signal.removed = true;
+                    signals.remove( key, signal );
+                }
+            }
+
+            waiterCount.decrementAndGet();
+        }
+    }
+}
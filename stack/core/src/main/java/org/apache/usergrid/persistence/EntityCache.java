@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence;
+
+
+import java.util.Map;
+import java.util.UUID;
+
+
+/**
+ * Read through cache of deserialized entity properties.  Entries are scoped by application so that the same entity id
+ * in two applications can never collide.  Implementations must be thread safe, since a single instance is shared by
+ * every entity manager in the JVM.
+ */
+public interface EntityCache {
+
+    /**
+     * Get the cached properties of an entity
+     *
+     * @param applicationId The application id
+     * @param entityId The entity id
+     *
+     * @return A copy of the cached properties that the caller is free to mutate, or null if the entity is not cached
+     */
+    public Map<String, Object> get( UUID applicationId, UUID entityId );
+
+    /**
+     * Get the invalidation stamp of an entity.  Must be taken before the entity is read from storage and passed to
+     * {@link #put(UUID, UUID, long, Map)}, so that a read that raced with a write can't be cached after the write
+     * invalidated the entity
+     *
+     * @param applicationId The application id
+     * @param entityId The entity id
+     */
+    public long getStamp( UUID applicationId, UUID entityId );
+
+    /**
+     * Cache the full set of properties of an entity as read from storage.  Nothing is cached if the entity has been
+     * invalidated since the stamp was taken.  If a newer version of the entity is already present, the existing entry
+     * is kept
+     *
+     * @param applicationId The application id
+     * @param entityId The entity id
+     * @param stamp The stamp taken with {@link #getStamp(UUID, UUID)} before the entity was read
+     * @param properties All properties of the entity.  Partial entities must never be cached
+     */
+    public void put( UUID applicationId, UUID entityId, long stamp, Map<String, Object> properties );
+
+    /**
+     * Remove the entity from the cache and advance its stamp.  Must be invoked once the write or delete of the entity
+     * has been executed, invalidating before the mutations are sent would let a concurrent read cache the old version
+     *
+     * @param applicationId The application id
+     * @param entityId The entity id
+     */
+    public void invalidate( UUID applicationId, UUID entityId );
+
+    /** Remove every entry from the cache and advance every stamp */
+    public void invalidateAll();
+}
@@ -34,6 +34,7 @@ import org.antlr.runtime.CommonTokenStream;
 import org.antlr.runtime.RecognitionException;
 import org.antlr.runtime.Token;
 import org.antlr.runtime.TokenRewriteStream;
+import org.antlr.runtime.tree.CommonTreeAdaptor;
 import org.codehaus.jackson.annotate.JsonIgnore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,6 +56,8 @@ import org.apache.usergrid.persistence.query.tree.QueryFilterLexer;
 import org.apache.usergrid.persistence.query.tree.QueryFilterParser;
 import org.apache.usergrid.utils.JsonUtils;
 
+import com.google.common.cache.CacheStats;
+
 import static org.apache.commons.codec.binary.Base64.decodeBase64;
 import static org.apache.commons.lang.StringUtils.isBlank;
 import static org.apache.commons.lang.StringUtils.split;
@@ -78,6 +81,9 @@ public class Query {
 
     public static final int MAX_LIMIT = 1000;
 
+    private static final CommonTreeAdaptor treeAdaptor = new CommonTreeAdaptor();
+
+
     private String type;
     private List<SortPredicate> sortPredicates = new ArrayList<SortPredicate>();
     private Operand rootOperand;
@@ -152,15 +158,34 @@ public class Query {
             }
         }
 
-        ANTLRStringStream in = new ANTLRStringStream( qlt.trim() );
+        QueryParseCache cache = QueryParseCache.getDefault();
+        Query parsed = cache.get( qlt );
+
+        if ( parsed == null ) {
+            long start = System.nanoTime();
+            parsed = parse( qlt, ql );
+            cache.put( qlt, parsed, System.nanoTime() - start );
+        }
+
+        Query q = new Query( parsed );
+
+        if ( parsed.rootOperand != null ) {
+            q.rootOperand = ( Operand ) treeAdaptor.dupTree( parsed.rootOperand );
+        }
+
+        q.setQl( originalQl );
+        return q;
+    }
+
+
+    private static Query parse( String qlt, String ql ) throws QueryParseException {
+        ANTLRStringStream in = new ANTLRStringStream( qlt );
         QueryFilterLexer lexer = new QueryFilterLexer( in );
         CommonTokenStream tokens = new CommonTokenStream( lexer );
         QueryFilterParser parser = new QueryFilterParser( tokens );
 
         try {
-            Query q = parser.ql().query;
-            q.setQl( originalQl );
-            return q;
+            return parser.ql().query;
         }
         catch ( RecognitionException e ) {
             logger.error( "Unable to parse \"{}\"", ql, e );
@@ -178,6 +203,12 @@ public class Query {
     }
 
 
+    /** @return the hit count, miss count and hit rate of the parsed query cache */
+    public static CacheStats getParseCacheStats() {
+        return QueryParseCache.getDefault().stats();
+    }
+
+
     private static Query newQueryIfNull( Query query ) {
         if ( query == null ) {
             query = new Query();
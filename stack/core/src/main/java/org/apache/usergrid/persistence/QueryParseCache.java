@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.usergrid.metrics.MetricsFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+
+/**
+ * Size bounded, in JVM cache of parsed queries, keyed by the normalized query text given to the parser.  Callers must
+ * copy the cached queries, since the operand tree is modified when clauses are added.
+ * <p/>
+ * The text is cached with its literals, so only a query that is repeated verbatim hits.  Polling clients and app
+ * screens that re-issue fixed queries, such as "order by created desc" or "status = 'open'", hit nearly every time,
+ * queries built with a value per request, such as lookups by name, never do.  Expect a hit rate of about the share of
+ * fixed queries in the traffic, high for dashboards and polling clients and near zero for lookup heavy apps.  The hit
+ * rate is reported as a gauge, and the cache should be made smaller or turned off where it stays low.
+ * <p/>
+ * The last cache created is the one used by {@link Query#fromQL(String)}, until then a cache of the default size is.
+ */
+public class QueryParseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger( QueryParseCache.class );
+
+    public static final long DEFAULT_SIZE = 1000;
+
+    private static volatile QueryParseCache instance = new QueryParseCache( DEFAULT_SIZE );
+
+    private final Cache<String, Query> cache;
+
+    private volatile Timer parseTimer;
+
+
+    /**
+     * Create a new cache and use it for every query parsed from now on
+     *
+     * @param maxSize The max number of parsed queries to hold.  0 disables the cache
+     */
+    public QueryParseCache( long maxSize ) {
+        this.cache = CacheBuilder.newBuilder().maximumSize( Math.max( maxSize, 0 ) ).recordStats().build();
+
+        if ( maxSize <= 0 ) {
+            logger.info( "Query parse cache is disabled" );
+        }
+
+        instance = this;
+    }
+
+
+    /** @return the cache used by {@link Query#fromQL(String)} */
+    public static QueryParseCache getDefault() {
+        return instance;
+    }
+
+
+    /** Register the hit, miss, hit rate and size gauges and the parse timer with the metrics registry */
+    public void setMetricsFactory( MetricsFactory metricsFactory ) {
+        MetricRegistry registry = metricsFactory.getRegistry();
+
+        registry.register( MetricRegistry.name( QueryParseCache.class, "hits" ), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.stats().hitCount();
+            }
+        } );
+
+        registry.register( MetricRegistry.name( QueryParseCache.class, "misses" ), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.stats().missCount();
+            }
+        } );
+
+        registry.register( MetricRegistry.name( QueryParseCache.class, "hit-rate" ), new Gauge<Double>() {
+            @Override
+            public Double getValue() {
+                return cache.stats().hitRate();
+            }
+        } );
+
+        registry.register( MetricRegistry.name( QueryParseCache.class, "size" ), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.size();
+            }
+        } );
+
+        parseTimer = metricsFactory.getTimer( QueryParseCache.class, "parse" );
+    }
+
+
+    /** @return the cached query, which must not be modified, or null */
+    public Query get( String ql ) {
+        return cache.getIfPresent( ql );
+    }
+
+
+    /** Cache a query that was just parsed, which took the given time */
+    public void put( String ql, Query parsed, long parseNanos ) {
+        cache.put( ql, parsed );
+
+        Timer timer = parseTimer;
+        if ( timer != null ) {
+            timer.update( parseNanos, TimeUnit.NANOSECONDS );
+        }
+    }
+
+
+    /** @return the hit count, miss count and hit rate of the cache */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
@@ -84,6 +84,8 @@ public class Results implements Iterable<Entity> {
     Object data;
     String dataName;
 
+    Long rowsExamined;
+
     private QueryProcessor queryProcessor;
     private SearchVisitor searchVisitor;
 
@@ -126,6 +128,8 @@ public class Results implements Iterable<Entity> {
             query = r.query;
             data = r.data;
             dataName = r.dataName;
+
+            rowsExamined = r.rowsExamined;
         }
     }
 
@@ -1186,6 +1190,18 @@ public class Results implements Iterable<Entity> {
     }
 
 
+    /** @return the number of candidate entities evaluated in memory to produce the results, null if none were */
+    @JsonSerialize(include = Inclusion.NON_NULL)
+    public Long getRowsExamined() {
+        return rowsExamined;
+    }
+
+
+    public void setRowsExamined( Long rowsExamined ) {
+        this.rowsExamined = rowsExamined;
+    }
+
+
     public void setMetadata( UUID id, String name, Object value ) {
         if ( metadata == null ) {
             metadata = new LinkedHashMap<UUID, Map<String, Object>>();
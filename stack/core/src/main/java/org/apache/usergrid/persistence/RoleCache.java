@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence;
+
+
+import java.util.Set;
+import java.util.UUID;
+
+
+/**
+ * Cache of the permissions of application roles and the roles of application users, which are read for every
+ * authorization of an application user.  Entries are scoped by application, and implementations must be thread safe
+ * since a single instance is shared by every entity manager in the JVM.
+ */
+public interface RoleCache {
+
+    /**
+     * Get the cached permissions of a role
+     *
+     * @param applicationId The application id
+     * @param roleName The lower case role name
+     *
+     * @return A copy of the permissions, or null if the role is not cached
+     */
+    public Set<String> getRolePermissions( UUID applicationId, String roleName );
+
+    /** Cache the permissions of a role as read from storage */
+    public void putRolePermissions( UUID applicationId, String roleName, Set<String> permissions );
+
+    /** Remove the permissions of the role.  Must be invoked whenever the role or its permissions are written */
+    public void invalidateRole( UUID applicationId, String roleName );
+
+    /**
+     * Get the cached role names of a user
+     *
+     * @param applicationId The application id
+     * @param userId The user id
+     *
+     * @return A copy of the role names, or null if the user is not cached
+     */
+    public Set<String> getUserRoles( UUID applicationId, UUID userId );
+
+    /** Cache the role names of a user as read from storage */
+    public void putUserRoles( UUID applicationId, UUID userId, Set<String> roleNames );
+
+    /** Remove the role names of the user.  Must be invoked whenever the user is added to or removed from a role */
+    public void invalidateUserRoles( UUID applicationId, UUID userId );
+
+    /** Remove every entry from the cache */
+    public void invalidateAll();
+}
@@ -56,8 +56,10 @@ import org.apache.usergrid.persistence.annotations.EntityCollection;
 import org.apache.usergrid.persistence.annotations.EntityDictionary;
 import org.apache.usergrid.persistence.annotations.EntityProperty;
 import org.apache.usergrid.persistence.cassandra.CassandraPersistenceUtils;
+import org.apache.usergrid.persistence.cassandra.PropertyValueCodec;
 import org.apache.usergrid.persistence.entities.Application;
 import org.apache.usergrid.persistence.exceptions.PropertyTypeConversionException;
+import org.apache.usergrid.persistence.geo.GeocellManager;
 import org.apache.usergrid.persistence.schema.CollectionInfo;
 import org.apache.usergrid.persistence.schema.DictionaryInfo;
 import org.apache.usergrid.persistence.schema.EntityInfo;
@@ -83,7 +85,6 @@ import static org.apache.usergrid.utils.ConversionUtils.string;
 import static org.apache.usergrid.utils.ConversionUtils.uuid;
 import static org.apache.usergrid.utils.InflectionUtils.pluralize;
 import static org.apache.usergrid.utils.InflectionUtils.singularize;
-import static org.apache.usergrid.utils.JsonUtils.toJsonNode;
 import static org.apache.usergrid.utils.MapUtils.hashMap;
 import static org.apache.usergrid.utils.StringUtils.stringOrSubstringAfterLast;
 
@@ -238,6 +239,9 @@ public class Schema {
 
     Map<String, PropertyInfo> allProperties = new TreeMap<String, PropertyInfo>( String.CASE_INSENSITIVE_ORDER );
 
+    /** Geocell resolutions configured for application collections, which take precedence over the annotations */
+    private final Map<String, int[]> applicationCollectionGeocellResolutions = new ConcurrentHashMap<String, int[]>();
+
     private static Schema instance;
 
     boolean initialized = false;
@@ -917,6 +921,53 @@ public class Schema {
     }
 
 
+    /** @return the geocell resolutions indexed for locations in the collection, in ascending order */
+    public int[] getCollectionGeocellResolutions( String containerType, String collectionName ) {
+
+        if ( ( containerType == null ) || ( collectionName == null ) ) {
+            return GeocellManager.allResolutions();
+        }
+
+        if ( Application.ENTITY_TYPE.equalsIgnoreCase( normalizeEntityType( containerType, true ) ) ) {
+            int[] resolutions = applicationCollectionGeocellResolutions.get( collectionName.toLowerCase() );
+            if ( resolutions != null ) {
+                return resolutions;
+            }
+        }
+
+        CollectionInfo collection = getCollection( containerType, collectionName );
+        if ( collection == null ) {
+            return GeocellManager.allResolutions();
+        }
+
+        return collection.getGeocellResolutions();
+    }
+
+
+    /**
+     * @return the geocell resolutions indexed for locations of connected entities of the type, which are those of the
+     *         application collection of the type, in ascending order
+     */
+    public int[] getConnectedEntityGeocellResolutions( String connectedEntityType ) {
+
+        if ( connectedEntityType == null ) {
+            return GeocellManager.allResolutions();
+        }
+
+        return getCollectionGeocellResolutions( TYPE_APPLICATION, defaultCollectionName( connectedEntityType ) );
+    }
+
+
+    /**
+     * Set the geocell resolutions indexed for locations in a collection of the applications, including dynamic
+     * collections.  Existing locations must be re-indexed when they change
+     */
+    public void setApplicationCollectionGeocellResolutions( String collectionName, int... resolutions ) {
+        applicationCollectionGeocellResolutions
+                .put( collectionName.toLowerCase(), GeocellManager.normalizeResolutions( resolutions ) );
+    }
+
+
     /** @return value */
     public CollectionInfo getCollection( String containerType, String collectionName ) {
 
@@ -1620,7 +1671,7 @@ public class Schema {
             if ( Schema.getDefaultSchema().isPropertyEncrypted( entityType, propertyName ) ) {
                 bytes = decrypt( bytes );
             }
-            propertyValue = Schema.deserializePropertyValueFromJsonBinary( bytes );
+            propertyValue = PropertyValueCodec.decode( bytes );
         }
         return propertyValue;
     }
@@ -1635,7 +1686,7 @@ public class Schema {
             bytes = bytebuffer( string( propertyValue ) );
         }
         else {
-            bytes = Schema.serializePropertyValueToJsonBinary( toJsonNode( propertyValue ) );
+            bytes = PropertyValueCodec.encode( propertyValue );
             if ( Schema.getDefaultSchema().isPropertyEncrypted( entityType, propertyName ) ) {
                 bytes.rewind();
                 bytes = encrypt( bytes );
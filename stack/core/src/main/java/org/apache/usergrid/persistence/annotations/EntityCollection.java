@@ -41,4 +41,7 @@ public @interface EntityCollection {
     boolean includedInExport() default true;
 
     String sort() default "";
+
+    /** The geocell resolutions indexed for locations of the collection.  Empty indexes every resolution */
+    int[] geocellResolutions() default { };
 }
@@ -28,8 +28,13 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
@@ -39,6 +44,7 @@ import org.apache.usergrid.persistence.IndexBucketLocator;
 import org.apache.usergrid.persistence.IndexBucketLocator.IndexType;
 import org.apache.usergrid.persistence.cassandra.index.IndexBucketScanner;
 import org.apache.usergrid.persistence.cassandra.index.IndexScanner;
+import org.apache.usergrid.persistence.cassandra.index.PrefetchingIndexBucketScanner;
 import org.apache.usergrid.persistence.hector.CountingMutator;
 
 import me.prettyprint.cassandra.connection.HConnectionManager;
@@ -80,6 +86,7 @@ import static me.prettyprint.hector.api.factory.HFactory.createMultigetSliceQuer
 import static me.prettyprint.hector.api.factory.HFactory.createRangeSlicesQuery;
 import static me.prettyprint.hector.api.factory.HFactory.createSliceQuery;
 import static me.prettyprint.hector.api.factory.HFactory.createVirtualKeyspace;
+import static org.apache.commons.collections.MapUtils.getBooleanValue;
 import static org.apache.commons.collections.MapUtils.getIntValue;
 import static org.apache.commons.collections.MapUtils.getString;
 import static org.apache.usergrid.persistence.cassandra.ApplicationCF.ENTITY_ID_SETS;
@@ -135,6 +142,13 @@ public class CassandraService {
 
     private Map<String, String> accessMap;
 
+    /** Reads the next pages of index scans in the background, null if prefetching is disabled */
+    private ExecutorService indexPrefetchExecutor;
+
+    private int indexPrefetchPages;
+
+    private boolean geoPrefetch;
+
     public static final StringSerializer se = new StringSerializer();
     public static final ByteBufferSerializer be = new ByteBufferSerializer();
     public static final UUIDSerializer ue = new UUIDSerializer();
@@ -172,6 +186,29 @@ public class CassandraService {
         final int flushSize = getIntValue( properties, "cassandra.mutation.flushsize", 2000 );
         CountingMutator.MAX_SIZE = flushSize;
 
+        final int prefetchThreads = getIntValue( properties, "cassandra.index.prefetch.threads", 16 );
+        indexPrefetchPages = getIntValue( properties, "cassandra.index.prefetch.pages", 1 );
+        geoPrefetch = getBooleanValue( properties, "cassandra.index.prefetch.geo", false );
+
+        if ( prefetchThreads > 0 && indexPrefetchPages > 0 ) {
+            //a full executor rejects the read ahead and the scanner reads on the calling thread instead
+            ThreadPoolExecutor executor =
+                    new ThreadPoolExecutor( prefetchThreads, prefetchThreads, 60, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>( prefetchThreads * 4 ), new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+
+                        @Override
+                        public Thread newThread( Runnable r ) {
+                            Thread thread = new Thread( r, "IndexPrefetch-" + count.incrementAndGet() );
+                            thread.setDaemon( true );
+                            return thread;
+                        }
+                    }, new ThreadPoolExecutor.AbortPolicy() );
+            executor.allowCoreThreadTimeOut( true );
+
+            indexPrefetchExecutor = executor;
+        }
 
     }
 
@@ -1039,17 +1076,42 @@ public class CassandraService {
 
         final boolean skipFirst = start != null && !keepFirst;
 
-        IndexScanner scanner =
-                new IndexBucketScanner( this, locator, ENTITY_ID_SETS, applicationId, IndexType.COLLECTION, key, start,
-                        finish, reversed, count, skipFirst, collectionName );
+        return getIndexScanner( locator, ENTITY_ID_SETS, applicationId, IndexType.COLLECTION, key, start, finish,
+                reversed, count, skipFirst, collectionName );
+    }
+
 
-        return scanner;
+    /**
+     * Create a scanner over all the buckets of an index.  The scanner reads the following pages in the background once
+     * more than one page is requested, unless prefetching is disabled with cassandra.index.prefetch.threads=0
+     */
+    public IndexScanner getIndexScanner( IndexBucketLocator locator, ApplicationCF columnFamily, UUID applicationId,
+                                         IndexType indexType, Object keyPrefix, Object start, Object finish,
+                                         boolean reversed, int pageSize, boolean skipFirst, String... indexPath ) {
+
+        if ( indexPrefetchExecutor == null ) {
+            return new IndexBucketScanner( this, locator, columnFamily, applicationId, indexType, keyPrefix, start,
+                    finish, reversed, pageSize, skipFirst, indexPath );
+        }
+
+        return new PrefetchingIndexBucketScanner( this, locator, columnFamily, applicationId, indexType, keyPrefix,
+                start, finish, reversed, pageSize, skipFirst, indexPrefetchExecutor, indexPrefetchPages, indexPath );
     }
 
 
+    /**
+     * @return the executor that reads the geocells a proximity search is likely to search next, or null if geocells are
+     *         read on the calling thread
+     */
+    public ExecutorService getGeoPrefetchExecutor() {
+        return geoPrefetch ? indexPrefetchExecutor : null;
+    }
+
 
-    
     public void destroy() throws Exception {
+        if ( indexPrefetchExecutor != null ) {
+            indexPrefetchExecutor.shutdownNow();
+        }
     	if (cluster != null) {
     		HConnectionManager connectionManager = cluster.getConnectionManager();
     		if (connectionManager != null) {
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cassandra;
+
+
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.apache.usergrid.batch.JobExecution;
+import org.apache.usergrid.batch.job.OnlyOnceJob;
+import org.apache.usergrid.persistence.EntityManagerFactory;
+import org.apache.usergrid.persistence.entities.JobData;
+
+import static org.apache.usergrid.utils.ConversionUtils.uuid;
+
+
+/**
+ * Purges an entity that was deleted asynchronously.  Until this job has run the entity is only hidden by its
+ * tombstone, see {@link EntityManagerImpl#purgeEntity(UUID, UUID, ExecutorService)}.
+ */
+@Component(EntityDeleteJob.JOB_NAME)
+public class EntityDeleteJob extends OnlyOnceJob {
+
+    public static final String JOB_NAME = "entityDeleteJob";
+
+    private static final String APPLICATION_ID = "applicationId";
+    private static final String ENTITY_ID = "entityId";
+    private static final String TIMESTAMP_UUID = "timestampUuid";
+
+    /** One thread for each part of a purge */
+    private static final int PURGE_THREADS = 4;
+
+    private static final long RETRY_DELAY = 1000;
+
+    private static final Logger logger = LoggerFactory.getLogger( EntityDeleteJob.class );
+
+    private final ExecutorService executor = Executors.newFixedThreadPool( PURGE_THREADS, new ThreadFactory() {
+        private final AtomicLong counter = new AtomicLong();
+
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread thread = new Thread( r, "EntityPurge-" + counter.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    } );
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+
+    /** @return the data of the job purging the entity deleted with the timestamp */
+    public static JobData createJobData( UUID applicationId, UUID entityId, UUID timestampUuid ) {
+        JobData jobData = new JobData();
+        jobData.setProperty( APPLICATION_ID, applicationId );
+        jobData.setProperty( ENTITY_ID, entityId );
+        jobData.setProperty( TIMESTAMP_UUID, timestampUuid );
+        return jobData;
+    }
+
+
+    @Override
+    protected void doJob( JobExecution execution ) throws Exception {
+        JobData data = execution.getJobData();
+
+        UUID applicationId = uuid( data.getProperty( APPLICATION_ID ) );
+        UUID entityId = uuid( data.getProperty( ENTITY_ID ) );
+        UUID timestampUuid = uuid( data.getProperty( TIMESTAMP_UUID ) );
+
+        logger.info( "Purging entity {} of application {}", entityId, applicationId );
+
+        execution.heartbeat();
+
+        EntityManagerImpl em = ( EntityManagerImpl ) emf.getEntityManager( applicationId );
+        em.purgeEntity( entityId, timestampUuid, executor );
+
+        logger.info( "Purged entity {} of application {}", entityId, applicationId );
+    }
+
+
+    @Override
+    protected long getDelay( JobExecution execution ) throws Exception {
+        return RETRY_DELAY;
+    }
+
+
+    @Override
+    public void dead( JobExecution execution ) throws Exception {
+        JobData data = execution.getJobData();
+
+        logger.error( "Gave up purging entity {} of application {}, it stays hidden by its tombstone",
+                data.getProperty( ENTITY_ID ), data.getProperty( APPLICATION_ID ) );
+    }
+
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+}
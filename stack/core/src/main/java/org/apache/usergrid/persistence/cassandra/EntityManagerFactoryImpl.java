@@ -18,6 +18,7 @@ package org.apache.usergrid.persistence.cassandra;
 
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.UUID;
@@ -30,9 +31,11 @@ import org.springframework.context.ApplicationContextAware;
 import org.apache.usergrid.persistence.DynamicEntity;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.EntityManagerFactory;
+import org.apache.usergrid.persistence.Schema;
 import org.apache.usergrid.persistence.entities.Application;
 import org.apache.usergrid.persistence.exceptions.ApplicationAlreadyExistsException;
 import org.apache.usergrid.persistence.hector.CountingMutator;
+import org.apache.usergrid.persistence.query.ir.result.OrderByIterator;
 import org.apache.usergrid.utils.UUIDUtils;
 
 import org.apache.commons.lang.StringUtils;
@@ -90,6 +93,8 @@ public class EntityManagerFactoryImpl implements EntityManagerFactory, Applicati
 
     private boolean skipAggregateCounters;
 
+    private boolean asyncDelete;
+
     private LoadingCache<UUID, EntityManager> entityManagers =
             CacheBuilder.newBuilder().maximumSize( 100 ).build( new CacheLoader<UUID, EntityManager>() {
                 public EntityManager load( UUID appId ) { // no checked exception
@@ -97,6 +102,8 @@ public class EntityManagerFactoryImpl implements EntityManagerFactory, Applicati
                 }
             } );
 
+    private LocalNameCache<UUID> applicationNameCache = new LocalNameCache<UUID>( "applications", 0, 0 );
+
 
     /**
      * Must be constructed with a CassandraClientPool.
@@ -113,6 +120,77 @@ public class EntityManagerFactoryImpl implements EntityManagerFactory, Applicati
     }
 
 
+    /** Set the cache of application names to application ids */
+    public void setApplicationNameCache( LocalNameCache<UUID> applicationNameCache ) {
+        this.applicationNameCache = applicationNameCache;
+    }
+
+
+    /**
+     * Set whether deleting an entity only hides it and leaves the removal of its indexes, connections and dictionaries
+     * to a background job
+     */
+    public void setAsyncDelete( boolean asyncDelete ) {
+        this.asyncDelete = asyncDelete;
+    }
+
+
+    public boolean isAsyncDelete() {
+        return asyncDelete;
+    }
+
+
+    /**
+     * Set whether entity properties are written in the typed format.  Only enable once every node can read it
+     *
+     * @see PropertyValueCodec
+     */
+    public void setTypedProperties( boolean typedProperties ) {
+        PropertyValueCodec.setTypedEnabled( typedProperties );
+    }
+
+
+    /**
+     * Set the number of candidates an order by on several fields loads at a time.  Larger batches make fewer reads but
+     * hold more candidates in memory
+     *
+     * @see OrderByIterator
+     */
+    public void setSortBatchSize( int sortBatchSize ) {
+        OrderByIterator.setLoadBatchSize( sortBatchSize );
+    }
+
+
+    /**
+     * Set the geocell resolutions indexed for locations of application collections, in the form
+     * collection:resolution,resolution;collection:resolution.  Collections that aren't listed use the resolutions of
+     * their schema
+     */
+    public void setGeocellResolutions( String geocellResolutions ) {
+        if ( StringUtils.isBlank( geocellResolutions ) ) {
+            return;
+        }
+
+        Schema schema = Schema.getDefaultSchema();
+
+        for ( String collection : StringUtils.split( geocellResolutions, ';' ) ) {
+            String collectionName = StringUtils.substringBefore( collection, ":" ).trim();
+            String[] values = StringUtils.split( StringUtils.substringAfter( collection, ":" ), ',' );
+
+            int[] resolutions = new int[values.length];
+            for ( int i = 0; i < values.length; i++ ) {
+                resolutions[i] = Integer.parseInt( values[i].trim() );
+            }
+
+            schema.setApplicationCollectionGeocellResolutions( collectionName, resolutions );
+
+            logger.info( "Indexing geocell resolutions {} of collection {}",
+                    Arrays.toString( schema.getCollectionGeocellResolutions( TYPE_APPLICATION, collectionName ) ),
+                    collectionName );
+        }
+    }
+
+
     /*
      * (non-Javadoc)
      * 
@@ -251,6 +329,8 @@ public class EntityManagerFactoryImpl implements EntityManagerFactory, Applicati
 
         batchExecute( m, RETRY_COUNT );
 
+        applicationNameCache.put( appName, applicationId );
+
         EntityManager em = getEntityManager( applicationId );
         em.create( TYPE_APPLICATION, APPLICATION_ENTITY_CLASS, properties );
 
@@ -282,10 +362,18 @@ public class EntityManagerFactoryImpl implements EntityManagerFactory, Applicati
     @Metered(group = "core", name = "EntityManagerFactory_lookupApplication_byName")
     public UUID lookupApplication( String name ) throws Exception {
         name = name.toLowerCase();
+
+        UUID applicationId = applicationNameCache.get( name );
+        if ( applicationId != null ) {
+            return applicationId;
+        }
+
         HColumn<String, ByteBuffer> column =
                 cass.getColumn( cass.getSystemKeyspace(), APPLICATIONS_CF, name, PROPERTY_UUID );
         if ( column != null ) {
-            return uuid( column.getValue() );
+            applicationId = uuid( column.getValue() );
+            applicationNameCache.put( name, applicationId );
+            return applicationId;
         }
         return null;
     }
@@ -302,15 +390,11 @@ public class EntityManagerFactoryImpl implements EntityManagerFactory, Applicati
      */
     @Metered(group = "core", name = "EntityManagerFactory_getApplication")
     public Application getApplication( String name ) throws Exception {
-        name = name.toLowerCase();
-        HColumn<String, ByteBuffer> column =
-                cass.getColumn( cass.getSystemKeyspace(), APPLICATIONS_CF, name, PROPERTY_UUID );
-        if ( column == null ) {
+        UUID applicationId = lookupApplication( name );
+        if ( applicationId == null ) {
             return null;
         }
 
-        UUID applicationId = uuid( column.getValue() );
-
         EntityManager em = getEntityManager( applicationId );
         return ( ( EntityManagerImpl ) em ).getEntity( applicationId, Application.class );
     }
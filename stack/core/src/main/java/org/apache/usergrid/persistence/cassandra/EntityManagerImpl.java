@@ -33,6 +33,10 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.annotation.Resource;
 
@@ -40,6 +44,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.util.Assert;
+import org.apache.usergrid.batch.service.SchedulerService;
 import org.apache.usergrid.locking.Lock;
 import org.apache.usergrid.mq.Message;
 import org.apache.usergrid.mq.QueueManager;
@@ -52,6 +57,7 @@ import org.apache.usergrid.persistence.ConnectionRef;
 import org.apache.usergrid.persistence.CounterResolution;
 import org.apache.usergrid.persistence.DynamicEntity;
 import org.apache.usergrid.persistence.Entity;
+import org.apache.usergrid.persistence.EntityCache;
 import org.apache.usergrid.persistence.EntityFactory;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.EntityRef;
@@ -62,6 +68,7 @@ import org.apache.usergrid.persistence.Query;
 import org.apache.usergrid.persistence.Query.CounterFilterPredicate;
 import org.apache.usergrid.persistence.Results;
 import org.apache.usergrid.persistence.Results.Level;
+import org.apache.usergrid.persistence.RoleCache;
 import org.apache.usergrid.persistence.RoleRef;
 import org.apache.usergrid.persistence.Schema;
 import org.apache.usergrid.persistence.SimpleCollectionRef;
@@ -73,6 +80,8 @@ import org.apache.usergrid.persistence.cassandra.util.TraceParticipant;
 import org.apache.usergrid.persistence.entities.Application;
 import org.apache.usergrid.persistence.entities.Event;
 import org.apache.usergrid.persistence.entities.Group;
+import org.apache.usergrid.persistence.entities.JobData;
+import org.apache.usergrid.persistence.entities.JobStat;
 import org.apache.usergrid.persistence.entities.Role;
 import org.apache.usergrid.persistence.entities.User;
 import org.apache.usergrid.persistence.exceptions.DuplicateUniquePropertyExistsException;
@@ -80,6 +89,7 @@ import org.apache.usergrid.persistence.exceptions.EntityNotFoundException;
 import org.apache.usergrid.persistence.exceptions.RequiredPropertyNotFoundException;
 import org.apache.usergrid.persistence.exceptions.UnexpectedEntityTypeException;
 import org.apache.usergrid.persistence.hector.CountingMutator;
+import org.apache.usergrid.persistence.query.ir.result.ScanColumn;
 import org.apache.usergrid.persistence.schema.CollectionInfo;
 import org.apache.usergrid.utils.ClassUtils;
 import org.apache.usergrid.utils.CompositeUtils;
@@ -181,6 +191,18 @@ public class EntityManagerImpl implements EntityManager {
 
     /** The log4j logger. */
     private static final Logger logger = LoggerFactory.getLogger( EntityManagerImpl.class );
+
+    /**
+     * Column written to the properties of an entity deleted asynchronously.  Until the entity is purged, reads treat it
+     * as if it doesn't exist
+     */
+    public static final String PROPERTY_TOMBSTONE = "_tombstone";
+
+    private static final Set<String> TYPE_COLUMNS =
+            Collections.unmodifiableSet( new HashSet<String>( Arrays.asList( PROPERTY_TYPE, PROPERTY_TOMBSTONE ) ) );
+
+    private static final Set<String> TOMBSTONE_COLUMNS = Collections.singleton( PROPERTY_TOMBSTONE );
+
     public static final String APPLICATION_COLLECTION = "application.collection.";
     public static final String APPLICATION_ENTITIES = "application.entities";
     public static final long ONE_COUNT = 1L;
@@ -190,6 +212,10 @@ public class EntityManagerImpl implements EntityManager {
     private QueueManagerFactoryImpl qmf;
     @Resource
     private IndexBucketLocator indexBucketLocator;
+    @Resource
+    private EntityCache entityCache;
+    @Resource
+    private RoleCache roleCache;
 
     private UUID applicationId;
 
@@ -201,6 +227,9 @@ public class EntityManagerImpl implements EntityManager {
 
     private boolean skipAggregateCounters;
 
+    /** Whether entities that are deleted but not yet purged are still read, only true while purging them */
+    private boolean readTombstoned;
+
     public EntityManagerImpl() {
     }
 
@@ -214,6 +243,8 @@ public class EntityManagerImpl implements EntityManager {
         this.skipAggregateCounters = skipAggregateCounters;
         qmf = ( QueueManagerFactoryImpl ) getApplicationContext().getBean( "queueManagerFactory" );
         indexBucketLocator = ( IndexBucketLocator ) getApplicationContext().getBean( "indexBucketLocator" );
+        entityCache = ( EntityCache ) getApplicationContext().getBean( "entityCache" );
+        roleCache = ( RoleCache ) getApplicationContext().getBean( "roleCache" );
         // prime the application entity for the EM
         try {
             getApplication();
@@ -264,6 +295,12 @@ public class EntityManagerImpl implements EntityManager {
     }
 
 
+    /** Remove an entity from the cache once the batch that wrote it has been executed */
+    void invalidateCachedEntity( UUID entityId ) {
+        entityCache.invalidate( applicationId, entityId );
+    }
+
+
     @Override
     public RelationManagerImpl getRelationManager( EntityRef entityRef ) {
         //RelationManagerImpl rmi = applicationContext.getBean(RelationManagerImpl.class);
@@ -386,6 +423,8 @@ public class EntityManagerImpl implements EntityManager {
             addDeleteToMutator( batch, ENTITY_PROPERTIES, key( entity.getUuid() ), propertyName, timestamp );
         }
 
+        entityCache.invalidate( applicationId, entity.getUuid() );
+
         return batch;
     }
 
@@ -429,6 +468,7 @@ public class EntityManagerImpl implements EntityManager {
      * @return batch
      *
      * @throws Exception the exception
+     * @see #invalidateUserRoles(EntityRef, String) to call once the batch is executed
      */
     public Mutator<ByteBuffer> batchUpdateDictionary( Mutator<ByteBuffer> batch, EntityRef entity,
                                                       String dictionaryName, Object elementValue,
@@ -722,6 +762,11 @@ public class EntityManagerImpl implements EntityManager {
 
         batchExecute( m, CassandraService.RETRY_COUNT );
 
+        //an import can overwrite an existing entity
+        if ( entity != null ) {
+            entityCache.invalidate( applicationId, entity.getUuid() );
+        }
+
         return entity;
     }
 
@@ -961,6 +1006,8 @@ public class EntityManagerImpl implements EntityManager {
         addPropertyToMutator( m, itemKey, type, PROPERTY_TYPE, type, timestamp );
 
         batchExecute( m, CassandraService.RETRY_COUNT );
+
+        entityCache.invalidate( applicationId, entityId );
     }
 
 
@@ -993,13 +1040,101 @@ public class EntityManagerImpl implements EntityManager {
     @Metered( group = "core", name = "EntityManager_getEntityType" )
     public String getEntityType( UUID entityId ) throws Exception {
 
-        HColumn<String, String> column =
-                cass.getColumn( cass.getApplicationKeyspace( applicationId ), ENTITY_PROPERTIES, key( entityId ),
-                        PROPERTY_TYPE, se, se );
-        if ( column != null ) {
-            return column.getValue();
+        Map<String, Object> cached = entityCache.get( applicationId, entityId );
+        if ( cached != null ) {
+            return string( cached.get( PROPERTY_TYPE ) );
         }
-        return null;
+
+        List<HColumn<String, String>> columns =
+                cass.getColumns( cass.getApplicationKeyspace( applicationId ), ENTITY_PROPERTIES, key( entityId ),
+                        TYPE_COLUMNS, se, se );
+
+        String entityType = null;
+
+        for ( HColumn<String, String> column : columns ) {
+            if ( PROPERTY_TOMBSTONE.equals( column.getName() ) && !readTombstoned ) {
+                return null;
+            }
+            if ( PROPERTY_TYPE.equals( column.getName() ) ) {
+                entityType = column.getValue();
+            }
+        }
+
+        return entityType;
+    }
+
+
+    /**
+     * Remove the tombstone from the properties of an entity
+     *
+     * @return true if the entity is deleted but not yet purged
+     */
+    private static boolean removeTombstone( Map<String, Object> properties ) {
+        return properties != null && properties.remove( PROPERTY_TOMBSTONE ) != null;
+    }
+
+
+    /**
+     * Remove the entities that are deleted but not yet purged from results read from the indexes alone, which never
+     * load the properties holding the tombstone.  The order of the remaining ids is kept
+     */
+    List<ScanColumn> removeTombstoned( List<ScanColumn> ids ) throws Exception {
+
+        if ( !isTombstoneHidden() || ids.isEmpty() ) {
+            return ids;
+        }
+
+        List<UUID> entityIds = new ArrayList<UUID>( ids.size() );
+
+        for ( ScanColumn id : ids ) {
+            entityIds.add( id.getUUID() );
+        }
+
+        Set<UUID> tombstoned = getTombstoned( entityIds );
+
+        if ( tombstoned.isEmpty() ) {
+            return ids;
+        }
+
+        List<ScanColumn> live = new ArrayList<ScanColumn>( ids.size() );
+
+        for ( ScanColumn id : ids ) {
+            if ( !tombstoned.contains( id.getUUID() ) ) {
+                live.add( id );
+            }
+        }
+
+        return live;
+    }
+
+
+    /**
+     * Entities are only tombstoned when deletes are asynchronous, so the tombstones are only looked up then.  Once
+     * asynchronous deletes are turned off, the ids of entities still waiting for their purge show up until it runs
+     *
+     * @return true if reads hide the entities that are deleted but not yet purged
+     */
+    boolean isTombstoneHidden() {
+        return !readTombstoned && emf.isAsyncDelete();
+    }
+
+
+    /** @return the ids of the entities that are deleted but not yet purged */
+    Set<UUID> getTombstoned( List<UUID> entityIds ) throws Exception {
+
+        Rows<UUID, String, ByteBuffer> rows =
+                cass.getRows( cass.getApplicationKeyspace( applicationId ), ENTITY_PROPERTIES, entityIds,
+                        TOMBSTONE_COLUMNS, ue, se, be );
+
+        Set<UUID> tombstoned = new HashSet<UUID>();
+
+        for ( Row<UUID, String, ByteBuffer> row : rows ) {
+            if ( row.getColumnSlice().getColumnByName( PROPERTY_TOMBSTONE ) != null ) {
+                tombstoned.add( row.getKey() );
+            }
+        }
+
+        return tombstoned;
     }
 
 
@@ -1016,12 +1151,35 @@ public class EntityManagerImpl implements EntityManager {
     @Metered( group = "core", name = "EntityManager_loadPartialEntity" )
     public DynamicEntity loadPartialEntity( UUID entityId, String... propertyNames ) throws Exception {
 
+        Map<String, Object> cached = entityCache.get( applicationId, entityId );
+        if ( cached != null ) {
+            if ( ( propertyNames != null ) && ( propertyNames.length > 0 ) ) {
+                Set<String> column_names = new TreeSet<String>( CASE_INSENSITIVE_ORDER );
+
+                column_names.add( PROPERTY_TYPE );
+                column_names.add( PROPERTY_UUID );
+
+                Collections.addAll( column_names, propertyNames );
+
+                cached.keySet().retainAll( column_names );
+            }
+
+            return new DynamicEntity( ( String ) cached.get( PROPERTY_TYPE ), ( UUID ) cached.get( PROPERTY_UUID ),
+                    cached );
+        }
+
+        long stamp = entityCache.getStamp( applicationId, entityId );
+
         List<HColumn<String, ByteBuffer>> results = null;
+        boolean fullEntity = true;
         if ( ( propertyNames != null ) && ( propertyNames.length > 0 ) ) {
+            fullEntity = false;
+
             Set<String> column_names = new TreeSet<String>( CASE_INSENSITIVE_ORDER );
 
             column_names.add( PROPERTY_TYPE );
             column_names.add( PROPERTY_UUID );
+            column_names.add( PROPERTY_TOMBSTONE );
 
             Collections.addAll(column_names, propertyNames);
 
@@ -1038,9 +1196,18 @@ public class EntityManagerImpl implements EntityManager {
             return null;
         }
 
+        boolean tombstoned = removeTombstone( entityProperties );
+        if ( tombstoned && !readTombstoned ) {
+            return null;
+        }
+
         String entityType = ( String ) entityProperties.get( PROPERTY_TYPE );
         UUID id = ( UUID ) entityProperties.get( PROPERTY_UUID );
 
+        if ( fullEntity && !tombstoned && entityId.equals( id ) ) {
+            entityCache.put( applicationId, entityId, stamp, entityProperties );
+        }
+
         return new DynamicEntity( entityType, id, entityProperties );
     }
 
@@ -1057,8 +1224,18 @@ public class EntityManagerImpl implements EntityManager {
      */
     public <A extends Entity> A getEntity( UUID entityId, Class<A> entityClass ) throws Exception {
 
+        Map<String, Object> results = entityCache.get( applicationId, entityId );
+
+        if ( results != null ) {
+            A entity = EntityFactory.newEntity( entityId, string( results.get( PROPERTY_TYPE ) ), entityClass );
+            entity.setProperties( results );
+
+            return entity;
+        }
+
         Object entity_key = key( entityId );
-        Map<String, Object> results = null;
+
+        long stamp = entityCache.getStamp( applicationId, entityId );
 
         // if (entityType == null) {
         results = deserializeEntityProperties(
@@ -1074,6 +1251,12 @@ public class EntityManagerImpl implements EntityManager {
             return null;
         }
 
+        boolean tombstoned = removeTombstone( results );
+        if ( tombstoned && !readTombstoned ) {
+            logger.debug( "getEntity(): Entity {} is deleted", entityId );
+            return null;
+        }
+
         UUID id = uuid( results.get( PROPERTY_UUID ) );
         String type = string( results.get( PROPERTY_TYPE ) );
 
@@ -1083,6 +1266,10 @@ public class EntityManagerImpl implements EntityManager {
             return null;
         }
 
+        if ( !tombstoned ) {
+            entityCache.put( applicationId, entityId, stamp, results );
+        }
+
         A entity = EntityFactory.newEntity( id, type, entityClass );
         entity.setProperties( results );
 
@@ -1111,20 +1298,45 @@ public class EntityManagerImpl implements EntityManager {
 
         Map<UUID, A> resultSet = new LinkedHashMap<UUID, A>();
 
+        //serve what we can from the cache, and only read the rest from cassandra
+        List<UUID> uncachedIds = new ArrayList<UUID>( entityIds.size() );
+
+        for ( UUID entityId : entityIds ) {
+            Map<String, Object> properties = entityCache.get( applicationId, entityId );
+
+            if ( properties == null ) {
+                uncachedIds.add( entityId );
+                continue;
+            }
+
+            A entity = EntityFactory.newEntity( entityId, string( properties.get( PROPERTY_TYPE ) ), entityClass );
+            entity.setProperties( properties );
+
+            resultSet.put( entityId, entity );
+        }
+
+        Map<UUID, Long> stamps = new HashMap<UUID, Long>( uncachedIds.size() );
+
+        for ( UUID entityId : uncachedIds ) {
+            stamps.put( entityId, entityCache.getStamp( applicationId, entityId ) );
+        }
+
         Rows<UUID, String, ByteBuffer> results = null;
 
-        // if (entityType == null) {
-        results =
-                cass.getRows( cass.getApplicationKeyspace( applicationId ), ENTITY_PROPERTIES, entityIds, ue, se, be );
-        // } else {
-        // Set<String> columnNames = Schema.getPropertyNames(entityType);
-        // results = getRows(getApplicationKeyspace(applicationId),
-        // EntityCF.PROPERTIES,
-        // entityIds, columnNames, ue, se, be);
-        // }
+        if ( !uncachedIds.isEmpty() ) {
+            // if (entityType == null) {
+            results = cass.getRows( cass.getApplicationKeyspace( applicationId ), ENTITY_PROPERTIES, uncachedIds, ue,
+                    se, be );
+            // } else {
+            // Set<String> columnNames = Schema.getPropertyNames(entityType);
+            // results = getRows(getApplicationKeyspace(applicationId),
+            // EntityCF.PROPERTIES,
+            // entityIds, columnNames, ue, se, be);
+            // }
+        }
 
         if ( results != null ) {
-            for ( UUID key : entityIds ) {
+            for ( UUID key : uncachedIds ) {
                 Map<String, Object> properties = deserializeEntityProperties( results.getByKey( key ) );
 
                 if ( properties == null ) {
@@ -1132,6 +1344,12 @@ public class EntityManagerImpl implements EntityManager {
                     continue;
                 }
 
+                //the index still points to entities that are deleted until they are purged
+                boolean tombstoned = removeTombstone( properties );
+                if ( tombstoned && !readTombstoned ) {
+                    continue;
+                }
+
                 UUID id = uuid( properties.get( PROPERTY_UUID ) );
                 String type = string( properties.get( PROPERTY_TYPE ) );
 
@@ -1139,17 +1357,22 @@ public class EntityManagerImpl implements EntityManager {
                     logger.error( "Error retrieving entity with key {}, no type or id deseriazable, where did this key come from?", key );
                     continue;
                 }
+
+                if ( key.equals( id ) && !tombstoned ) {
+                    entityCache.put( applicationId, id, stamps.get( key ), properties );
+                }
+
                 A entity = EntityFactory.newEntity( id, type, entityClass );
                 entity.setProperties( properties );
 
                 resultSet.put( id, entity );
             }
+        }
 
-            for ( UUID entityId : entityIds ) {
-                A entity = resultSet.get( entityId );
-                if ( entity != null ) {
-                    entities.add( entity );
-                }
+        for ( UUID entityId : entityIds ) {
+            A entity = resultSet.get( entityId );
+            if ( entity != null ) {
+                entities.add( entity );
             }
         }
 
@@ -1387,11 +1610,23 @@ public class EntityManagerImpl implements EntityManager {
         batchUpdateProperties( m, entity, properties, timestampUuid );
 
         batchExecute( m, CassandraService.RETRY_COUNT );
+
+        entityCache.invalidate( applicationId, entityId );
     }
 
 
     @Metered( group = "core", name = "EntityManager_deleteEntity" )
     public void deleteEntity( UUID entityId ) throws Exception {
+        deleteEntity( entityId, emf.isAsyncDelete() );
+    }
+
+
+    /**
+     * Delete the entity, asynchronously if requested and allowed for its type
+     *
+     * @param async hide the entity behind a tombstone and leave the purge to a job
+     */
+    void deleteEntity( UUID entityId, boolean async ) throws Exception {
 
         logger.info( "deleteEntity {} of application {}", entityId, applicationId );
 
@@ -1402,49 +1637,177 @@ public class EntityManagerImpl implements EntityManager {
 
         logger.info( "deleteEntity: {} is of type {}", entityId, entity.getType() );
 
-        Keyspace ko = cass.getApplicationKeyspace( applicationId );
-        Mutator<ByteBuffer> m = CountingMutator.createFlushingMutator( ko, be );
-
         UUID timestampUuid = newTimeUUID();
-        long timestamp = getTimestampInMicros( timestampUuid );
+
+        if ( async && isAsyncDeletable( entity.getType() ) ) {
+            tombstoneEntity( entity, timestampUuid );
+        }
+        else {
+            purgeEntity( entity, timestampUuid, null );
+        }
+
+        //decrease entity count
+        if ( !TYPE_APPLICATION.equals( entity.getType() ) ) {
+            String collection_name = Schema.defaultCollectionName( entity.getType() );
+            decrementEntityCollection( collection_name );
+        }
+
+        entityCache.invalidate( applicationId, entityId );
+    }
+
+
+    /**
+     * Applications and the entities of the job scheduler are always deleted synchronously.  The scheduler deletes the
+     * data and stats of every job it has run, including the jobs purging entities, so deleting them asynchronously would
+     * schedule purge jobs without end
+     */
+    static boolean isAsyncDeletable( String entityType ) {
+        Schema schema = getDefaultSchema();
+
+        return !TYPE_APPLICATION.equals( entityType ) && !schema.getEntityType( JobData.class ).equals( entityType )
+                && !schema.getEntityType( JobStat.class ).equals( entityType );
+    }
+
+
+    /**
+     * Hide the entity from all reads and schedule a job to purge it.  The job is created first, so an entity is never
+     * hidden without being purged eventually.  A job that runs before the tombstone is written is fine, since the
+     * purge deletes the row after the timestamp of the tombstone
+     */
+    private void tombstoneEntity( EntityRef entity, UUID timestampUuid ) throws Exception {
+
+        SchedulerService scheduler = getApplicationContext().getBean( "schedulerService", SchedulerService.class );
+
+        scheduler.createJob( EntityDeleteJob.JOB_NAME, System.currentTimeMillis(),
+                EntityDeleteJob.createJobData( applicationId, entity.getUuid(), timestampUuid ) );
+
+        Mutator<ByteBuffer> m = CountingMutator.createFlushingMutator( cass.getApplicationKeyspace( applicationId ), be );
+
+        addPropertyToMutator( m, key( entity.getUuid() ), entity.getType(), PROPERTY_TOMBSTONE,
+                getTimestampInMillis( timestampUuid ), getTimestampInMicros( timestampUuid ) );
+
+        batchExecute( m, CassandraService.RETRY_COUNT );
+    }
+
+
+    /**
+     * Remove everything an entity deleted asynchronously left behind: its connections, properties and their indexes,
+     * dictionaries, collection memberships and finally the entity itself.  All the deletes are written with the
+     * timestamp of the delete, so purging an entity again after a failure is safe
+     *
+     * @param executor runs the parts of the purge in parallel, or null to run them in turn
+     */
+    public void purgeEntity( UUID entityId, UUID timestampUuid, ExecutorService executor ) throws Exception {
+
+        EntityManagerImpl purging = this;
+
+        if ( !readTombstoned ) {
+            purging = new EntityManagerImpl();
+            purging.readTombstoned = true;
+            purging.init( emf, cass, counterUtils, applicationId, skipAggregateCounters );
+        }
+
+        EntityRef entity = purging.getRef( entityId );
+        if ( entity == null ) {
+            logger.info( "purgeEntity: {} of application {} is already purged", entityId, applicationId );
+            return;
+        }
+
+        purging.purgeEntity( entity, timestampUuid, executor );
+    }
+
+
+    private void purgeEntity( final EntityRef entity, final UUID timestampUuid, ExecutorService executor )
+            throws Exception {
+
+        final Keyspace ko = cass.getApplicationKeyspace( applicationId );
+
+        final Set<String> dictionaries = getDictionaryNames( entity );
+
+        // each part writes through its own mutator, which is flushed as it fills up
+        List<Callable<Void>> parts = new ArrayList<Callable<Void>>( 4 );
 
         // get all connections and disconnect them
-        getRelationManager( ref( entityId ) ).batchDisconnect( m, timestampUuid );
+        parts.add( new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                Mutator<ByteBuffer> m = CountingMutator.createFlushingMutator( ko, be );
+                getRelationManager( ref( entity.getUuid() ) ).batchDisconnect( m, timestampUuid );
+                batchExecute( m, CassandraService.RETRY_COUNT );
+                return null;
+            }
+        } );
 
         // delete all core properties and any dynamic property that's ever been
         // dictionary for this entity
-        Set<String> properties = getPropertyNames( entity );
-        if ( properties != null ) {
-            for ( String propertyName : properties ) {
-                m = batchSetProperty( m, entity, propertyName, null, true, false, timestampUuid );
+        parts.add( new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                Mutator<ByteBuffer> m = CountingMutator.createFlushingMutator( ko, be );
+                Set<String> properties = getPropertyNames( entity );
+                if ( properties != null ) {
+                    for ( String propertyName : properties ) {
+                        m = batchSetProperty( m, entity, propertyName, null, true, false, timestampUuid );
+                    }
+                }
+                batchExecute( m, CassandraService.RETRY_COUNT );
+                return null;
             }
-        }
+        } );
 
         // delete any core dictionaries and dynamic dictionaries associated with
         // this entity
-        Set<String> dictionaries = getDictionaryNames( entity );
-        if ( dictionaries != null ) {
-            for ( String dictionary : dictionaries ) {
-                Set<Object> values = getDictionaryAsSet( entity, dictionary );
-                if ( values != null ) {
-                    for ( Object value : values ) {
-                        batchUpdateDictionary( m, entity, dictionary, value, true, timestampUuid );
+        parts.add( new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                Mutator<ByteBuffer> m = CountingMutator.createFlushingMutator( ko, be );
+                if ( dictionaries != null ) {
+                    for ( String dictionary : dictionaries ) {
+                        Set<Object> values = getDictionaryAsSet( entity, dictionary );
+                        if ( values != null ) {
+                            for ( Object value : values ) {
+                                batchUpdateDictionary( m, entity, dictionary, value, true, timestampUuid );
+                            }
+                        }
                     }
                 }
+                batchExecute( m, CassandraService.RETRY_COUNT );
+                invalidateUserRoles( entity, DICTIONARY_ROLENAMES );
+                return null;
             }
-        }
+        } );
 
         // find all the containing collections
-        getRelationManager( entity ).batchRemoveFromContainers( m, timestampUuid );
+        parts.add( new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                Mutator<ByteBuffer> m = CountingMutator.createFlushingMutator( ko, be );
+                getRelationManager( entity ).batchRemoveFromContainers( m, timestampUuid );
+                batchExecute( m, CassandraService.RETRY_COUNT );
+                return null;
+            }
+        } );
 
-        //decrease entity count
-        if ( !TYPE_APPLICATION.equals( entity.getType() ) ) {
-            String collection_name = Schema.defaultCollectionName( entity.getType() );
-            decrementEntityCollection( collection_name );
+        if ( executor == null ) {
+            for ( Callable<Void> part : parts ) {
+                part.call();
+            }
+        }
+        else {
+            for ( Future<Void> part : executor.invokeAll( parts ) ) {
+                try {
+                    part.get();
+                }
+                catch ( ExecutionException e ) {
+                    throw e.getCause() instanceof Exception ? ( Exception ) e.getCause() : e;
+                }
+            }
         }
 
+        // only remove the entity once everything pointing to it is gone, so a failed purge can be run again
+        long timestamp = getTimestampInMicros( timestampUuid ) + 1;
 
-        timestamp += 1;
+        Mutator<ByteBuffer> m = CountingMutator.createFlushingMutator( ko, be );
 
         if ( dictionaries != null ) {
             for ( String dictionary : dictionaries ) {
@@ -1457,9 +1820,11 @@ public class EntityManagerImpl implements EntityManager {
             }
         }
 
-        addDeleteToMutator( m, ENTITY_PROPERTIES, key( entityId ), timestamp );
+        addDeleteToMutator( m, ENTITY_PROPERTIES, key( entity.getUuid() ), timestamp );
 
         batchExecute( m, CassandraService.RETRY_COUNT );
+
+        entityCache.invalidate( applicationId, entity.getUuid() );
     }
 
 
@@ -1952,6 +2317,7 @@ public class EntityManagerImpl implements EntityManager {
 
         fields.add( PROPERTY_UUID );
         fields.add( PROPERTY_TYPE );
+        fields.add( PROPERTY_TOMBSTONE );
 
         Rows<UUID, String, ByteBuffer> results = null;
 
@@ -1975,6 +2341,10 @@ public class EntityManagerImpl implements EntityManager {
                 continue;
             }
 
+            if ( removeTombstone( properties ) && !readTombstoned ) {
+                continue;
+            }
+
             UUID id = uuid( properties.get( PROPERTY_UUID ) );
             String type = string( properties.get( PROPERTY_TYPE ) );
 
@@ -2021,6 +2391,8 @@ public class EntityManagerImpl implements EntityManager {
         entity.setProperty( propertyName, propertyValue );
         batch = batchSetProperty( batch, entity, propertyName, propertyValue, override, false, timestampUuid );
         batchExecute( batch, CassandraService.RETRY_COUNT );
+
+        entityCache.invalidate( applicationId, entityRef.getUuid() );
     }
 
 
@@ -2056,6 +2428,8 @@ public class EntityManagerImpl implements EntityManager {
                 timestampUuid );
 
         batchExecute( batch, CassandraService.RETRY_COUNT );
+
+        invalidateUserRoles( entity, dictionaryName );
     }
 
 
@@ -2078,6 +2452,8 @@ public class EntityManagerImpl implements EntityManager {
         }
 
         batchExecute( batch, CassandraService.RETRY_COUNT );
+
+        invalidateUserRoles( entity, dictionaryName );
     }
 
 
@@ -2101,6 +2477,8 @@ public class EntityManagerImpl implements EntityManager {
         }
 
         batchExecute( batch, CassandraService.RETRY_COUNT );
+
+        invalidateUserRoles( entity, dictionaryName );
     }
 
 
@@ -2121,6 +2499,16 @@ public class EntityManagerImpl implements EntityManager {
         batch = batchUpdateDictionary( batch, entity, dictionaryName, elementValue, true, timestampUuid );
 
         batchExecute( batch, CassandraService.RETRY_COUNT );
+
+        invalidateUserRoles( entity, dictionaryName );
+    }
+
+
+    /** Drop the cached roles of a user once its role names are written, so a concurrent read can't cache old ones */
+    private void invalidateUserRoles( EntityRef entity, String dictionaryName ) {
+        if ( DICTIONARY_ROLENAMES.equals( dictionaryName ) && User.ENTITY_TYPE.equals( entity.getType() ) ) {
+            roleCache.invalidateUserRoles( applicationId, entity.getUuid() );
+        }
     }
 
 
@@ -2292,8 +2680,11 @@ public class EntityManagerImpl implements EntityManager {
         UUID timestampUuid = newTimeUUID();
         Mutator<ByteBuffer> batch = CountingMutator.createFlushingMutator( cass.getApplicationKeyspace( applicationId ),
                 be );
-        batchCreateRole( batch, null, roleName, roleTitle, inactivity, null, timestampUuid );
+        RoleRef roleRef = new SimpleRoleRef( roleName );
+        batchCreateRole( batch, null, roleName, roleTitle, inactivity, roleRef, timestampUuid );
         batchExecute( batch, CassandraService.RETRY_COUNT );
+        entityCache.invalidate( applicationId, roleRef.getUuid() );
+        roleCache.invalidateRole( applicationId, roleName.toLowerCase() );
         return get( roleRef( roleName ) );
     }
 
@@ -2308,6 +2699,7 @@ public class EntityManagerImpl implements EntityManager {
         addInsertToMutator( batch, ApplicationCF.ENTITY_DICTIONARIES, getRolePermissionsKey( roleName ), permission,
                 ByteBuffer.allocate( 0 ), timestamp );
         batchExecute( batch, CassandraService.RETRY_COUNT );
+        roleCache.invalidateRole( applicationId, roleName );
     }
 
 
@@ -2323,6 +2715,7 @@ public class EntityManagerImpl implements EntityManager {
                     ByteBuffer.allocate( 0 ), timestamp );
         }
         batchExecute( batch, CassandraService.RETRY_COUNT );
+        roleCache.invalidateRole( applicationId, roleName );
     }
 
 
@@ -2337,14 +2730,26 @@ public class EntityManagerImpl implements EntityManager {
                 .addDeleteToMutator( batch, ApplicationCF.ENTITY_DICTIONARIES, getRolePermissionsKey( roleName ),
                         permission, timestamp );
         batchExecute( batch, CassandraService.RETRY_COUNT );
+        roleCache.invalidateRole( applicationId, roleName );
     }
 
 
     @Override
     public Set<String> getRolePermissions( String roleName ) throws Exception {
         roleName = roleName.toLowerCase();
-        return cass.getAllColumnNames( cass.getApplicationKeyspace( applicationId ), ApplicationCF.ENTITY_DICTIONARIES,
-                getRolePermissionsKey( roleName ) );
+
+        Set<String> permissions = roleCache.getRolePermissions( applicationId, roleName );
+
+        if ( permissions != null ) {
+            return permissions;
+        }
+
+        permissions = cass.getAllColumnNames( cass.getApplicationKeyspace( applicationId ),
+                ApplicationCF.ENTITY_DICTIONARIES, getRolePermissionsKey( roleName ) );
+
+        roleCache.putRolePermissions( applicationId, roleName, permissions );
+
+        return permissions;
     }
 
 
@@ -2354,6 +2759,7 @@ public class EntityManagerImpl implements EntityManager {
         removeFromDictionary( getApplicationRef(), DICTIONARY_ROLENAMES, roleName );
         removeFromDictionary( getApplicationRef(), DICTIONARY_ROLETIMES, roleName );
         delete( roleRef( roleName ) );
+        roleCache.invalidateRole( applicationId, roleName );
     }
 
 
@@ -2373,8 +2779,11 @@ public class EntityManagerImpl implements EntityManager {
         UUID timestampUuid = newTimeUUID();
         Mutator<ByteBuffer> batch = CountingMutator.createFlushingMutator( cass.getApplicationKeyspace( applicationId ),
                 be );
-        batchCreateRole( batch, groupId, roleName, null, inactivity, null, timestampUuid );
+        RoleRef roleRef = new SimpleRoleRef( groupId, roleName );
+        batchCreateRole( batch, groupId, roleName, null, inactivity, roleRef, timestampUuid );
         batchExecute( batch, CassandraService.RETRY_COUNT );
+        entityCache.invalidate( applicationId, roleRef.getUuid() );
+        getRelationManager( groupRef( groupId ) ).invalidateMembership( COLLECTION_ROLES, roleRef );
         return get( roleRef( groupId, roleName ) );
     }
 
@@ -2424,7 +2833,17 @@ public class EntityManagerImpl implements EntityManager {
 
     @Override
     public Set<String> getUserRoles( UUID userId ) throws Exception {
-        return cast( getDictionaryAsSet( userRef( userId ), DICTIONARY_ROLENAMES ) );
+        Set<String> roleNames = roleCache.getUserRoles( applicationId, userId );
+
+        if ( roleNames != null ) {
+            return roleNames;
+        }
+
+        roleNames = cast( getDictionaryAsSet( userRef( userId ), DICTIONARY_ROLENAMES ) );
+
+        roleCache.putUserRoles( applicationId, userId, roleNames );
+
+        return roleNames;
     }
 
 
@@ -26,6 +26,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.usergrid.persistence.EntityRef;
 import org.apache.usergrid.persistence.IndexBucketLocator;
 import org.apache.usergrid.persistence.IndexBucketLocator.IndexType;
+import org.apache.usergrid.persistence.Schema;
 import org.apache.usergrid.persistence.geo.EntityLocationRef;
 import org.apache.usergrid.persistence.geo.GeocellManager;
 import org.apache.usergrid.persistence.geo.model.Point;
@@ -61,6 +62,13 @@ public class GeoIndexManager {
      */
     public static final int MAX_RESOLUTION = 9;
 
+    /** The connection indexes whose rows hold connected entities of every type */
+    private static final int[] MIXED_TYPE_INDEXES = { ConnectionRefImpl.ALL, ConnectionRefImpl.BY_CONNECTION_TYPE };
+
+    /** The connection indexes whose rows hold connected entities of a single type */
+    private static final int[] ENTITY_TYPE_INDEXES =
+            { ConnectionRefImpl.BY_ENTITY_TYPE, ConnectionRefImpl.BY_CONNECTION_AND_ENTITY_TYPE };
+
 
     EntityManagerImpl em;
     CassandraService cass;
@@ -95,67 +103,55 @@ public class GeoIndexManager {
     }
 
 
+    private static Object connectionIndexKey( IndexBucketLocator locator, UUID appId, UUID indexKey,
+                                              String propertyName, String geoCell ) {
+        return key( indexKey, INDEX_CONNECTIONS, propertyName, DICTIONARY_GEOCELL, geoCell,
+                locator.getBucket( appId, IndexType.CONNECTION, indexKey, geoCell ) );
+    }
+
+
     private static Mutator<ByteBuffer> batchAddConnectionIndexEntries( Mutator<ByteBuffer> m,
                                                                        IndexBucketLocator locator, UUID appId,
-                                                                       String propertyName, String geoCell,
-                                                                       UUID[] index_keys, ByteBuffer columnName,
-                                                                       ByteBuffer columnValue, long timestamp ) {
-
-        // entity_id,prop_name
-        Object property_index_key =
-                key( index_keys[ConnectionRefImpl.ALL], INDEX_CONNECTIONS, propertyName, DICTIONARY_GEOCELL, geoCell,
-                        locator.getBucket( appId, IndexType.CONNECTION, index_keys[ConnectionRefImpl.ALL], geoCell ) );
-
-        // entity_id,entity_type,prop_name
-        Object entity_type_prop_index_key =
-                key( index_keys[ConnectionRefImpl.BY_ENTITY_TYPE], INDEX_CONNECTIONS, propertyName, DICTIONARY_GEOCELL,
-                        geoCell,
-                        locator.getBucket( appId, IndexType.CONNECTION, index_keys[ConnectionRefImpl.BY_ENTITY_TYPE],
-                                geoCell ) );
-
-        // entity_id,connection_type,prop_name
-        Object connection_type_prop_index_key =
-                key( index_keys[ConnectionRefImpl.BY_CONNECTION_TYPE], INDEX_CONNECTIONS, propertyName,
-                        DICTIONARY_GEOCELL, geoCell, locator.getBucket( appId, IndexType.CONNECTION,
-                        index_keys[ConnectionRefImpl.BY_CONNECTION_TYPE], geoCell ) );
-
-        // entity_id,connection_type,entity_type,prop_name
-        Object connection_type_and_entity_type_prop_index_key =
-                key( index_keys[ConnectionRefImpl.BY_CONNECTION_AND_ENTITY_TYPE], INDEX_CONNECTIONS, propertyName,
-                        DICTIONARY_GEOCELL, geoCell, locator.getBucket( appId, IndexType.CONNECTION,
-                        index_keys[ConnectionRefImpl.BY_CONNECTION_AND_ENTITY_TYPE], geoCell ) );
-
-        // composite(property_value,connected_entity_id,connection_type,entity_type,entry_timestamp)
-        addInsertToMutator( m, ENTITY_INDEX, property_index_key, columnName, columnValue, timestamp );
-
-        // composite(property_value,connected_entity_id,connection_type,entry_timestamp)
-        addInsertToMutator( m, ENTITY_INDEX, entity_type_prop_index_key, columnName, columnValue, timestamp );
-
-        // composite(property_value,connected_entity_id,entity_type,entry_timestamp)
-        addInsertToMutator( m, ENTITY_INDEX, connection_type_prop_index_key, columnName, columnValue, timestamp );
-
-        // composite(property_value,connected_entity_id,entry_timestamp)
-        addInsertToMutator( m, ENTITY_INDEX, connection_type_and_entity_type_prop_index_key, columnName, columnValue,
-                timestamp );
+                                                                       String propertyName, List<String> geoCells,
+                                                                       UUID[] index_keys, int[] indexes,
+                                                                       ByteBuffer columnName, ByteBuffer columnValue,
+                                                                       long timestamp ) {
+
+        for ( String geoCell : geoCells ) {
+            for ( int index : indexes ) {
+                addInsertToMutator( m, ENTITY_INDEX,
+                        connectionIndexKey( locator, appId, index_keys[index], propertyName, geoCell ), columnName,
+                        columnValue, timestamp );
+            }
+        }
 
         return m;
     }
 
 
+    /**
+     * Add the location to the connection indexes.  The rows of a single connected entity type only hold the
+     * resolutions of that type, the rows shared by every type hold every resolution, since their searches can't know
+     * which resolutions the entities they find were indexed at
+     *
+     * @param resolutions The indexed resolutions of the connected entity type
+     */
     public static void batchStoreLocationInConnectionsIndex( Mutator<ByteBuffer> m, IndexBucketLocator locator,
                                                              UUID appId, UUID[] index_keys, String propertyName,
-                                                             EntityLocationRef location ) {
+                                                             EntityLocationRef location, int[] resolutions ) {
 
         Point p = location.getPoint();
         List<String> cells = GeocellManager.generateGeoCell( p );
+        List<String> typeCells = GeocellManager.generateGeoCell( p, resolutions );
 
         ByteBuffer columnName = location.getColumnName().serialize();
         ByteBuffer columnValue = location.getColumnValue().serialize();
         long ts = location.getTimestampInMicros();
-        for ( String cell : cells ) {
-            batchAddConnectionIndexEntries( m, locator, appId, propertyName, cell, index_keys, columnName, columnValue,
-                    ts );
-        }
+
+        batchAddConnectionIndexEntries( m, locator, appId, propertyName, cells, index_keys, MIXED_TYPE_INDEXES,
+                columnName, columnValue, ts );
+        batchAddConnectionIndexEntries( m, locator, appId, propertyName, typeCells, index_keys, ENTITY_TYPE_INDEXES,
+                columnName, columnValue, ts );
 
         logger.info( "Geocells to be saved for Point({} , {} ) are: {}", new Object[] {
                 location.getLatitude(), location.getLongitude(), cells
@@ -180,85 +176,66 @@ public class GeoIndexManager {
 
     private static Mutator<ByteBuffer> batchDeleteConnectionIndexEntries( Mutator<ByteBuffer> m,
                                                                           IndexBucketLocator locator, UUID appId,
-                                                                          String propertyName, String geoCell,
-                                                                          UUID[] index_keys, ByteBuffer columnName,
-                                                                          long timestamp ) {
-
-        // entity_id,prop_name
-        Object property_index_key =
-                key( index_keys[ConnectionRefImpl.ALL], INDEX_CONNECTIONS, propertyName, DICTIONARY_GEOCELL, geoCell,
-                        locator.getBucket( appId, IndexType.CONNECTION, index_keys[ConnectionRefImpl.ALL], geoCell ) );
-
-        // entity_id,entity_type,prop_name
-        Object entity_type_prop_index_key =
-                key( index_keys[ConnectionRefImpl.BY_ENTITY_TYPE], INDEX_CONNECTIONS, propertyName, DICTIONARY_GEOCELL,
-                        geoCell,
-                        locator.getBucket( appId, IndexType.CONNECTION, index_keys[ConnectionRefImpl.BY_ENTITY_TYPE],
-                                geoCell ) );
-
-        // entity_id,connection_type,prop_name
-        Object connection_type_prop_index_key =
-                key( index_keys[ConnectionRefImpl.BY_CONNECTION_TYPE], INDEX_CONNECTIONS, propertyName,
-                        DICTIONARY_GEOCELL, geoCell, locator.getBucket( appId, IndexType.CONNECTION,
-                        index_keys[ConnectionRefImpl.BY_CONNECTION_TYPE], geoCell ) );
-
-        // entity_id,connection_type,entity_type,prop_name
-        Object connection_type_and_entity_type_prop_index_key =
-                key( index_keys[ConnectionRefImpl.BY_CONNECTION_AND_ENTITY_TYPE], INDEX_CONNECTIONS, propertyName,
-                        DICTIONARY_GEOCELL, geoCell, locator.getBucket( appId, IndexType.CONNECTION,
-                        index_keys[ConnectionRefImpl.BY_CONNECTION_AND_ENTITY_TYPE], geoCell ) );
-
-        // composite(property_value,connected_entity_id,connection_type,entity_type,entry_timestamp)
-        m.addDeletion( bytebuffer( property_index_key ), ENTITY_INDEX.toString(), columnName,
-                ByteBufferSerializer.get(), timestamp );
-
-        // composite(property_value,connected_entity_id,connection_type,entry_timestamp)
-        m.addDeletion( bytebuffer( entity_type_prop_index_key ), ENTITY_INDEX.toString(), columnName,
-                ByteBufferSerializer.get(), timestamp );
-
-        // composite(property_value,connected_entity_id,entity_type,entry_timestamp)
-        m.addDeletion( bytebuffer( connection_type_prop_index_key ), ENTITY_INDEX.toString(), columnName,
-                ByteBufferSerializer.get(), timestamp );
-
-        // composite(property_value,connected_entity_id,entry_timestamp)
-        m.addDeletion( bytebuffer( connection_type_and_entity_type_prop_index_key ), ENTITY_INDEX.toString(),
-                columnName, ByteBufferSerializer.get(), timestamp );
+                                                                          String propertyName, List<String> geoCells,
+                                                                          UUID[] index_keys, int[] indexes,
+                                                                          ByteBuffer columnName, long timestamp ) {
+
+        for ( String geoCell : geoCells ) {
+            for ( int index : indexes ) {
+                m.addDeletion(
+                        bytebuffer( connectionIndexKey( locator, appId, index_keys[index], propertyName, geoCell ) ),
+                        ENTITY_INDEX.toString(), columnName, ByteBufferSerializer.get(), timestamp );
+            }
+        }
 
         return m;
     }
 
 
+    /**
+     * Remove the location from the connection indexes, at the resolutions it was stored at
+     *
+     * @param resolutions The indexed resolutions of the connected entity type
+     *
+     * @see #batchStoreLocationInConnectionsIndex(Mutator, IndexBucketLocator, UUID, UUID[], String,
+     *      EntityLocationRef, int[])
+     */
     public static void batchDeleteLocationInConnectionsIndex( Mutator<ByteBuffer> m, IndexBucketLocator locator,
                                                               UUID appId, UUID[] index_keys, String propertyName,
-                                                              EntityLocationRef location ) {
+                                                              EntityLocationRef location, int[] resolutions ) {
 
         Point p = location.getPoint();
         List<String> cells = GeocellManager.generateGeoCell( p );
+        List<String> typeCells = GeocellManager.generateGeoCell( p, resolutions );
 
         ByteBuffer columnName = location.getColumnName().serialize();
 
         long ts = location.getTimestampInMicros();
 
-        for ( String cell : cells ) {
-
-            batchDeleteConnectionIndexEntries( m, locator, appId, propertyName, cell, index_keys, columnName, ts );
-        }
+        batchDeleteConnectionIndexEntries( m, locator, appId, propertyName, cells, index_keys, MIXED_TYPE_INDEXES,
+                columnName, ts );
+        batchDeleteConnectionIndexEntries( m, locator, appId, propertyName, typeCells, index_keys,
+                ENTITY_TYPE_INDEXES, columnName, ts );
 
-        logger.info( "Geocells to be saved for Point({} , {} ) are: {}", new Object[] {
+        logger.info( "Geocells to be deleted for Point({} , {} ) are: {}", new Object[] {
                 location.getLatitude(), location.getLongitude(), cells
         } );
     }
 
 
+    /**
+     * Add the location to the index of every given resolution
+     *
+     * @param resolutions The indexed resolutions of the collection
+     */
     public static void batchStoreLocationInCollectionIndex( Mutator<ByteBuffer> m, IndexBucketLocator locator,
                                                             UUID appId, Object key, UUID entityId,
-                                                            EntityLocationRef location ) {
+                                                            EntityLocationRef location, int[] resolutions ) {
 
         Point p = location.getPoint();
-        List<String> cells = GeocellManager.generateGeoCell( p );
+        List<String> cells = GeocellManager.generateGeoCell( p, resolutions );
 
-        for ( int i = 0; i < MAX_RESOLUTION; i++ ) {
-            String cell = cells.get( i );
+        for ( String cell : cells ) {
 
             String indexBucket = locator.getBucket( appId, IndexType.GEO, entityId, cell );
 
@@ -280,22 +257,27 @@ public class GeoIndexManager {
         Mutator<ByteBuffer> m = CountingMutator.createFlushingMutator( ko, ByteBufferSerializer.get() );
 
         batchStoreLocationInCollectionIndex( m, em.getIndexBucketLocator(), em.getApplicationId(),
-                key( owner.getUuid(), collectionName, propertyName ), owner.getUuid(), location );
+                key( owner.getUuid(), collectionName, propertyName ), owner.getUuid(), location,
+                Schema.getDefaultSchema().getCollectionGeocellResolutions( owner.getType(), collectionName ) );
 
         batchExecute( m, CassandraService.RETRY_COUNT );
     }
 
 
+    /**
+     * Remove the location from the index of every given resolution
+     *
+     * @param resolutions The indexed resolutions of the collection
+     */
     public static void batchRemoveLocationFromCollectionIndex( Mutator<ByteBuffer> m, IndexBucketLocator locator,
-                                                               UUID appId, Object key, EntityLocationRef location ) {
+                                                               UUID appId, Object key, EntityLocationRef location,
+                                                               int[] resolutions ) {
 
         Point p = location.getPoint();
-        List<String> cells = GeocellManager.generateGeoCell( p );
+        List<String> cells = GeocellManager.generateGeoCell( p, resolutions );
 
         // delete for every bucket in every resolution
-        for ( int i = 0; i < MAX_RESOLUTION; i++ ) {
-
-            String cell = cells.get( i );
+        for ( String cell : cells ) {
 
             for ( String indexBucket : locator.getBuckets( appId, IndexType.GEO, cell ) ) {
 
@@ -318,7 +300,8 @@ public class GeoIndexManager {
         Mutator<ByteBuffer> m = CountingMutator.createFlushingMutator( ko, ByteBufferSerializer.get() );
 
         batchRemoveLocationFromCollectionIndex( m, em.getIndexBucketLocator(), em.getApplicationId(),
-                key( owner.getUuid(), collectionName, propertyName ), location );
+                key( owner.getUuid(), collectionName, propertyName ), location,
+                Schema.getDefaultSchema().getCollectionGeocellResolutions( owner.getType(), collectionName ) );
 
         batchExecute( m, CassandraService.RETRY_COUNT );
     }
@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cassandra;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.usergrid.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.EntityCache;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import static org.apache.usergrid.persistence.Schema.PROPERTY_MODIFIED;
+import static org.apache.usergrid.utils.ConversionUtils.getLong;
+
+
+/**
+ * Size and TTL bounded, in JVM implementation of the entity cache.  Entries are versioned by the modified timestamp of
+ * the entity so that a slow reader can never replace a newer version with an older one.  Every invalidation also
+ * advances the counter of the stripe the entity hashes to, and an entry is only cached if that counter hasn't moved
+ * since the reader took its stamp, so a read that started before a write is never cached after it.
+ * <p/>
+ * Since the cache is local to the node, writes on other nodes are only observed once the entry expires, so the TTL is
+ * the upper bound on staleness within the cluster.
+ */
+public class LocalEntityCache implements EntityCache {
+
+    private static final Logger logger = LoggerFactory.getLogger( LocalEntityCache.class );
+
+    /** The number of invalidation counters, entities sharing a stripe only cause each other to skip a put */
+    private static final int STRIPES = 1024;
+
+    private final boolean enabled;
+    private final Cache<EntityKey, CachedEntity> cache;
+    private final AtomicLongArray stamps = new AtomicLongArray( STRIPES );
+
+
+    /**
+     * Create a new cache
+     *
+     * @param maxSize The max number of entities to hold across all applications.  0 disables the cache
+     * @param ttlSeconds The max number of seconds an entity is held after it was read
+     */
+    public LocalEntityCache( long maxSize, long ttlSeconds ) {
+        this.enabled = maxSize > 0 && ttlSeconds > 0;
+
+        this.cache = CacheBuilder.newBuilder().maximumSize( Math.max( maxSize, 0 ) )
+                                 .expireAfterWrite( Math.max( ttlSeconds, 0 ), TimeUnit.SECONDS ).recordStats()
+                                 .build();
+
+        if ( !enabled ) {
+            logger.info( "Entity cache is disabled" );
+        }
+    }
+
+
+    /** Register the hit, miss, and eviction gauges with the metrics registry */
+    public void setMetricsFactory( MetricsFactory metricsFactory ) {
+        MetricRegistry registry = metricsFactory.getRegistry();
+
+        registry.register( MetricRegistry.name( LocalEntityCache.class, "hits" ), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.stats().hitCount();
+            }
+        } );
+
+        registry.register( MetricRegistry.name( LocalEntityCache.class, "misses" ), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.stats().missCount();
+            }
+        } );
+
+        registry.register( MetricRegistry.name( LocalEntityCache.class, "evictions" ), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.stats().evictionCount();
+            }
+        } );
+
+        registry.register( MetricRegistry.name( LocalEntityCache.class, "size" ), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.size();
+            }
+        } );
+    }
+
+
+    @Override
+    public Map<String, Object> get( UUID applicationId, UUID entityId ) {
+        if ( !enabled || applicationId == null ) {
+            return null;
+        }
+
+        CachedEntity cached = cache.getIfPresent( new EntityKey( applicationId, entityId ) );
+
+        if ( cached == null ) {
+            return null;
+        }
+
+        return copyProperties( cached.properties );
+    }
+
+
+    @Override
+    public long getStamp( UUID applicationId, UUID entityId ) {
+        if ( !enabled || applicationId == null ) {
+            return 0;
+        }
+
+        return stamps.get( stripe( new EntityKey( applicationId, entityId ) ) );
+    }
+
+
+    @Override
+    public void put( UUID applicationId, UUID entityId, long stamp, Map<String, Object> properties ) {
+        if ( !enabled || applicationId == null || properties == null ) {
+            return;
+        }
+
+        EntityKey key = new EntityKey( applicationId, entityId );
+        int stripe = stripe( key );
+
+        if ( stamps.get( stripe ) != stamp ) {
+            return;
+        }
+
+        CachedEntity candidate = new CachedEntity( copyProperties( properties ) );
+
+        ConcurrentMap<EntityKey, CachedEntity> map = cache.asMap();
+
+        CachedEntity existing = map.putIfAbsent( key, candidate );
+
+        //keep whichever version is the most recent, we lost the race to a newer read
+        while ( existing != null && existing.version < candidate.version ) {
+            if ( map.replace( key, existing, candidate ) ) {
+                break;
+            }
+
+            existing = map.putIfAbsent( key, candidate );
+        }
+
+        //an invalidation between the check and the insert may have missed the candidate, so remove it ourselves
+        if ( stamps.get( stripe ) != stamp ) {
+            map.remove( key, candidate );
+        }
+    }
+
+
+    @Override
+    public void invalidate( UUID applicationId, UUID entityId ) {
+        if ( !enabled || applicationId == null ) {
+            return;
+        }
+
+        EntityKey key = new EntityKey( applicationId, entityId );
+
+        stamps.incrementAndGet( stripe( key ) );
+        cache.invalidate( key );
+    }
+
+
+    @Override
+    public void invalidateAll() {
+        for ( int i = 0; i < STRIPES; i++ ) {
+            stamps.incrementAndGet( i );
+        }
+
+        cache.invalidateAll();
+    }
+
+
+    /** Get the number of entities currently cached */
+    public long size() {
+        return cache.size();
+    }
+
+
+    private static int stripe( EntityKey key ) {
+        return ( key.hashCode() & Integer.MAX_VALUE ) % STRIPES;
+    }
+
+
+    /**
+     * Copy the properties so that neither the cached version or the caller's version can be modified by the other.
+     * Nested maps and lists from JSON values are copied as well, all other values are immutable
+     */
+    private static Map<String, Object> copyProperties( Map<String, Object> properties ) {
+        Map<String, Object> copy = new TreeMap<String, Object>( String.CASE_INSENSITIVE_ORDER );
+
+        for ( Map.Entry<String, Object> entry : properties.entrySet() ) {
+            copy.put( entry.getKey(), copyValue( entry.getValue() ) );
+        }
+
+        return copy;
+    }
+
+
+    @SuppressWarnings( "unchecked" )
+    private static Object copyValue( Object value ) {
+        if ( value instanceof Map ) {
+            Map<Object, Object> source = ( Map<Object, Object> ) value;
+            Map<Object, Object> copy = new LinkedHashMap<Object, Object>( source.size() );
+
+            for ( Map.Entry<Object, Object> entry : source.entrySet() ) {
+                copy.put( entry.getKey(), copyValue( entry.getValue() ) );
+            }
+
+            return copy;
+        }
+
+        if ( value instanceof List ) {
+            List<Object> source = ( List<Object> ) value;
+            List<Object> copy = new ArrayList<Object>( source.size() );
+
+            for ( Object element : source ) {
+                copy.add( copyValue( element ) );
+            }
+
+            return copy;
+        }
+
+        return value;
+    }
+
+
+    /** The immutable, versioned entry held in the cache */
+    private static final class CachedEntity {
+        private final Map<String, Object> properties;
+        private final long version;
+
+
+        private CachedEntity( Map<String, Object> properties ) {
+            this.properties = Collections.unmodifiableMap( properties );
+            this.version = getLong( properties.get( PROPERTY_MODIFIED ) );
+        }
+    }
+
+
+    /** Key of the application and entity id */
+    private static final class EntityKey {
+        private final UUID applicationId;
+        private final UUID entityId;
+
+
+        private EntityKey( UUID applicationId, UUID entityId ) {
+            this.applicationId = applicationId;
+            this.entityId = entityId;
+        }
+
+
+        @Override
+        public boolean equals( Object o ) {
+            if ( this == o ) {
+                return true;
+            }
+            if ( !( o instanceof EntityKey ) ) {
+                return false;
+            }
+
+            EntityKey other = ( EntityKey ) o;
+
+            return entityId.equals( other.entityId ) && applicationId.equals( other.applicationId );
+        }
+
+
+        @Override
+        public int hashCode() {
+            return 31 * applicationId.hashCode() + entityId.hashCode();
+        }
+    }
+}
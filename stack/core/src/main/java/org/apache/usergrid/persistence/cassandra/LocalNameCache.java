@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cassandra;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.usergrid.metrics.MetricsFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+
+/**
+ * Size and TTL bounded, in JVM cache of the resolution of organization and application names.  Only names that exist
+ * are cached, so a name created on another node resolves immediately, while a rename or delete on another node is
+ * observed once the entry expires.
+ *
+ * @param <V> The value a name resolves to
+ */
+public class LocalNameCache<V> {
+
+    private static final Logger logger = LoggerFactory.getLogger( LocalNameCache.class );
+
+    private final String cacheName;
+    private final boolean enabled;
+    private final Cache<String, V> cache;
+
+
+    /**
+     * Create a new cache
+     *
+     * @param cacheName The name of the cache in the metrics and the logs
+     * @param maxSize The max number of names to hold.  0 disables the cache
+     * @param ttlSeconds The max number of seconds a name is held after it was resolved
+     */
+    public LocalNameCache( String cacheName, long maxSize, long ttlSeconds ) {
+        this.cacheName = cacheName;
+        this.enabled = maxSize > 0 && ttlSeconds > 0;
+
+        this.cache = CacheBuilder.newBuilder().maximumSize( Math.max( maxSize, 0 ) )
+                                 .expireAfterWrite( Math.max( ttlSeconds, 0 ), TimeUnit.SECONDS ).recordStats()
+                                 .build();
+
+        if ( !enabled ) {
+            logger.info( "Name cache {} is disabled", cacheName );
+        }
+    }
+
+
+    /** Register the hit, miss, and size gauges with the metrics registry */
+    public void setMetricsFactory( MetricsFactory metricsFactory ) {
+        MetricRegistry registry = metricsFactory.getRegistry();
+
+        registry.register( MetricRegistry.name( LocalNameCache.class, cacheName, "hits" ), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.stats().hitCount();
+            }
+        } );
+
+        registry.register( MetricRegistry.name( LocalNameCache.class, cacheName, "misses" ), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.stats().missCount();
+            }
+        } );
+
+        registry.register( MetricRegistry.name( LocalNameCache.class, cacheName, "size" ), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.size();
+            }
+        } );
+    }
+
+
+    /** @return the value the name resolves to, or null if it isn't cached */
+    public V get( String name ) {
+        if ( !enabled || name == null ) {
+            return null;
+        }
+
+        return cache.getIfPresent( name );
+    }
+
+
+    public void put( String name, V value ) {
+        if ( !enabled || name == null || value == null ) {
+            return;
+        }
+
+        cache.put( name, value );
+    }
+
+
+    public void invalidate( String name ) {
+        if ( !enabled || name == null ) {
+            return;
+        }
+
+        cache.invalidate( name );
+    }
+
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cassandra;
+
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.usergrid.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.RoleCache;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+
+/**
+ * Size and TTL bounded, in JVM implementation of the role cache.  Writes on this node invalidate the entries
+ * immediately, writes on other nodes are observed once the entry expires, so the TTL is the upper bound on how long a
+ * revoked permission can still be granted within the cluster.
+ */
+public class LocalRoleCache implements RoleCache {
+
+    private static final Logger logger = LoggerFactory.getLogger( LocalRoleCache.class );
+
+    private final boolean enabled;
+    private final Cache<RoleKey, Set<String>> rolePermissions;
+    private final Cache<RoleKey, Set<String>> userRoles;
+
+
+    /**
+     * Create a new cache
+     *
+     * @param maxSize The max number of roles, and separately of users, to hold across all applications.  0 disables
+     * the cache
+     * @param ttlSeconds The max number of seconds an entry is held after it was read
+     */
+    public LocalRoleCache( long maxSize, long ttlSeconds ) {
+        this.enabled = maxSize > 0 && ttlSeconds > 0;
+
+        this.rolePermissions = CacheBuilder.newBuilder().maximumSize( Math.max( maxSize, 0 ) )
+                                           .expireAfterWrite( Math.max( ttlSeconds, 0 ), TimeUnit.SECONDS )
+                                           .recordStats().build();
+
+        this.userRoles = CacheBuilder.newBuilder().maximumSize( Math.max( maxSize, 0 ) )
+                                     .expireAfterWrite( Math.max( ttlSeconds, 0 ), TimeUnit.SECONDS ).recordStats()
+                                     .build();
+
+        if ( !enabled ) {
+            logger.info( "Role cache is disabled" );
+        }
+    }
+
+
+    /** Register the hit, miss, and size gauges with the metrics registry */
+    public void setMetricsFactory( MetricsFactory metricsFactory ) {
+        MetricRegistry registry = metricsFactory.getRegistry();
+
+        registry.register( MetricRegistry.name( LocalRoleCache.class, "hits" ), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return rolePermissions.stats().hitCount() + userRoles.stats().hitCount();
+            }
+        } );
+
+        registry.register( MetricRegistry.name( LocalRoleCache.class, "misses" ), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return rolePermissions.stats().missCount() + userRoles.stats().missCount();
+            }
+        } );
+
+        registry.register( MetricRegistry.name( LocalRoleCache.class, "size" ), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return rolePermissions.size() + userRoles.size();
+            }
+        } );
+    }
+
+
+    @Override
+    public Set<String> getRolePermissions( UUID applicationId, String roleName ) {
+        return get( rolePermissions, applicationId, roleName );
+    }
+
+
+    @Override
+    public void putRolePermissions( UUID applicationId, String roleName, Set<String> permissions ) {
+        put( rolePermissions, applicationId, roleName, permissions );
+    }
+
+
+    @Override
+    public void invalidateRole( UUID applicationId, String roleName ) {
+        invalidate( rolePermissions, applicationId, roleName );
+    }
+
+
+    @Override
+    public Set<String> getUserRoles( UUID applicationId, UUID userId ) {
+        return get( userRoles, applicationId, userId );
+    }
+
+
+    @Override
+    public void putUserRoles( UUID applicationId, UUID userId, Set<String> roleNames ) {
+        put( userRoles, applicationId, userId, roleNames );
+    }
+
+
+    @Override
+    public void invalidateUserRoles( UUID applicationId, UUID userId ) {
+        invalidate( userRoles, applicationId, userId );
+    }
+
+
+    @Override
+    public void invalidateAll() {
+        rolePermissions.invalidateAll();
+        userRoles.invalidateAll();
+    }
+
+
+    private Set<String> get( Cache<RoleKey, Set<String>> cache, UUID applicationId, Object name ) {
+        if ( !enabled || applicationId == null || name == null ) {
+            return null;
+        }
+
+        Set<String> cached = cache.getIfPresent( new RoleKey( applicationId, name ) );
+
+        if ( cached == null ) {
+            return null;
+        }
+
+        return new LinkedHashSet<String>( cached );
+    }
+
+
+    private void put( Cache<RoleKey, Set<String>> cache, UUID applicationId, Object name, Set<String> values ) {
+        if ( !enabled || applicationId == null || name == null || values == null ) {
+            return;
+        }
+
+        cache.put( new RoleKey( applicationId, name ),
+                Collections.unmodifiableSet( new LinkedHashSet<String>( values ) ) );
+    }
+
+
+    private void invalidate( Cache<RoleKey, Set<String>> cache, UUID applicationId, Object name ) {
+        if ( !enabled || applicationId == null || name == null ) {
+            return;
+        }
+
+        cache.invalidate( new RoleKey( applicationId, name ) );
+    }
+
+
+    /** Key of the application and the role name or user id */
+    private static final class RoleKey {
+        private final UUID applicationId;
+        private final Object name;
+
+
+        private RoleKey( UUID applicationId, Object name ) {
+            this.applicationId = applicationId;
+            this.name = name;
+        }
+
+
+        @Override
+        public boolean equals( Object o ) {
+            if ( this == o ) {
+                return true;
+            }
+            if ( !( o instanceof RoleKey ) ) {
+                return false;
+            }
+
+            RoleKey other = ( RoleKey ) o;
+
+            return name.equals( other.name ) && applicationId.equals( other.applicationId );
+        }
+
+
+        @Override
+        public int hashCode() {
+            return 31 * applicationId.hashCode() + name.hashCode();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cassandra;
+
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+import org.apache.usergrid.utils.JsonUtils;
+
+import static org.apache.usergrid.utils.JsonUtils.toJsonNode;
+
+
+/**
+ * Encodes the values of the Entity_Properties columns.  Strings, integral numbers, floating point numbers, booleans
+ * and uuids are written in a compact typed format, which is a format marker byte, a type byte and the raw value.  All
+ * other values, such as maps and lists, are written as SMILE as they always have been.
+ * <p/>
+ * Since a SMILE document always starts with its ':' header, the marker byte is enough to tell the two formats apart
+ * on read, so columns written before the typed format existed remain readable without a migration.  Values decode
+ * to exactly what the SMILE path returns for the same input, with the numbers widened to long and double and uuid
+ * strings converted to uuids.
+ * <p/>
+ * Writing the typed format is off by default and enabled with usergrid.entity.properties.typed=true, which must only
+ * be set once every node of the cluster runs a version that can read it.  Values are always read in both formats.
+ */
+public final class PropertyValueCodec {
+
+    /** The first byte of every value in the typed format.  Never the first byte of a SMILE document */
+    public static final byte FORMAT_TYPED_V1 = 0x01;
+
+    private static final byte TYPE_STRING = 0x01;
+    private static final byte TYPE_LONG = 0x02;
+    private static final byte TYPE_DOUBLE = 0x03;
+    private static final byte TYPE_TRUE = 0x04;
+    private static final byte TYPE_FALSE = 0x05;
+    private static final byte TYPE_UUID = 0x06;
+
+    private static final int HEADER_SIZE = 2;
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    private static final BigInteger MIN_LONG = BigInteger.valueOf( Long.MIN_VALUE );
+    private static final BigInteger MAX_LONG = BigInteger.valueOf( Long.MAX_VALUE );
+
+    private static volatile boolean typedEnabled = false;
+
+
+    private PropertyValueCodec() {
+    }
+
+
+    /** Enable or disable writing values in the typed format.  Reading is always supported */
+    public static void setTypedEnabled( boolean enabled ) {
+        typedEnabled = enabled;
+    }
+
+
+    public static boolean isTypedEnabled() {
+        return typedEnabled;
+    }
+
+
+    /** Encode the value in the typed format if it's supported and enabled, otherwise as SMILE */
+    public static ByteBuffer encode( Object value ) {
+        return encode( value, typedEnabled );
+    }
+
+
+    /** Encode the value in the typed format if it's supported and requested, otherwise as SMILE */
+    static ByteBuffer encode( Object value, boolean typedFormat ) {
+        if ( typedFormat ) {
+            ByteBuffer typed = encodeTyped( value );
+            if ( typed != null ) {
+                return typed;
+            }
+        }
+
+        return encodeSmile( value );
+    }
+
+
+    /** Encode the value as SMILE, the format used before the typed encoding was introduced */
+    public static ByteBuffer encodeSmile( Object value ) {
+        return JsonUtils.toByteBuffer( toJsonNode( value ) );
+    }
+
+
+    /** Decode a value written in either format */
+    public static Object decode( ByteBuffer bytes ) {
+        if ( !isTyped( bytes ) ) {
+            return JsonUtils.normalizeJsonTree( JsonUtils.fromByteBuffer( bytes ) );
+        }
+
+        ByteBuffer value = bytes.duplicate();
+        value.position( value.position() + 1 );
+
+        byte type = value.get();
+
+        switch ( type ) {
+            case TYPE_STRING:
+                return JsonUtils.normalizeJsonTree( UTF8.decode( value ).toString() );
+            case TYPE_LONG:
+                return value.getLong();
+            case TYPE_DOUBLE:
+                return value.getDouble();
+            case TYPE_TRUE:
+                return Boolean.TRUE;
+            case TYPE_FALSE:
+                return Boolean.FALSE;
+            case TYPE_UUID:
+                return new UUID( value.getLong(), value.getLong() );
+            default:
+                throw new IllegalArgumentException( "Unknown property value type " + type );
+        }
+    }
+
+
+    /** @return true if the bytes hold a value in the typed format */
+    public static boolean isTyped( ByteBuffer bytes ) {
+        return bytes != null && bytes.hasRemaining() && bytes.get( bytes.position() ) == FORMAT_TYPED_V1;
+    }
+
+
+    /** @return the value in the typed format, or null if the type of the value isn't supported */
+    private static ByteBuffer encodeTyped( Object value ) {
+        if ( value instanceof String ) {
+            byte[] chars = ( ( String ) value ).getBytes( UTF8 );
+            return ( ByteBuffer ) header( TYPE_STRING, chars.length ).put( chars ).rewind();
+        }
+
+        if ( value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte ) {
+            return ( ByteBuffer ) header( TYPE_LONG, 8 ).putLong( ( ( Number ) value ).longValue() ).rewind();
+        }
+
+        if ( value instanceof BigInteger ) {
+            BigInteger big = ( BigInteger ) value;
+            if ( big.compareTo( MIN_LONG ) < 0 || big.compareTo( MAX_LONG ) > 0 ) {
+                return null;
+            }
+            return ( ByteBuffer ) header( TYPE_LONG, 8 ).putLong( big.longValue() ).rewind();
+        }
+
+        if ( value instanceof Double || value instanceof Float ) {
+            return ( ByteBuffer ) header( TYPE_DOUBLE, 8 ).putDouble( ( ( Number ) value ).doubleValue() ).rewind();
+        }
+
+        if ( value instanceof Boolean ) {
+            return ( ByteBuffer ) header( ( Boolean ) value ? TYPE_TRUE : TYPE_FALSE, 0 ).rewind();
+        }
+
+        if ( value instanceof UUID ) {
+            UUID uuid = ( UUID ) value;
+            return ( ByteBuffer ) header( TYPE_UUID, 16 ).putLong( uuid.getMostSignificantBits() )
+                                                         .putLong( uuid.getLeastSignificantBits() ).rewind();
+        }
+
+        return null;
+    }
+
+
+    private static ByteBuffer header( byte type, int length ) {
+        return ByteBuffer.allocate( HEADER_SIZE + length ).put( FORMAT_TYPED_V1 ).put( type );
+    }
+}
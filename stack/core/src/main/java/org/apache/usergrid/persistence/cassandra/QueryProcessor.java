@@ -51,6 +51,7 @@ import org.apache.usergrid.persistence.query.ir.SearchVisitor;
 import org.apache.usergrid.persistence.query.ir.SliceNode;
 import org.apache.usergrid.persistence.query.ir.UuidIdentifierNode;
 import org.apache.usergrid.persistence.query.ir.WithinNode;
+import org.apache.usergrid.persistence.query.ir.result.OrderByIterator;
 import org.apache.usergrid.persistence.query.ir.result.ResultIterator;
 import org.apache.usergrid.persistence.query.ir.result.ResultsLoader;
 import org.apache.usergrid.persistence.query.ir.result.ResultsLoaderFactory;
@@ -97,6 +98,7 @@ public class QueryProcessor {
     private int size;
     private Query query;
     private int sliceCount;
+    private boolean includeTombstoned;
 
 
     public QueryProcessor( Query query, CollectionInfo collectionInfo, EntityManager em,
@@ -124,6 +126,15 @@ public class QueryProcessor {
     }
 
 
+    /**
+     * Return entities that are deleted but not yet purged in the results.  Only meant for the queries that maintain
+     * the indexes, which must still see the entries of those entities
+     */
+    public void setIncludeTombstoned( boolean includeTombstoned ) {
+        this.includeTombstoned = includeTombstoned;
+    }
+
+
     public CollectionInfo getCollectionInfo() {
         return collectionInfo;
     }
@@ -292,6 +303,13 @@ public class QueryProcessor {
                     entityIds.size() );
         }
 
+        //ids and refs are read from the indexes alone, so the tombstones of deleted entities are checked here.  The
+        //cursor is already set, so a page can come back shorter than the limit
+        if ( !includeTombstoned && query.getResultsLevel().compareTo( Results.Level.REFS ) <= 0
+                && em instanceof EntityManagerImpl ) {
+            entityIds = ( ( EntityManagerImpl ) em ).removeTombstoned( entityIds );
+        }
+
         final ResultsLoader loader = loaderFactory.getResultsLoader( em, query, query.getResultsLevel() );
         final Results results = loader.getResults( entityIds );
 
@@ -302,6 +320,10 @@ public class QueryProcessor {
         // now we need to set the cursor from our tree evaluation for return
         results.setCursor( resultsCursor.asString() );
 
+        if ( itr instanceof OrderByIterator ) {
+            results.setRowsExamined( ( ( OrderByIterator ) itr ).getRowsExamined() );
+        }
+
         results.setQuery( query );
         results.setQueryProcessor( this );
         results.setSearchVisitor( visitor );
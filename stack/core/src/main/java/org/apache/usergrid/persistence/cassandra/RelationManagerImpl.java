@@ -53,7 +53,6 @@ import org.apache.usergrid.persistence.SimpleEntityRef;
 import org.apache.usergrid.persistence.SimpleRoleRef;
 import org.apache.usergrid.persistence.cassandra.IndexUpdate.IndexEntry;
 import org.apache.usergrid.persistence.cassandra.index.ConnectedIndexScanner;
-import org.apache.usergrid.persistence.cassandra.index.IndexBucketScanner;
 import org.apache.usergrid.persistence.cassandra.index.IndexScanner;
 import org.apache.usergrid.persistence.cassandra.index.NoOpIndexScanner;
 import org.apache.usergrid.persistence.entities.Group;
@@ -244,8 +243,10 @@ public class RelationManagerImpl implements RelationManager {
                 if ( "location.coordinates".equals( entry.getPath() ) ) {
                     EntityLocationRef loc = new EntityLocationRef( indexUpdate.getEntity(), entry.getTimestampUuid(),
                             entry.getValue().toString() );
+                    int[] resolutions =
+                            getDefaultSchema().getCollectionGeocellResolutions( owner.getType(), collectionName );
                     batchRemoveLocationFromCollectionIndex( indexUpdate.getBatch(), indexBucketLocator, applicationId,
-                            index_name, loc );
+                            index_name, loc, resolutions );
                 }
             }
             else {
@@ -273,8 +274,10 @@ public class RelationManagerImpl implements RelationManager {
                     EntityLocationRef loc =
                             new EntityLocationRef( indexUpdate.getEntity(), indexEntry.getTimestampUuid(),
                                     indexEntry.getValue().toString() );
+                    int[] resolutions =
+                            getDefaultSchema().getCollectionGeocellResolutions( owner.getType(), collectionName );
                     batchStoreLocationInCollectionIndex( indexUpdate.getBatch(), indexBucketLocator, applicationId,
-                            index_name, indexedEntity.getUuid(), loc );
+                            index_name, indexedEntity.getUuid(), loc, resolutions );
                 }
 
                 // i++;
@@ -345,6 +348,15 @@ public class RelationManagerImpl implements RelationManager {
     }
 
 
+    /**
+     * Remove the membership entity of the item in a collection of the head entity from the entity cache.  Membership
+     * ids are derived from the owner, collection and item, so a membership can be written over a cached one
+     */
+    void invalidateMembership( String collectionName, EntityRef itemRef ) {
+        em.invalidateCachedEntity( new SimpleCollectionRef( headEntity, collectionName, itemRef ).getUuid() );
+    }
+
+
     @SuppressWarnings("unchecked")
     public void batchCreateCollectionMembership( Mutator<ByteBuffer> batch, EntityRef ownerRef, String collectionName,
                                                  EntityRef itemRef, EntityRef membershipRef, UUID timestampUuid )
@@ -693,6 +705,9 @@ public class RelationManagerImpl implements RelationManager {
 
         UUID[] index_keys = connection.getIndexIds();
 
+        int[] resolutions =
+                getDefaultSchema().getConnectedEntityGeocellResolutions( connection.getConnectedEntityType() );
+
         // Delete all matching entries from entry list
         for ( IndexEntry entry : indexUpdate.getPrevEntries() ) {
 
@@ -704,7 +719,7 @@ public class RelationManagerImpl implements RelationManager {
                     EntityLocationRef loc = new EntityLocationRef( indexUpdate.getEntity(), entry.getTimestampUuid(),
                             entry.getValue().toString() );
                     batchDeleteLocationInConnectionsIndex( indexUpdate.getBatch(), indexBucketLocator, applicationId,
-                            index_keys, entry.getPath(), loc );
+                            index_keys, entry.getPath(), loc, resolutions );
                 }
             }
             else {
@@ -724,7 +739,7 @@ public class RelationManagerImpl implements RelationManager {
                             new EntityLocationRef( indexUpdate.getEntity(), indexEntry.getTimestampUuid(),
                                     indexEntry.getValue().toString() );
                     batchStoreLocationInConnectionsIndex( indexUpdate.getBatch(), indexBucketLocator, applicationId,
-                            index_keys, indexEntry.getPath(), loc );
+                            index_keys, indexEntry.getPath(), loc, resolutions );
                 }
             }
 
@@ -899,10 +914,11 @@ public class RelationManagerImpl implements RelationManager {
             boolean delete = true;
 
             //check out outbound edges of the given type.  If we have more than the 1 specified,
-            // we shouldn't delete the connection types from our outbound index
+            // we shouldn't delete the connection types from our outbound index.  Edges of entities that are deleted
+            // but not yet purged count, they stay indexed until the purge
             PagingResultsIterator itr = new PagingResultsIterator(
                     getConnectedEntities( connection.getConnectingEntity(), connection.getConnectionType(), null,
-                            Level.REFS ) );
+                            Level.REFS, true ) );
 
             ConnectedEntityRef c;
 
@@ -1381,8 +1397,8 @@ public class RelationManagerImpl implements RelationManager {
         Object keyPrefix = key( indexKey, slice.getPropertyName() );
 
         IndexScanner scanner =
-                new IndexBucketScanner( cass, indexBucketLocator, ENTITY_INDEX, applicationId, IndexType.CONNECTION,
-                        keyPrefix, range[0], range[1], slice.isReversed(), pageSize, slice.hasCursor(), slice.getPropertyName() );
+                cass.getIndexScanner( indexBucketLocator, ENTITY_INDEX, applicationId, IndexType.CONNECTION, keyPrefix,
+                        range[0], range[1], slice.isReversed(), pageSize, slice.hasCursor(), slice.getPropertyName() );
 
         return scanner;
     }
@@ -1404,8 +1420,8 @@ public class RelationManagerImpl implements RelationManager {
         Object keyPrefix = key( indexKey, slice.getPropertyName() );
 
         IndexScanner scanner =
-                new IndexBucketScanner( cass, indexBucketLocator, ENTITY_INDEX, applicationId, IndexType.COLLECTION,
-                        keyPrefix, range[0], range[1], slice.isReversed(), pageSize, slice.hasCursor(), collectionName );
+                cass.getIndexScanner( indexBucketLocator, ENTITY_INDEX, applicationId, IndexType.COLLECTION, keyPrefix,
+                        range[0], range[1], slice.isReversed(), pageSize, slice.hasCursor(), collectionName );
 
         return scanner;
     }
@@ -1558,6 +1574,12 @@ public class RelationManagerImpl implements RelationManager {
 
         batchExecute( batch, CassandraService.RETRY_COUNT );
 
+        invalidateMembership( collectionName, itemEntity );
+
+        if ( collection.getLinkedCollection() != null ) {
+            getRelationManager( itemEntity ).invalidateMembership( collection.getLinkedCollection(), headEntity );
+        }
+
         return itemEntity;
     }
 
@@ -1592,6 +1614,10 @@ public class RelationManagerImpl implements RelationManager {
 
         batchExecute( batch, CassandraService.RETRY_COUNT );
 
+        for ( EntityRef owner : owners ) {
+            getRelationManager( owner ).invalidateMembership( collectionName, itemEntity );
+        }
+
         return null;
     }
 
@@ -1643,6 +1669,12 @@ public class RelationManagerImpl implements RelationManager {
             }
 
             batchExecute( batch, CassandraService.RETRY_COUNT );
+
+            invalidateMembership( collectionName, itemEntity );
+
+            if ( collection.getLinkedCollection() != null ) {
+                getRelationManager( itemEntity ).invalidateMembership( collection.getLinkedCollection(), headEntity );
+            }
         }
 
         return itemEntity;
@@ -1939,7 +1971,7 @@ public class RelationManagerImpl implements RelationManager {
             throws Exception {
 
 
-        return getConnectedEntities( headEntity, connectionType, connectedEntityType, resultsLevel );
+        return getConnectedEntities( headEntity, connectionType, connectedEntityType, resultsLevel, false );
     }
 
 
@@ -1950,9 +1982,10 @@ public class RelationManagerImpl implements RelationManager {
      * @param connectionType The type of connection.  If not specified, all connections are returned
      * @param connectedEntityType The connected entity type, if not specified all types are returned
      * @param resultsLevel The results level to return
+     * @param includeTombstoned Whether to return entities that are deleted but not yet purged
      */
     private Results getConnectedEntities( EntityRef sourceEntity, String connectionType, String connectedEntityType,
-                                          Level resultsLevel ) throws Exception {
+                                          Level resultsLevel, boolean includeTombstoned ) throws Exception {
         Query query = new Query();
         query.setResultsLevel( resultsLevel );
 
@@ -1966,6 +1999,7 @@ public class RelationManagerImpl implements RelationManager {
         final ConnectionResultsLoaderFactory factory = new ConnectionResultsLoaderFactory( connectionRef );
 
         QueryProcessor qp = new QueryProcessor( query, null, em, factory );
+        qp.setIncludeTombstoned( includeTombstoned );
         SearchConnectionVisitor visitor = new SearchConnectionVisitor( qp, connectionRef, true );
 
         return qp.getResults( visitor );
@@ -1985,7 +2019,7 @@ public class RelationManagerImpl implements RelationManager {
     @Metered(group = "core", name = "RelationManager_getConnectingEntities")
     public Results getConnectingEntities(String connectionType,
     		String entityType, Level level, int count) throws Exception {
-		return getConnectingEntities(headEntity, connectionType, entityType, level, count );
+		return getConnectingEntities(headEntity, connectionType, entityType, level, count, false );
 	}
 
 
@@ -1996,9 +2030,11 @@ public class RelationManagerImpl implements RelationManager {
      * @param connectionType The type of connection.  If not specified, all connections are returned
      * @param connectedEntityType The connected entity type, if not specified all types are returned
      * @param count result limit
+     * @param includeTombstoned Whether to return entities that are deleted but not yet purged
      */
 	private Results getConnectingEntities(EntityRef targetEntity,
-			String connectionType, String connectedEntityType, Level level, int count) throws Exception {
+			String connectionType, String connectedEntityType, Level level, int count, boolean includeTombstoned)
+			throws Exception {
         Query query = new Query();
         query.setResultsLevel( level );
         query.setLimit(count);
@@ -2008,6 +2044,7 @@ public class RelationManagerImpl implements RelationManager {
         final ConnectionResultsLoaderFactory factory = new ConnectionResultsLoaderFactory( connectionRef );
 
         QueryProcessor qp = new QueryProcessor( query, null, em, factory );
+        qp.setIncludeTombstoned( includeTombstoned );
         SearchConnectionVisitor visitor = new SearchConnectionVisitor( qp, connectionRef, false );
 
         return qp.getResults( visitor );
@@ -2015,7 +2052,8 @@ public class RelationManagerImpl implements RelationManager {
 
 
 	/**
-     * Get all edges that are to the targetEntity
+     * Get all edges that are to the targetEntity, including the edges from entities that are deleted but not yet
+     * purged.  Only used to maintain the indexes, which still hold the entries of those entities
      *
      * @param targetEntity The target entity to search edges in
      * @param connectionType The type of connection.  If not specified, all connections are returned
@@ -2024,7 +2062,7 @@ public class RelationManagerImpl implements RelationManager {
      */
     private Results getConnectingEntities( EntityRef targetEntity, String connectionType, String connectedEntityType,
                                            Level resultsLevel ) throws Exception {
-    	return getConnectingEntities(targetEntity, connectionType, connectedEntityType, resultsLevel, 0);
+    	return getConnectingEntities(targetEntity, connectionType, connectedEntityType, resultsLevel, 0, true);
     }
 
 
@@ -2242,7 +2280,8 @@ public class RelationManagerImpl implements RelationManager {
             queryProcessor.applyCursorAndSort( slice );
 
             GeoIterator itr =
-                    new GeoIterator( new ConnectionGeoSearch( em, indexBucketLocator, cass, connection.getIndexId() ),
+                    new GeoIterator( new ConnectionGeoSearch( em, indexBucketLocator, cass, connection.getIndexId(),
+                            connection.getConnectedEntityType() ),
                             query.getLimit(), slice, node.getPropertyName(),
                             new Point( node.getLattitude(), node.getLongitude() ), node.getDistance() );
 
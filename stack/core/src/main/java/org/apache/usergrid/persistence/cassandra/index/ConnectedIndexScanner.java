@@ -279,4 +279,26 @@ public class ConnectedIndexScanner implements IndexScanner {
     public int getPageSize() {
         return pageSize;
     }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.usergrid.persistence.cassandra.index.IndexScanner#seek(java.lang.Object)
+     */
+    @Override
+    public void seek( Object start ) {
+        //no op, the columns span several connection types so they're never in a single order
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.usergrid.persistence.cassandra.index.IndexScanner#hasMorePages()
+     */
+    @Override
+    public boolean hasMorePages() {
+        return hasMore || lastResults != null;
+    }
 }
@@ -62,13 +62,13 @@ public class IndexBucketScanner implements IndexScanner {
     private Object start;
 
     /** Set to the original value to start scanning from */
-    private Object scanStart;
+    protected final Object scanStart;
 
     /** Iterator for our results from the last page load */
-    private TreeSet<HColumn<ByteBuffer, ByteBuffer>> lastResults;
+    protected TreeSet<HColumn<ByteBuffer, ByteBuffer>> lastResults;
 
     /** True if our last load loaded a full page size. */
-    private boolean hasMore = true;
+    protected boolean hasMore = true;
 
 
 
@@ -103,6 +103,29 @@ public class IndexBucketScanner implements IndexScanner {
     }
 
 
+    /* (non-Javadoc)
+     * @see org.apache.usergrid.persistence.cassandra.index.IndexScanner#seek(java.lang.Object)
+     */
+    @Override
+    public void seek( Object seekStart ) {
+        if ( !hasMore ) {
+            return;
+        }
+
+        start = seekStart;
+        lastResults = null;
+    }
+
+
+    /* (non-Javadoc)
+     * @see org.apache.usergrid.persistence.cassandra.index.IndexScanner#hasMorePages()
+     */
+    @Override
+    public boolean hasMorePages() {
+        return hasMore || lastResults != null;
+    }
+
+
     /**
      * Search the collection index using all the buckets for the given collection. Load the next page. Return false if
      * nothing was loaded, true otherwise
@@ -117,6 +140,24 @@ public class IndexBucketScanner implements IndexScanner {
             return false;
         }
 
+        Page page = loadPage( start );
+
+        hasMore = page.hasMore;
+        start = page.next;
+        lastResults = page.columns;
+
+        return lastResults != null && lastResults.size() > 0;
+    }
+
+
+    /**
+     * Read the page of all buckets that starts at the given column.  Only reads the final fields of the scanner, so it
+     * can be invoked from any thread
+     *
+     * @param pageStart The start of the page, the scan start for the first page
+     */
+    protected Page loadPage( Object pageStart ) throws Exception {
+
         List<String> keys = indexBucketLocator.getBuckets( applicationId, indexType, indexPath );
 
         List<Object> cassKeys = new ArrayList<Object>( keys.size() );
@@ -132,28 +173,26 @@ public class IndexBucketScanner implements IndexScanner {
         //we purposefully use instance equality.  If it's a pointer to the same value, we need to increase by 1
         //since we'll be skipping the first value
 
-        final boolean firstPageSkipFirst = this.skipFirst &&  start == scanStart;
+        final boolean firstPageSkipFirst = this.skipFirst && pageStart == scanStart;
 
         if(firstPageSkipFirst){
             selectSize++;
         }
 
         TreeSet<HColumn<ByteBuffer, ByteBuffer>> resultsTree = IndexMultiBucketSetLoader
-                .load( cass, columnFamily, applicationId, cassKeys, start, finish, selectSize, reversed );
-
-        //remove the first element, it's from a cursor value and we don't want to retain it
+                .load( cass, columnFamily, applicationId, cassKeys, pageStart, finish, selectSize, reversed );
 
+        Page page = new Page();
 
         // we loaded a full page, there might be more
         if ( resultsTree.size() == selectSize ) {
-            hasMore = true;
-
+            page.hasMore = true;
 
             // set the bytebuffer for the next pass
-            start = resultsTree.pollLast().getName();
+            page.next = resultsTree.pollLast().getName();
         }
         else {
-            hasMore = false;
+            page.hasMore = false;
         }
 
         //remove the first element since it needs to be skipped AFTER the size check. Otherwise it will fail
@@ -161,9 +200,9 @@ public class IndexBucketScanner implements IndexScanner {
             resultsTree.pollFirst();
         }
 
-        lastResults = resultsTree;
+        page.columns = resultsTree;
 
-        return lastResults != null && lastResults.size() > 0;
+        return page;
     }
 
 
@@ -237,4 +276,12 @@ public class IndexBucketScanner implements IndexScanner {
     public int getPageSize() {
         return pageSize;
     }
+
+
+    /** The columns of a page and the pointer to the next one */
+    protected static final class Page {
+        protected TreeSet<HColumn<ByteBuffer, ByteBuffer>> columns;
+        protected Object next;
+        protected boolean hasMore;
+    }
 }
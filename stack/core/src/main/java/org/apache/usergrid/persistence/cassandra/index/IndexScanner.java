@@ -37,4 +37,13 @@ public interface IndexScanner
 
     public int getPageSize();
 
+    /**
+     * Restart the scan at the given column, which must be inside the range of the scan.  Used to skip the columns
+     * between the last page and the start, does nothing once the last page has been loaded
+     */
+    public void seek( Object start );
+
+    /** @return false if the last page has been returned.  Never loads a page */
+    public boolean hasMorePages();
+
 }
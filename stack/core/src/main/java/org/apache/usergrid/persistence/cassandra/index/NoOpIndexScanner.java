@@ -92,4 +92,22 @@ public class NoOpIndexScanner implements IndexScanner {
     public int getPageSize() {
         return 0;
     }
+
+
+    /* (non-Javadoc)
+     * @see org.apache.usergrid.persistence.cassandra.index.IndexScanner#seek(java.lang.Object)
+     */
+    @Override
+    public void seek( Object start ) {
+        //no op
+    }
+
+
+    /* (non-Javadoc)
+     * @see org.apache.usergrid.persistence.cassandra.index.IndexScanner#hasMorePages()
+     */
+    @Override
+    public boolean hasMorePages() {
+        return false;
+    }
 }
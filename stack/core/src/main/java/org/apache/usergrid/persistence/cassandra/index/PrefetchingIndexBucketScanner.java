@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cassandra.index;
+
+
+import java.util.LinkedList;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.usergrid.persistence.IndexBucketLocator;
+import org.apache.usergrid.persistence.IndexBucketLocator.IndexType;
+import org.apache.usergrid.persistence.cassandra.ApplicationCF;
+import org.apache.usergrid.persistence.cassandra.CassandraService;
+
+
+/**
+ * Index bucket scanner that reads the following pages of every bucket on a background thread while the caller
+ * processes the current one, so deep paging overlaps the latency of cassandra with processing the results.
+ * <p/>
+ * The first page is read on the calling thread as it always has been, since most queries never ask for a second one.
+ * Once the second page is requested, up to readAhead pages are kept loaded ahead of the caller.  If the executor is
+ * saturated the pages are read on the calling thread.
+ */
+public class PrefetchingIndexBucketScanner extends IndexBucketScanner {
+
+    private final Executor executor;
+    private final int readAhead;
+
+    /** Pages read but not yet returned */
+    private final LinkedList<Page> buffered = new LinkedList<Page>();
+
+    /** Start of the next page to read */
+    private Object readStart;
+
+    /** False once a page that wasn't full has been read */
+    private boolean readMore = true;
+
+    /** True while a reader of the current generation is running */
+    private boolean reading;
+
+    /** Incremented on reset so that a reader of a previous scan discards its pages */
+    private int generation;
+
+    private int pagesReturned;
+
+    private Exception error;
+
+
+    public PrefetchingIndexBucketScanner( CassandraService cass, IndexBucketLocator locator,
+                                          ApplicationCF columnFamily, UUID applicationId, IndexType indexType,
+                                          Object keyPrefix, Object start, Object finish, boolean reversed,
+                                          int pageSize, boolean skipFirst, Executor executor, int readAhead,
+                                          String... indexPath ) {
+        super( cass, locator, columnFamily, applicationId, indexType, keyPrefix, start, finish, reversed, pageSize,
+                skipFirst, indexPath );
+        this.executor = executor;
+        this.readAhead = Math.max( readAhead, 1 );
+        this.readStart = scanStart;
+    }
+
+
+    @Override
+    public synchronized void reset() {
+        super.reset();
+        restart( scanStart );
+    }
+
+
+    @Override
+    public synchronized void seek( Object seekStart ) {
+        if ( !hasMore ) {
+            return;
+        }
+
+        super.seek( seekStart );
+        restart( seekStart );
+    }
+
+
+    /** Drop the buffered pages and read from the given column.  Must be invoked while holding the lock */
+    private void restart( Object from ) {
+        generation++;
+        buffered.clear();
+        readStart = from;
+        readMore = true;
+        reading = false;
+        pagesReturned = 0;
+        error = null;
+    }
+
+
+    @Override
+    public boolean load() throws Exception {
+
+        Page page;
+
+        synchronized ( this ) {
+            // nothing left to load
+            if ( !hasMore ) {
+                return false;
+            }
+
+            //read on this thread when nothing is buffered, there's no reason to read ahead until we're asked for a
+            //second page
+            if ( buffered.isEmpty() && !reading && readMore ) {
+                startReader( 1, false );
+            }
+
+            while ( buffered.isEmpty() && reading && error == null ) {
+                wait();
+            }
+
+            if ( error != null ) {
+                throw error;
+            }
+
+            page = buffered.poll();
+
+            if ( page == null ) {
+                hasMore = false;
+                return false;
+            }
+
+            pagesReturned++;
+        }
+
+        //keep the read ahead full while the caller processes this page
+        if ( page.hasMore && pagesReturned > 1 ) {
+            synchronized ( this ) {
+                if ( !reading && readMore ) {
+                    startReader( readAhead, true );
+                }
+            }
+        }
+
+        hasMore = page.hasMore;
+        lastResults = page.columns;
+
+        return lastResults != null && lastResults.size() > 0;
+    }
+
+
+    /** Start reading until the buffer holds the number of pages.  Must be invoked while holding the lock */
+    private void startReader( int pages, boolean background ) {
+        reading = true;
+
+        Runnable reader = new Reader( generation, pages );
+
+        if ( !background ) {
+            reader.run();
+            return;
+        }
+
+        try {
+            executor.execute( reader );
+        }
+        catch ( RejectedExecutionException ree ) {
+            reader.run();
+        }
+    }
+
+
+    /** Reads pages sequentially, since the start of each page is the last column of the previous one */
+    private class Reader implements Runnable {
+
+        private final int readGeneration;
+        private final int pages;
+
+
+        private Reader( int readGeneration, int pages ) {
+            this.readGeneration = readGeneration;
+            this.pages = pages;
+        }
+
+
+        @Override
+        public void run() {
+            while ( true ) {
+                Object pageStart;
+
+                synchronized ( PrefetchingIndexBucketScanner.this ) {
+                    if ( readGeneration != generation ) {
+                        return;
+                    }
+
+                    if ( !readMore || buffered.size() >= pages ) {
+                        finish( null );
+                        return;
+                    }
+
+                    pageStart = readStart;
+                }
+
+                Page page;
+
+                try {
+                    page = loadPage( pageStart );
+                }
+                catch ( Exception e ) {
+                    synchronized ( PrefetchingIndexBucketScanner.this ) {
+                        if ( readGeneration == generation ) {
+                            finish( e );
+                        }
+                    }
+                    return;
+                }
+
+                synchronized ( PrefetchingIndexBucketScanner.this ) {
+                    if ( readGeneration != generation ) {
+                        return;
+                    }
+
+                    buffered.add( page );
+                    readStart = page.next;
+                    readMore = page.hasMore;
+
+                    PrefetchingIndexBucketScanner.this.notifyAll();
+                }
+            }
+        }
+
+
+        /** Must be invoked while holding the lock */
+        private void finish( Exception e ) {
+            error = e;
+            reading = false;
+            PrefetchingIndexBucketScanner.this.notifyAll();
+        }
+    }
+}
@@ -51,6 +51,27 @@ public class Export extends TypedEntity {
     @EntityProperty
     protected String errorMessage;
 
+    /**
+     * Number of entities written so far
+     */
+    @EntityProperty
+    protected Long exportedEntities;
+
+    /**
+     * Number of collections written so far, out of the total number of collections to export
+     */
+    @EntityProperty
+    protected Long exportedCollections;
+
+    @EntityProperty
+    protected Long totalCollections;
+
+    /**
+     * Entities written per second since the export started
+     */
+    @EntityProperty
+    protected Double throughput;
+
 
     public Export() {
     }
@@ -85,4 +106,44 @@ public class Export extends TypedEntity {
         this.errorMessage = errorMessage;
     }
 
+
+    public Long getExportedEntities() {
+        return exportedEntities;
+    }
+
+
+    public void setExportedEntities( final Long exportedEntities ) {
+        this.exportedEntities = exportedEntities;
+    }
+
+
+    public Long getExportedCollections() {
+        return exportedCollections;
+    }
+
+
+    public void setExportedCollections( final Long exportedCollections ) {
+        this.exportedCollections = exportedCollections;
+    }
+
+
+    public Long getTotalCollections() {
+        return totalCollections;
+    }
+
+
+    public void setTotalCollections( final Long totalCollections ) {
+        this.totalCollections = totalCollections;
+    }
+
+
+    public Double getThroughput() {
+        return throughput;
+    }
+
+
+    public void setThroughput( final Double throughput ) {
+        this.throughput = throughput;
+    }
+
 }
@@ -25,6 +25,7 @@ import java.util.UUID;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.EntityRef;
 import org.apache.usergrid.persistence.IndexBucketLocator;
+import org.apache.usergrid.persistence.Schema;
 import org.apache.usergrid.persistence.cassandra.CassandraService;
 import org.apache.usergrid.persistence.geo.model.Point;
 
@@ -46,7 +47,8 @@ public class CollectionGeoSearch extends GeoIndexSearcher {
 
     public CollectionGeoSearch( EntityManager entityManager, IndexBucketLocator locator, CassandraService cass,
                                 EntityRef headEntity, String collectionName ) {
-        super( entityManager, locator, cass );
+        super( entityManager, locator, cass,
+                Schema.getDefaultSchema().getCollectionGeocellResolutions( headEntity.getType(), collectionName ) );
         this.collectionName = collectionName;
         this.headEntity = headEntity;
     }
@@ -24,6 +24,7 @@ import java.util.UUID;
 
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.IndexBucketLocator;
+import org.apache.usergrid.persistence.Schema;
 import org.apache.usergrid.persistence.cassandra.CassandraService;
 import org.apache.usergrid.persistence.geo.model.Point;
 
@@ -43,9 +44,14 @@ public class ConnectionGeoSearch extends GeoIndexSearcher {
     private final UUID connectionId;
 
 
+    /**
+     * @param connectedEntityType The connected entity type of the searched index, which is indexed at the resolutions
+     * of the type, or null to search the rows of every type, which are indexed at every resolution
+     */
     public ConnectionGeoSearch( EntityManager entityManager, IndexBucketLocator locator, CassandraService cass,
-                                UUID connectionId ) {
-        super( entityManager, locator, cass );
+                                UUID connectionId, String connectedEntityType ) {
+        super( entityManager, locator, cass,
+                Schema.getDefaultSchema().getConnectedEntityGeocellResolutions( connectedEntityType ) );
 
         this.connectionId = connectionId;
     }
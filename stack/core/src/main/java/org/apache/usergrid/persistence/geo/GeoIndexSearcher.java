@@ -21,11 +21,18 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,7 +40,6 @@ import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.IndexBucketLocator;
 import org.apache.usergrid.persistence.IndexBucketLocator.IndexType;
 import org.apache.usergrid.persistence.cassandra.CassandraService;
-import org.apache.usergrid.persistence.cassandra.GeoIndexManager;
 import org.apache.usergrid.persistence.cassandra.index.IndexMultiBucketSetLoader;
 import org.apache.usergrid.persistence.geo.model.Point;
 import org.apache.usergrid.persistence.geo.model.Tuple;
@@ -56,9 +62,6 @@ public abstract class GeoIndexSearcher {
 
     private static final EntityLocationRefDistanceComparator COMP = new EntityLocationRefDistanceComparator();
 
-    // The maximum *practical* geocell resolution.
-    private static final int MAX_GEOCELL_RESOLUTION = GeoIndexManager.MAX_RESOLUTION;
-
     /** Max number of records to read+parse from cass per tile */
     private static final int MAX_FETCH_SIZE = 1000;
 
@@ -66,10 +69,20 @@ public abstract class GeoIndexSearcher {
     protected final IndexBucketLocator locator;
     protected final CassandraService cass;
 
+    /** The indexed geocell resolutions, in ascending order */
+    private final int[] resolutions;
+
     public GeoIndexSearcher( EntityManager entityManager, IndexBucketLocator locator, CassandraService cass ) {
+        this( entityManager, locator, cass, GeocellManager.allResolutions() );
+    }
+
+
+    public GeoIndexSearcher( EntityManager entityManager, IndexBucketLocator locator, CassandraService cass,
+                             int[] resolutions ) {
         this.em = entityManager;
         this.locator = locator;
         this.cass = cass;
+        this.resolutions = resolutions;
     }
 
 
@@ -107,7 +120,7 @@ public abstract class GeoIndexSearcher {
        * Must always be of the same resolution. Must always form a rectangular
        * region. One of these must be equal to the cur_containing_geocell.
        */
-            curContainingGeocell = GeocellUtils.compute( searchPoint, MAX_GEOCELL_RESOLUTION );
+            curContainingGeocell = GeocellUtils.compute( searchPoint, resolutions[resolutions.length - 1] );
             curGeocells.add( curContainingGeocell );
         }
 
@@ -132,6 +145,12 @@ public abstract class GeoIndexSearcher {
         boolean done = false;
         UUID lastReturned = null;
 
+        ExecutorService prefetchExecutor = getPrefetchExecutor();
+
+        // the first page of the cells we may search next, read while the current cells are processed
+        Map<Set<String>, Future<TreeSet<HColumn<ByteBuffer, ByteBuffer>>>> prefetched =
+                new HashMap<Set<String>, Future<TreeSet<HColumn<ByteBuffer, ByteBuffer>>>>();
+
         while ( !curGeocells.isEmpty() && entityLocations.size() < maxResults ) {
             closestPossibleNextResultDist = sortedEdgesDistances.get( 0 ).getSecond();
             if ( maxDistance > 0 && closestPossibleNextResultDist > maxDistance ) {
@@ -142,6 +161,26 @@ public abstract class GeoIndexSearcher {
             curTempUnique.removeAll( searchedCells );
             curGeocellsUnique = new ArrayList<String>( curTempUnique );
 
+            Future<TreeSet<HColumn<ByteBuffer, ByteBuffer>>> firstPage = prefetched.remove( curTempUnique );
+            cancel( prefetched );
+
+            List<Tuple<int[], Double>> curEdgesDistances = GeocellUtils.distanceSortedEdges( curGeocells, searchPoint );
+
+            // which cells come next depends on whether these have results, so read the first page of both choices
+            if ( prefetchExecutor != null && !done && ( maxDistance <= 0
+                    || curEdgesDistances.get( 0 ).getSecond() <= maxDistance ) ) {
+
+                Set<String> nextSearchedCells = new HashSet<String>( searchedCells );
+                nextSearchedCells.addAll( curGeocells );
+
+                for ( boolean noResults : new boolean[] { false, true } ) {
+                    Ring next = nextRing( curGeocells, curContainingGeocell, curEdgesDistances, searchPoint,
+                            noResults );
+                    prefetch( prefetched, prefetchExecutor, next.cells, nextSearchedCells, searchPoint,
+                            propertyName );
+                }
+            }
+
             Set<HColumn<ByteBuffer, ByteBuffer>> queryResults = null;
 
             lastReturned = null;
@@ -150,7 +189,14 @@ public abstract class GeoIndexSearcher {
             // any more results, then we'll have the closest points and can move on
             // do the next tiles
             do {
-                queryResults = doSearch( curGeocellsUnique, lastReturned, searchPoint, propertyName, MAX_FETCH_SIZE );
+                if ( firstPage != null ) {
+                    queryResults = await( firstPage );
+                    firstPage = null;
+                }
+                else {
+                    queryResults =
+                            doSearch( curGeocellsUnique, lastReturned, searchPoint, propertyName, MAX_FETCH_SIZE );
+                }
 
                 if ( logger.isDebugEnabled() ) {
                     logger.debug( "fetch complete for: {}", StringUtils.join( curGeocellsUnique, ", " ) );
@@ -227,92 +273,171 @@ public abstract class GeoIndexSearcher {
                 break;
             }
 
-            sortedEdgesDistances = GeocellUtils.distanceSortedEdges( curGeocells, searchPoint );
+            sortedEdgesDistances = curEdgesDistances;
+
+            Ring next = nextRing( curGeocells, curContainingGeocell, sortedEdgesDistances, searchPoint,
+                    queryResults.size() == 0 );
+
+            curGeocells = next.cells;
+            curContainingGeocell = next.containingCell;
+            done = next.last;
+
+            logger.debug( "{} results found.", entityLocations.size() );
+        }
+
+        cancel( prefetched );
 
-            if ( queryResults.size() == 0 || curGeocells.size() == 4 ) {
+        // now we have our final sets, construct the results
+
+        return new SearchResults( entityLocations, curGeocells );
+    }
+
+
+    /**
+     * Get the cells to search after the given ones.  If the cells had no results, or they're already 4 adjacent cells,
+     * these are the parents of the cells, otherwise the cells grow towards the nearest edges
+     *
+     * @param sortedEdgesDistances the edges of the cells, sorted by their distance to the search point
+     */
+    private Ring nextRing( List<String> curGeocells, String curContainingGeocell,
+                                  List<Tuple<int[], Double>> sortedEdgesDistances, Point searchPoint,
+                                  boolean noResults ) {
+
+        List<String> nextGeocells = new ArrayList<String>( curGeocells );
+
+        if ( noResults || curGeocells.size() == 4 ) {
         /*
          * Either no results (in which case we optimize by not looking at
          * adjacents, go straight to the parent) or we've searched 4 adjacent
          * geocells, in which case we should now search the parents of those
-         * geocells.
+         * geocells.  Resolutions that aren't indexed are skipped.
          */
-                curContainingGeocell =
-                        curContainingGeocell.substring( 0, Math.max( curContainingGeocell.length() - 1, 0 ) );
-                if ( curContainingGeocell.length() == 0 ) {
-                    // final check - top level tiles
-                    curGeocells.clear();
-                    String[] items = "0123456789abcdef".split( "(?!^)" );
-                    Collections.addAll(curGeocells, items);
-                    done = true;
-                }
-                else {
-                    List<String> oldCurGeocells = new ArrayList<String>( curGeocells );
-                    curGeocells.clear();
-                    for ( String cell : oldCurGeocells ) {
-                        if ( cell.length() > 0 ) {
-                            String newCell = cell.substring( 0, cell.length() - 1 );
-                            if ( !curGeocells.contains( newCell ) ) {
-                                curGeocells.add( newCell );
-                            }
+            int parentResolution = parentResolution( curContainingGeocell.length() );
+            curContainingGeocell = curContainingGeocell.substring( 0, parentResolution );
+            nextGeocells.clear();
+            if ( curContainingGeocell.length() == 0 ) {
+                // final check - top level tiles
+                String[] items = "0123456789abcdef".split( "(?!^)" );
+                Collections.addAll( nextGeocells, items );
+                return new Ring( nextGeocells, curContainingGeocell, true );
+            }
+            else {
+                for ( String cell : curGeocells ) {
+                    if ( cell.length() > parentResolution ) {
+                        String newCell = cell.substring( 0, parentResolution );
+                        if ( !nextGeocells.contains( newCell ) ) {
+                            nextGeocells.add( newCell );
                         }
                     }
                 }
             }
-            else if ( curGeocells.size() == 1 ) {
-                // Get adjacent in one direction.
-                // TODO(romannurik): Watch for +/- 90 degree latitude edge case
-                // geocells.
-                for (Tuple<int[], Double> sortedEdgesDistance : sortedEdgesDistances) {
-
-                    int nearestEdge[] = sortedEdgesDistance.getFirst();
-                    String edge = GeocellUtils.adjacent(curGeocells.get(0), nearestEdge);
-
-                    // we're at the edge of the world, search in a different direction
-                    if (edge == null) {
-                        continue;
-                    }
-
-                    curGeocells.add(edge);
-                    break;
+        }
+        else if ( curGeocells.size() == 1 ) {
+            // Get adjacent in one direction.
+            // TODO(romannurik): Watch for +/- 90 degree latitude edge case
+            // geocells.
+            for ( Tuple<int[], Double> sortedEdgesDistance : sortedEdgesDistances ) {
+
+                int nearestEdge[] = sortedEdgesDistance.getFirst();
+                String edge = GeocellUtils.adjacent( curGeocells.get( 0 ), nearestEdge );
+
+                // we're at the edge of the world, search in a different direction
+                if ( edge == null ) {
+                    continue;
                 }
+
+                nextGeocells.add( edge );
+                break;
             }
-            else if ( curGeocells.size() == 2 ) {
-                // Get adjacents in perpendicular direction.
-                int nearestEdge[] =
-                        GeocellUtils.distanceSortedEdges( Arrays.asList( curContainingGeocell ), searchPoint ).get( 0 )
-                                    .getFirst();
-                int[] perpendicularNearestEdge = { 0, 0 };
-                if ( nearestEdge[0] == 0 ) {
-                    // Was vertical, perpendicular is horizontal.
-                    for ( Tuple<int[], Double> edgeDistance : sortedEdgesDistances ) {
-                        if ( edgeDistance.getFirst()[0] != 0 ) {
-                            perpendicularNearestEdge = edgeDistance.getFirst();
-                            break;
-                        }
+        }
+        else if ( curGeocells.size() == 2 ) {
+            // Get adjacents in perpendicular direction.
+            int nearestEdge[] =
+                    GeocellUtils.distanceSortedEdges( Arrays.asList( curContainingGeocell ), searchPoint ).get( 0 )
+                                .getFirst();
+            int[] perpendicularNearestEdge = { 0, 0 };
+            if ( nearestEdge[0] == 0 ) {
+                // Was vertical, perpendicular is horizontal.
+                for ( Tuple<int[], Double> edgeDistance : sortedEdgesDistances ) {
+                    if ( edgeDistance.getFirst()[0] != 0 ) {
+                        perpendicularNearestEdge = edgeDistance.getFirst();
+                        break;
                     }
                 }
-                else {
-                    // Was horizontal, perpendicular is vertical.
-                    for ( Tuple<int[], Double> edgeDistance : sortedEdgesDistances ) {
-                        if ( edgeDistance.getFirst()[0] == 0 ) {
-                            perpendicularNearestEdge = edgeDistance.getFirst();
-                            break;
-                        }
+            }
+            else {
+                // Was horizontal, perpendicular is vertical.
+                for ( Tuple<int[], Double> edgeDistance : sortedEdgesDistances ) {
+                    if ( edgeDistance.getFirst()[0] == 0 ) {
+                        perpendicularNearestEdge = edgeDistance.getFirst();
+                        break;
                     }
                 }
-                List<String> tempCells = new ArrayList<String>();
-                for ( String cell : curGeocells ) {
-                    tempCells.add( GeocellUtils.adjacent( cell, perpendicularNearestEdge ) );
-                }
-                curGeocells.addAll( tempCells );
             }
+            for ( String cell : curGeocells ) {
+                nextGeocells.add( GeocellUtils.adjacent( cell, perpendicularNearestEdge ) );
+            }
+        }
 
-            logger.debug( "{} results found.", entityLocations.size() );
+        return new Ring( nextGeocells, curContainingGeocell, false );
+    }
+
+
+    /** @return the highest indexed resolution below the given one, or 0 if there is none */
+    private int parentResolution( int resolution ) {
+        int parent = 0;
+        for ( int indexed : resolutions ) {
+            if ( indexed < resolution ) {
+                parent = indexed;
+            }
         }
+        return parent;
+    }
 
-        // now we have our final sets, construct the results
 
-        return new SearchResults( entityLocations, curGeocells );
+    /** Start reading the first page of the cells that haven't been searched yet, unless it's already being read */
+    private void prefetch( Map<Set<String>, Future<TreeSet<HColumn<ByteBuffer, ByteBuffer>>>> prefetched,
+                           ExecutorService executor, List<String> cells, Set<String> searchedCells,
+                           final Point searchPoint, final String propertyName ) {
+
+        final Set<String> unique = new HashSet<String>( cells );
+        unique.removeAll( searchedCells );
+
+        if ( unique.isEmpty() || prefetched.containsKey( unique ) ) {
+            return;
+        }
+
+        try {
+            prefetched.put( unique, executor.submit( new Callable<TreeSet<HColumn<ByteBuffer, ByteBuffer>>>() {
+                @Override
+                public TreeSet<HColumn<ByteBuffer, ByteBuffer>> call() throws Exception {
+                    return doSearch( new ArrayList<String>( unique ), null, searchPoint, propertyName,
+                            MAX_FETCH_SIZE );
+                }
+            } ) );
+        }
+        catch ( RejectedExecutionException e ) {
+            // the executor is busy, the cells are read on this thread if we get to them
+            logger.debug( "Unable to prefetch geocells {}", unique );
+        }
+    }
+
+
+    private static void cancel( Map<Set<String>, Future<TreeSet<HColumn<ByteBuffer, ByteBuffer>>>> prefetched ) {
+        for ( Future<TreeSet<HColumn<ByteBuffer, ByteBuffer>>> future : prefetched.values() ) {
+            future.cancel( false );
+        }
+        prefetched.clear();
+    }
+
+
+    private static <T> T await( Future<T> future ) throws Exception {
+        try {
+            return future.get();
+        }
+        catch ( ExecutionException e ) {
+            throw e.getCause() instanceof Exception ? ( Exception ) e.getCause() : e;
+        }
     }
 
 
@@ -347,11 +472,35 @@ public abstract class GeoIndexSearcher {
     }
 
 
+    /** @return the executor that reads the cells the search may visit next, or null to only read them when visited */
+    protected ExecutorService getPrefetchExecutor() {
+        return cass.getGeoPrefetchExecutor();
+    }
+
+
     protected abstract TreeSet<HColumn<ByteBuffer, ByteBuffer>> doSearch( List<String> geoCells, UUID startId,
                                                                           Point searchPoint, String propertyName,
                                                                           int pageSize ) throws Exception;
 
 
+    /** Geocells of the same resolution that form a rectangular region */
+    private static final class Ring {
+
+        private final List<String> cells;
+        private final String containingCell;
+
+        /** True for the top level cells, which cover the whole world */
+        private final boolean last;
+
+
+        private Ring( List<String> cells, String containingCell, boolean last ) {
+            this.cells = cells;
+            this.containingCell = containingCell;
+            this.last = last;
+        }
+    }
+
+
     public static class SearchResults {
 
         public final List<EntityLocationRef> entityLocations;
@@ -18,8 +18,11 @@ package org.apache.usergrid.persistence.geo;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import org.apache.usergrid.persistence.cassandra.GeoIndexManager;
 import org.apache.usergrid.persistence.geo.model.BoundingBox;
@@ -92,6 +95,9 @@ public class GeocellManager {
     // Function used if no custom function is used in bestBboxSearchCells method
     private static final CostFunction DEFAULT_COST_FUNCTION = new DefaultCostFunction();
 
+    // Every resolution from 1 to the max, which is what is indexed unless the schema says otherwise
+    private static final int[] ALL_RESOLUTIONS = resolutions( 1, MAX_GEOCELL_RESOLUTION );
+
     //    private static final Logger logger = GeocellLogger.get();
 
 
@@ -111,6 +117,72 @@ public class GeocellManager {
     }
 
 
+    /**
+     * Returns the list of geocells of the given resolutions that are containing the point
+     *
+     * @param resolutions The resolutions, in ascending order
+     */
+    public static List<String> generateGeoCell( Point point, int[] resolutions ) {
+        List<String> geocells = new ArrayList<String>( resolutions.length );
+        for ( int resolution : resolutions ) {
+            geocells.add( GeocellUtils.compute( point, resolution ) );
+        }
+        return geocells;
+    }
+
+
+    /** @return every resolution from 1 to the max */
+    public static int[] allResolutions() {
+        return ALL_RESOLUTIONS.clone();
+    }
+
+
+    /**
+     * Returns the resolutions to index, sorted and without duplicates.  Resolution 1 is always included, since a search
+     * that finds nothing ends with the top level cells, which cover the whole world
+     *
+     * @throws IllegalArgumentException if a resolution is not between 1 and the max resolution
+     */
+    public static int[] normalizeResolutions( int... resolutions ) {
+        if ( resolutions == null || resolutions.length == 0 ) {
+            return allResolutions();
+        }
+
+        SortedSet<Integer> sorted = new TreeSet<Integer>();
+        sorted.add( 1 );
+
+        for ( int resolution : resolutions ) {
+            if ( resolution < 1 || resolution > MAX_GEOCELL_RESOLUTION ) {
+                throw new IllegalArgumentException(
+                        "Geocell resolution " + resolution + " is not between 1 and " + MAX_GEOCELL_RESOLUTION );
+            }
+            sorted.add( resolution );
+        }
+
+        int[] normalized = new int[sorted.size()];
+        int i = 0;
+        for ( Integer resolution : sorted ) {
+            normalized[i++] = resolution;
+        }
+        return normalized;
+    }
+
+
+    /** @return true if every resolution is indexed */
+    public static boolean isAllResolutions( int[] resolutions ) {
+        return Arrays.equals( ALL_RESOLUTIONS, resolutions );
+    }
+
+
+    private static int[] resolutions( int from, int to ) {
+        int[] resolutions = new int[to - from + 1];
+        for ( int i = 0; i < resolutions.length; i++ ) {
+            resolutions[i] = from + i;
+        }
+        return resolutions;
+    }
+
+
     /**
      * Returns an efficient set of geocells to search in a bounding box query.
      * <p/>
@@ -125,13 +197,27 @@ public class GeocellManager {
      * @return A list of geocell strings that contain the given box.
      */
     public static List<String> bestBboxSearchCells( BoundingBox bbox, CostFunction costFunction ) {
+        return bestBboxSearchCells( bbox, costFunction, ALL_RESOLUTIONS );
+    }
+
+
+    /**
+     * Returns an efficient set of geocells to search in a bounding box query, using only cells of the given
+     * resolutions.
+     *
+     * @param resolutions The indexed resolutions, in ascending order
+     *
+     * @see #bestBboxSearchCells(BoundingBox, CostFunction)
+     */
+    public static List<String> bestBboxSearchCells( BoundingBox bbox, CostFunction costFunction,
+                                                    int[] resolutions ) {
         if ( bbox.getEast() < bbox.getWest() ) {
             BoundingBox bboxAntimeridian1 =
                     new BoundingBox( bbox.getNorth(), bbox.getEast(), bbox.getSouth(), GeocellUtils.MIN_LONGITUDE );
             BoundingBox bboxAntimeridian2 =
                     new BoundingBox( bbox.getNorth(), GeocellUtils.MAX_LONGITUDE, bbox.getSouth(), bbox.getWest() );
-            List<String> antimeridianList = bestBboxSearchCells( bboxAntimeridian1, costFunction );
-            antimeridianList.addAll( bestBboxSearchCells( bboxAntimeridian2, costFunction ) );
+            List<String> antimeridianList = bestBboxSearchCells( bboxAntimeridian1, costFunction, resolutions );
+            antimeridianList.addAll( bestBboxSearchCells( bboxAntimeridian2, costFunction, resolutions ) );
             return antimeridianList;
         }
 
@@ -153,10 +239,22 @@ public class GeocellManager {
             minResolution++;
         }
 
+        // Only indexed resolutions can be searched, so start from the closest
+        // one that has a single cell containing the box.
+        int baseResolution = 0;
+        for ( int resolution : resolutions ) {
+            if ( resolution <= minResolution ) {
+                baseResolution = resolution;
+            }
+        }
+
         // Iteravely calculate all possible sets of cells that wholely contain
         // the requested bounding box.
-        for ( int curResolution = minResolution; curResolution < GeocellManager.MAX_GEOCELL_RESOLUTION + 1;
-              curResolution++ ) {
+        for ( int curResolution : resolutions ) {
+            if ( curResolution < baseResolution ) {
+                continue;
+            }
+
             String curNE = cellNE.substring( 0, curResolution );
             String curSW = cellSW.substring( 0, curResolution );
 
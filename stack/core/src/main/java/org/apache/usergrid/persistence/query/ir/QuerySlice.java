@@ -18,6 +18,7 @@ package org.apache.usergrid.persistence.query.ir;
 
 
 import java.nio.ByteBuffer;
+import java.util.UUID;
 
 import org.apache.usergrid.utils.NumberUtils;
 
@@ -157,6 +158,31 @@ public class QuerySlice {
     }
 
 
+    /**
+     * Return true if the slice only matches a single value.  The index entries of a single value are ordered by entity
+     * id, so the slice returns ids in uuid order when it isn't reversed
+     */
+    public boolean isEquality() {
+        if ( start == null || finish == null || !start.isInclusive() || !finish.isInclusive() ) {
+            return false;
+        }
+
+        return start.getCode() == finish.getCode() && start.getValue() != null && start.getValue()
+                .equals( finish.getValue() );
+    }
+
+
+    /**
+     * Get the range start of the first index entry of the entity with the given id.  Only valid for equality slices
+     *
+     * @param id The entity id to start at
+     */
+    public DynamicComposite getSeekStart( UUID id ) {
+        //the entries of an entity have a timestamp after the id, the prefix sorts before all of them
+        return new DynamicComposite( start.getCode(), start.getValue(), id );
+    }
+
+
     @Override
     public int hashCode() {
         final int prime = 31;
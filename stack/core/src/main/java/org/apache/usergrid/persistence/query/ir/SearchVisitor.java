@@ -182,15 +182,25 @@ public abstract class SearchVisitor implements NodeVisitor {
          */
         if ( orderByNode.hasSecondarySorts() ) {
 
+            //the candidates of a query aren't in any particular order
+            boolean candidatesOrdered = subResults == null;
+
             //only order by with no query, start scanning the first field
             if ( subResults == null ) {
                 QuerySlice firstFieldSlice = new QuerySlice( slice.getPropertyName(), -1 );
+
+                //scan in the direction of the sort, so the order by can stop once the page can't change
+                if ( slice.isReversed() ) {
+                    firstFieldSlice.reverse();
+                }
+
                 subResults =
                         new SliceIterator( slice, secondaryIndexScan( orderByNode, firstFieldSlice ), COLLECTION_PARSER );
             }
 
             orderIterator = new OrderByIterator( slice, orderByNode.getSecondarySorts(), subResults, em,
-                    queryProcessor.getPageSizeHint( orderByNode ) );
+                    queryProcessor.getPageSizeHint( orderByNode ), candidatesOrdered,
+                    OrderByIterator.getLoadBatchSize() );
         }
 
         //we don't have multi field sorting, we can simply do intersection with a single scan range
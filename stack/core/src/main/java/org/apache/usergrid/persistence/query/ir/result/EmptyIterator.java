@@ -25,7 +25,7 @@ import org.apache.usergrid.persistence.cassandra.CursorCache;
 
 
 /** Iterator that never returns results */
-public class EmptyIterator implements ResultIterator {
+public class EmptyIterator implements SeekableResultIterator {
     @Override
     public void reset() {
         //no op
@@ -38,6 +38,24 @@ public class EmptyIterator implements ResultIterator {
     }
 
 
+    @Override
+    public boolean isOrdered() {
+        return true;
+    }
+
+
+    @Override
+    public void seek( UUID id ) {
+        //no op
+    }
+
+
+    @Override
+    public long getEstimatedSize() {
+        return 0;
+    }
+
+
     @Override
     public Iterator<Set<ScanColumn>> iterator() {
         return this;
@@ -17,22 +17,53 @@
 package org.apache.usergrid.persistence.query.ir.result;
 
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.UUID;
 
 import org.apache.usergrid.persistence.cassandra.CursorCache;
+import org.apache.usergrid.utils.UUIDUtils;
 
 import com.google.common.collect.Sets;
 
 
 /**
- * An iterator that unions 1 or more subsets. It makes the assuming that sub iterators iterate from min(uuid) to
- * max(uuid)
+ * An iterator that intersects 1 or more subsets.
+ * <p/>
+ * When every sub iterator returns its ids in uuid order they are merge joined: each one is read once, skipping ahead
+ * to the next candidate id with a seek, and the one with the fewest ids drives the join.  Otherwise every page of the
+ * first iterator is intersected with a full scan of the others.
  *
  * @author tnine
  */
-public class IntersectionIterator extends MultiIterator {
+public class IntersectionIterator extends MultiIterator implements SeekableResultIterator {
+
+    private static final Comparator<JoinCursor> SMALLEST_FIRST = new Comparator<JoinCursor>() {
+        @Override
+        public int compare( JoinCursor o1, JoinCursor o2 ) {
+            long size1 = o1.iterator.getEstimatedSize();
+            long size2 = o2.iterator.getEstimatedSize();
+            return size1 < size2 ? -1 : ( size1 == size2 ? 0 : 1 );
+        }
+    };
+
+    /** True once we've chosen how to join the sub iterators */
+    private boolean started;
+
+    /** The position in each sub iterator when merge joining, the first one drives the join.  Null otherwise */
+    private JoinCursor[] cursors;
+
+    /** True when a sub iterator of the merge join has no ids left */
+    private boolean exhausted;
+
+    /** No id before this one can match */
+    private UUID target;
+
+    /** The last id we matched, it can appear again at the start of the next page of a sub iterator */
+    private UUID lastMatch;
 
 
     /**
@@ -53,6 +84,12 @@ public class IntersectionIterator extends MultiIterator {
         for ( ResultIterator itr : iterators ) {
             itr.reset();
         }
+
+        started = false;
+        cursors = null;
+        exhausted = false;
+        target = null;
+        lastMatch = null;
     }
 
 
@@ -85,12 +122,173 @@ public class IntersectionIterator extends MultiIterator {
             return itr.next();
         }
 
+        if ( !started ) {
+            start();
+        }
+
+        if ( cursors != null ) {
+            return mergeJoin();
+        }
+
         // begin our tree merge of the iterators
 
         return merge();
     }
 
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.usergrid.persistence.query.ir.result.SeekableResultIterator#isOrdered()
+     */
+    @Override
+    public boolean isOrdered() {
+        if ( iterators.isEmpty() ) {
+            return false;
+        }
+
+        for ( ResultIterator itr : iterators ) {
+            if ( !( itr instanceof SeekableResultIterator ) || !( ( SeekableResultIterator ) itr ).isOrdered() ) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.usergrid.persistence.query.ir.result.SeekableResultIterator#seek(java.util.UUID)
+     */
+    @Override
+    public void seek( UUID id ) {
+        if ( !isOrdered() ) {
+            return;
+        }
+
+        if ( iterators.size() == 1 ) {
+            ( ( SeekableResultIterator ) iterators.get( 0 ) ).seek( id );
+            return;
+        }
+
+        if ( target == null || UUIDUtils.compare( id, target ) > 0 ) {
+            target = id;
+        }
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.usergrid.persistence.query.ir.result.SeekableResultIterator#getEstimatedSize()
+     */
+    @Override
+    public long getEstimatedSize() {
+        long size = Long.MAX_VALUE;
+
+        for ( ResultIterator itr : iterators ) {
+            if ( itr instanceof SeekableResultIterator ) {
+                size = Math.min( size, ( ( SeekableResultIterator ) itr ).getEstimatedSize() );
+            }
+        }
+
+        return size;
+    }
+
+
+    /**
+     * Choose how to join the sub iterators.  To merge join them, read the first page of each and order them smallest
+     * first.  The order doesn't change the results, since every sub iterator returns the ids in the same order
+     */
+    private void start() {
+        started = true;
+
+        if ( !isOrdered() ) {
+            return;
+        }
+
+        cursors = new JoinCursor[iterators.size()];
+
+        for ( int i = 0; i < cursors.length; i++ ) {
+            cursors[i] = new JoinCursor( ( SeekableResultIterator ) iterators.get( i ) );
+
+            //nothing can match an empty iterator, don't read the others
+            if ( !cursors[i].load( null, null ) ) {
+                exhausted = true;
+                return;
+            }
+        }
+
+        Arrays.sort( cursors, SMALLEST_FIRST );
+
+        //the first iterator drives the join, so it's the one that builds the cursor
+        for ( int i = 0; i < cursors.length; i++ ) {
+            iterators.set( i, cursors[i].iterator );
+        }
+    }
+
+
+    /**
+     * Advance all sub iterators to the next ids they have in common.  Returns before the first sub iterator loads
+     * another page, since the last id returned must be in its current page to finalize the cursor
+     */
+    private Set<ScanColumn> mergeJoin() {
+        if ( exhausted ) {
+            return null;
+        }
+
+        Set<ScanColumn> results = new LinkedHashSet<ScanColumn>( pageSize );
+
+        JoinCursor root = cursors[0];
+
+        while ( results.size() < pageSize ) {
+
+            if ( !root.position( target, lastMatch ) ) {
+                if ( results.size() > 0 ) {
+                    return results;
+                }
+
+                if ( !root.load( target, lastMatch ) ) {
+                    exhausted = true;
+                    break;
+                }
+
+                continue;
+            }
+
+            UUID candidate = root.current.getUUID();
+
+            boolean matched = true;
+
+            for ( int i = 1; i < cursors.length; i++ ) {
+                JoinCursor child = cursors[i];
+
+                if ( !child.position( candidate, lastMatch ) && !child.load( candidate, lastMatch ) ) {
+                    exhausted = true;
+                    return results.isEmpty() ? null : results;
+                }
+
+                //the child doesn't have the candidate, no id before its current one can match
+                if ( UUIDUtils.compare( child.current.getUUID(), candidate ) > 0 ) {
+                    target = child.current.getUUID();
+                    matched = false;
+                    break;
+                }
+            }
+
+            if ( matched ) {
+                results.add( root.current );
+                lastMatch = candidate;
+                target = candidate;
+            }
+        }
+
+        return results.isEmpty() ? null : results;
+    }
+
+
     private Set<ScanColumn> merge() {
 
         Set<ScanColumn> results = new LinkedHashSet<ScanColumn>();
@@ -151,6 +349,62 @@ public class IntersectionIterator extends MultiIterator {
     }
 
 
+    /** The position of a merge join in a sub iterator */
+    private static final class JoinCursor {
+
+        private final SeekableResultIterator iterator;
+
+        private Iterator<ScanColumn> page;
+
+        private ScanColumn current;
+
+
+        private JoinCursor( SeekableResultIterator iterator ) {
+            this.iterator = iterator;
+        }
+
+
+        /**
+         * Move to the first id of the current page that is >= the target and isn't the last match
+         *
+         * @return false if the page has no such id
+         */
+        private boolean position( UUID target, UUID lastMatch ) {
+            while ( current != null && ( ( target != null && UUIDUtils.compare( current.getUUID(), target ) < 0 )
+                    || current.getUUID().equals( lastMatch ) ) ) {
+                current = page.hasNext() ? page.next() : null;
+            }
+
+            return current != null;
+        }
+
+
+        /**
+         * Load pages until one has an id that is >= the target and isn't the last match
+         *
+         * @return false if the iterator has no such id
+         */
+        private boolean load( UUID target, UUID lastMatch ) {
+            if ( target != null ) {
+                iterator.seek( target );
+            }
+
+            while ( iterator.hasNext() ) {
+                page = iterator.next().iterator();
+                current = page.hasNext() ? page.next() : null;
+
+                if ( position( target, lastMatch ) ) {
+                    return true;
+                }
+            }
+
+            current = null;
+
+            return false;
+        }
+    }
+
+
     /*
      * (non-Javadoc)
      *
@@ -19,15 +19,16 @@ package org.apache.usergrid.persistence.query.ir.result;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.UUID;
 
 import org.slf4j.Logger;
@@ -46,40 +47,82 @@ import static org.apache.usergrid.persistence.cassandra.Serializers.*;
 
 /**
  * 1) Take a result set iterator as the child 2) Iterate only over candidates and create a cursor from the candidates
+ * <p/>
+ * Only the top page of candidates is ever held in memory.  Candidates are loaded with only their sort fields, in
+ * batches of {@link #getLoadBatchSize()} by default, and kept in a bounded heap of the page size.  When the
+ * candidates are known to arrive in the order of the primary sort, the scan stops as soon as no remaining candidate
+ * can enter the page.
  *
  * @author tnine
  */
 
 public class OrderByIterator extends MergeIterator {
 
+    /** The number of candidates to load per getPartialEntities call, unless usergrid.query.sort.batch.size is set */
+    public static final int DEFAULT_LOAD_BATCH_SIZE = 500;
+
+    private static volatile int defaultLoadBatchSize = DEFAULT_LOAD_BATCH_SIZE;
+
     private static final String NAME_UUID = "uuid";
     private static final Logger logger = LoggerFactory.getLogger( OrderByIterator.class );
     private final QuerySlice slice;
     private final ResultIterator candidates;
     private final ComparatorChain subSortCompare;
+    private final Comparator<Entity> primaryCompare;
     private final List<String> secondaryFields;
     private final EntityManager em;
+    private final boolean candidatesOrdered;
+    private final int loadBatchSize;
 
     //our last result from in memory sorting
     private SortedEntitySet entries;
 
+    //true once the scan stopped before the candidates were exhausted
+    private boolean complete;
+
+    private long rowsExamined;
+
+
+    /** Set the number of candidates loaded at a time by sorts that don't give their own */
+    public static void setLoadBatchSize( int size ) {
+        defaultLoadBatchSize = Math.max( size, 1 );
+    }
+
+
+    public static int getLoadBatchSize() {
+        return defaultLoadBatchSize;
+    }
+
 
     /**
      * @param pageSize
      */
     public OrderByIterator( QuerySlice slice, List<Query.SortPredicate> secondary, ResultIterator candidates,
                             EntityManager em, int pageSize ) {
+        this( slice, secondary, candidates, em, pageSize, false, defaultLoadBatchSize );
+    }
+
+
+    /**
+     * @param candidatesOrdered True if the candidates are returned in the order of the primary sort, which allows the
+     * scan to stop early
+     * @param loadBatchSize The number of candidates to load at a time
+     */
+    public OrderByIterator( QuerySlice slice, List<Query.SortPredicate> secondary, ResultIterator candidates,
+                            EntityManager em, int pageSize, boolean candidatesOrdered, int loadBatchSize ) {
         super( pageSize );
         this.slice = slice;
         this.em = em;
         this.candidates = candidates;
+        this.candidatesOrdered = candidatesOrdered;
+        this.loadBatchSize = Math.max( loadBatchSize, 1 );
         this.subSortCompare = new ComparatorChain();
         this.secondaryFields = new ArrayList<String>( 1 + secondary.size() );
 
         //add the sort of the primary column
         this.secondaryFields.add( slice.getPropertyName() );
-        this.subSortCompare
-                .addComparator( new EntityPropertyComparator( slice.getPropertyName(), slice.isReversed() ) );
+        this.primaryCompare = new EntityPropertyComparator( slice.getPropertyName(), slice.isReversed() );
+        this.subSortCompare.addComparator( primaryCompare );
 
         for ( SortPredicate sort : secondary ) {
             this.subSortCompare.addComparator( new EntityPropertyComparator( sort.getPropertyName(),
@@ -97,6 +140,10 @@ public class OrderByIterator extends MergeIterator {
     @Override
     protected Set<ScanColumn> advance() {
 
+        if ( complete ) {
+            return Collections.emptySet();
+        }
+
         ByteBuffer cursor = slice.getCursor();
 
         UUID minEntryId = null;
@@ -105,7 +152,11 @@ public class OrderByIterator extends MergeIterator {
             minEntryId = ue.fromByteBuffer( cursor );
         }
 
-        entries = new SortedEntitySet( subSortCompare, em, secondaryFields, pageSize, minEntryId );
+        entries = new SortedEntitySet( subSortCompare, em, secondaryFields, pageSize, minEntryId, loadBatchSize );
+
+        if ( candidatesOrdered ) {
+            entries.setPrimarySort( slice.getPropertyName(), primaryCompare );
+        }
 
         /**
          *  keep looping through our peek iterator.  We need to inspect each forward page to ensure we have performed a
@@ -114,16 +165,21 @@ public class OrderByIterator extends MergeIterator {
          *  asc, timestamp desc" we must load every entity that has the value "true" before sub sorting,
          *  then drop all values that fall out of the sort.
          */
-        while ( candidates.hasNext() ) {
-
+        while ( !entries.isComplete() && candidates.hasNext() ) {
 
             for ( ScanColumn id : candidates.next() ) {
                 entries.add( id );
+
+                if ( entries.isComplete() ) {
+                    break;
+                }
             }
 
             entries.load();
         }
 
+        complete = entries.isComplete();
+        rowsExamined += entries.getExamined();
 
         return entries.toIds();
     }
@@ -149,29 +205,62 @@ public class OrderByIterator extends MergeIterator {
     }
 
 
-    /** A Sorted set with a max size. When a new entry is added, the max is removed */
-    public static final class SortedEntitySet extends TreeSet<Entity> {
+    /** @return the number of candidates loaded to sort the results so far */
+    public long getRowsExamined() {
+        return rowsExamined;
+    }
+
+
+    /**
+     * A sorted set with a max size, held in a heap with the worst entity at its head.  When a new entry is added to a
+     * full set, the worst is removed
+     */
+    public static final class SortedEntitySet {
 
         private final int maxSize;
+        private final int loadBatchSize;
+        private final PriorityQueue<Entity> heap;
         private final Map<UUID, ScanColumn> cursorVal = new HashMap<UUID, ScanColumn>();
+        private final Map<UUID, ScanColumn> pending = new LinkedHashMap<UUID, ScanColumn>();
         private final EntityManager em;
         private final List<String> fields;
         private final Entity minEntity;
         private final Comparator<Entity> comparator;
+        private Comparator<Entity> primaryComparator;
+        private String primaryField;
+        private boolean complete;
+        private long examined;
 
 
         public SortedEntitySet( Comparator<Entity> comparator, EntityManager em, List<String> fields, int maxSize,
                                 UUID minEntityId ) {
-            super( comparator );
+            this( comparator, em, fields, maxSize, minEntityId, defaultLoadBatchSize );
+        }
+
+
+        public SortedEntitySet( Comparator<Entity> comparator, EntityManager em, List<String> fields, int maxSize,
+                                UUID minEntityId, int loadBatchSize ) {
             this.maxSize = maxSize;
+            this.loadBatchSize = loadBatchSize;
             this.em = em;
             this.fields = fields;
             this.comparator = comparator;
-            this.minEntity = getPartialEntity( minEntityId );
+            this.heap = new PriorityQueue<Entity>( Math.max( maxSize, 1 ) + 1, Collections.reverseOrder( comparator ) );
+            this.minEntity = minEntityId == null ? null : getPartialEntity( minEntityId );
+        }
+
+
+        /**
+         * Set the comparator of the primary sort when the ids are added in the order of that sort.  Once the set is
+         * full and the worst entity is strictly before the last loaded one on the primary sort, none of the ids still
+         * to be added can enter the set and it's complete
+         */
+        public void setPrimarySort( String primaryField, Comparator<Entity> primaryComparator ) {
+            this.primaryField = primaryField;
+            this.primaryComparator = primaryComparator;
         }
 
 
-        @Override
         public boolean add( Entity entity ) {
 
             // don't add this entity.  We get it in our scan range, but it's <= the minimum value that
@@ -180,22 +269,53 @@ public class OrderByIterator extends MergeIterator {
                 return false;
             }
 
-            boolean added = super.add( entity );
+            //the same entity is returned once for every value of a multi valued property
+            if ( cursorVal.containsKey( entity.getUuid() ) ) {
+                return false;
+            }
+
+            if ( heap.size() >= maxSize ) {
+                Entity worst = heap.peek();
 
-            while ( size() > maxSize ) {
-                //remove our last element, we're over size
-                Entity e = this.pollLast();
-                //remove it from the cursors as well
-                cursorVal.remove( e.getUuid() );
+                if ( worst == null || comparator.compare( entity, worst ) >= 0 ) {
+                    return false;
+                }
+
+                //remove our last element, we're over size.  remove it from the cursors as well
+                heap.poll();
+                cursorVal.remove( worst.getUuid() );
             }
 
-            return added;
+            heap.add( entity );
+
+            return true;
         }
 
 
-        /** add the id to be loaded, and the dynamiccomposite column that belongs with it */
+        /** add the id to be loaded, and the dynamiccomposite column that belongs with it.  Loads full batches */
         public void add( ScanColumn col ) {
-            cursorVal.put( col.getUUID(), col );
+            pending.put( col.getUUID(), col );
+
+            if ( pending.size() >= loadBatchSize ) {
+                load();
+            }
+        }
+
+
+        /** @return true if no more ids need to be added */
+        public boolean isComplete() {
+            return complete;
+        }
+
+
+        /** @return the number of ids loaded */
+        public long getExamined() {
+            return examined;
+        }
+
+
+        public int size() {
+            return heap.size();
         }
 
 
@@ -218,30 +338,70 @@ public class OrderByIterator extends MergeIterator {
         }
 
 
+        /** Load the pending ids and add them to the set */
         public void load() {
+            if ( pending.isEmpty() ) {
+                return;
+            }
+
+            Collection<UUID> ids = new ArrayList<UUID>( pending.keySet() );
+
+            List<Entity> loaded;
+
             try {
-                for ( Entity e : em.getPartialEntities( cursorVal.keySet(), fields ) ) {
-                    add( e );
-                }
+                loaded = em.getPartialEntities( ids, fields );
             }
             catch ( Exception e ) {
                 logger.error( "Unable to load partial entities", e );
                 throw new RuntimeException( e );
             }
+
+            examined += ids.size();
+
+            Map<UUID, Entity> byId = new HashMap<UUID, Entity>( loaded.size() );
+
+            for ( Entity e : loaded ) {
+                byId.put( e.getUuid(), e );
+            }
+
+            Entity last = null;
+
+            //add in the order of the scan, so the last entity is the furthest on the primary sort
+            for ( Map.Entry<UUID, ScanColumn> entry : pending.entrySet() ) {
+                Entity e = byId.get( entry.getKey() );
+
+                if ( e == null ) {
+                    continue;
+                }
+
+                last = e;
+
+                if ( add( e ) ) {
+                    cursorVal.put( e.getUuid(), entry.getValue() );
+                }
+            }
+
+            pending.clear();
+
+            //a multi valued property is scanned once per value, so its entity doesn't bound the remaining ones
+            if ( primaryComparator != null && last != null && heap.size() >= maxSize
+                    && !( last.getProperty( primaryField ) instanceof Collection )
+                    && primaryComparator.compare( heap.peek(), last ) < 0 ) {
+                complete = true;
+            }
         }
 
 
         /** Turn our sorted entities into a set of ids */
         public Set<ScanColumn> toIds() {
-            Iterator<Entity> itr = iterator();
-
-            Set<ScanColumn> columns = new LinkedHashSet<ScanColumn>( this.size() );
+            List<Entity> sorted = new ArrayList<Entity>( heap );
 
-            while ( itr.hasNext() ) {
+            Collections.sort( sorted, comparator );
 
-                UUID id = itr.next().getUuid();
+            Set<ScanColumn> columns = new LinkedHashSet<ScanColumn>( sorted.size() );
 
-                columns.add( cursorVal.get( id ) );
+            for ( Entity e : sorted ) {
+                columns.add( cursorVal.get( e.getUuid() ) );
             }
 
             return columns;
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.query.ir.result;
+
+
+import java.util.UUID;
+
+
+/**
+ * A result iterator that can return its ids in uuid order, as defined by {@link org.apache.usergrid.utils.UUIDUtils#compare},
+ * and skip ahead in them.  When all the children of an intersection are ordered it can merge join them instead of
+ * scanning every child once per page of the first one.
+ */
+public interface SeekableResultIterator extends ResultIterator {
+
+    /** @return true if the ids are returned in uuid order.  Seeking is only possible when they are */
+    public boolean isOrdered();
+
+    /**
+     * Skip the ids before the given id if that saves reading them.  This is only a hint, the next page can still
+     * contain ids before it and callers must skip them
+     */
+    public void seek( UUID id );
+
+    /** @return an estimate of the number of ids from what has been read so far, Long.MAX_VALUE if unknown */
+    public long getEstimatedSize();
+}
@@ -30,6 +30,7 @@ import org.apache.usergrid.persistence.cassandra.CursorCache;
 import org.apache.usergrid.persistence.cassandra.index.IndexScanner;
 import org.apache.usergrid.persistence.exceptions.QueryIterationException;
 import org.apache.usergrid.persistence.query.ir.QuerySlice;
+import org.apache.usergrid.utils.UUIDUtils;
 
 import me.prettyprint.hector.api.beans.HColumn;
 
@@ -39,7 +40,7 @@ import me.prettyprint.hector.api.beans.HColumn;
  *
  * @author tnine
  */
-public class SliceIterator implements ResultIterator {
+public class SliceIterator implements SeekableResultIterator {
 
     private static final Logger logger = LoggerFactory.getLogger( SliceIterator.class );
 
@@ -187,6 +188,55 @@ public class SliceIterator implements ResultIterator {
     }
 
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.usergrid.persistence.query.ir.result.SeekableResultIterator#isOrdered()
+     */
+    @Override
+    public boolean isOrdered() {
+        return slice != null && slice.isEquality() && !slice.isReversed();
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.usergrid.persistence.query.ir.result.SeekableResultIterator#seek(java.util.UUID)
+     */
+    @Override
+    public void seek( UUID id ) {
+        //the buffered page will be returned as is, and nothing has been read before the first page.  Seeking before
+        //the first page could move the scan to before its cursor
+        if ( lastResult != null || last == null || !isOrdered() ) {
+            return;
+        }
+
+        //the id is inside the page we've returned, the next page starts after it anyway
+        if ( UUIDUtils.compare( id, last.getUUID() ) <= 0 ) {
+            return;
+        }
+
+        scanner.seek( slice.getSeekStart( id ) );
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.usergrid.persistence.query.ir.result.SeekableResultIterator#getEstimatedSize()
+     */
+    @Override
+    public long getEstimatedSize() {
+        //the slice fit in a single page, we know exactly how many ids it has
+        if ( pagesLoaded == 1 && !scanner.hasMorePages() ) {
+            return cols.size();
+        }
+
+        return Long.MAX_VALUE;
+    }
+
+
     /*
      * (non-Javadoc)
      *
@@ -27,7 +27,7 @@ import org.apache.usergrid.persistence.cassandra.CursorCache;
 
 
 /** Simple iterator that just returns UUIDs that are set into it */
-public class StaticIdIterator implements ResultIterator {
+public class StaticIdIterator implements SeekableResultIterator {
 
     private final Set<ScanColumn> ids;
 
@@ -56,6 +56,24 @@ public class StaticIdIterator implements ResultIterator {
     }
 
 
+    @Override
+    public boolean isOrdered() {
+        return true;
+    }
+
+
+    @Override
+    public void seek( UUID id ) {
+        //no op, there's only one id
+    }
+
+
+    @Override
+    public long getEstimatedSize() {
+        return 1;
+    }
+
+
     @Override
     public Iterator<Set<ScanColumn>> iterator() {
         return this;
@@ -31,7 +31,7 @@ import com.google.common.collect.Sets;
  *
  * @author tnine
  */
-public class SubtractionIterator extends MergeIterator {
+public class SubtractionIterator extends MergeIterator implements SeekableResultIterator {
 
     private ResultIterator keepIterator;
     private ResultIterator subtractIterator;
@@ -100,6 +100,41 @@ public class SubtractionIterator extends MergeIterator {
     }
 
 
+    /* (non-Javadoc)
+     * @see org.apache.usergrid.persistence.query.ir.result.SeekableResultIterator#isOrdered()
+     */
+    @Override
+    public boolean isOrdered() {
+        //we return the keep ids in the order we read them
+        return keepIterator instanceof SeekableResultIterator && ( ( SeekableResultIterator ) keepIterator )
+                .isOrdered();
+    }
+
+
+    /* (non-Javadoc)
+     * @see org.apache.usergrid.persistence.query.ir.result.SeekableResultIterator#seek(java.util.UUID)
+     */
+    @Override
+    public void seek( UUID id ) {
+        if ( isOrdered() ) {
+            ( ( SeekableResultIterator ) keepIterator ).seek( id );
+        }
+    }
+
+
+    /* (non-Javadoc)
+     * @see org.apache.usergrid.persistence.query.ir.result.SeekableResultIterator#getEstimatedSize()
+     */
+    @Override
+    public long getEstimatedSize() {
+        if ( keepIterator instanceof SeekableResultIterator ) {
+            return ( ( SeekableResultIterator ) keepIterator ).getEstimatedSize();
+        }
+
+        return Long.MAX_VALUE;
+    }
+
+
     /* (non-Javadoc)
      * @see org.apache.usergrid.persistence.query.ir.result.ResultIterator#finalizeCursor(org.apache.usergrid.persistence.cassandra
      * .CursorCache)
@@ -37,7 +37,7 @@ import static org.apache.usergrid.persistence.cassandra.Serializers.*;
  *
  * @author tnine
  */
-public class UnionIterator extends MultiIterator {
+public class UnionIterator extends MultiIterator implements SeekableResultIterator {
 
     private static final ScanColumnComparator COMP = new ScanColumnComparator();
 
@@ -117,6 +117,56 @@ public class UnionIterator extends MultiIterator {
     }
 
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.usergrid.persistence.query.ir.result.SeekableResultIterator#isOrdered()
+     */
+    @Override
+    public boolean isOrdered() {
+        //every page is sorted, and starts after the last one
+        return true;
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.usergrid.persistence.query.ir.result.SeekableResultIterator#seek(java.util.UUID)
+     */
+    @Override
+    public void seek( UUID id ) {
+        //no op, every page reads all of our children from the start
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.usergrid.persistence.query.ir.result.SeekableResultIterator#getEstimatedSize()
+     */
+    @Override
+    public long getEstimatedSize() {
+        long size = 0;
+
+        for ( ResultIterator itr : iterators ) {
+            if ( !( itr instanceof SeekableResultIterator ) ) {
+                return Long.MAX_VALUE;
+            }
+
+            long childSize = ( ( SeekableResultIterator ) itr ).getEstimatedSize();
+
+            if ( childSize == Long.MAX_VALUE ) {
+                return Long.MAX_VALUE;
+            }
+
+            size += childSize;
+        }
+
+        return size;
+    }
+
+
     @Override
     public void doReset() {
         //reset sub iterators if we need to
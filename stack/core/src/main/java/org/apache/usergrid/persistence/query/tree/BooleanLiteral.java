@@ -19,6 +19,7 @@ package org.apache.usergrid.persistence.query.tree;
 
 import org.antlr.runtime.ClassicToken;
 import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.Tree;
 
 
 /** @author tnine */
@@ -46,4 +47,10 @@ public class BooleanLiteral extends Literal<Boolean> {
     public Boolean getValue() {
         return value;
     }
+
+
+    @Override
+    public Tree dupNode() {
+        return new BooleanLiteral( token );
+    }
 }
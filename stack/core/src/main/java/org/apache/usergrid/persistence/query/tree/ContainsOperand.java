@@ -18,6 +18,7 @@ package org.apache.usergrid.persistence.query.tree;
 
 
 import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.Tree;
 import org.apache.usergrid.persistence.exceptions.PersistenceException;
 
 
@@ -51,4 +52,10 @@ public class ContainsOperand extends EqualityOperand {
     public ContainsProperty getProperty() {
         return ( ContainsProperty ) this.children.get( 0 );
     }
+
+
+    @Override
+    public Tree dupNode() {
+        return new ContainsOperand( token );
+    }
 }
@@ -19,6 +19,7 @@ package org.apache.usergrid.persistence.query.tree;
 
 import org.antlr.runtime.ClassicToken;
 import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.Tree;
 
 
 /**
@@ -55,4 +56,10 @@ public class ContainsProperty extends Property {
     public ContainsProperty getProperty() {
         return ( ContainsProperty ) this.children.get( 0 );
     }
+
+
+    @Override
+    public Tree dupNode() {
+        return new ContainsProperty( token );
+    }
 }
@@ -19,6 +19,7 @@ package org.apache.usergrid.persistence.query.tree;
 
 import org.antlr.runtime.ClassicToken;
 import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.Tree;
 
 
 /** @author tnine */
@@ -55,4 +56,10 @@ public class FloatLiteral extends Literal<Float> implements NumericLiteral {
     public float getFloatValue() {
         return value;
     }
+
+
+    @Override
+    public Tree dupNode() {
+        return new FloatLiteral( token );
+    }
 }
@@ -19,6 +19,7 @@ package org.apache.usergrid.persistence.query.tree;
 
 import org.antlr.runtime.CommonToken;
 import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.Tree;
 import org.apache.usergrid.persistence.exceptions.NoIndexException;
 
 
@@ -52,4 +53,10 @@ public class LessThanEqual extends EqualityOperand {
     public void visit( QueryVisitor visitor ) throws NoIndexException {
         visitor.visit( this );
     }
+
+
+    @Override
+    public Tree dupNode() {
+        return new LessThanEqual( token );
+    }
 }
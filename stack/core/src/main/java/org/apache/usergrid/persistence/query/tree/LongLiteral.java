@@ -19,6 +19,7 @@ package org.apache.usergrid.persistence.query.tree;
 
 import org.antlr.runtime.ClassicToken;
 import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.Tree;
 
 
 /** @author tnine */
@@ -62,4 +63,10 @@ public class LongLiteral extends Literal<Long> implements NumericLiteral {
     public float getFloatValue() {
         return value;
     }
+
+
+    @Override
+    public Tree dupNode() {
+        return new LongLiteral( token );
+    }
 }
@@ -18,6 +18,7 @@ package org.apache.usergrid.persistence.query.tree;
 
 
 import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.Tree;
 import org.apache.usergrid.persistence.exceptions.PersistenceException;
 
 
@@ -43,4 +44,10 @@ public class NotOperand extends Operand {
     public void visit( QueryVisitor visitor ) throws PersistenceException {
         visitor.visit( this );
     }
+
+
+    @Override
+    public Tree dupNode() {
+        return new NotOperand( token );
+    }
 }
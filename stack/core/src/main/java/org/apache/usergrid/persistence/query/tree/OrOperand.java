@@ -19,6 +19,7 @@ package org.apache.usergrid.persistence.query.tree;
 
 import org.antlr.runtime.CommonToken;
 import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.Tree;
 import org.apache.usergrid.persistence.exceptions.PersistenceException;
 
 
@@ -51,4 +52,10 @@ public class OrOperand extends BooleanOperand {
     public void visit( QueryVisitor visitor ) throws PersistenceException {
         visitor.visit( this );
     }
+
+
+    @Override
+    public Tree dupNode() {
+        return new OrOperand( token );
+    }
 }
@@ -19,6 +19,7 @@ package org.apache.usergrid.persistence.query.tree;
 
 import org.antlr.runtime.ClassicToken;
 import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.Tree;
 
 
 /**
@@ -60,4 +61,10 @@ public class Property extends Literal<String> {
     public String getIndexedValue() {
         return this.property;
     }
+
+
+    @Override
+    public Tree dupNode() {
+        return new Property( token );
+    }
 }
@@ -19,6 +19,7 @@ package org.apache.usergrid.persistence.query.tree;
 
 import org.antlr.runtime.ClassicToken;
 import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.Tree;
 
 import static org.apache.commons.lang.StringUtils.removeEnd;
 
@@ -48,6 +49,13 @@ public class StringLiteral extends Literal<String> {
     }
 
 
+    private StringLiteral( StringLiteral literal ) {
+        super( literal.token );
+        this.value = literal.value;
+        this.finishValue = literal.finishValue;
+    }
+
+
     /** Parse the value and set the optional end value */
     private void parseValue( String value ) {
 
@@ -80,4 +88,10 @@ public class StringLiteral extends Literal<String> {
     public String getValue() {
         return this.value;
     }
+
+
+    @Override
+    public Tree dupNode() {
+        return new StringLiteral( this );
+    }
 }
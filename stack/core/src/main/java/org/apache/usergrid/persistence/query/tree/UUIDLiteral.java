@@ -21,6 +21,7 @@ import java.util.UUID;
 
 import org.antlr.runtime.ClassicToken;
 import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.Tree;
 
 
 /** @author tnine */
@@ -47,4 +48,10 @@ public class UUIDLiteral extends Literal<UUID> {
     public UUID getValue() {
         return this.value;
     }
+
+
+    @Override
+    public Tree dupNode() {
+        return new UUIDLiteral( token );
+    }
 }
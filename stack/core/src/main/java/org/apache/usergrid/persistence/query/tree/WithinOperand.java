@@ -18,6 +18,7 @@ package org.apache.usergrid.persistence.query.tree;
 
 
 import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.Tree;
 
 
 /** @author tnine */
@@ -109,4 +110,10 @@ public class WithinOperand extends Operand {
     public NumericLiteral getLongitude() {
         return ( NumericLiteral ) this.children.get( 3 );
     }
+
+
+    @Override
+    public Tree dupNode() {
+        return new WithinOperand( token );
+    }
 }
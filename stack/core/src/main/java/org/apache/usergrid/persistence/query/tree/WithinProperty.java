@@ -19,6 +19,7 @@ package org.apache.usergrid.persistence.query.tree;
 
 import org.antlr.runtime.ClassicToken;
 import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.Tree;
 
 
 /**
@@ -52,4 +53,10 @@ public class WithinProperty extends Property {
     public WithinProperty getProperty() {
         return ( WithinProperty ) this.children.get( 0 );
     }
+
+
+    @Override
+    public Tree dupNode() {
+        return new WithinProperty( token );
+    }
 }
@@ -24,6 +24,7 @@ import java.util.TreeSet;
 
 import org.apache.usergrid.persistence.Schema;
 import org.apache.usergrid.persistence.annotations.EntityCollection;
+import org.apache.usergrid.persistence.geo.GeocellManager;
 
 
 public class CollectionInfo {
@@ -40,6 +41,7 @@ public class CollectionInfo {
     private boolean reversed;
     private boolean includedInExport = true;
     private String sort;
+    private int[] geocellResolutions = GeocellManager.allResolutions();
 
 
     public CollectionInfo() {
@@ -56,6 +58,7 @@ public class CollectionInfo {
         setReversed( collectionAnnotation.reversed() );
         setIncludedInExport( collectionAnnotation.includedInExport() );
         setSort( collectionAnnotation.sort() );
+        setGeocellResolutions( collectionAnnotation.geocellResolutions() );
     }
 
 
@@ -197,6 +200,17 @@ public class CollectionInfo {
     }
 
 
+    /** @return the geocell resolutions indexed for locations of the collection, in ascending order */
+    public int[] getGeocellResolutions() {
+        return geocellResolutions;
+    }
+
+
+    public void setGeocellResolutions( int[] geocellResolutions ) {
+        this.geocellResolutions = GeocellManager.normalizeResolutions( geocellResolutions );
+    }
+
+
     @Override
     public String toString() {
         return "CollectionInfo [name=" + name + ", indexingDynamicDictionaries=" + indexingDynamicDictionaries
@@ -21,11 +21,9 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
 
-import com.fasterxml.uuid.EthernetAddress;
 import com.fasterxml.uuid.UUIDComparator;
 
 import static com.fasterxml.uuid.impl.UUIDUtil.BYTE_OFFSET_CLOCK_HI;
@@ -55,65 +53,85 @@ public class UUIDUtils {
     }
 
 
-    private static ReentrantLock tsLock = new ReentrantLock( true );
-
     public static final UUID MIN_TIME_UUID = UUID.fromString( "00000000-0000-1000-8000-000000000000" );
 
     public static final UUID MAX_TIME_UUID = UUID.fromString( "ffffffff-ffff-1fff-bfff-ffffffffffff" );
 
     public static final UUID ZERO_UUID = new UUID( 0, 0 );
 
-    private static long timestampMillisNow = System.currentTimeMillis();
+    /**
+     * The last timestamp issued by {@link #newTimeUUID()}, packed as the millisecond * 1000 + the microsecond within
+     * that millisecond.  Every issued value is strictly greater than the previous one
+     */
+    private static final AtomicLong lastIssuedMicros = new AtomicLong( 0 );
 
-    private static AtomicInteger currentMicrosPoint = new AtomicInteger( 0 );
-    private static AtomicInteger customMicrosPointer = new AtomicInteger( 0 );
+    private static final AtomicInteger customMicrosPointer = new AtomicInteger( 0 );
 
 
     /**
      * Return the "next" UUID in micro second resolution. <b>WARNING</b>: this is designed to return the next unique
-     * timestamped UUID for this JVM. Depending on velocity of the call, this method may block internally to insure that
+     * timestamped UUID for this JVM. Depending on velocity of the call, this method may spin internally to insure that
      * "now" is kept in sync with the UUIDs being generated by this call.
      * <p/>
-     * In other words, we will intentionally burn CPU insuring that this method is not executed more than 10k -1 times
-     * per millisecond and guarantee that those microseconds held within are sequential.
+     * In other words, we will intentionally burn CPU insuring that this method is not executed more than 1k times per
+     * millisecond and guarantee that those microseconds held within are sequential.
      * <p/>
      * If we did not do this, you would get <b>timestamp collision</b> even though the UUIDs will technically be
      * 'unique.'
+     * <p/>
+     * No lock is taken, callers race with a CAS on the last issued timestamp so concurrent callers never serialize
+     * behind each other or sleep while holding a monitor.
      */
     public static java.util.UUID newTimeUUID() {
-        // get & inc counter, but roll on 1k (because we divide by 10 on retrieval)
-        // if count + currentMicro > 1k, block and roll
-        tsLock.lock();
-        long ts = System.currentTimeMillis();
-        if ( ts > timestampMillisNow ) {
-            timestampMillisNow = ts;
-            currentMicrosPoint.set( 0 );
-        }
-        int pointer = currentMicrosPoint.getAndIncrement();
-        try {
-            if ( pointer > 990 ) {
-                TimeUnit.MILLISECONDS.sleep( 1L );
+        while ( true ) {
+            long nowMicros = System.currentTimeMillis() * 1000;
+            long last = lastIssuedMicros.get();
+            long next = last >= nowMicros ? last + 1 : nowMicros;
+
+            // every microsecond of this millisecond has been issued, wait for the clock to catch up
+            if ( next - nowMicros >= 1000 ) {
+                Thread.yield();
+                continue;
+            }
+
+            if ( lastIssuedMicros.compareAndSet( last, next ) ) {
+                return newTimeUUID( next / 1000, MICROS[( int ) ( next % 1000 )] );
             }
         }
-        catch ( Exception ex ) {
-            ex.printStackTrace();
-        }
-        finally {
-            tsLock.unlock();
-        }
-        return newTimeUUID( ts, MICROS[pointer] );
     }
 
 
     private static final long KCLOCK_OFFSET = 0x01b21dd213814000L;
     private static final long KCLOCK_MULTIPLIER_L = 10000L;
 
-    private static final Random CLOCK_SEQ_RANDOM = new Random();
+    /** Per thread random source so uuid generation does not contend on a shared seed */
+    private static final ThreadLocal<Random> RANDOM = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
 
 
     // 14 bits of randomness
     private static int getRandomClockSequence() {
-        return CLOCK_SEQ_RANDOM.nextInt() & 0x3FFF;
+        return RANDOM.get().nextInt() & 0x3FFF;
+    }
+
+
+    // 47 bits of randomness, with the multicast bit set so it never collides with a real mac address
+    private static void setRandomNode( byte[] uuidBytes ) {
+        Random random = RANDOM.get();
+
+        int hi = random.nextInt();
+        int lo = random.nextInt();
+
+        uuidBytes[10] = ( byte ) ( ( hi >>> 8 ) | 0x01 );
+        uuidBytes[11] = ( byte ) hi;
+        uuidBytes[12] = ( byte ) ( lo >>> 24 );
+        uuidBytes[13] = ( byte ) ( lo >>> 16 );
+        uuidBytes[14] = ( byte ) ( lo >>> 8 );
+        uuidBytes[15] = ( byte ) lo;
     }
 
 
@@ -180,9 +198,7 @@ public class UUIDUtils {
         }
 
         byte[] uuidBytes = new byte[16];
-        // 47 bits of randomness
-        EthernetAddress eth = EthernetAddress.constructMulticastAddress();
-        eth.toByteArray( uuidBytes, 10 );
+        setRandomNode( uuidBytes );
         setTimestamp( ts, uuidBytes, getRandomClockSequence(), timeoffset );
 
         return uuid( uuidBytes );
@@ -195,16 +211,7 @@ public class UUIDUtils {
      * with the same timestamp, you will have non-unique temporal values stored in your UUID.
      */
     public static UUID newTimeUUID( long ts ) {
-        tsLock.lock();
-        int pointer = customMicrosPointer.getAndIncrement();
-        try {
-            if ( pointer > 990 ) {
-                customMicrosPointer.set( 0 );
-            }
-        }
-        finally {
-            tsLock.unlock();
-        }
+        int pointer = ( customMicrosPointer.getAndIncrement() & Integer.MAX_VALUE ) % MICROS.length;
         return newTimeUUID( ts, MICROS[pointer] );
     }
 
@@ -33,6 +33,7 @@ import org.apache.usergrid.persistence.GeoIT;
 import org.apache.usergrid.persistence.IndexIT;
 import org.apache.usergrid.persistence.PathQueryIT;
 import org.apache.usergrid.persistence.PermissionsIT;
+import org.apache.usergrid.persistence.cassandra.EntityDeleteIT;
 import org.apache.usergrid.persistence.cassandra.EntityManagerFactoryImplIT;
 import org.apache.usergrid.system.UsergridSystemMonitorIT;
 
@@ -42,7 +43,7 @@ import org.apache.usergrid.system.UsergridSystemMonitorIT;
         //        HectorLockManagerIT.class,
         UsergridSystemMonitorIT.class, CollectionIT.class, CounterIT.class, EntityConnectionsIT.class,
         EntityDictionaryIT.class, EntityManagerIT.class, GeoIT.class, IndexIT.class, MessagesIT.class,
-        PermissionsIT.class, PathQueryIT.class, EntityManagerFactoryImplIT.class
+        PermissionsIT.class, PathQueryIT.class, EntityManagerFactoryImplIT.class, EntityDeleteIT.class
 })
 @Concurrent()
 public class ConcurrentCoreITSuite {
@@ -33,6 +33,7 @@ import org.apache.usergrid.persistence.GeoIT;
 import org.apache.usergrid.persistence.IndexIT;
 import org.apache.usergrid.persistence.PathQueryIT;
 import org.apache.usergrid.persistence.PermissionsIT;
+import org.apache.usergrid.persistence.cassandra.EntityDeleteIT;
 import org.apache.usergrid.persistence.cassandra.EntityManagerFactoryImplIT;
 import org.apache.usergrid.system.UsergridSystemMonitorIT;
 
@@ -41,7 +42,8 @@ import org.apache.usergrid.system.UsergridSystemMonitorIT;
 @Suite.SuiteClasses({
         HectorLockManagerIT.class, UsergridSystemMonitorIT.class, CollectionIT.class, CounterIT.class,
         EntityConnectionsIT.class, EntityDictionaryIT.class, EntityManagerIT.class, GeoIT.class, IndexIT.class,
-        MessagesIT.class, PermissionsIT.class, PathQueryIT.class, EntityManagerFactoryImplIT.class
+        MessagesIT.class, PermissionsIT.class, PathQueryIT.class, EntityManagerFactoryImplIT.class,
+        EntityDeleteIT.class
 })
 @Concurrent()
 public class CoreITSuite {
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.batch.service;
+
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.apache.usergrid.batch.Job;
+import org.apache.usergrid.batch.JobExecution;
+import org.apache.usergrid.batch.JobFactory;
+import org.apache.usergrid.batch.JobNotFoundException;
+import org.apache.usergrid.batch.repository.JobAccessor;
+import org.apache.usergrid.batch.repository.JobDescriptor;
+import org.apache.usergrid.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.entities.JobData;
+import org.apache.usergrid.persistence.entities.JobStat;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class JobSchedulerServiceTest {
+
+    @Test
+    public void wakesUpForJobDueNow() throws Exception {
+        StubAccessor accessor = new StubAccessor();
+        StubMetricsFactory metrics = new StubMetricsFactory();
+        CountDownLatch ran = new CountDownLatch( 1 );
+
+        JobSchedulerService scheduler = newScheduler( accessor, metrics, ran, 2 );
+
+        scheduler.startAndWait();
+
+        try {
+            // wait for the first poll
+            for ( int i = 0; i < 50 && accessor.requested.isEmpty(); i++ ) {
+                Thread.sleep( 20 );
+            }
+
+            accessor.schedule( System.currentTimeMillis() );
+
+            // the interval is a minute, the job must run well before that
+            assertTrue( ran.await( 5, TimeUnit.SECONDS ) );
+
+            assertEquals( 1, metrics.registry.histogram( name( "queue_lag" ) ).getCount() );
+            assertTrue( waitForCount( metrics.registry.timer( name( "dispatch_latency" ) ), 1 ) );
+        }
+        finally {
+            scheduler.stopAndWait();
+        }
+    }
+
+
+    @Test
+    public void readsNoMoreJobsThanWorkers() throws Exception {
+        StubAccessor accessor = new StubAccessor();
+        CountDownLatch ran = new CountDownLatch( 5 );
+
+        for ( int i = 0; i < 5; i++ ) {
+            accessor.schedule( System.currentTimeMillis() );
+        }
+
+        JobSchedulerService scheduler = newScheduler( accessor, new StubMetricsFactory(), ran, 2 );
+
+        scheduler.startAndWait();
+
+        try {
+            assertTrue( ran.await( 5, TimeUnit.SECONDS ) );
+
+            assertEquals( 2, ( int ) accessor.requested.get( 0 ) );
+
+            for ( int size : accessor.requested ) {
+                assertTrue( "Asked for " + size + " jobs with 2 workers", size > 0 && size <= 2 );
+            }
+        }
+        finally {
+            scheduler.stopAndWait();
+        }
+    }
+
+
+    private JobSchedulerService newScheduler( StubAccessor accessor, MetricsFactory metrics,
+                                              final CountDownLatch ran, int workers ) {
+        JobSchedulerService scheduler = new JobSchedulerService();
+        scheduler.setJobAccessor( accessor );
+        scheduler.setMetricsFactory( metrics );
+        scheduler.setWorkerSize( workers );
+        scheduler.setInterval( 60000 );
+        scheduler.setJobFactory( new JobFactory() {
+            @Override
+            public Job jobsFrom( JobDescriptor descriptor ) throws JobNotFoundException {
+                return new Job() {
+                    @Override
+                    public void execute( JobExecution execution ) throws Exception {
+                        Thread.sleep( 50 );
+                        ran.countDown();
+                    }
+
+
+                    @Override
+                    public void dead( JobExecution execution ) throws Exception {
+                    }
+                };
+            }
+        } );
+
+        return scheduler;
+    }
+
+
+    private static String name( String metric ) {
+        return MetricRegistry.name( JobSchedulerService.class, metric );
+    }
+
+
+    private static boolean waitForCount( Timer timer, long count ) throws InterruptedException {
+        for ( int i = 0; i < 50 && timer.getCount() < count; i++ ) {
+            Thread.sleep( 20 );
+        }
+
+        return timer.getCount() >= count;
+    }
+
+
+    /** Hands out the scheduled jobs that are due, like the job queue does */
+    private static class StubAccessor implements JobAccessor {
+
+        private final List<JobDescriptor> pending = new ArrayList<JobDescriptor>();
+        private final List<Integer> requested = new CopyOnWriteArrayList<Integer>();
+        private volatile JobScheduleListener listener;
+
+
+        void schedule( long fireTime ) {
+            JobData data = new JobData();
+            data.setUuid( UUIDUtils.newTimeUUID() );
+
+            synchronized ( pending ) {
+                pending.add( new JobDescriptor( "stubJob", UUIDUtils.newTimeUUID(), UUIDUtils.newTimeUUID(), data,
+                        new JobStat( "stubJob", data.getUuid() ), null, "/jobs", fireTime ) );
+            }
+
+            JobScheduleListener current = listener;
+
+            if ( current != null ) {
+                current.onScheduled( fireTime );
+            }
+        }
+
+
+        @Override
+        public List<JobDescriptor> getJobs( int size ) {
+            requested.add( size );
+
+            List<JobDescriptor> due = new ArrayList<JobDescriptor>();
+            long now = System.currentTimeMillis();
+
+            synchronized ( pending ) {
+                for ( Iterator<JobDescriptor> it = pending.iterator(); it.hasNext() && due.size() < size; ) {
+                    JobDescriptor descriptor = it.next();
+
+                    if ( descriptor.getFireTime() <= now ) {
+                        due.add( descriptor );
+                        it.remove();
+                    }
+                }
+            }
+
+            return due;
+        }
+
+
+        @Override
+        public void save( JobExecution execution ) {
+        }
+
+
+        @Override
+        public void delayRetry( JobExecution execution, long delay ) {
+        }
+
+
+        @Override
+        public void setScheduleListener( JobScheduleListener listener ) {
+            this.listener = listener;
+        }
+    }
+
+
+    /** Metrics kept in a local registry, without the reporters */
+    private static class StubMetricsFactory extends MetricsFactory {
+
+        private final MetricRegistry registry = new MetricRegistry();
+
+
+        @Override
+        public MetricRegistry getRegistry() {
+            return registry;
+        }
+
+
+        @Override
+        public Timer getTimer( Class<?> klass, String name ) {
+            return registry.timer( MetricRegistry.name( klass, name ) );
+        }
+
+
+        @Override
+        public Histogram getHistogram( Class<?> klass, String name ) {
+            return registry.histogram( MetricRegistry.name( klass, name ) );
+        }
+
+
+        @Override
+        public Counter getCounter( Class<?> klass, String name ) {
+            return registry.counter( MetricRegistry.name( klass, name ) );
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.batch.service;
+
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.apache.usergrid.cassandra.Concurrent;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+@Concurrent()
+public class JobShardsTest {
+
+    @Test
+    public void singleShardIsJobQueue() {
+        JobShards shards = new JobShards( "/jobs", 1, null );
+
+        assertEquals( 0, shards.getShard( UUIDUtils.newTimeUUID() ) );
+        assertEquals( "/jobs", shards.getQueuePath( 0 ) );
+        assertEquals( Arrays.asList( 0 ), shards.getPollOrder() );
+    }
+
+
+    @Test
+    public void jobsSpreadOverShards() {
+        JobShards shards = new JobShards( "/jobs", 4, "" );
+
+        Set<Integer> used = new HashSet<Integer>();
+
+        for ( int i = 0; i < 1000; i++ ) {
+            UUID id = UUIDUtils.newTimeUUID();
+            int shard = shards.getShard( id );
+
+            assertTrue( shard >= 0 && shard < 4 );
+            assertEquals( shard, shards.getShard( id ) );
+            used.add( shard );
+        }
+
+        assertEquals( 4, used.size() );
+        assertEquals( "/jobs", shards.getQueuePath( 0 ) );
+        assertEquals( "/jobs/3", shards.getQueuePath( 3 ) );
+    }
+
+
+    @Test
+    public void pollsOwnedShardsInTurn() {
+        JobShards shards = new JobShards( "/jobs", 8, "1, 5,6" );
+
+        assertArrayEquals( new int[] { 1, 5, 6 }, shards.getOwned() );
+
+        Set<Integer> first = new HashSet<Integer>();
+
+        for ( int i = 0; i < 3; i++ ) {
+            List<Integer> order = shards.getPollOrder();
+
+            assertEquals( new HashSet<Integer>( Arrays.asList( 1, 5, 6 ) ), new HashSet<Integer>( order ) );
+            first.add( order.get( 0 ) );
+        }
+
+        // every owned shard gets to be polled first
+        assertEquals( 3, first.size() );
+    }
+
+
+    @Test( expected = IllegalArgumentException.class )
+    public void unknownOwnedShard() {
+        new JobShards( "/jobs", 2, "2" );
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.count;
+
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.apache.usergrid.count.common.Count;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class CoalescingBatcherTest {
+
+    @Test
+    public void coalescesSameCounter() {
+        StubSubmitter submitter = new StubSubmitter();
+
+        CoalescingBatcher batcher = new CoalescingBatcher();
+        batcher.setBatchSubmitter( submitter );
+        batcher.setBatchSize( 100 );
+
+        for ( int i = 0; i < 10; i++ ) {
+            batcher.add( new Count( "Counter", "k1", "c1", 1 ) );
+        }
+        batcher.add( new Count( "Counter", "k1", "c2", 5 ) );
+
+        assertEquals( 2, batcher.getPendingCount() );
+        assertEquals( 0, batcher.getBatchSubmissionCount() );
+
+        batcher.flush();
+
+        assertEquals( 0, batcher.getPendingCount() );
+        assertEquals( 1, batcher.getBatchSubmissionCount() );
+        assertEquals( 11, batcher.getOpCount() );
+        assertEquals( 2, submitter.counted.get() );
+        assertEquals( 10L, submitter.total( "c1" ) );
+        assertEquals( 5L, submitter.total( "c2" ) );
+        assertEquals( 5.5d, batcher.getCoalesceRatio(), 0.001 );
+    }
+
+
+    @Test
+    public void flushesOnBatchSize() throws Exception {
+        StubSubmitter submitter = new StubSubmitter();
+
+        CoalescingBatcher batcher = new CoalescingBatcher();
+        batcher.setBatchSubmitter( submitter );
+        batcher.setBatchSize( 4 );
+
+        for ( int i = 0; i < 4; i++ ) {
+            batcher.add( new Count( "Counter", "k1", "c" + i, 1 ) );
+        }
+
+        //the flush happens on the flush thread, never on the caller
+        waitForSubmissions( batcher, 1 );
+
+        assertEquals( 4, submitter.counted.get() );
+        batcher.shutdown();
+    }
+
+
+    @Test
+    public void flushesOnInterval() throws Exception {
+        StubSubmitter submitter = new StubSubmitter();
+
+        CoalescingBatcher batcher = new CoalescingBatcher();
+        batcher.setBatchSubmitter( submitter );
+        batcher.setBatchSize( 1000 );
+        batcher.setFlushInterval( 1 );
+        batcher.init();
+
+        batcher.add( new Count( "Counter", "k1", "quiet", 1 ) );
+
+        waitForSubmissions( batcher, 1 );
+
+        assertEquals( 1L, submitter.total( "quiet" ) );
+        batcher.shutdown();
+    }
+
+
+    @Test
+    public void noIncrementsLost() throws Exception {
+        final StubSubmitter submitter = new StubSubmitter();
+
+        final CoalescingBatcher batcher = new CoalescingBatcher();
+        batcher.setBatchSubmitter( submitter );
+        batcher.setBatchSize( 5 );
+
+        ExecutorService exec = Executors.newFixedThreadPool( 8 );
+        final CountDownLatch start = new CountDownLatch( 1 );
+
+        List<Future<Boolean>> calls = new ArrayList<Future<Boolean>>();
+
+        for ( int x = 0; x < 8; x++ ) {
+            calls.add( exec.submit( new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    start.await();
+                    for ( int y = 0; y < 10000; y++ ) {
+                        batcher.add( new Count( "Counter", "k1", "c" + ( y % 10 ), 1 ) );
+                    }
+                    return true;
+                }
+            } ) );
+        }
+
+        start.countDown();
+
+        for ( Future<Boolean> call : calls ) {
+            call.get();
+        }
+
+        exec.shutdown();
+        batcher.shutdown();
+
+        long total = 0;
+        for ( int i = 0; i < 10; i++ ) {
+            total += submitter.total( "c" + i );
+        }
+
+        assertEquals( 80000, total );
+        assertEquals( 0, batcher.getPendingCount() );
+        assertTrue( submitter.counted.get() < 80000 );
+    }
+
+
+    @Test
+    public void failedSubmitKeepsCounts() {
+        StubSubmitter submitter = new StubSubmitter();
+        submitter.failures = 1;
+
+        CoalescingBatcher batcher = new CoalescingBatcher();
+        batcher.setBatchSubmitter( submitter );
+        batcher.setBatchSize( 100 );
+
+        batcher.add( new Count( "Counter", "k1", "c1", 3 ) );
+        batcher.add( new Count( "Counter", "k1", "c2", 1 ) );
+
+        batcher.flush();
+
+        //nothing was written, the counts wait for the next flush
+        assertEquals( 2, batcher.getPendingCount() );
+        assertEquals( 0, batcher.getBatchSubmissionCount() );
+        assertEquals( 0L, submitter.total( "c1" ) );
+
+        batcher.add( new Count( "Counter", "k1", "c1", 2 ) );
+
+        batcher.flush();
+
+        assertEquals( 0, batcher.getPendingCount() );
+        assertEquals( 1, batcher.getBatchSubmissionCount() );
+        assertEquals( 5L, submitter.total( "c1" ) );
+        assertEquals( 1L, submitter.total( "c2" ) );
+    }
+
+
+    @Test
+    public void blockingSubmit() {
+        StubSubmitter submitter = new StubSubmitter();
+
+        CoalescingBatcher batcher = new CoalescingBatcher();
+        batcher.setBatchSubmitter( submitter );
+        batcher.setBlockingSubmit( true );
+
+        batcher.add( new Count( "Counter", "k1", "c1", 1 ) );
+
+        assertEquals( 1, batcher.getBatchSubmissionCount() );
+        assertEquals( 1L, submitter.total( "c1" ) );
+    }
+
+
+    private void waitForSubmissions( CoalescingBatcher batcher, long expected ) throws InterruptedException {
+        for ( int i = 0; i < 50 && batcher.getBatchSubmissionCount() < expected; i++ ) {
+            Thread.sleep( 100 );
+        }
+
+        assertEquals( expected, batcher.getBatchSubmissionCount() );
+    }
+
+
+    class StubSubmitter implements BatchSubmitter {
+
+        AtomicLong counted = new AtomicLong();
+        Map<Object, AtomicLong> totals = new ConcurrentHashMap<Object, AtomicLong>();
+        int failures;
+
+
+        @Override
+        public synchronized Future<?> submit( Collection<Count> counts ) {
+            if ( failures > 0 ) {
+                failures--;
+                throw new RejectedExecutionException( "stub failure" );
+            }
+
+            counted.addAndGet( counts.size() );
+
+            for ( Count count : counts ) {
+                AtomicLong total = totals.get( count.getColumnName() );
+                if ( total == null ) {
+                    total = new AtomicLong();
+                    totals.put( count.getColumnName(), total );
+                }
+                total.addAndGet( count.getValue() );
+            }
+            return null;
+        }
+
+
+        long total( Object columnName ) {
+            AtomicLong total = totals.get( columnName );
+            return total == null ? 0 : total.get();
+        }
+
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
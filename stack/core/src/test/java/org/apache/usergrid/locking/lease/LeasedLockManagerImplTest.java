@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.locking.lease;
+
+
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.apache.usergrid.locking.Lock;
+import org.apache.usergrid.locking.LockManager;
+import org.apache.usergrid.locking.exception.UGLockException;
+import org.apache.usergrid.locking.singlenode.SingleNodeLockManagerImpl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class LeasedLockManagerImplTest {
+
+    private CountingLockManager underlying;
+    private ExecutorService pool;
+
+
+    @Before
+    public void setUp() {
+        underlying = new CountingLockManager();
+        pool = Executors.newFixedThreadPool( 1 );
+    }
+
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+
+    @Test
+    public void leaseHeldBetweenUses() throws Exception {
+        LeasedLockManagerImpl manager = new LeasedLockManagerImpl( underlying, 60000, 10 );
+
+        UUID applicationId = UUID.randomUUID();
+
+        for ( int i = 0; i < 100; i++ ) {
+            Lock lock = manager.createLock( applicationId, "queue", "consumer" );
+            assertTrue( lock.tryLock( 1, TimeUnit.SECONDS ) );
+            lock.unlock();
+        }
+
+        assertEquals( 1, underlying.acquired.get() );
+        assertEquals( 1, manager.getLeaseCount() );
+
+        //the underlying lock is still held by the lease
+        assertFalse( tryUnderlyingInOtherThread( applicationId ) );
+
+        manager.destroy();
+    }
+
+
+    @Test
+    public void excludesOtherThreads() throws Exception {
+        final LeasedLockManagerImpl manager = new LeasedLockManagerImpl( underlying, 60000, 10 );
+
+        final UUID applicationId = UUID.randomUUID();
+
+        Lock lock = manager.createLock( applicationId, "queue", "consumer" );
+        assertTrue( lock.tryLock( 1, TimeUnit.SECONDS ) );
+
+        Callable<Boolean> other = new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                Lock lock = manager.createLock( applicationId, "queue", "consumer" );
+                boolean locked = lock.tryLock( 100, TimeUnit.MILLISECONDS );
+                lock.unlock();
+                return locked;
+            }
+        };
+
+        assertFalse( pool.submit( other ).get() );
+
+        lock.unlock();
+
+        assertTrue( pool.submit( other ).get() );
+
+        manager.destroy();
+    }
+
+
+    @Test
+    public void releasedWhenIdle() throws Exception {
+        LeasedLockManagerImpl manager = new LeasedLockManagerImpl( underlying, 100, 10 );
+
+        UUID applicationId = UUID.randomUUID();
+
+        Lock lock = manager.createLock( applicationId, "queue", "consumer" );
+        assertTrue( lock.tryLock( 1, TimeUnit.SECONDS ) );
+        lock.unlock();
+
+        for ( int i = 0; i < 50 && manager.getLeaseCount() > 0; i++ ) {
+            Thread.sleep( 50 );
+        }
+
+        assertEquals( 0, manager.getLeaseCount() );
+        assertTrue( tryUnderlyingInOtherThread( applicationId ) );
+
+        //the next use acquires a new lease
+        assertTrue( lock.tryLock( 1, TimeUnit.SECONDS ) );
+        lock.unlock();
+
+        assertEquals( 2, underlying.acquired.get() );
+
+        manager.destroy();
+    }
+
+
+    @Test
+    public void unleasedWhenLeasesExhausted() throws Exception {
+        LeasedLockManagerImpl manager = new LeasedLockManagerImpl( underlying, 60000, 1 );
+
+        UUID applicationId = UUID.randomUUID();
+
+        Lock first = manager.createLock( applicationId, "queue", "consumer1" );
+        assertTrue( first.tryLock( 1, TimeUnit.SECONDS ) );
+        first.unlock();
+
+        //no lease thread is left, the lock is acquired and released on every use
+        Lock second = manager.createLock( applicationId, "queue", "consumer2" );
+        assertTrue( second.tryLock( 1, TimeUnit.SECONDS ) );
+        second.unlock();
+        assertTrue( second.tryLock( 1, TimeUnit.SECONDS ) );
+        second.unlock();
+
+        assertEquals( 3, underlying.acquired.get() );
+        assertEquals( 1, manager.getLeaseCount() );
+
+        manager.destroy();
+    }
+
+
+    @Test
+    public void disabled() {
+        LeasedLockManagerImpl manager = new LeasedLockManagerImpl( underlying, 0, 10 );
+
+        assertFalse( manager.createLock( UUID.randomUUID(), "queue", "consumer" ) instanceof LeasedLockImpl );
+    }
+
+
+    private boolean tryUnderlyingInOtherThread( final UUID applicationId ) throws Exception {
+        return pool.submit( new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                Lock lock = underlying.delegate.createLock( applicationId, "queue", "consumer" );
+                boolean locked = lock.tryLock( 100, TimeUnit.MILLISECONDS );
+                if ( locked ) {
+                    lock.unlock();
+                }
+                return locked;
+            }
+        } ).get();
+    }
+
+
+    /** Single node lock manager that counts the locks acquired */
+    private static class CountingLockManager implements LockManager {
+
+        private final LockManager delegate = new SingleNodeLockManagerImpl();
+        private final AtomicInteger acquired = new AtomicInteger();
+
+
+        @Override
+        public Lock createLock( UUID applicationId, String... path ) {
+            final Lock lock = delegate.createLock( applicationId, path );
+
+            return new Lock() {
+                @Override
+                public boolean tryLock( long timeout, TimeUnit time ) throws UGLockException {
+                    boolean locked = lock.tryLock( timeout, time );
+                    if ( locked ) {
+                        acquired.incrementAndGet();
+                    }
+                    return locked;
+                }
+
+
+                @Override
+                public void lock() throws UGLockException {
+                    lock.lock();
+                    acquired.incrementAndGet();
+                }
+
+
+                @Override
+                public void unlock() throws UGLockException {
+                    lock.unlock();
+                }
+            };
+        }
+    }
+}
@@ -17,8 +17,14 @@
 package org.apache.usergrid.mq;
 
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
@@ -31,6 +37,7 @@ import org.apache.usergrid.utils.JsonUtils;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 
@@ -204,6 +211,87 @@ public class MessagesIT extends AbstractCoreIT {
     }
 
 
+    @Test
+    public void testBatchPost() throws Exception {
+        QueueManager qm = app.getQm();
+
+        qm.subscribeToQueue( "/batch/", "/batch/subscriber/" );
+
+        List<Message> messages = new ArrayList<Message>();
+        for ( int i = 0; i < 250; i++ ) {
+            Message message = new Message();
+            message.setStringProperty( "foo", "bar" + i );
+            messages.add( message );
+        }
+
+        QueueResults posted = qm.postMessagesToQueue( "/batch/", messages );
+
+        assertNull( posted.getFailures() );
+        assertEquals( 250, posted.size() );
+
+        for ( String queuePath : new String[] { "/batch/", "/batch/subscriber/" } ) {
+            int read = 0;
+
+            while ( true ) {
+                QueueQuery query = new QueueQuery().withConsumer( "batchconsumer" );
+                query.setLimit( 100 );
+
+                QueueResults results = qm.getFromQueue( queuePath, query );
+
+                if ( results.size() == 0 ) {
+                    break;
+                }
+
+                //messages are read back in the order they were posted, even though the batches are written concurrently
+                for ( Message message : results.getMessages() ) {
+                    assertEquals( "bar" + read, message.getStringProperty( "foo" ) );
+                    read++;
+                }
+            }
+
+            assertEquals( 250, read );
+        }
+    }
+
+
+    @Test
+    public void testWaitForMessage() throws Exception {
+        final QueueManager qm = app.getQm();
+
+        qm.subscribeToQueue( "/wait/", "/wait/subscriber/" );
+
+        ExecutorService exec = Executors.newSingleThreadExecutor();
+
+        Future<QueueResults> waiting = exec.submit( new Callable<QueueResults>() {
+            @Override
+            public QueueResults call() throws Exception {
+                return qm.getFromQueue( "/wait/subscriber/",
+                        new QueueQuery().withConsumer( "waitconsumer" ).withWait( 10000 ) );
+            }
+        } );
+
+        Thread.sleep( 500 );
+        assertFalse( waiting.isDone() );
+
+        Message message = new Message();
+        message.setStringProperty( "foo", "bar" );
+        qm.postToQueue( "/wait/", message );
+
+        //woken up by the post rather than the end of the wait
+        QueueResults results = waiting.get( 5, TimeUnit.SECONDS );
+        assertEquals( 1, results.size() );
+        assertEquals( message.getUuid(), results.getMessages().get( 0 ).getUuid() );
+
+        //an empty queue is returned once the wait elapses
+        long start = System.currentTimeMillis();
+        results = qm.getFromQueue( "/wait/subscriber/", new QueueQuery().withConsumer( "waitconsumer" ).withWait( 500 ) );
+        assertEquals( 0, results.size() );
+        assertTrue( System.currentTimeMillis() - start >= 500 );
+
+        exec.shutdown();
+    }
+
+
     @Test
     public void testTransactions() throws Exception {
         QueueManager qm = app.getQm();
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mq.cassandra;
+
+
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class QueueNotifierTest {
+
+    @Test
+    public void wakesUpWaiter() throws Exception {
+        final QueueNotifier notifier = new QueueNotifier( 10 );
+        final UUID applicationId = UUIDUtils.newTimeUUID();
+
+        final QueueNotifier.Waiter waiter = notifier.register( applicationId, "/foo/" );
+
+        ExecutorService exec = Executors.newSingleThreadExecutor();
+
+        Future<Boolean> woken = exec.submit( new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return waiter.await( 10000 );
+            }
+        } );
+
+        Thread.sleep( 100 );
+        notifier.wake( applicationId, "/foo/" );
+
+        assertTrue( woken.get( 5, TimeUnit.SECONDS ) );
+
+        waiter.close();
+        exec.shutdown();
+
+        assertEquals( 0, notifier.getWaiterCount() );
+    }
+
+
+    @Test
+    public void postBeforeWaitNotMissed() throws Exception {
+        QueueNotifier notifier = new QueueNotifier( 10 );
+        UUID applicationId = UUIDUtils.newTimeUUID();
+
+        QueueNotifier.Waiter waiter = notifier.register( applicationId, "/foo/" );
+
+        //posted while the waiter was reading the queue
+        notifier.wake( applicationId, "/foo/" );
+
+        assertTrue( waiter.await( 0 ) );
+
+        //the post has been seen
+        assertFalse( waiter.await( 10 ) );
+
+        waiter.close();
+    }
+
+
+    @Test
+    public void otherQueuesIgnored() throws Exception {
+        QueueNotifier notifier = new QueueNotifier( 10 );
+        UUID applicationId = UUIDUtils.newTimeUUID();
+
+        QueueNotifier.Waiter waiter = notifier.register( applicationId, "/foo/" );
+
+        notifier.wake( applicationId, "/bar/" );
+        notifier.wake( UUIDUtils.newTimeUUID(), "/foo/" );
+
+        assertFalse( waiter.await( 50 ) );
+
+        waiter.close();
+    }
+
+
+    @Test
+    public void maxWaiters() {
+        QueueNotifier notifier = new QueueNotifier( 2 );
+        UUID applicationId = UUIDUtils.newTimeUUID();
+
+        QueueNotifier.Waiter first = notifier.register( applicationId, "/foo/" );
+        QueueNotifier.Waiter second = notifier.register( applicationId, "/bar/" );
+
+        assertNull( notifier.register( applicationId, "/foo/" ) );
+
+        first.close();
+        //closing twice doesn't free another slot
+        first.close();
+
+        QueueNotifier.Waiter third = notifier.register( applicationId, "/foo/" );
+        assertTrue( third != null );
+        assertNull( notifier.register( applicationId, "/foo/" ) );
+
+        second.close();
+        third.close();
+
+        assertEquals( 0, notifier.getWaiterCount() );
+    }
+}
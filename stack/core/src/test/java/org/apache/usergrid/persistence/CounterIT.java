@@ -34,7 +34,7 @@ import org.apache.usergrid.persistence.entities.Group;
 import org.apache.usergrid.persistence.entities.User;
 import org.apache.usergrid.utils.JsonUtils;
 
-import org.apache.usergrid.count.SimpleBatcher;
+import org.apache.usergrid.count.CoalescingBatcher;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -57,7 +57,7 @@ public class CounterIT extends AbstractCoreIT {
     @Before
     public void getSubmitter() {
         //set the batcher to block the submit so we wait for results when testing
-        SimpleBatcher batcher = CoreITSuite.cassandraResource.getBean( SimpleBatcher.class );
+        CoalescingBatcher batcher = CoreITSuite.cassandraResource.getBean( CoalescingBatcher.class );
 
         batcher.setBlockingSubmit( true );
         batcher.setBatchSize( 1 );
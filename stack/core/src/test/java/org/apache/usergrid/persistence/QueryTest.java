@@ -43,6 +43,8 @@ import org.apache.usergrid.persistence.query.tree.WithinOperand;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 
@@ -309,4 +311,35 @@ public class QueryTest {
         assertEquals( "name", sorts.get( 0 ).getPropertyName() );
         assertEquals( SortDirection.DESCENDING, sorts.get( 0 ).getDirection() );
     }
+
+
+    @Test
+    public void parsedQueriesCopied() throws QueryParseException {
+        String ql = "select * where cachedname = 'foo' and cachedage > 5 order by cachedname desc";
+
+        Query first = Query.fromQL( ql );
+
+        long hits = Query.getParseCacheStats().hitCount();
+
+        //adding a clause re-parents the cached tree if it isn't copied
+        first.addEqualityFilter( "extra", "bar" );
+        first.addSort( "cachedage" );
+
+        Query second = Query.fromQL( "  " + ql.toUpperCase() + " " );
+
+        assertTrue( Query.getParseCacheStats().hitCount() > hits );
+        assertEquals( "  " + ql.toUpperCase() + " ", second.getQl() );
+
+        AndOperand and = ( AndOperand ) second.getRootOperand();
+        assertNotSame( first.getRootOperand(), and );
+        assertEquals( "cachedname", ( ( Equal ) and.getLeft() ).getProperty().getValue() );
+        assertEquals( "foo", ( ( Equal ) and.getLeft() ).getLiteral().getValue() );
+        assertEquals( 5L, ( ( GreaterThan ) and.getRight() ).getLiteral().getValue() );
+        assertEquals( null, and.getParent() );
+
+        assertEquals( 1, second.getSortPredicates().size() );
+        assertEquals( SortDirection.DESCENDING, second.getSortPredicates().get( 0 ).getDirection() );
+
+        assertEquals( and.toStringTree(), Query.fromQL( ql ).getRootOperand().toStringTree() );
+    }
 }
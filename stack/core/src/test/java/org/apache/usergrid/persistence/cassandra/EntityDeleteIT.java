@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cassandra;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.apache.usergrid.AbstractCoreIT;
+import org.apache.usergrid.cassandra.Concurrent;
+import org.apache.usergrid.persistence.Entity;
+import org.apache.usergrid.persistence.Query;
+import org.apache.usergrid.persistence.Results;
+import org.apache.usergrid.persistence.entities.JobData;
+
+import me.prettyprint.hector.api.beans.HColumn;
+
+import static org.apache.usergrid.persistence.cassandra.ApplicationCF.ENTITY_PROPERTIES;
+import static org.apache.usergrid.persistence.cassandra.CassandraPersistenceUtils.key;
+import static org.apache.usergrid.persistence.cassandra.CassandraService.MANAGEMENT_APPLICATION_ID;
+import static org.apache.usergrid.utils.UUIDUtils.newTimeUUID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+@Concurrent()
+public class EntityDeleteIT extends AbstractCoreIT {
+
+    @Test
+    public void tombstonedEntitiesHidden() throws Exception {
+        UUID applicationId = setup.createApplication( "testOrganization", "tombstonedEntitiesHidden" );
+        EntityManagerImpl em = ( EntityManagerImpl ) setup.getEmf().getEntityManager( applicationId );
+
+        Entity deleted = em.create( "thing", properties( "deleted" ) );
+        Entity kept = em.create( "thing", properties( "kept" ) );
+
+        //read it once so a cached copy would be served if the tombstone didn't invalidate it
+        assertNotNull( em.get( deleted.getUuid() ) );
+
+        em.deleteEntity( deleted.getUuid(), true );
+
+        assertNull( em.get( deleted.getUuid() ) );
+        assertNull( em.getRef( deleted.getUuid() ) );
+
+        List<UUID> ids = new ArrayList<UUID>();
+        ids.add( deleted.getUuid() );
+        ids.add( kept.getUuid() );
+
+        Results results = em.get( ids );
+        assertEquals( 1, results.size() );
+        assertEquals( kept.getUuid(), results.getEntity().getUuid() );
+
+        //the collection index still points at the entity until it's purged
+        results = em.searchCollection( em.getApplicationRef(), "things", Query.fromQL( "select *" ) );
+        for ( Entity entity : results.getEntities() ) {
+            assertFalse( deleted.getUuid().equals( entity.getUuid() ) );
+        }
+
+        //the row is still there, only hidden
+        assertFalse( getProperties( em, deleted.getUuid() ).isEmpty() );
+    }
+
+
+    @Test
+    public void tombstonedRefsHidden() throws Exception {
+        UUID applicationId = setup.createApplication( "testOrganization", "tombstonedRefsHidden" );
+        EntityManagerImpl em = ( EntityManagerImpl ) setup.getEmf().getEntityManager( applicationId );
+        EntityManagerFactoryImpl emf = ( EntityManagerFactoryImpl ) setup.getEmf();
+
+        Entity deleted = em.create( "thing", properties( "deleted" ) );
+        Entity kept = em.create( "thing", properties( "kept" ) );
+
+        em.createConnection( deleted, "likes", kept );
+
+        //ids and refs are only checked for tombstones while deletes are asynchronous
+        boolean asyncDelete = emf.isAsyncDelete();
+        emf.setAsyncDelete( true );
+
+        try {
+            em.deleteEntity( deleted.getUuid(), true );
+
+            for ( Results.Level level : new Results.Level[] { Results.Level.IDS, Results.Level.REFS } ) {
+                Query query = Query.fromQL( "select *" );
+                query.setResultsLevel( level );
+
+                Results results = em.searchCollection( em.getApplicationRef(), "things", query );
+                assertFalse( results.getIds().contains( deleted.getUuid() ) );
+                assertTrue( results.getIds().contains( kept.getUuid() ) );
+
+                results = em.getConnectingEntities( kept.getUuid(), "likes", null, level );
+                assertEquals( 0, results.size() );
+            }
+
+            em.purgeEntity( deleted.getUuid(), newTimeUUID(), null );
+        }
+        finally {
+            emf.setAsyncDelete( asyncDelete );
+        }
+
+        //the purge still found the hidden connection and removed it from the indexes
+        Results results = em.getConnectingEntities( kept.getUuid(), "likes", null, Results.Level.REFS );
+        assertEquals( 0, results.size() );
+    }
+
+
+    @Test
+    public void purgeIdempotent() throws Exception {
+        UUID applicationId = setup.createApplication( "testOrganization", "purgeIdempotent" );
+        EntityManagerImpl em = ( EntityManagerImpl ) setup.getEmf().getEntityManager( applicationId );
+
+        Entity deleted = em.create( "thing", properties( "purged" ) );
+
+        em.deleteEntity( deleted.getUuid(), true );
+
+        UUID timestampUuid = newTimeUUID();
+
+        em.purgeEntity( deleted.getUuid(), timestampUuid, null );
+
+        assertTrue( getProperties( em, deleted.getUuid() ).isEmpty() );
+
+        //running the job again, as a retried job would, changes nothing
+        em.purgeEntity( deleted.getUuid(), timestampUuid, null );
+
+        assertTrue( getProperties( em, deleted.getUuid() ).isEmpty() );
+        assertNull( em.get( deleted.getUuid() ) );
+
+        Results results = em.searchCollection( em.getApplicationRef(), "things",
+                Query.fromQL( "select * where name = 'purged'" ) );
+        assertEquals( 0, results.size() );
+    }
+
+
+    @Test
+    public void schedulerEntitiesDeletedSynchronously() throws Exception {
+        EntityManagerImpl em = ( EntityManagerImpl ) setup.getEmf().getEntityManager( MANAGEMENT_APPLICATION_ID );
+
+        JobData data = new JobData();
+        data.setJobName( "schedulerEntitiesDeletedSynchronously" );
+        data = em.create( data );
+
+        //the scheduler deletes the data of every job it has run through the same delete
+        em.deleteEntity( data.getUuid(), true );
+
+        //purged right away, without a tombstone or a purge job
+        assertTrue( getProperties( em, data.getUuid() ).isEmpty() );
+        assertEquals( 0, countPurgeJobs( em, data.getUuid() ) );
+    }
+
+
+    private static Map<String, Object> properties( String name ) {
+        Map<String, Object> properties = new LinkedHashMap<String, Object>();
+        properties.put( "name", name );
+        return properties;
+    }
+
+
+    private static List<HColumn<String, ByteBuffer>> getProperties( EntityManagerImpl em, UUID entityId )
+            throws Exception {
+        CassandraService cass = em.getCass();
+        return cass.getAllColumns( cass.getApplicationKeyspace( em.getApplicationId() ), ENTITY_PROPERTIES,
+                key( entityId ) );
+    }
+
+
+    private static int countPurgeJobs( EntityManagerImpl em, UUID entityId ) throws Exception {
+        Query query = Query.fromQL(
+                "select * where jobName = '" + EntityDeleteJob.JOB_NAME.toLowerCase() + "' and entityId = " + entityId );
+        return em.searchCollection( em.getApplicationRef(), "jobdatas", query ).size();
+    }
+}
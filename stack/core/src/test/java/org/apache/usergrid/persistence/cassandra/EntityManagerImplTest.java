@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cassandra;
+
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.apache.usergrid.cassandra.Concurrent;
+import org.apache.usergrid.persistence.query.ir.result.ScanColumn;
+import org.apache.usergrid.persistence.query.ir.result.UUIDIndexSliceParser.UUIDColumn;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+
+/** Hiding the ids of entities that are deleted but not yet purged, without reading from cassandra */
+@Concurrent()
+public class EntityManagerImplTest {
+
+    @Test
+    public void tombstonedIdsRemoved() throws Exception {
+        List<ScanColumn> ids = columns( 5 );
+
+        Set<UUID> tombstoned = new HashSet<UUID>();
+        tombstoned.add( ids.get( 1 ).getUUID() );
+        tombstoned.add( ids.get( 3 ).getUUID() );
+
+        TombstoneStub em = new TombstoneStub( true, tombstoned );
+
+        List<ScanColumn> live = em.removeTombstoned( ids );
+
+        //the rest keep their order, so the cursor still points past the last of them
+        List<ScanColumn> expected = new ArrayList<ScanColumn>();
+        expected.add( ids.get( 0 ) );
+        expected.add( ids.get( 2 ) );
+        expected.add( ids.get( 4 ) );
+
+        assertEquals( expected, live );
+        assertEquals( 1, em.reads );
+    }
+
+
+    @Test
+    public void nothingTombstoned() throws Exception {
+        List<ScanColumn> ids = columns( 3 );
+
+        TombstoneStub em = new TombstoneStub( true, new HashSet<UUID>() );
+
+        assertSame( ids, em.removeTombstoned( ids ) );
+        assertEquals( 1, em.reads );
+    }
+
+
+    @Test
+    public void tombstonesNotReadWhenShown() throws Exception {
+        List<ScanColumn> ids = columns( 3 );
+
+        Set<UUID> tombstoned = new HashSet<UUID>();
+        tombstoned.add( ids.get( 0 ).getUUID() );
+
+        //synchronous deletes, or the entity manager purging the entities
+        TombstoneStub em = new TombstoneStub( false, tombstoned );
+
+        assertSame( ids, em.removeTombstoned( ids ) );
+        assertEquals( 0, em.reads );
+
+        //nor for an empty page
+        em = new TombstoneStub( true, tombstoned );
+
+        List<ScanColumn> empty = new ArrayList<ScanColumn>();
+
+        assertSame( empty, em.removeTombstoned( empty ) );
+        assertEquals( 0, em.reads );
+    }
+
+
+    private static List<ScanColumn> columns( int count ) {
+        List<ScanColumn> columns = new ArrayList<ScanColumn>( count );
+
+        for ( int i = 0; i < count; i++ ) {
+            columns.add( new UUIDColumn( UUIDUtils.newTimeUUID(), null ) );
+        }
+
+        return columns;
+    }
+
+
+    /** Serves the tombstones from a set instead of the entity properties */
+    private static class TombstoneStub extends EntityManagerImpl {
+
+        private final boolean hidden;
+        private final Set<UUID> tombstoned;
+        private int reads;
+
+
+        private TombstoneStub( boolean hidden, Set<UUID> tombstoned ) {
+            this.hidden = hidden;
+            this.tombstoned = tombstoned;
+        }
+
+
+        @Override
+        boolean isTombstoneHidden() {
+            return hidden;
+        }
+
+
+        @Override
+        Set<UUID> getTombstoned( List<UUID> entityIds ) {
+            reads++;
+
+            Set<UUID> found = new HashSet<UUID>( entityIds );
+            found.retainAll( tombstoned );
+            return found;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cassandra;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.apache.usergrid.cassandra.Concurrent;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import static org.apache.usergrid.persistence.Schema.PROPERTY_MODIFIED;
+import static org.apache.usergrid.persistence.Schema.PROPERTY_TYPE;
+import static org.apache.usergrid.persistence.Schema.PROPERTY_UUID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+@Concurrent()
+public class LocalEntityCacheTest {
+
+    @Test
+    public void putAndGet() {
+        LocalEntityCache cache = new LocalEntityCache( 100, 60 );
+
+        UUID appId = UUIDUtils.newTimeUUID();
+        UUID entityId = UUIDUtils.newTimeUUID();
+
+        assertNull( cache.get( appId, entityId ) );
+
+        cache.put( appId, entityId, cache.getStamp( appId, entityId ), properties( entityId, 1000 ) );
+
+        Map<String, Object> cached = cache.get( appId, entityId );
+
+        assertNotNull( cached );
+        assertEquals( entityId, cached.get( PROPERTY_UUID ) );
+        assertEquals( "user", cached.get( "TYPE" ) );
+
+        //same entity id in another application is a miss
+        assertNull( cache.get( UUIDUtils.newTimeUUID(), entityId ) );
+    }
+
+
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void copiesAreIsolated() {
+        LocalEntityCache cache = new LocalEntityCache( 100, 60 );
+
+        UUID appId = UUIDUtils.newTimeUUID();
+        UUID entityId = UUIDUtils.newTimeUUID();
+
+        Map<String, Object> properties = properties( entityId, 1000 );
+        List<Object> tags = new ArrayList<Object>();
+        tags.add( "a" );
+        properties.put( "tags", tags );
+
+        cache.put( appId, entityId, cache.getStamp( appId, entityId ), properties );
+
+        //mutating the source or a returned copy must not leak into the cache
+        tags.add( "b" );
+        Map<String, Object> first = cache.get( appId, entityId );
+        first.put( "name", "changed" );
+        ( ( List<Object> ) first.get( "tags" ) ).add( "c" );
+
+        Map<String, Object> second = cache.get( appId, entityId );
+
+        assertEquals( "test", second.get( "name" ) );
+        assertEquals( 1, ( ( List<Object> ) second.get( "tags" ) ).size() );
+    }
+
+
+    @Test
+    public void invalidate() {
+        LocalEntityCache cache = new LocalEntityCache( 100, 60 );
+
+        UUID appId = UUIDUtils.newTimeUUID();
+        UUID entityId = UUIDUtils.newTimeUUID();
+
+        cache.put( appId, entityId, cache.getStamp( appId, entityId ), properties( entityId, 1000 ) );
+        assertNotNull( cache.get( appId, entityId ) );
+
+        cache.invalidate( appId, entityId );
+        assertNull( cache.get( appId, entityId ) );
+    }
+
+
+    @Test
+    public void readBeforeInvalidateNotCached() {
+        LocalEntityCache cache = new LocalEntityCache( 100, 60 );
+
+        UUID appId = UUIDUtils.newTimeUUID();
+        UUID entityId = UUIDUtils.newTimeUUID();
+
+        //the reader takes its stamp and loads the old version, then the writer executes and invalidates
+        long stamp = cache.getStamp( appId, entityId );
+        Map<String, Object> stale = properties( entityId, 1000 );
+
+        cache.invalidate( appId, entityId );
+
+        cache.put( appId, entityId, stamp, stale );
+        assertNull( cache.get( appId, entityId ) );
+
+        //a read started after the invalidation is cached
+        cache.put( appId, entityId, cache.getStamp( appId, entityId ), properties( entityId, 2000 ) );
+        assertNotNull( cache.get( appId, entityId ) );
+
+        //as is nothing read before invalidating everything
+        stamp = cache.getStamp( appId, entityId );
+        cache.invalidateAll();
+
+        cache.put( appId, entityId, stamp, properties( entityId, 3000 ) );
+        assertNull( cache.get( appId, entityId ) );
+    }
+
+
+    @Test
+    public void olderVersionIgnored() {
+        LocalEntityCache cache = new LocalEntityCache( 100, 60 );
+
+        UUID appId = UUIDUtils.newTimeUUID();
+        UUID entityId = UUIDUtils.newTimeUUID();
+
+        Map<String, Object> newer = properties( entityId, 2000 );
+        newer.put( "name", "newer" );
+
+        Map<String, Object> older = properties( entityId, 1000 );
+        older.put( "name", "older" );
+
+        cache.put( appId, entityId, cache.getStamp( appId, entityId ), newer );
+        cache.put( appId, entityId, cache.getStamp( appId, entityId ), older );
+
+        assertEquals( "newer", cache.get( appId, entityId ).get( "name" ) );
+    }
+
+
+    @Test
+    public void sizeBounded() {
+        LocalEntityCache cache = new LocalEntityCache( 10, 60 );
+
+        UUID appId = UUIDUtils.newTimeUUID();
+
+        for ( int i = 0; i < 100; i++ ) {
+            UUID entityId = UUIDUtils.newTimeUUID();
+            cache.put( appId, entityId, cache.getStamp( appId, entityId ), properties( entityId, i ) );
+        }
+
+        assertTrue( cache.size() <= 10 );
+    }
+
+
+    @Test
+    public void disabled() {
+        LocalEntityCache cache = new LocalEntityCache( 0, 60 );
+
+        UUID appId = UUIDUtils.newTimeUUID();
+        UUID entityId = UUIDUtils.newTimeUUID();
+
+        cache.put( appId, entityId, cache.getStamp( appId, entityId ), properties( entityId, 1000 ) );
+
+        assertNull( cache.get( appId, entityId ) );
+    }
+
+
+    private static Map<String, Object> properties( UUID entityId, long modified ) {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put( PROPERTY_UUID, entityId );
+        properties.put( PROPERTY_TYPE, "user" );
+        properties.put( PROPERTY_MODIFIED, modified );
+        properties.put( "name", "test" );
+        return properties;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cassandra;
+
+
+import java.util.UUID;
+
+import org.junit.Test;
+import org.apache.usergrid.cassandra.Concurrent;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+
+@Concurrent()
+public class LocalNameCacheTest {
+
+    @Test
+    public void resolveAndInvalidate() {
+        LocalNameCache<UUID> cache = new LocalNameCache<UUID>( "test", 100, 60 );
+
+        UUID appId = UUIDUtils.newTimeUUID();
+
+        assertNull( cache.get( "org/app" ) );
+
+        cache.put( "org/app", appId );
+
+        assertEquals( appId, cache.get( "org/app" ) );
+        assertNull( cache.get( "org/other" ) );
+
+        cache.invalidate( "org/app" );
+
+        assertNull( cache.get( "org/app" ) );
+
+        cache.put( "org/app", appId );
+        cache.invalidateAll();
+
+        assertNull( cache.get( "org/app" ) );
+    }
+
+
+    @Test
+    public void nullsIgnored() {
+        LocalNameCache<UUID> cache = new LocalNameCache<UUID>( "test", 100, 60 );
+
+        //names that don't resolve are never cached
+        cache.put( "org/app", null );
+        cache.put( null, UUIDUtils.newTimeUUID() );
+
+        assertNull( cache.get( "org/app" ) );
+        assertNull( cache.get( null ) );
+    }
+
+
+    @Test
+    public void disabled() {
+        LocalNameCache<UUID> cache = new LocalNameCache<UUID>( "test", 0, 60 );
+
+        assertFalse( cache.isEnabled() );
+
+        cache.put( "org/app", UUIDUtils.newTimeUUID() );
+
+        assertNull( cache.get( "org/app" ) );
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cassandra;
+
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.apache.usergrid.cassandra.Concurrent;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+@Concurrent()
+public class LocalRoleCacheTest {
+
+    @Test
+    public void rolePermissions() {
+        LocalRoleCache cache = new LocalRoleCache( 100, 60 );
+
+        UUID appId = UUIDUtils.newTimeUUID();
+
+        assertNull( cache.getRolePermissions( appId, "default" ) );
+
+        cache.putRolePermissions( appId, "default", set( "get:/**", "post:/users" ) );
+
+        assertEquals( set( "get:/**", "post:/users" ), cache.getRolePermissions( appId, "default" ) );
+
+        //same role in another application is a miss
+        assertNull( cache.getRolePermissions( UUIDUtils.newTimeUUID(), "default" ) );
+
+        cache.invalidateRole( appId, "default" );
+
+        assertNull( cache.getRolePermissions( appId, "default" ) );
+    }
+
+
+    @Test
+    public void userRoles() {
+        LocalRoleCache cache = new LocalRoleCache( 100, 60 );
+
+        UUID appId = UUIDUtils.newTimeUUID();
+        UUID userId = UUIDUtils.newTimeUUID();
+
+        cache.putUserRoles( appId, userId, set( "admin" ) );
+
+        assertEquals( set( "admin" ), cache.getUserRoles( appId, userId ) );
+
+        cache.invalidateUserRoles( appId, userId );
+
+        assertNull( cache.getUserRoles( appId, userId ) );
+
+        //an empty set is a valid cached value, users without roles are the common case
+        cache.putUserRoles( appId, userId, new HashSet<String>() );
+
+        assertTrue( cache.getUserRoles( appId, userId ).isEmpty() );
+    }
+
+
+    @Test
+    public void copiesAreIsolated() {
+        LocalRoleCache cache = new LocalRoleCache( 100, 60 );
+
+        UUID appId = UUIDUtils.newTimeUUID();
+
+        Set<String> permissions = set( "get:/**" );
+        cache.putRolePermissions( appId, "guest", permissions );
+
+        //mutating the source or a returned copy must not leak into the cache
+        permissions.add( "delete:/**" );
+        cache.getRolePermissions( appId, "guest" ).add( "put:/**" );
+
+        assertEquals( set( "get:/**" ), cache.getRolePermissions( appId, "guest" ) );
+    }
+
+
+    @Test
+    public void disabled() {
+        LocalRoleCache cache = new LocalRoleCache( 0, 60 );
+
+        UUID appId = UUIDUtils.newTimeUUID();
+
+        cache.putRolePermissions( appId, "default", set( "get:/**" ) );
+
+        assertNull( cache.getRolePermissions( appId, "default" ) );
+    }
+
+
+    private static Set<String> set( String... values ) {
+        Set<String> set = new HashSet<String>();
+        for ( String value : values ) {
+            set.add( value );
+        }
+        return set;
+    }
+}
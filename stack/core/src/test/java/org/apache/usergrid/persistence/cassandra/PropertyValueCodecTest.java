@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cassandra;
+
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.usergrid.cassandra.Concurrent;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+@Concurrent()
+public class PropertyValueCodecTest {
+
+    private static final Logger logger = LoggerFactory.getLogger( PropertyValueCodecTest.class );
+
+    private static final int ITERATIONS = 100000;
+
+
+    @Test
+    public void decodesLikeSmile() {
+        for ( Object value : values() ) {
+            ByteBuffer typed = PropertyValueCodec.encode( value, true );
+            ByteBuffer smile = PropertyValueCodec.encodeSmile( value );
+
+            assertEquals( "Decoding " + value, PropertyValueCodec.decode( smile ), PropertyValueCodec.decode( typed ) );
+        }
+    }
+
+
+    @Test
+    public void disabledWritesSmile() {
+        for ( Object value : values() ) {
+            ByteBuffer smile = PropertyValueCodec.encode( value, false );
+
+            assertFalse( "Encoding " + value, PropertyValueCodec.isTyped( smile ) );
+            assertEquals( "Decoding " + value, PropertyValueCodec.decode( PropertyValueCodec.encodeSmile( value ) ),
+                    PropertyValueCodec.decode( smile ) );
+        }
+    }
+
+
+    @Test
+    public void primitivesAreTyped() {
+        assertTrue( PropertyValueCodec.isTyped( PropertyValueCodec.encode( "test", true ) ) );
+        assertTrue( PropertyValueCodec.isTyped( PropertyValueCodec.encode( 1L, true ) ) );
+        assertTrue( PropertyValueCodec.isTyped( PropertyValueCodec.encode( 1.5d, true ) ) );
+        assertTrue( PropertyValueCodec.isTyped( PropertyValueCodec.encode( true, true ) ) );
+        assertTrue( PropertyValueCodec.isTyped( PropertyValueCodec.encode( UUIDUtils.newTimeUUID(), true ) ) );
+
+        //values without a typed encoding fall back to smile
+        assertFalse( PropertyValueCodec.isTyped( PropertyValueCodec.encode( map(), true ) ) );
+        assertFalse( PropertyValueCodec.isTyped( PropertyValueCodec.encode( BigInteger.ONE.shiftLeft( 70 ), true ) ) );
+        assertFalse( PropertyValueCodec.isTyped( PropertyValueCodec.encodeSmile( "test" ) ) );
+    }
+
+
+    @Test
+    public void numbersWidened() {
+        assertEquals( 5L, PropertyValueCodec.decode( PropertyValueCodec.encode( 5, true ) ) );
+        assertEquals( 5L, PropertyValueCodec.decode( PropertyValueCodec.encode( ( short ) 5, true ) ) );
+        assertEquals( 5L, PropertyValueCodec.decode( PropertyValueCodec.encode( BigInteger.valueOf( 5 ), true ) ) );
+        assertEquals( 2.5d, PropertyValueCodec.decode( PropertyValueCodec.encode( 2.5f, true ) ) );
+    }
+
+
+    @Test
+    public void nullAndEmpty() {
+        assertNull( PropertyValueCodec.encode( null, true ) );
+        assertNull( PropertyValueCodec.decode( null ) );
+        assertNull( PropertyValueCodec.decode( ByteBuffer.allocate( 0 ) ) );
+        assertEquals( "", PropertyValueCodec.decode( PropertyValueCodec.encode( "", true ) ) );
+    }
+
+
+    @Test
+    public void decodeAtOffset() {
+        UUID id = UUIDUtils.newTimeUUID();
+        ByteBuffer encoded = PropertyValueCodec.encode( id, true );
+
+        //columns read from cassandra are frequently slices of a larger buffer
+        ByteBuffer larger = ByteBuffer.allocate( encoded.remaining() + 10 );
+        larger.position( 5 );
+        larger.put( encoded );
+        larger.position( 5 );
+        larger.limit( larger.capacity() - 5 );
+
+        assertEquals( id, PropertyValueCodec.decode( larger.slice() ) );
+        assertEquals( id, PropertyValueCodec.decode( larger ) );
+    }
+
+
+    @Test
+    public void sizeAndThroughput() {
+        for ( Object value : values() ) {
+            int typedSize = PropertyValueCodec.encode( value, true ).remaining();
+            int smileSize = PropertyValueCodec.encodeSmile( value ).remaining();
+
+            logger.info( "{}: typed {} bytes, smile {} bytes", new Object[] {
+                    value.getClass().getSimpleName(), typedSize, smileSize
+            } );
+        }
+
+        Object[] values = { "some name", 1234567890L, 3.14159d, true, UUIDUtils.newTimeUUID() };
+
+        ByteBuffer[] typed = new ByteBuffer[values.length];
+        ByteBuffer[] smile = new ByteBuffer[values.length];
+
+        long start = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ ) {
+            typed[i % values.length] = PropertyValueCodec.encode( values[i % values.length], true );
+        }
+        long typedEncode = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ ) {
+            smile[i % values.length] = PropertyValueCodec.encodeSmile( values[i % values.length] );
+        }
+        long smileEncode = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ ) {
+            PropertyValueCodec.decode( typed[i % values.length] );
+        }
+        long typedDecode = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ ) {
+            PropertyValueCodec.decode( smile[i % values.length] );
+        }
+        long smileDecode = System.nanoTime() - start;
+
+        logger.info( "{} values: typed encode {} ms decode {} ms, smile encode {} ms decode {} ms", new Object[] {
+                ITERATIONS, typedEncode / 1000000, typedDecode / 1000000, smileEncode / 1000000,
+                smileDecode / 1000000
+        } );
+    }
+
+
+    private static List<Object> values() {
+        List<Object> values = new ArrayList<Object>();
+        values.add( "test" );
+        values.add( "" );
+        values.add( "ünicode ✓" );
+        values.add( UUIDUtils.newTimeUUID().toString() );
+        values.add( UUIDUtils.newTimeUUID() );
+        values.add( Long.MAX_VALUE );
+        values.add( Long.MIN_VALUE );
+        values.add( 0L );
+        values.add( 42 );
+        values.add( -1.25d );
+        values.add( Double.MAX_VALUE );
+        values.add( true );
+        values.add( false );
+        values.add( map() );
+
+        List<Object> list = new ArrayList<Object>();
+        list.add( "a" );
+        list.add( 1L );
+        values.add( list );
+
+        return values;
+    }
+
+
+    private static Map<String, Object> map() {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put( "street", "1 Main St" );
+        map.put( "zip", 94105L );
+        return map;
+    }
+}
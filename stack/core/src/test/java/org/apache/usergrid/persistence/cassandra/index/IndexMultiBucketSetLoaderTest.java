@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cassandra.index;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.usergrid.cassandra.Concurrent;
+import org.apache.usergrid.persistence.cassandra.ApplicationCF;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import org.apache.cassandra.db.marshal.AbstractType;
+import org.apache.cassandra.db.marshal.TypeParser;
+
+import me.prettyprint.cassandra.serializers.ByteBufferSerializer;
+import me.prettyprint.hector.api.beans.DynamicComposite;
+import me.prettyprint.hector.api.beans.HColumn;
+import me.prettyprint.hector.api.factory.HFactory;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Verifies the lazy merge returns exactly what sorting every column would, and logs the time taken by each approach
+ * for increasing numbers of buckets
+ */
+@Concurrent()
+public class IndexMultiBucketSetLoaderTest {
+
+    private static final Logger logger = LoggerFactory.getLogger( IndexMultiBucketSetLoaderTest.class );
+
+    private static final int PAGE_SIZE = 100;
+
+
+    @Test
+    public void tenBuckets() throws Exception {
+        compare( 10, false );
+        compare( 10, true );
+    }
+
+
+    @Test
+    public void hundredBuckets() throws Exception {
+        compare( 100, false );
+        compare( 100, true );
+    }
+
+
+    @Test
+    public void thousandBuckets() throws Exception {
+        compare( 1000, false );
+        compare( 1000, true );
+    }
+
+
+    @Test
+    public void emptyBuckets() throws Exception {
+        List<List<HColumn<ByteBuffer, ByteBuffer>>> buckets = new ArrayList<List<HColumn<ByteBuffer, ByteBuffer>>>();
+        buckets.add( new ArrayList<HColumn<ByteBuffer, ByteBuffer>>() );
+        buckets.add( new ArrayList<HColumn<ByteBuffer, ByteBuffer>>() );
+
+        assertEquals( 0, IndexMultiBucketSetLoader.merge( ApplicationCF.ENTITY_INDEX, buckets, PAGE_SIZE, false )
+                                                  .size() );
+    }
+
+
+    private void compare( int bucketCount, boolean reversed ) throws Exception {
+        Comparator<HColumn<ByteBuffer, ByteBuffer>> comparator = comparator( reversed );
+
+        List<List<HColumn<ByteBuffer, ByteBuffer>>> buckets = generate( bucketCount, comparator );
+
+        long start = System.nanoTime();
+        TreeSet<HColumn<ByteBuffer, ByteBuffer>> expected = fullSort( buckets, comparator );
+        long fullSortTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        TreeSet<HColumn<ByteBuffer, ByteBuffer>> merged =
+                IndexMultiBucketSetLoader.merge( ApplicationCF.ENTITY_INDEX, buckets, PAGE_SIZE, reversed );
+        long mergeTime = System.nanoTime() - start;
+
+        logger.info( "{} buckets reversed={}: full sort {} us, merge {} us", new Object[] {
+                bucketCount, reversed, fullSortTime / 1000, mergeTime / 1000
+        } );
+
+        assertEquals( expected.size(), merged.size() );
+
+        Iterator<HColumn<ByteBuffer, ByteBuffer>> expectedItr = expected.iterator();
+        Iterator<HColumn<ByteBuffer, ByteBuffer>> mergedItr = merged.iterator();
+
+        while ( expectedItr.hasNext() ) {
+            assertEquals( expectedItr.next().getName(), mergedItr.next().getName() );
+        }
+    }
+
+
+    /** The previous implementation, sort every column and trim to the page size */
+    private TreeSet<HColumn<ByteBuffer, ByteBuffer>> fullSort( List<List<HColumn<ByteBuffer, ByteBuffer>>> buckets,
+                                                               Comparator<HColumn<ByteBuffer, ByteBuffer>> comparator ) {
+        TreeSet<HColumn<ByteBuffer, ByteBuffer>> resultsTree = new TreeSet<HColumn<ByteBuffer, ByteBuffer>>( comparator );
+
+        for ( List<HColumn<ByteBuffer, ByteBuffer>> cols : buckets ) {
+            for ( HColumn<ByteBuffer, ByteBuffer> col : cols ) {
+                resultsTree.add( col );
+
+                if ( resultsTree.size() > PAGE_SIZE ) {
+                    resultsTree.pollLast();
+                }
+            }
+        }
+
+        return resultsTree;
+    }
+
+
+    /** Generate a page of sorted columns for every bucket, as cassandra would return them from a multiget */
+    private List<List<HColumn<ByteBuffer, ByteBuffer>>> generate( int bucketCount,
+                                                                  Comparator<HColumn<ByteBuffer, ByteBuffer>>
+                                                                          comparator ) {
+        Random random = new Random( bucketCount );
+
+        List<List<HColumn<ByteBuffer, ByteBuffer>>> buckets =
+                new ArrayList<List<HColumn<ByteBuffer, ByteBuffer>>>( bucketCount );
+
+        for ( int i = 0; i < bucketCount; i++ ) {
+            TreeSet<HColumn<ByteBuffer, ByteBuffer>> bucket = new TreeSet<HColumn<ByteBuffer, ByteBuffer>>( comparator );
+
+            int size = random.nextInt( PAGE_SIZE + 1 );
+
+            for ( int j = 0; j < size; j++ ) {
+                UUID id = UUIDUtils.newTimeUUID();
+                DynamicComposite name = new DynamicComposite( random.nextInt( 1000 ), id );
+
+                bucket.add( HFactory.createColumn( name.serialize(), ByteBuffer.allocate( 0 ),
+                        ByteBufferSerializer.get(), ByteBufferSerializer.get() ) );
+            }
+
+            buckets.add( new ArrayList<HColumn<ByteBuffer, ByteBuffer>>( bucket ) );
+        }
+
+        return buckets;
+    }
+
+
+    private Comparator<HColumn<ByteBuffer, ByteBuffer>> comparator( final boolean reversed ) throws Exception {
+        @SuppressWarnings( "rawtypes" ) final AbstractType type =
+                TypeParser.parse( ApplicationCF.ENTITY_INDEX.getComparator() );
+
+        return new Comparator<HColumn<ByteBuffer, ByteBuffer>>() {
+            @SuppressWarnings( "unchecked" )
+            @Override
+            public int compare( HColumn<ByteBuffer, ByteBuffer> first, HColumn<ByteBuffer, ByteBuffer> second ) {
+                return reversed ? type.compare( second.getName(), first.getName() ) :
+                       type.compare( first.getName(), second.getName() );
+            }
+        };
+    }
+}
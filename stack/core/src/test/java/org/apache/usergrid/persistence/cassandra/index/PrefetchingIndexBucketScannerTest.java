@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cassandra.index;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.apache.usergrid.cassandra.Concurrent;
+import org.apache.usergrid.persistence.IndexBucketLocator.IndexType;
+import org.apache.usergrid.persistence.cassandra.ApplicationCF;
+
+import me.prettyprint.cassandra.serializers.ByteBufferSerializer;
+import me.prettyprint.hector.api.beans.HColumn;
+import me.prettyprint.hector.api.factory.HFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+@Concurrent()
+public class PrefetchingIndexBucketScannerTest {
+
+    private static final int PAGES = 10;
+
+    private static final int PAGE_SIZE = 5;
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool( 2 );
+
+
+    @AfterClass
+    public static void shutdown() {
+        executor.shutdownNow();
+    }
+
+
+    @Test
+    public void returnsEveryPageInOrder() {
+        StubScanner scanner = new StubScanner( 3, -1 );
+
+        assertEquals( expected(), read( scanner ) );
+
+        //the first two pages are read on the calling thread, the rest are read ahead
+        assertEquals( PAGES, scanner.readers.size() );
+        assertFalse( scanner.readers.subList( 2, PAGES ).contains( Thread.currentThread() ) );
+    }
+
+
+    @Test
+    public void singlePageReadsNothingAhead() throws Exception {
+        StubScanner scanner = new StubScanner( 3, -1 );
+
+        assertTrue( scanner.hasNext() );
+        scanner.next();
+
+        //give a misbehaving reader the chance to run
+        Thread.sleep( 100 );
+
+        assertEquals( 1, scanner.readers.size() );
+    }
+
+
+    @Test
+    public void resetRestartsScan() {
+        StubScanner scanner = new StubScanner( 2, -1 );
+
+        for ( int i = 0; i < 4; i++ ) {
+            assertTrue( scanner.hasNext() );
+            scanner.next();
+        }
+
+        scanner.reset();
+
+        assertEquals( expected(), read( scanner ) );
+    }
+
+
+    @Test
+    public void seekSkipsPages() {
+        StubScanner scanner = new StubScanner( 3, -1 );
+
+        for ( int i = 0; i < 3; i++ ) {
+            assertTrue( scanner.hasNext() );
+            scanner.next();
+        }
+
+        scanner.seek( 7 );
+
+        List<Long> values = read( scanner );
+
+        assertEquals( expected().subList( 7 * PAGE_SIZE, PAGES * PAGE_SIZE ), values );
+        assertFalse( scanner.hasMorePages() );
+
+        //seeking after the last page reads nothing
+        int reads = scanner.readers.size();
+        scanner.seek( 8 );
+
+        assertFalse( scanner.hasNext() );
+        assertEquals( reads, scanner.readers.size() );
+    }
+
+
+    @Test
+    public void errorsPropagate() {
+        StubScanner scanner = new StubScanner( 2, 4 );
+
+        try {
+            read( scanner );
+            fail( "The failed read must be thrown to the caller" );
+        }
+        catch ( RuntimeException e ) {
+            assertEquals( "page 4", e.getCause().getMessage() );
+        }
+
+        assertFalse( scanner.readers.isEmpty() );
+    }
+
+
+    private static List<Long> read( StubScanner scanner ) {
+        List<Long> values = new ArrayList<Long>();
+
+        while ( scanner.hasNext() ) {
+            for ( HColumn<ByteBuffer, ByteBuffer> column : scanner.next() ) {
+                values.add( column.getName().getLong( column.getName().position() ) );
+            }
+        }
+
+        return values;
+    }
+
+
+    private static List<Long> expected() {
+        List<Long> values = new ArrayList<Long>();
+        for ( long i = 0; i < PAGES * PAGE_SIZE; i++ ) {
+            values.add( i );
+        }
+        return values;
+    }
+
+
+    /** Serves synthetic pages with a delay, the next page starts at the page number */
+    private static class StubScanner extends PrefetchingIndexBucketScanner {
+
+        private final List<Thread> readers = new CopyOnWriteArrayList<Thread>();
+        private final int failOn;
+
+
+        private StubScanner( int readAhead, int failOn ) {
+            super( null, null, ApplicationCF.ENTITY_INDEX, null, IndexType.COLLECTION, null, null, null, false,
+                    PAGE_SIZE, false, executor, readAhead );
+            this.failOn = failOn;
+        }
+
+
+        @Override
+        protected Page loadPage( Object pageStart ) throws Exception {
+            int pageNumber = pageStart == null ? 0 : ( Integer ) pageStart;
+
+            readers.add( Thread.currentThread() );
+
+            Thread.sleep( 10 );
+
+            if ( pageNumber == failOn ) {
+                throw new Exception( "page " + pageNumber );
+            }
+
+            TreeSet<HColumn<ByteBuffer, ByteBuffer>> columns =
+                    new TreeSet<HColumn<ByteBuffer, ByteBuffer>>( new Comparator<HColumn<ByteBuffer, ByteBuffer>>() {
+                        @Override
+                        public int compare( HColumn<ByteBuffer, ByteBuffer> o1, HColumn<ByteBuffer, ByteBuffer> o2 ) {
+                            return o1.getName().compareTo( o2.getName() );
+                        }
+                    } );
+
+            for ( int i = 0; i < PAGE_SIZE; i++ ) {
+                ByteBuffer name = ByteBuffer.allocate( 8 );
+                name.putLong( 0, ( long ) pageNumber * PAGE_SIZE + i );
+                columns.add( HFactory.createColumn( name, ByteBuffer.allocate( 0 ), ByteBufferSerializer.get(),
+                        ByteBufferSerializer.get() ) );
+            }
+
+            Page page = new Page();
+            page.columns = columns;
+            page.next = pageNumber + 1;
+            page.hasMore = pageNumber + 1 < PAGES;
+
+            return page;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.geo;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.apache.usergrid.persistence.geo.model.Point;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import me.prettyprint.hector.api.beans.DynamicComposite;
+import me.prettyprint.hector.api.beans.HColumn;
+import me.prettyprint.hector.api.factory.HFactory;
+
+import static org.apache.usergrid.persistence.cassandra.Serializers.be;
+import static org.apache.usergrid.persistence.cassandra.Serializers.ue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class GeoIndexSearcherTest {
+
+    private static final Point CENTER = new Point( 37.776753, -122.407846 );
+
+    private static final List<EntityLocationRef> LOCATIONS = locations( 500 );
+
+
+    @Test
+    public void prefetchedResultsEqual() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool( 2 );
+
+        try {
+            assertSameResults( executor );
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void rejectedPrefetchReadsInline() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+
+        StubSearcher searcher = new StubSearcher( executor );
+
+        //every prefetch is rejected, so the cells are read when the search gets to them
+        assertEquals( ids( search( new StubSearcher( null ), 50, 0 ) ), ids( search( searcher, 50, 0 ) ) );
+        assertTrue( searcher.searches.get() > 0 );
+    }
+
+
+    @Test
+    public void discardedRingsCancelled() throws Exception {
+        LazyExecutor executor = new LazyExecutor();
+
+        assertSameResults( executor );
+
+        boolean cancelled = false;
+
+        //every prefetch was either consumed by the search, or cancelled once the search took the other ring
+        for ( LazyTask<?> task : executor.tasks ) {
+            assertTrue( task.isDone() );
+            cancelled |= task.isCancelled();
+        }
+
+        assertFalse( executor.tasks.isEmpty() );
+        assertTrue( cancelled );
+    }
+
+
+    private static void assertSameResults( ExecutorService executor ) throws Exception {
+        for ( int maxResults : new int[] { 1, 10, 50, 200 } ) {
+            for ( double maxDistance : new double[] { 0, 5000, 50000 } ) {
+                GeoIndexSearcher.SearchResults expected = search( new StubSearcher( null ), maxResults, maxDistance );
+                GeoIndexSearcher.SearchResults actual =
+                        search( new StubSearcher( executor ), maxResults, maxDistance );
+
+                String message = maxResults + " results within " + maxDistance;
+
+                assertFalse( message, expected.entityLocations.isEmpty() );
+                assertEquals( message, ids( expected ), ids( actual ) );
+                assertEquals( message, expected.lastSearchedGeoCells, actual.lastSearchedGeoCells );
+            }
+        }
+    }
+
+
+    private static GeoIndexSearcher.SearchResults search( GeoIndexSearcher searcher, int maxResults,
+                                                          double maxDistance ) throws Exception {
+        return searcher.proximitySearch( null, null, CENTER, "location", 0, maxDistance, maxResults );
+    }
+
+
+    private static List<UUID> ids( GeoIndexSearcher.SearchResults results ) {
+        List<UUID> ids = new ArrayList<UUID>( results.entityLocations.size() );
+
+        for ( EntityLocationRef location : results.entityLocations ) {
+            ids.add( location.getUuid() );
+        }
+
+        return ids;
+    }
+
+
+    /** Random locations up to about 50km from the center */
+    private static List<EntityLocationRef> locations( int count ) {
+        Random random = new Random( 42 );
+        List<EntityLocationRef> locations = new ArrayList<EntityLocationRef>( count );
+
+        for ( int i = 0; i < count; i++ ) {
+            double latitude = CENTER.getLat() + ( random.nextDouble() - 0.5 );
+            double longitude = CENTER.getLon() + ( random.nextDouble() - 0.5 );
+
+            locations.add( new EntityLocationRef( "thing", UUIDUtils.newTimeUUID(), UUIDUtils.newTimeUUID(), latitude,
+                    longitude ) );
+        }
+
+        return locations;
+    }
+
+
+    /** Searches the geocells of the locations in memory, the way the index rows would be read */
+    private static class StubSearcher extends GeoIndexSearcher {
+
+        private static final Comparator<HColumn<ByteBuffer, ByteBuffer>> BY_UUID =
+                new Comparator<HColumn<ByteBuffer, ByteBuffer>>() {
+                    @Override
+                    public int compare( HColumn<ByteBuffer, ByteBuffer> o1, HColumn<ByteBuffer, ByteBuffer> o2 ) {
+                        return uuid( o1 ).compareTo( uuid( o2 ) );
+                    }
+                };
+
+        private final ExecutorService executor;
+        private final AtomicInteger searches = new AtomicInteger();
+
+
+        private StubSearcher( ExecutorService executor ) {
+            super( null, null, null );
+            this.executor = executor;
+        }
+
+
+        @Override
+        protected ExecutorService getPrefetchExecutor() {
+            return executor;
+        }
+
+
+        @Override
+        protected TreeSet<HColumn<ByteBuffer, ByteBuffer>> doSearch( List<String> geoCells, UUID startId,
+                                                                     Point searchPoint, String propertyName,
+                                                                     int pageSize ) {
+            searches.incrementAndGet();
+
+            TreeSet<HColumn<ByteBuffer, ByteBuffer>> columns = new TreeSet<HColumn<ByteBuffer, ByteBuffer>>( BY_UUID );
+
+            for ( EntityLocationRef location : LOCATIONS ) {
+                if ( startId != null && location.getUuid().compareTo( startId ) < 0 ) {
+                    continue;
+                }
+
+                if ( Collections.disjoint( GeocellManager.generateGeoCell( location.getPoint() ), geoCells ) ) {
+                    continue;
+                }
+
+                columns.add( HFactory.createColumn( location.getColumnName().serialize(),
+                        location.getColumnValue().serialize(), be, be ) );
+
+                if ( columns.size() > pageSize ) {
+                    columns.pollLast();
+                }
+            }
+
+            return columns;
+        }
+
+
+        private static UUID uuid( HColumn<ByteBuffer, ByteBuffer> column ) {
+            return DynamicComposite.fromByteBuffer( column.getName().duplicate() ).get( 0, ue );
+        }
+    }
+
+
+    /** Only runs a task once its result is asked for, so prefetches that are never used stay pending */
+    private static class LazyExecutor extends AbstractExecutorService {
+
+        private final List<LazyTask<?>> tasks = Collections.synchronizedList( new ArrayList<LazyTask<?>>() );
+
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor( Callable<T> callable ) {
+            LazyTask<T> task = new LazyTask<T>( callable );
+            tasks.add( task );
+            return task;
+        }
+
+
+        @Override
+        public void execute( Runnable command ) {
+            //run when the result is read
+        }
+
+
+        @Override
+        public void shutdown() {
+        }
+
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+
+        @Override
+        public boolean awaitTermination( long timeout, TimeUnit unit ) {
+            return true;
+        }
+    }
+
+
+    private static class LazyTask<T> extends FutureTask<T> {
+
+        private LazyTask( Callable<T> callable ) {
+            super( callable );
+        }
+
+
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            run();
+            return super.get();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.geo;
+
+
+import java.util.List;
+
+import org.junit.Test;
+import org.apache.usergrid.persistence.geo.model.BoundingBox;
+import org.apache.usergrid.persistence.geo.model.Point;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class GeocellManagerTest {
+
+    @Test
+    public void normalizeResolutions() {
+        assertArrayEquals( new int[] { 1, 5, 9 }, GeocellManager.normalizeResolutions( 9, 5, 9 ) );
+        assertArrayEquals( GeocellManager.allResolutions(), GeocellManager.normalizeResolutions() );
+        assertTrue( GeocellManager.isAllResolutions( GeocellManager.normalizeResolutions( null ) ) );
+        assertFalse( GeocellManager.isAllResolutions( GeocellManager.normalizeResolutions( 1, 9 ) ) );
+    }
+
+
+    @Test( expected = IllegalArgumentException.class )
+    public void resolutionOutOfRange() {
+        GeocellManager.normalizeResolutions( 1, GeocellManager.MAX_GEOCELL_RESOLUTION + 1 );
+    }
+
+
+    @Test
+    public void generateSelectedResolutions() {
+        Point point = new Point( 37.776753, -122.407846 );
+
+        List<String> all = GeocellManager.generateGeoCell( point );
+        List<String> selected = GeocellManager.generateGeoCell( point, new int[] { 1, 5, 9 } );
+
+        assertEquals( 3, selected.size() );
+        assertEquals( all.get( 0 ), selected.get( 0 ) );
+        assertEquals( all.get( 4 ), selected.get( 1 ) );
+        assertEquals( all.get( 8 ), selected.get( 2 ) );
+    }
+
+
+    @Test
+    public void bboxSearchUsesIndexedResolutions() {
+        BoundingBox bbox = new BoundingBox( 37.78, -122.40, 37.77, -122.41 );
+
+        int[] resolutions = { 1, 3, 6 };
+
+        List<String> cells = GeocellManager.bestBboxSearchCells( bbox, null, resolutions );
+
+        assertFalse( cells.isEmpty() );
+
+        for ( String cell : cells ) {
+            assertTrue( cell, cell.length() == 1 || cell.length() == 3 || cell.length() == 6 );
+        }
+    }
+}
@@ -294,6 +294,162 @@ public class IntersectionIteratorTest {
     }
 
 
+    @Test
+    public void mergeJoin() {
+        SeekableInOrderIterator first = new SeekableInOrderIterator( 7 );
+        SeekableInOrderIterator second = new SeekableInOrderIterator( 7 );
+        SeekableInOrderIterator third = new SeekableInOrderIterator( 7 );
+
+        List<UUID> expected = new ArrayList<UUID>();
+
+        for ( int i = 0; i < 300; i++ ) {
+            UUID id = UUIDUtils.newTimeUUID();
+
+            first.add( id );
+
+            if ( i % 2 == 0 ) {
+                second.add( id );
+            }
+
+            if ( i % 3 == 0 ) {
+                third.add( id );
+            }
+
+            if ( i % 6 == 0 ) {
+                expected.add( id );
+            }
+        }
+
+        IntersectionIterator intersection = new IntersectionIterator( 10 );
+        intersection.addIterator( first );
+        intersection.addIterator( second );
+        intersection.addIterator( third );
+
+        assertEquals( expected, drain( intersection ) );
+
+        //every sub iterator is read once
+        assertTrue( first.pagesRead <= 300 / 7 + 1 );
+
+        //reset starts over
+        intersection.reset();
+
+        assertEquals( expected, drain( intersection ) );
+    }
+
+
+    @Test
+    public void mergeJoinSeeksPastGaps() {
+        SeekableInOrderIterator small = new SeekableInOrderIterator( 100 );
+        SeekableInOrderIterator large = new SeekableInOrderIterator( 100 );
+
+        List<UUID> expected = new ArrayList<UUID>();
+
+        for ( int i = 0; i < 10000; i++ ) {
+            UUID id = UUIDUtils.newTimeUUID();
+
+            large.add( id );
+
+            if ( i % 1000 == 0 ) {
+                small.add( id );
+                expected.add( id );
+            }
+        }
+
+        //add the large one first, the smallest should drive the join
+        IntersectionIterator intersection = new IntersectionIterator( 100 );
+        intersection.addIterator( large );
+        intersection.addIterator( small );
+
+        assertEquals( expected, drain( intersection ) );
+
+        //one page per match instead of reading all 100 pages of the large iterator
+        assertTrue( large.seeks > 0 );
+        assertTrue( large.pagesRead <= expected.size() + 1 );
+
+        //the driving iterator builds the cursor
+        intersection.finalizeCursor( null, expected.get( expected.size() - 1 ) );
+
+        assertEquals( expected.get( expected.size() - 1 ), small.finalizedCursor );
+        assertEquals( null, large.finalizedCursor );
+    }
+
+
+    @Test
+    public void mergeJoinStopsAtDrivingPage() {
+        SeekableInOrderIterator first = new SeekableInOrderIterator( 5 );
+        SeekableInOrderIterator second = new SeekableInOrderIterator( 100 );
+
+        for ( int i = 0; i < 20; i++ ) {
+            UUID id = UUIDUtils.newTimeUUID();
+            first.add( id );
+            second.add( id );
+        }
+
+        IntersectionIterator intersection = new IntersectionIterator( 100 );
+        intersection.addIterator( first );
+        intersection.addIterator( second );
+
+        //the last id of every page must be in the current page of the driving iterator to build the cursor
+        assertEquals( 5, intersection.next().size() );
+        assertEquals( 5, intersection.next().size() );
+    }
+
+
+    @Test
+    public void mergeJoinDuplicateAcrossPages() {
+        UUID id1 = UUIDUtils.minTimeUUID( 1 );
+        UUID id2 = UUIDUtils.minTimeUUID( 2 );
+        UUID id3 = UUIDUtils.minTimeUUID( 3 );
+
+        //an entity can have several entries in an index, they can be split over pages
+        SeekableInOrderIterator first = new SeekableInOrderIterator( 1 );
+        first.add( id1, id2, id2, id3 );
+
+        SeekableInOrderIterator second = new SeekableInOrderIterator( 1 );
+        second.add( id2, id2, id3, id3 );
+
+        IntersectionIterator intersection = new IntersectionIterator( 100 );
+        intersection.addIterator( first );
+        intersection.addIterator( second );
+
+        List<UUID> results = drain( intersection );
+
+        assertEquals( 2, results.size() );
+        assertEquals( id2, results.get( 0 ) );
+        assertEquals( id3, results.get( 1 ) );
+    }
+
+
+    @Test
+    public void mergeJoinEmptyIterator() {
+        SeekableInOrderIterator empty = new SeekableInOrderIterator( 10 );
+        SeekableInOrderIterator other = new SeekableInOrderIterator( 10 );
+        other.add( UUIDUtils.newTimeUUID() );
+
+        IntersectionIterator intersection = new IntersectionIterator( 10 );
+        intersection.addIterator( empty );
+        intersection.addIterator( other );
+
+        assertFalse( intersection.hasNext() );
+
+        //nothing can match, there's no need to read the others
+        assertEquals( 0, other.pagesRead );
+    }
+
+
+    private List<UUID> drain( IntersectionIterator intersection ) {
+        List<UUID> results = new ArrayList<UUID>();
+
+        while ( intersection.hasNext() ) {
+            for ( ScanColumn col : intersection.next() ) {
+                results.add( col.getUUID() );
+            }
+        }
+
+        return results;
+    }
+
+
     private void reverse( UUID[] array ) {
 
         UUID temp = null;
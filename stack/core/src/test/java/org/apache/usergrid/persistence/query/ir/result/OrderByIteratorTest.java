@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.query.ir.result;
+
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.apache.usergrid.persistence.DynamicEntity;
+import org.apache.usergrid.persistence.Entity;
+import org.apache.usergrid.persistence.EntityManager;
+import org.apache.usergrid.persistence.Query;
+import org.apache.usergrid.persistence.Query.SortPredicate;
+import org.apache.usergrid.persistence.query.ir.QuerySlice;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class OrderByIteratorTest {
+
+    private static final int COUNT = 1000;
+
+    private static final int PAGE_SIZE = 10;
+
+
+    @Test
+    public void topOfUnorderedCandidates() {
+        Map<UUID, Entity> entities = new HashMap<UUID, Entity>();
+        InOrderIterator candidates = new InOrderIterator( 100 );
+
+        Random random = new Random( 42 );
+
+        for ( int i = 0; i < COUNT; i++ ) {
+            Entity entity = entity( random.nextInt( COUNT * 10 ), i % 3 );
+            entities.put( entity.getUuid(), entity );
+            candidates.add( entity.getUuid() );
+        }
+
+        AtomicInteger loads = new AtomicInteger();
+
+        OrderByIterator itr =
+                new OrderByIterator( new QuerySlice( "primary", 0 ), secondary(), candidates, em( entities, loads ),
+                        PAGE_SIZE, false, 50 );
+
+        assertEquals( expected( entities.values() ), ids( itr.next() ) );
+
+        //every candidate must be evaluated, in batches
+        assertEquals( COUNT, itr.getRowsExamined() );
+        assertEquals( COUNT / 50, loads.get() );
+    }
+
+
+    @Test
+    public void stopsOnOrderedCandidates() {
+        Map<UUID, Entity> entities = new HashMap<UUID, Entity>();
+        InOrderIterator candidates = new InOrderIterator( 100 );
+
+        //scanned in the order of the primary sort, every 4 entities share a primary value
+        for ( int i = 0; i < COUNT; i++ ) {
+            Entity entity = entity( i / 4, COUNT - i );
+            entities.put( entity.getUuid(), entity );
+            candidates.add( entity.getUuid() );
+        }
+
+        OrderByIterator itr =
+                new OrderByIterator( new QuerySlice( "primary", 0 ), secondary(), candidates,
+                        em( entities, new AtomicInteger() ), PAGE_SIZE, true, 8 );
+
+        Set<ScanColumn> page = itr.next();
+
+        assertEquals( expected( entities.values() ), ids( page ) );
+        assertTrue( "Examined " + itr.getRowsExamined(), itr.getRowsExamined() < 100 );
+
+        //the rest of the candidates can't contribute to this page
+        assertEquals( false, itr.hasNext() );
+    }
+
+
+    private static List<SortPredicate> secondary() {
+        return Collections.singletonList( new SortPredicate( "secondary", Query.SortDirection.DESCENDING ) );
+    }
+
+
+    private static Entity entity( long primary, long secondary ) {
+        Entity entity = new DynamicEntity( "test", UUIDUtils.newTimeUUID() );
+        entity.setProperty( "primary", primary );
+        entity.setProperty( "secondary", secondary );
+        return entity;
+    }
+
+
+    /** Sort every entity by primary asc, secondary desc and return the first page */
+    private static List<UUID> expected( Collection<Entity> entities ) {
+        List<Entity> sorted = new ArrayList<Entity>( entities );
+
+        Collections.sort( sorted, new Comparator<Entity>() {
+            @Override
+            public int compare( Entity e1, Entity e2 ) {
+                int c = ( ( Long ) e1.getProperty( "primary" ) ).compareTo( ( Long ) e2.getProperty( "primary" ) );
+                if ( c != 0 ) {
+                    return c;
+                }
+                return ( ( Long ) e2.getProperty( "secondary" ) ).compareTo( ( Long ) e1.getProperty( "secondary" ) );
+            }
+        } );
+
+        List<UUID> ids = new ArrayList<UUID>();
+        for ( Entity entity : sorted.subList( 0, PAGE_SIZE ) ) {
+            ids.add( entity.getUuid() );
+        }
+        return ids;
+    }
+
+
+    private static List<UUID> ids( Set<ScanColumn> columns ) {
+        List<UUID> ids = new ArrayList<UUID>();
+        for ( ScanColumn column : columns ) {
+            ids.add( column.getUUID() );
+        }
+        return ids;
+    }
+
+
+    /** An entity manager that only serves partial entities from the map */
+    private static EntityManager em( final Map<UUID, Entity> entities, final AtomicInteger loads ) {
+        return ( EntityManager ) Proxy.newProxyInstance( EntityManager.class.getClassLoader(), new Class<?>[] {
+                EntityManager.class
+        }, new InvocationHandler() {
+            @Override
+            @SuppressWarnings( "unchecked" )
+            public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+                if ( !"getPartialEntities".equals( method.getName() ) ) {
+                    throw new UnsupportedOperationException( method.getName() );
+                }
+
+                loads.incrementAndGet();
+
+                List<Entity> results = new ArrayList<Entity>();
+                for ( UUID id : ( Collection<UUID> ) args[0] ) {
+                    Entity entity = entities.get( id );
+                    if ( entity != null ) {
+                        results.add( entity );
+                    }
+                }
+                return results;
+            }
+        } );
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.query.ir.result;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Ignore;
+import org.apache.usergrid.persistence.cassandra.CursorCache;
+import org.apache.usergrid.utils.UUIDUtils;
+
+
+/** Iterates UUIDs in uuid order like an equality slice, and counts the pages it reads */
+@Ignore("not a test")
+public class SeekableInOrderIterator implements SeekableResultIterator {
+
+    private final List<ScanColumn> columns = new ArrayList<ScanColumn>();
+    private final int pageSize;
+
+    /** The index of the first column of the next page */
+    private int position;
+
+    int pagesRead;
+    int seeks;
+    UUID finalizedCursor;
+
+
+    public SeekableInOrderIterator( int pageSize ) {
+        this.pageSize = pageSize;
+    }
+
+
+    /** Add uuids, they're sorted */
+    public void add( UUID... ids ) {
+        for ( UUID current : ids ) {
+            columns.add( new UUIDIndexSliceParser.UUIDColumn( current, ByteBuffer.allocate( 0 ) ) );
+        }
+
+        Collections.sort( columns, new Comparator<ScanColumn>() {
+            @Override
+            public int compare( ScanColumn o1, ScanColumn o2 ) {
+                return UUIDUtils.compare( o1.getUUID(), o2.getUUID() );
+            }
+        } );
+    }
+
+
+    @Override
+    public boolean isOrdered() {
+        return true;
+    }
+
+
+    @Override
+    public void seek( UUID id ) {
+        int seekPosition = position;
+
+        while ( seekPosition < columns.size() && UUIDUtils.compare( columns.get( seekPosition ).getUUID(), id ) < 0 ) {
+            seekPosition++;
+        }
+
+        if ( seekPosition != position ) {
+            position = seekPosition;
+            seeks++;
+        }
+    }
+
+
+    @Override
+    public long getEstimatedSize() {
+        return columns.size();
+    }
+
+
+    @Override
+    public Iterator<Set<ScanColumn>> iterator() {
+        return this;
+    }
+
+
+    @Override
+    public boolean hasNext() {
+        return position < columns.size();
+    }
+
+
+    @Override
+    public Set<ScanColumn> next() {
+        int end = Math.min( position + pageSize, columns.size() );
+
+        Set<ScanColumn> page = new LinkedHashSet<ScanColumn>( columns.subList( position, end ) );
+
+        position = end;
+        pagesRead++;
+
+        return page;
+    }
+
+
+    @Override
+    public void reset() {
+        position = 0;
+    }
+
+
+    @Override
+    public void remove() {
+    }
+
+
+    @Override
+    public void finalizeCursor( CursorCache cache, UUID lastLoaded ) {
+        finalizedCursor = lastLoaded;
+    }
+}
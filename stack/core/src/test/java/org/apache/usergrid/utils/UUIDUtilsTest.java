@@ -18,11 +18,14 @@ package org.apache.usergrid.utils;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -220,6 +223,52 @@ public class UUIDUtilsTest {
     }
 
 
+    @Test
+    public void concurrentUuidUniqueAcrossThreads() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        for ( int threads = 1; threads <= Math.max( cores, 2 ); threads *= 2 ) {
+            final int count = 50 * 1000;
+            final Set<Long> created = Collections.newSetFromMap( new ConcurrentHashMap<Long, Boolean>() );
+            final CountDownLatch start = new CountDownLatch( 1 );
+
+            ExecutorService exec = Executors.newFixedThreadPool( threads );
+            List<Future<?>> jobs = new ArrayList<Future<?>>( threads );
+
+            for ( int x = 0; x < threads; x++ ) {
+                jobs.add( exec.submit( new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        start.await();
+
+                        for ( int i = 0; i < count; i++ ) {
+                            created.add( UUIDUtils.getTimestampInMicros( UUIDUtils.newTimeUUID() ) );
+                        }
+
+                        return null;
+                    }
+                } ) );
+            }
+
+            long startTime = System.nanoTime();
+            start.countDown();
+
+            for ( Future<?> f : jobs ) {
+                f.get();
+            }
+
+            long elapsed = Math.max( 1, TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - startTime ) );
+            exec.shutdown();
+
+            LOG.info( "{} threads generated {} uuids in {} ms, {} uuids/ms",
+                    new Object[] { threads, threads * count, elapsed, threads * count / elapsed } );
+
+            // every timestamp must be unique across all threads, not just within one
+            assertEquals( threads * count, created.size() );
+        }
+    }
+
+
     @Test
     public void timeUUIDOrderingRolls() {
 
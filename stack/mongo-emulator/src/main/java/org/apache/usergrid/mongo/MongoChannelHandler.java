@@ -17,6 +17,8 @@
 package org.apache.usergrid.mongo;
 
 
+import java.util.UUID;
+
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
@@ -26,8 +28,10 @@ import org.slf4j.LoggerFactory;
 import org.apache.usergrid.management.ManagementService;
 import org.apache.usergrid.mongo.protocol.Message;
 import org.apache.usergrid.mongo.protocol.OpCrud;
+import org.apache.usergrid.mongo.protocol.OpKillCursors;
 import org.apache.usergrid.mongo.protocol.OpReply;
 import org.apache.usergrid.persistence.EntityManagerFactory;
+import org.apache.usergrid.security.shiro.utils.SubjectUtils;
 import org.apache.usergrid.services.ServiceManagerFactory;
 
 import org.apache.shiro.mgt.SessionsSecurityManager;
@@ -44,12 +48,13 @@ public class MongoChannelHandler extends SimpleChannelUpstreamHandler {
     private final ServiceManagerFactory smf;
     private final ManagementService management;
     private final SessionsSecurityManager securityManager;
+    private final MongoCursors cursors;
 
     Subject subject = null;
 
 
     public MongoChannelHandler( EntityManagerFactory emf, ServiceManagerFactory smf, ManagementService management,
-                                SessionsSecurityManager securityManager ) {
+                                SessionsSecurityManager securityManager, MongoCursors cursors ) {
         super();
 
         logger.info( "Starting new client connection..." );
@@ -57,6 +62,7 @@ public class MongoChannelHandler extends SimpleChannelUpstreamHandler {
         this.smf = smf;
         this.management = management;
         this.securityManager = securityManager;
+        this.cursors = cursors;
 
         if ( securityManager != null ) {
             subject = new Subject.Builder( securityManager ).buildSubject();
@@ -84,6 +90,12 @@ public class MongoChannelHandler extends SimpleChannelUpstreamHandler {
     }
 
 
+    /** @return the cursors open on the server */
+    public MongoCursors getCursors() {
+        return cursors;
+    }
+
+
     @Override
     public void messageReceived( ChannelHandlerContext ctx, MessageEvent e ) {
 
@@ -139,6 +151,15 @@ public class MongoChannelHandler extends SimpleChannelUpstreamHandler {
             return ( ( OpCrud ) message ).doOp( this, ctx, e );
         }
 
+        //the client doesn't expect a reply
+        if ( message instanceof OpKillCursors ) {
+            UUID owner = SubjectUtils.getSubjectUserId();
+            for ( Long cursorID : ( ( OpKillCursors ) message ).getCursorIDs() ) {
+                cursors.kill( cursorID, owner );
+            }
+            return null;
+        }
+
         OpReply reply = new OpReply( message );
         return reply;
     }
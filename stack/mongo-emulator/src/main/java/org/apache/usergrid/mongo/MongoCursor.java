@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mongo;
+
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+
+import org.bson.BSONObject;
+import org.bson.BasicBSONObject;
+import org.bson.types.ObjectId;
+import org.apache.usergrid.persistence.Entity;
+import org.apache.usergrid.persistence.EntityManager;
+import org.apache.usergrid.persistence.Query;
+import org.apache.usergrid.persistence.Results;
+import org.apache.usergrid.persistence.Schema;
+
+import static org.apache.usergrid.utils.JsonUtils.toJsonMap;
+import static org.apache.usergrid.utils.MapUtils.entry;
+import static org.apache.usergrid.utils.MapUtils.map;
+
+
+/**
+ * A query on a collection read in batches by a mongo client.  Each page of entities is read with the cursor of the
+ * previous page, so iterating a collection costs a single index scan no matter how many batches the client asks for.
+ */
+public class MongoCursor {
+
+    private final UUID applicationId;
+    private final String collectionName;
+    private final Query query;
+
+    /** The user who opened the cursor */
+    private final UUID owner;
+
+    /** The cursor of the next page, null once the last page has been read */
+    private String cursor;
+    private boolean done;
+
+    /** Documents read from the collection but not yet returned to the client */
+    private final LinkedList<BSONObject> buffered = new LinkedList<BSONObject>();
+    private int position;
+    private volatile long lastAccessed = System.currentTimeMillis();
+
+
+    public MongoCursor( UUID applicationId, String collectionName, Query query, UUID owner ) {
+        this.applicationId = applicationId;
+        this.collectionName = collectionName;
+        this.query = query != null ? query : new Query();
+        this.owner = owner;
+    }
+
+
+    public UUID getApplicationId() {
+        return applicationId;
+    }
+
+
+    /** @return true if the cursor was opened by the user */
+    public boolean isOwnedBy( UUID user ) {
+        return owner == null ? user == null : owner.equals( user );
+    }
+
+
+    /** @return the number of documents returned to the client so far */
+    public synchronized int getPosition() {
+        return position;
+    }
+
+
+    public long getLastAccessed() {
+        return lastAccessed;
+    }
+
+
+    /** @return true once every document has been returned */
+    public synchronized boolean isExhausted() {
+        return done && buffered.isEmpty();
+    }
+
+
+    /** Skip the first documents of the query without returning them */
+    public synchronized void skip( EntityManager em, int count ) throws Exception {
+        while ( count > 0 ) {
+            if ( buffered.isEmpty() ) {
+                if ( done ) {
+                    return;
+                }
+                readPage( em, count );
+                continue;
+            }
+
+            buffered.removeFirst();
+            count--;
+        }
+    }
+
+
+    /** @return the next batch of at most batchSize documents */
+    public synchronized List<BSONObject> next( EntityManager em, int batchSize ) throws Exception {
+        lastAccessed = System.currentTimeMillis();
+
+        while ( buffered.size() < batchSize && !done ) {
+            readPage( em, batchSize - buffered.size() );
+        }
+
+        List<BSONObject> batch = new ArrayList<BSONObject>( Math.min( batchSize, buffered.size() ) );
+
+        while ( batch.size() < batchSize && !buffered.isEmpty() ) {
+            batch.add( buffered.removeFirst() );
+        }
+
+        position += batch.size();
+
+        return batch;
+    }
+
+
+    private void readPage( EntityManager em, int count ) throws Exception {
+        Query q = new Query( query );
+        q.setLimit( Math.min( Math.max( count, 1 ), Query.MAX_LIMIT ) );
+        q.setCursor( cursor );
+
+        Results results = em.searchCollection( em.getApplicationRef(), collectionName, q );
+
+        for ( Entity entity : results.getEntities() ) {
+            buffered.add( toDocument( entity ) );
+        }
+
+        cursor = results.getCursor();
+        done = cursor == null || results.isEmpty();
+    }
+
+
+    /** @return the entity as a mongo document, with its mongo id if it was created through mongo */
+    public static BSONObject toDocument( Entity entity ) {
+        Object savedId = entity.getProperty( "_id" );
+        Object mongoId = null;
+
+        //try to parse it into an ObjectId
+        if ( savedId == null ) {
+            mongoId = entity.getUuid();
+        }
+        else {
+            try {
+                mongoId = new ObjectId( savedId.toString() );
+                //it's not a mongo Id, use it as is
+            }
+            catch ( IllegalArgumentException iae ) {
+                mongoId = savedId;
+            }
+        }
+
+        BSONObject document = new BasicBSONObject();
+        document.putAll( map( entry( "_id", mongoId ), toJsonMap( entity ),
+                entry( Schema.PROPERTY_UUID, entity.getUuid().toString() ) ) );
+        return document;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mongo;
+
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The cursors open on the server, by mongo cursor id.  As with mongod they belong to the server rather than to a
+ * connection, since pooled drivers read the next batches of a cursor on whichever connection is free.  A cursor can
+ * only be read or killed by the user who opened it.
+ */
+public class MongoCursors {
+
+    private static final Logger logger = LoggerFactory.getLogger( MongoCursors.class );
+
+    /** The number of milliseconds an unused cursor is kept, the same as mongod */
+    public static final long DEFAULT_CURSOR_TIMEOUT = 10 * 60 * 1000;
+
+    /** The max number of cursors open on the server, past which the least recently used one is killed */
+    public static final int MAX_CURSORS = 10000;
+
+    private final Map<Long, MongoCursor> cursors = new ConcurrentHashMap<Long, MongoCursor>();
+    private final Random cursorIds = new Random();
+    private final long cursorTimeout;
+
+
+    public MongoCursors( long cursorTimeout ) {
+        this.cursorTimeout = cursorTimeout;
+    }
+
+
+    /** @return the id the client uses to read the next batches of the cursor */
+    public long open( MongoCursor cursor ) {
+        expire();
+
+        if ( cursors.size() >= MAX_CURSORS ) {
+            killLeastRecentlyUsed();
+        }
+
+        while ( true ) {
+            //0 means no cursor to the client
+            long id = cursorIds.nextLong() & Long.MAX_VALUE;
+
+            if ( id != 0 && !cursors.containsKey( id ) ) {
+                cursors.put( id, cursor );
+                return id;
+            }
+        }
+    }
+
+
+    /** @return the open cursor, null if it was killed, exhausted, expired or opened by another user */
+    public MongoCursor get( long id, UUID owner ) {
+        expire();
+
+        MongoCursor cursor = cursors.get( id );
+
+        if ( cursor == null || !cursor.isOwnedBy( owner ) ) {
+            return null;
+        }
+
+        return cursor;
+    }
+
+
+    /** Kill the cursor if it was opened by the user */
+    public void kill( long id, UUID owner ) {
+        MongoCursor cursor = cursors.get( id );
+
+        if ( cursor != null && cursor.isOwnedBy( owner ) ) {
+            cursors.remove( id );
+        }
+    }
+
+
+    /** @return the number of cursors open on the server */
+    public int size() {
+        return cursors.size();
+    }
+
+
+    private void killLeastRecentlyUsed() {
+        Long oldest = null;
+        long oldestAccess = Long.MAX_VALUE;
+
+        for ( Map.Entry<Long, MongoCursor> entry : cursors.entrySet() ) {
+            if ( entry.getValue().getLastAccessed() < oldestAccess ) {
+                oldest = entry.getKey();
+                oldestAccess = entry.getValue().getLastAccessed();
+            }
+        }
+
+        if ( oldest != null ) {
+            logger.warn( "Too many open cursors, killing cursor {}", oldest );
+            cursors.remove( oldest );
+        }
+    }
+
+
+    private void expire() {
+        long expired = System.currentTimeMillis() - cursorTimeout;
+
+        for ( Iterator<MongoCursor> i = cursors.values().iterator(); i.hasNext(); ) {
+            if ( i.next().getLastAccessed() < expired ) {
+                i.remove();
+            }
+        }
+    }
+}
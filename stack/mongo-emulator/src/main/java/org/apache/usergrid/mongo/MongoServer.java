@@ -151,8 +151,15 @@ public class MongoServer {
         ExecutionHandler executionHandler =
                 new ExecutionHandler( new OrderedMemoryAwareThreadPoolExecutor( 16, 1048576, 1048576 ) );
         // TODO if config'ed for SSL, start the SslMSPF instead, change port as well?
+        long cursorTimeout = MongoCursors.DEFAULT_CURSOR_TIMEOUT;
+        if ( properties != null ) {
+            cursorTimeout = Long.parseLong( properties.getProperty( "usergrid.mongo.cursor.timeout",
+                    String.valueOf( cursorTimeout ) ) );
+        }
+
         bootstrap.setPipelineFactory(
-                new MongoServerPipelineFactory( emf, smf, management, securityManager, executionHandler ) );
+                new MongoServerPipelineFactory( emf, smf, management, securityManager, executionHandler,
+                        cursorTimeout ) );
 
         // Bind and start to accept incoming connections.
         channel = bootstrap.bind( new InetSocketAddress( 27017 ) );
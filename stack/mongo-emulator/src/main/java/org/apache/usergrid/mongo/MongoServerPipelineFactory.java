@@ -35,22 +35,30 @@ public class MongoServerPipelineFactory implements ChannelPipelineFactory {
     private final ServiceManagerFactory smf;
     private final ManagementService management;
     private final SessionsSecurityManager securityManager;
+    private final MongoCursors cursors;
 
 
     public MongoServerPipelineFactory( EntityManagerFactory emf, ServiceManagerFactory smf,
                                        ManagementService management, SessionsSecurityManager securityManager,
-                                       ExecutionHandler executionHandler ) {
+                                       ExecutionHandler executionHandler, long cursorTimeout ) {
         this.emf = emf;
         this.smf = smf;
         this.management = management;
         this.securityManager = securityManager;
         this.executionHandler = executionHandler;
+        this.cursors = new MongoCursors( cursorTimeout );
+    }
+
+
+    /** @return the cursors shared by all the connections of the server */
+    public MongoCursors getCursors() {
+        return cursors;
     }
 
 
     @Override
     public ChannelPipeline getPipeline() throws Exception {
         return Channels.pipeline( new MongoMessageEncoder(), new MongoMessageDecoder(), executionHandler,
-                new MongoChannelHandler( emf, smf, management, securityManager ) );
+                new MongoChannelHandler( emf, smf, management, securityManager, cursors ) );
     }
 }
@@ -19,15 +19,39 @@ package org.apache.usergrid.mongo.protocol;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.UUID;
 
+import org.bson.BSONObject;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.MessageEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.usergrid.management.ApplicationInfo;
 import org.apache.usergrid.mongo.MongoChannelHandler;
+import org.apache.usergrid.mongo.MongoCursor;
+import org.apache.usergrid.mongo.MongoCursors;
+import org.apache.usergrid.persistence.EntityManager;
+import org.apache.usergrid.persistence.Identifier;
+import org.apache.usergrid.persistence.Query;
+import org.apache.usergrid.security.shiro.utils.SubjectUtils;
+
+import static org.apache.usergrid.utils.MapUtils.map;
 
 
 public class OpGetMore extends OpCrud {
 
+    private static final Logger logger = LoggerFactory.getLogger( OpGetMore.class );
+
+    /** Reply flag telling the client the cursor is no longer open */
+    public static final int CURSOR_NOT_FOUND = 1;
+
+    /** Reply flag telling the client the first document of the reply is an error */
+    public static final int QUERY_FAILURE = 2;
+
+    /** The number of documents in a batch when the client leaves it to the server */
+    public static final int DEFAULT_BATCH_SIZE = Query.MAX_LIMIT;
+
     int numberToReturn;
     long cursorID;
 
@@ -97,7 +121,54 @@ public class OpGetMore extends OpCrud {
      */
     @Override
     public OpReply doOp( MongoChannelHandler handler, ChannelHandlerContext ctx, MessageEvent messageEvent ) {
-        return new OpReply( this );
+        OpReply reply = new OpReply( this );
+
+        MongoCursors cursors = handler.getCursors();
+        UUID owner = SubjectUtils.getSubjectUserId();
+
+        MongoCursor cursor = SubjectUtils.getSubject().isAuthenticated() ? cursors.get( cursorID, owner ) : null;
+
+        //the user must still have access to the application the cursor reads
+        if ( cursor != null ) {
+            ApplicationInfo application = SubjectUtils.getApplication( Identifier.from( getDatabaseName() ) );
+
+            if ( application == null || !application.getId().equals( cursor.getApplicationId() ) ) {
+                cursor = null;
+            }
+        }
+
+        if ( cursor == null ) {
+            reply.setResponseFlags( reply.getResponseFlags() | CURSOR_NOT_FOUND );
+            return reply;
+        }
+
+        int count = numberToReturn > 0 ? numberToReturn : DEFAULT_BATCH_SIZE;
+
+        reply.setStartingFrom( cursor.getPosition() );
+
+        try {
+            EntityManager em = handler.getEmf().getEntityManager( cursor.getApplicationId() );
+
+            for ( BSONObject document : cursor.next( em, count ) ) {
+                reply.addDocument( document );
+            }
+        }
+        catch ( Exception ex ) {
+            logger.error( "Unable to read the next batch of cursor {}", cursorID, ex );
+            cursors.kill( cursorID, owner );
+            reply.setResponseFlags( reply.getResponseFlags() | QUERY_FAILURE );
+            reply.addDocument( map( "$err", "Unable to read the next batch: " + ex.getMessage() ) );
+            return reply;
+        }
+
+        if ( cursor.isExhausted() ) {
+            cursors.kill( cursorID, owner );
+        }
+        else {
+            reply.setCursorID( cursorID );
+        }
+
+        return reply;
     }
 
 
@@ -27,7 +27,6 @@ import java.util.Set;
 
 import org.bson.BSONObject;
 import org.bson.BasicBSONObject;
-import org.bson.types.ObjectId;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBufferInputStream;
 import org.jboss.netty.channel.ChannelHandlerContext;
@@ -37,14 +36,13 @@ import org.slf4j.LoggerFactory;
 import org.apache.usergrid.management.ApplicationInfo;
 import org.apache.usergrid.management.UserInfo;
 import org.apache.usergrid.mongo.MongoChannelHandler;
+import org.apache.usergrid.mongo.MongoCursor;
 import org.apache.usergrid.mongo.commands.MongoCommand;
 import org.apache.usergrid.mongo.query.MongoQueryParser;
 import org.apache.usergrid.mongo.utils.BSONUtils;
-import org.apache.usergrid.persistence.Entity;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.Identifier;
 import org.apache.usergrid.persistence.Query;
-import org.apache.usergrid.persistence.Results;
 import org.apache.usergrid.persistence.Schema;
 import org.apache.usergrid.security.shiro.PrincipalCredentialsToken;
 import org.apache.usergrid.security.shiro.utils.SubjectUtils;
@@ -53,7 +51,6 @@ import org.apache.usergrid.utils.MapUtils;
 import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.subject.Subject;
 
-import static org.apache.usergrid.utils.JsonUtils.toJsonMap;
 import static org.apache.usergrid.utils.MapUtils.entry;
 import static org.apache.usergrid.utils.MapUtils.map;
 
@@ -62,6 +59,9 @@ public class OpQuery extends OpCrud {
 
     private static final Logger logger = LoggerFactory.getLogger( OpQuery.class );
 
+    /** The number of documents in the first batch when the client leaves it to the server */
+    public static final int DEFAULT_BATCH_SIZE = 30;
+
     int flags;
     int numberToSkip;
     int numberToReturn;
@@ -386,46 +386,30 @@ public class OpQuery extends OpCrud {
             return reply;
         }
 
-        int count = getNumberToReturn();
+        //a negative number or 1 asks for a single batch, the client will not read the rest
+        boolean singleBatch = ( numberToReturn < 0 ) || ( numberToReturn == 1 );
+
+        int count = Math.abs( numberToReturn );
         if ( count <= 0 ) {
-            count = 30;
+            count = DEFAULT_BATCH_SIZE;
         }
 
         EntityManager em = handler.getEmf().getEntityManager( application.getId() );
 
         try {
-            Results results = null;
-            Query q = MongoQueryParser.toNativeQuery( query, returnFieldSelector, numberToReturn );
-            if ( q != null ) {
-                results = em.searchCollection( em.getApplicationRef(), getCollectionName(), q );
-            }
-            else {
-                results = em.getCollection( em.getApplicationRef(), getCollectionName(), null, count,
-                        Results.Level.ALL_PROPERTIES, false );
+            Query q = MongoQueryParser.toNativeQuery( query, returnFieldSelector, count );
+
+            MongoCursor cursor = new MongoCursor( application.getId(), getCollectionName(), q,
+                    SubjectUtils.getSubjectUserId() );
+            cursor.skip( em, numberToSkip );
+
+            for ( BSONObject document : cursor.next( em, count ) ) {
+                reply.addDocument( document );
             }
-            if ( !results.isEmpty() ) {
-                for ( Entity entity : results.getEntities() ) {
-
-                    Object savedId = entity.getProperty( "_id" );
-                    Object mongoId = null;
-
-                    //try to parse it into an ObjectId
-                    if ( savedId == null ) {
-                        mongoId = entity.getUuid();
-                    }
-                    else {
-                        try {
-                            mongoId = new ObjectId( savedId.toString() );
-                            //it's not a mongo Id, use it as is
-                        }
-                        catch ( IllegalArgumentException iae ) {
-                            mongoId = savedId;
-                        }
-                    }
-
-                    reply.addDocument( map( entry( "_id", mongoId ), toJsonMap( entity ),
-                            entry( Schema.PROPERTY_UUID, entity.getUuid().toString() ) ) );
-                }
+
+            //the rest of the results are read with OP_GET_MORE
+            if ( !singleBatch && !cursor.isExhausted() ) {
+                reply.setCursorID( handler.getCursors().open( cursor ) );
             }
         }
         catch ( Exception ex ) {
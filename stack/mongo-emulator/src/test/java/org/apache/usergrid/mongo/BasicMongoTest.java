@@ -18,6 +18,7 @@ package org.apache.usergrid.mongo;
 
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -299,6 +300,56 @@ public class BasicMongoTest extends AbstractMongoTest {
     }
 
 
+    @Test
+    public void cursorTest() throws Exception {
+
+        DB db = getDb();
+
+        int count = 250;
+
+        List<DBObject> docs = new ArrayList<DBObject>( count );
+
+        for ( int i = 0; i < count; i++ ) {
+            BasicDBObject doc = new BasicDBObject();
+
+            doc.put( "index", i );
+
+            docs.add( doc );
+        }
+
+        WriteResult result = db.getCollection( "cursortests" ).insert( docs );
+
+        assertNull( result.getLastError().getErrorMessage() );
+
+        //the driver reads the batches after the first one with OP_GET_MORE
+        DBCursor cursor = db.getCollection( "cursortests" ).find().batchSize( 20 );
+
+        Set<Integer> read = new HashSet<Integer>();
+
+        while ( cursor.hasNext() ) {
+            read.add( new BasicDBObject( cursor.next().toMap() ).getInt( "index" ) );
+        }
+
+        assertEquals( count, read.size() );
+
+        cursor = db.getCollection( "cursortests" ).find().skip( 100 ).batchSize( 20 );
+
+        int remaining = 0;
+
+        while ( cursor.hasNext() ) {
+            cursor.next();
+            remaining++;
+        }
+
+        assertEquals( count - 100, remaining );
+
+        //a cursor closed before it's exhausted is killed
+        cursor = db.getCollection( "cursortests" ).find().batchSize( 20 );
+        cursor.next();
+        cursor.close();
+    }
+
+
     @Test
     @Ignore("Really slow on the delete, not a good unit tests atm")
     public void deleteBatchTest() throws Exception {
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mongo;
+
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.bson.BSONObject;
+import org.junit.Test;
+import org.apache.usergrid.persistence.DynamicEntity;
+import org.apache.usergrid.persistence.Entity;
+import org.apache.usergrid.persistence.EntityManager;
+import org.apache.usergrid.persistence.Query;
+import org.apache.usergrid.persistence.Results;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+public class MongoCursorTest {
+
+    @Test
+    public void batches() throws Exception {
+        StubCollection collection = new StubCollection( 25 );
+
+        MongoCursor cursor = new MongoCursor( UUIDUtils.newTimeUUID(), "things", new Query(), null );
+
+        assertBatch( collection, 0, cursor.next( collection.em, 10 ) );
+        assertFalse( cursor.isExhausted() );
+
+        assertBatch( collection, 10, cursor.next( collection.em, 10 ) );
+        assertBatch( collection, 20, cursor.next( collection.em, 10 ) );
+
+        assertTrue( cursor.isExhausted() );
+        assertEquals( 25, cursor.getPosition() );
+        assertEquals( 0, cursor.next( collection.em, 10 ).size() );
+
+        //every page is read with the cursor of the previous one instead of scanning from the start
+        assertEquals( 3, collection.cursors.size() );
+        assertNull( collection.cursors.get( 0 ) );
+        assertEquals( "10", collection.cursors.get( 1 ) );
+        assertEquals( "20", collection.cursors.get( 2 ) );
+    }
+
+
+    @Test
+    public void skip() throws Exception {
+        StubCollection collection = new StubCollection( 25 );
+
+        MongoCursor cursor = new MongoCursor( UUIDUtils.newTimeUUID(), "things", new Query(), null );
+        cursor.skip( collection.em, 12 );
+
+        assertEquals( 0, cursor.getPosition() );
+        assertBatch( collection, 12, cursor.next( collection.em, 10 ) );
+        assertBatch( collection, 22, cursor.next( collection.em, 10 ) );
+        assertTrue( cursor.isExhausted() );
+    }
+
+
+    @Test
+    public void skipPastEnd() throws Exception {
+        StubCollection collection = new StubCollection( 5 );
+
+        MongoCursor cursor = new MongoCursor( UUIDUtils.newTimeUUID(), "things", new Query(), null );
+        cursor.skip( collection.em, 10 );
+
+        assertTrue( cursor.isExhausted() );
+        assertEquals( 0, cursor.next( collection.em, 10 ).size() );
+    }
+
+
+    @Test
+    public void cursorsSharedByConnections() throws Exception {
+        UUID owner = UUIDUtils.newTimeUUID();
+        UUID other = UUIDUtils.newTimeUUID();
+
+        MongoCursors cursors = new MongoCursors( MongoCursors.DEFAULT_CURSOR_TIMEOUT );
+
+        MongoChannelHandler first = new MongoChannelHandler( null, null, null, null, cursors );
+        MongoChannelHandler second = new MongoChannelHandler( null, null, null, null, cursors );
+
+        MongoCursor cursor = new MongoCursor( UUIDUtils.newTimeUUID(), "things", new Query(), owner );
+        long id = first.getCursors().open( cursor );
+
+        //a pooled driver reads the next batch on any of its connections
+        assertSame( cursor, second.getCursors().get( id, owner ) );
+
+        //but another user can neither read nor kill it
+        assertNull( second.getCursors().get( id, other ) );
+        second.getCursors().kill( id, other );
+        assertEquals( 1, cursors.size() );
+
+        second.getCursors().kill( id, owner );
+        assertNull( first.getCursors().get( id, owner ) );
+    }
+
+
+    @Test
+    public void cursorsExpire() throws Exception {
+        MongoCursors cursors = new MongoCursors( -1 );
+
+        long id = cursors.open( new MongoCursor( UUIDUtils.newTimeUUID(), "things", new Query(), null ) );
+
+        assertNull( cursors.get( id, null ) );
+    }
+
+
+    private static void assertBatch( StubCollection collection, int start, List<BSONObject> batch ) {
+        int expected = Math.min( 10, collection.entities.size() - start );
+
+        assertEquals( expected, batch.size() );
+
+        for ( int i = 0; i < expected; i++ ) {
+            assertEquals( collection.entities.get( start + i ).getUuid().toString(), batch.get( i ).get( "uuid" ) );
+        }
+    }
+
+
+    /** A collection read in pages through an entity manager, the page cursor is the offset of the page */
+    private static class StubCollection implements InvocationHandler {
+
+        final List<Entity> entities = new ArrayList<Entity>();
+        final List<String> cursors = new ArrayList<String>();
+        final EntityManager em;
+
+
+        StubCollection( int size ) {
+            for ( int i = 0; i < size; i++ ) {
+                Entity entity = new DynamicEntity( "thing", UUIDUtils.newTimeUUID() );
+                entity.setProperty( "name", "thing" + i );
+                entities.add( entity );
+            }
+
+            em = ( EntityManager ) Proxy
+                    .newProxyInstance( getClass().getClassLoader(), new Class<?>[] { EntityManager.class }, this );
+        }
+
+
+        @Override
+        public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+            if ( "searchCollection".equals( method.getName() ) ) {
+                return searchCollection( ( Query ) args[2] );
+            }
+
+            if ( "getApplicationRef".equals( method.getName() ) ) {
+                return null;
+            }
+
+            throw new UnsupportedOperationException( method.getName() );
+        }
+
+
+        private Results searchCollection( Query query ) {
+            cursors.add( query.getCursor() );
+
+            int start = query.getCursor() == null ? 0 : Integer.parseInt( query.getCursor() );
+            int end = Math.min( start + query.getLimit(), entities.size() );
+
+            Results results = Results.fromEntities( new ArrayList<Entity>( entities.subList( start, end ) ) );
+
+            if ( end < entities.size() ) {
+                results.setCursor( String.valueOf( end ) );
+            }
+
+            return results;
+        }
+    }
+}
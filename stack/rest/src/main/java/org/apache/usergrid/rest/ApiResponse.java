@@ -372,6 +372,15 @@ public class ApiResponse {
             next = results.getNextResult();
             cursor = results.getCursor();
             counters = results.getCounters();
+
+            //an order by that was sorted in memory reports how many entities it evaluated for this page
+            if ( results.getRowsExamined() != null ) {
+                if ( metadata == null ) {
+                    metadata = new LinkedHashMap<String, Object>();
+                }
+                metadata.put( "rowsExamined", results.getRowsExamined() );
+                metadata.put( "rowsReturned", results.size() );
+            }
         }
         else {
             entities = new ArrayList<Entity>();
@@ -17,7 +17,9 @@
 package org.apache.usergrid.rest;
 
 
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.ext.ContextResolver;
 import javax.ws.rs.ext.Provider;
@@ -32,6 +34,10 @@ import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 
+/**
+ * Provides the mapper used to write the responses.  Responses are written without indentation unless the request has
+ * pretty=true.
+ */
 @Provider
 @Component
 @Scope("singleton")
@@ -41,22 +47,57 @@ public class JacksonCustomMapperProvider implements ContextResolver<ObjectMapper
     private static final Logger logger = LoggerFactory.getLogger( JacksonCustomMapperProvider.class );
 
     public final static Annotations[] BASIC_ANNOTATIONS = { Annotations.JACKSON };
+
+    public static final String PRETTY_PARAMETER = "pretty";
+
     MapperConfigurator _mapperConfig;
+    MapperConfigurator _prettyMapperConfig;
+
+    @Context
+    protected HttpServletRequest httpServletRequest;
 
 
     public JacksonCustomMapperProvider() {
         logger.info( "JacksonCustomMapperProvider installed" );
-        _mapperConfig = new MapperConfigurator( new ObjectMapper(), BASIC_ANNOTATIONS );
-        _mapperConfig.setAnnotationsToUse( BASIC_ANNOTATIONS );
+        _mapperConfig = createConfigurator( false );
+        _prettyMapperConfig = createConfigurator( true );
+    }
+
+
+    private static MapperConfigurator createConfigurator( boolean indent ) {
+        MapperConfigurator mapperConfig = new MapperConfigurator( new ObjectMapper(), BASIC_ANNOTATIONS );
+        mapperConfig.setAnnotationsToUse( BASIC_ANNOTATIONS );
         // do configuration of mapper here
-        _mapperConfig.configure( SerializationConfig.Feature.INDENT_OUTPUT, true );
-        _mapperConfig.configure( SerializationConfig.Feature.WRITE_DATES_AS_TIMESTAMPS, false );
+        mapperConfig.configure( SerializationConfig.Feature.INDENT_OUTPUT, indent );
+        mapperConfig.configure( SerializationConfig.Feature.WRITE_DATES_AS_TIMESTAMPS, false );
+        return mapperConfig;
     }
 
 
     @Override
     public ObjectMapper getContext( Class<?> aClass ) {
-        return _mapperConfig.getConfiguredMapper();
+        return getMapper( isPrettyRequested() );
+    }
+
+
+    /** @return the mapper that indents its output if pretty is set, otherwise the compact one */
+    public ObjectMapper getMapper( boolean pretty ) {
+        return pretty ? _prettyMapperConfig.getConfiguredMapper() : _mapperConfig.getConfiguredMapper();
+    }
+
+
+    private boolean isPrettyRequested() {
+        if ( httpServletRequest == null ) {
+            return false;
+        }
+
+        try {
+            return Boolean.parseBoolean( httpServletRequest.getParameter( PRETTY_PARAMETER ) );
+        }
+        catch ( IllegalStateException e ) {
+            // not within a request
+            return false;
+        }
     }
 
 
@@ -17,7 +17,10 @@
 package org.apache.usergrid.rest.applications;
 
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -41,6 +44,7 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.PathSegment;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.apache.usergrid.rest.RootResource;
@@ -60,6 +64,7 @@ import org.apache.usergrid.rest.security.annotations.RequireApplicationAccess;
 import org.apache.usergrid.security.oauth.AccessInfo;
 import org.apache.usergrid.services.assets.data.AssetUtils;
 import org.apache.usergrid.services.assets.data.BinaryStore;
+import org.apache.usergrid.services.assets.data.FileRegionInputStream;
 import org.apache.usergrid.utils.InflectionUtils;
 import org.apache.commons.lang.StringUtils;
 
@@ -92,6 +97,9 @@ public class ServiceResource extends AbstractContextResource {
     private static final Logger LOG = LoggerFactory.getLogger( ServiceResource.class );
     private static final String FILE_FIELD_NAME = "file";
 
+    /** Partial Content, which the JAX-RS status enum lacks */
+    protected static final int PARTIAL_CONTENT = 206;
+
     @Autowired
     private BinaryStore binaryStore;
 
@@ -602,33 +610,18 @@ public class ServiceResource extends AbstractContextResource {
             }
         }
 
-        boolean range = StringUtils.isNotBlank( rangeHeader );
-        long start = 0, end = 0, contentLength = 0;
+        long[] range = null;
+        long contentLength = 0;
         InputStream inputStream;
 
-        if ( range ) { // honor range request, calculate start & end
+        if ( StringUtils.isNotBlank( rangeHeader ) && fileMetadata.get( AssetUtils.CONTENT_LENGTH ) != null ) {
+            contentLength = ( ( Number ) fileMetadata.get( AssetUtils.CONTENT_LENGTH ) ).longValue();
+            range = AssetUtils.parseRange( rangeHeader, contentLength );
+        }
 
-            String rangeValue = rangeHeader.trim().substring( "bytes=".length() );
-            contentLength = ( Long ) fileMetadata.get( AssetUtils.CONTENT_LENGTH );
-            end = contentLength - 1;
-            if ( rangeValue.startsWith( "-" ) ) {
-                start = contentLength - 1 - Long.parseLong( rangeValue.substring( "-".length() ) );
-            }
-            else {
-                String[] startEnd = rangeValue.split( "-" );
-                long parsedStart = Long.parseLong( startEnd[0] );
-                if ( parsedStart > start && parsedStart < end ) {
-                    start = parsedStart;
-                }
-                if ( startEnd.length > 1 ) {
-                    long parsedEnd = Long.parseLong( startEnd[1] );
-                    if ( parsedEnd > start && parsedEnd < end ) {
-                        end = parsedEnd;
-                    }
-                }
-            }
+        if ( range != null ) { // honor range request
 
-            inputStream = binaryStore.read( getApplicationId(), entity, start, end - start );
+            inputStream = binaryStore.read( getApplicationId(), entity, range[0], range[1] - range[0] + 1 );
         }
         else { // no range
 
@@ -642,17 +635,42 @@ public class ServiceResource extends AbstractContextResource {
 
         Long lastModified = ( Long ) fileMetadata.get( AssetUtils.LAST_MODIFIED );
         Response.ResponseBuilder responseBuilder =
-                Response.ok( inputStream ).type( ( String ) fileMetadata.get( AssetUtils.CONTENT_TYPE ) )
+                Response.ok( streamingEntity( inputStream ) )
+                        .type( ( String ) fileMetadata.get( AssetUtils.CONTENT_TYPE ) )
                         .lastModified( new Date( lastModified ) );
 
         if ( fileMetadata.get( AssetUtils.E_TAG ) != null ) {
             responseBuilder.tag( ( String ) fileMetadata.get( AssetUtils.E_TAG ) );
         }
 
-        if ( range ) {
-            responseBuilder.header( "Content-Range", "bytes " + start + "-" + end + "/" + contentLength );
+        if ( range != null ) {
+            responseBuilder.status( PARTIAL_CONTENT )
+                           .header( "Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + contentLength );
         }
 
         return responseBuilder.build();
     }
+
+
+    /**
+     * @return the entity of a response streaming the data.  Regions of local files are transferred to the response
+     *         channel by the file channel rather than copied through a buffer
+     */
+    protected static Object streamingEntity( final InputStream inputStream ) {
+        if ( !( inputStream instanceof FileRegionInputStream ) ) {
+            return inputStream;
+        }
+
+        return new StreamingOutput() {
+            @Override
+            public void write( OutputStream output ) throws IOException {
+                try {
+                    ( ( FileRegionInputStream ) inputStream ).transferTo( Channels.newChannel( output ) );
+                }
+                finally {
+                    inputStream.close();
+                }
+            }
+        };
+    }
 }
@@ -177,13 +177,20 @@ public class AssetsResource extends ServiceResource {
             }
         }
 
+        long[] byteRange = null;
+        long contentLength = 0;
+
+        if ( StringUtils.isNotBlank( range ) && fileMetadata.get( AssetUtils.CONTENT_LENGTH ) != null ) {
+            contentLength = ( ( Number ) fileMetadata.get( AssetUtils.CONTENT_LENGTH ) ).longValue();
+            byteRange = AssetUtils.parseRange( range, contentLength );
+        }
+
         InputStream is;
-        if ( StringUtils.isBlank( range ) ) {
+        if ( byteRange == null ) {
             is = binaryStore.read( getApplicationId(), asset );
         }
         else {
-            // TODO range parser
-            is = binaryStore.read( getApplicationId(), asset );
+            is = binaryStore.read( getApplicationId(), asset, byteRange[0], byteRange[1] - byteRange[0] + 1 );
         }
         if ( is == null ) {
             return Response.status( Response.Status.NOT_FOUND ).build();
@@ -191,15 +198,15 @@ public class AssetsResource extends ServiceResource {
 
         logger.info( "AssetResource.findAsset read inputStream, composing response" );
         Response.ResponseBuilder responseBuilder =
-                Response.ok( is ).type( fileMetadata.get( "content-type" ).toString() )
+                Response.ok( streamingEntity( is ) ).type( fileMetadata.get( "content-type" ).toString() )
                         .lastModified( new Date( asset.getModified() ) );
         if ( fileMetadata.get( AssetUtils.E_TAG ) != null ) {
             responseBuilder.tag( ( String ) fileMetadata.get( AssetUtils.E_TAG ) );
         }
-        if ( StringUtils.isNotBlank( range ) ) {
+        if ( byteRange != null ) {
             logger.info( "Range header was not blank, sending back Content-Range" );
-            // TODO build content range header if needed
-            //responseBuilder.header("Content-Range", );
+            responseBuilder.status( PARTIAL_CONTENT ).header( "Content-Range",
+                    "bytes " + byteRange[0] + "-" + byteRange[1] + "/" + contentLength );
         }
         return responseBuilder.build();
     }
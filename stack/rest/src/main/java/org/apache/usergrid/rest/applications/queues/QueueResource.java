@@ -165,8 +165,10 @@ public class QueueResource extends AbstractContextResource {
                     callback );
         }
         else if ( json instanceof List ) {
-            return new JSONWithPadding( new QueueResults(
-                    mq.postToQueue( queuePath, Message.fromList( ( List<Map<String, Object>> ) json ) ) ), callback );
+            //messages that couldn't be written are listed in the failures of the results
+            return new JSONWithPadding(
+                    mq.postMessagesToQueue( queuePath, Message.fromList( ( List<Map<String, Object>> ) json ) ),
+                    callback );
         }
 
         return null;
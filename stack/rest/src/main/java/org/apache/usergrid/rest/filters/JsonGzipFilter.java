@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.rest.filters;
+
+
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+
+import com.sun.jersey.api.container.filter.GZIPContentEncodingFilter;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerResponse;
+
+
+/**
+ * Gzips JSON responses for clients that accept it.  Any other content, such as assets that are usually compressed
+ * already, is sent as is, and so are partial responses, since their Content-Range counts the bytes of the
+ * uncompressed content.
+ */
+public class JsonGzipFilter extends GZIPContentEncodingFilter {
+
+    private static final String CONTENT_RANGE = "Content-Range";
+
+
+    @Override
+    public ContainerResponse filter( ContainerRequest request, ContainerResponse response ) {
+        if ( !isCompressible( response ) ) {
+            return response;
+        }
+
+        // caches must not serve the compressed body to clients that didn't ask for it
+        response.getHttpHeaders().add( "Vary", HttpHeaders.ACCEPT_ENCODING );
+
+        return super.filter( request, response );
+    }
+
+
+    private boolean isCompressible( ContainerResponse response ) {
+        if ( response.getEntity() == null || response.getStatus() == HttpServletResponse.SC_PARTIAL_CONTENT
+                || response.getHttpHeaders().containsKey( CONTENT_RANGE ) ) {
+            return false;
+        }
+
+        Object contentType = response.getHttpHeaders().getFirst( HttpHeaders.CONTENT_TYPE );
+
+        if ( contentType == null ) {
+            return false;
+        }
+
+        MediaType mediaType =
+                contentType instanceof MediaType ? ( MediaType ) contentType : MediaType.valueOf( contentType.toString() );
+
+        String subtype = mediaType.getSubtype();
+
+        return "application".equals( mediaType.getType() ) && ( "json".equals( subtype ) || subtype.endsWith( "+json" )
+                || "javascript".equals( subtype ) );
+    }
+}
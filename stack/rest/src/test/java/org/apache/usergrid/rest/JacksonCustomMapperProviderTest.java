@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.rest;
+
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+public class JacksonCustomMapperProviderTest {
+
+    private static final Map<String, String> ENTITY = Collections.singletonMap( "name", "value" );
+
+
+    @Test
+    public void compactByDefault() throws Exception {
+        JacksonCustomMapperProvider provider = new JacksonCustomMapperProvider();
+
+        //outside of a request
+        assertSame( provider.getMapper( false ), provider.getContext( Object.class ) );
+
+        provider.httpServletRequest = new MockHttpServletRequest( "GET", "/test" );
+
+        ObjectMapper mapper = provider.getContext( Object.class );
+
+        assertSame( provider.getMapper( false ), mapper );
+        assertEquals( "{\"name\":\"value\"}", mapper.writeValueAsString( ENTITY ) );
+    }
+
+
+    @Test
+    public void prettyRequested() throws Exception {
+        JacksonCustomMapperProvider provider = new JacksonCustomMapperProvider();
+
+        MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/test" );
+        request.setParameter( JacksonCustomMapperProvider.PRETTY_PARAMETER, "true" );
+        provider.httpServletRequest = request;
+
+        ObjectMapper mapper = provider.getContext( Object.class );
+
+        assertSame( provider.getMapper( true ), mapper );
+        assertTrue( mapper.writeValueAsString( ENTITY ).contains( "\n" ) );
+    }
+
+
+    @Test
+    public void prettyFalse() throws Exception {
+        JacksonCustomMapperProvider provider = new JacksonCustomMapperProvider();
+
+        MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/test" );
+        request.setParameter( JacksonCustomMapperProvider.PRETTY_PARAMETER, "false" );
+        provider.httpServletRequest = request;
+
+        ObjectMapper mapper = provider.getContext( Object.class );
+
+        assertSame( provider.getMapper( false ), mapper );
+        assertFalse( mapper.writeValueAsString( ENTITY ).contains( "\n" ) );
+    }
+}
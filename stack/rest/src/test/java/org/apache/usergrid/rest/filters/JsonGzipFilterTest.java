@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.rest.filters;
+
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+
+import org.junit.Test;
+
+import com.sun.jersey.core.header.InBoundHeaders;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+public class JsonGzipFilterTest {
+
+    private final JsonGzipFilter filter = new JsonGzipFilter();
+
+
+    @Test
+    public void jsonCompressed() {
+        assertCompressed( MediaType.APPLICATION_JSON_TYPE );
+        assertCompressed( "application/json;charset=UTF-8" );
+        assertCompressed( "application/vnd.usergrid+json" );
+        assertCompressed( "application/javascript" );
+    }
+
+
+    @Test
+    public void otherTypesNotCompressed() {
+        assertNotCompressed( response( 200, "image/png" ) );
+        assertNotCompressed( response( 200, MediaType.TEXT_HTML ) );
+        assertNotCompressed( response( 200, MediaType.APPLICATION_OCTET_STREAM ) );
+        assertNotCompressed( response( 200, null ) );
+    }
+
+
+    @Test
+    public void partialContentNotCompressed() {
+        assertNotCompressed( response( 206, MediaType.APPLICATION_JSON ) );
+
+        ContainerResponse response = response( 200, MediaType.APPLICATION_JSON );
+        response.getHttpHeaders().putSingle( "Content-Range", "bytes 0-99/1000" );
+
+        assertNotCompressed( response );
+    }
+
+
+    @Test
+    public void varyWithoutAcceptEncoding() {
+        ContainerRequest request = request( null );
+        ContainerResponse response = filter.filter( request, response( request, 200, MediaType.APPLICATION_JSON ) );
+
+        //the next client may accept gzip, so caches still have to keep the encodings apart
+        assertEquals( HttpHeaders.ACCEPT_ENCODING, response.getHttpHeaders().getFirst( "Vary" ) );
+        assertNull( response.getHttpHeaders().getFirst( HttpHeaders.CONTENT_ENCODING ) );
+    }
+
+
+    private void assertCompressed( Object contentType ) {
+        ContainerResponse response = filter.filter( request( "gzip" ), response( 200, contentType ) );
+
+        assertEquals( "gzip", response.getHttpHeaders().getFirst( HttpHeaders.CONTENT_ENCODING ) );
+        assertEquals( HttpHeaders.ACCEPT_ENCODING, response.getHttpHeaders().getFirst( "Vary" ) );
+    }
+
+
+    private void assertNotCompressed( ContainerResponse response ) {
+        response = filter.filter( response.getContainerRequest(), response );
+
+        assertNull( response.getHttpHeaders().getFirst( HttpHeaders.CONTENT_ENCODING ) );
+        assertNull( response.getHttpHeaders().getFirst( "Vary" ) );
+    }
+
+
+    private static ContainerRequest request( String acceptEncoding ) {
+        InBoundHeaders headers = new InBoundHeaders();
+
+        if ( acceptEncoding != null ) {
+            headers.putSingle( HttpHeaders.ACCEPT_ENCODING, acceptEncoding );
+        }
+
+        return new ContainerRequest( null, "GET", URI.create( "http://localhost:8080/" ),
+                URI.create( "http://localhost:8080/test-organization/test-app/users" ), headers,
+                new ByteArrayInputStream( new byte[0] ) );
+    }
+
+
+    private static ContainerResponse response( int status, Object contentType ) {
+        return response( request( "gzip" ), status, contentType );
+    }
+
+
+    private static ContainerResponse response( ContainerRequest request, int status, Object contentType ) {
+        ContainerResponse response = new ContainerResponse( null, request, null );
+        response.setStatus( status );
+        response.setEntity( "{\"name\":\"value\"}" );
+
+        if ( contentType != null ) {
+            response.getHttpHeaders().putSingle( HttpHeaders.CONTENT_TYPE, contentType );
+        }
+
+        return response;
+    }
+}
@@ -64,6 +64,7 @@ import org.apache.usergrid.persistence.PagingResultsIterator;
 import org.apache.usergrid.persistence.Results;
 import org.apache.usergrid.persistence.Results.Level;
 import org.apache.usergrid.persistence.SimpleEntityRef;
+import org.apache.usergrid.persistence.cassandra.LocalNameCache;
 import org.apache.usergrid.persistence.entities.Application;
 import org.apache.usergrid.persistence.entities.Group;
 import org.apache.usergrid.persistence.entities.User;
@@ -231,6 +232,9 @@ public class ManagementServiceImpl implements ManagementService {
 
     protected EncryptionService encryptionService;
 
+    protected LocalNameCache<OrganizationInfo> organizationNameCache =
+            new LocalNameCache<OrganizationInfo>( "organizations", 0, 0 );
+
 
     /** Must be constructed with a CassandraClientPool. */
     public ManagementServiceImpl() {
@@ -286,6 +290,12 @@ public class ManagementServiceImpl implements ManagementService {
     }
 
 
+    /** Set the cache of organization names to organizations */
+    public void setOrganizationNameCache( LocalNameCache<OrganizationInfo> organizationNameCache ) {
+        this.organizationNameCache = organizationNameCache;
+    }
+
+
     @Override
     public void setup() throws Exception {
 
@@ -588,6 +598,9 @@ public class ManagementServiceImpl implements ManagementService {
                 }
             }
         }
+
+        // after the writes, so a concurrent lookup can't cache the old properties again
+        invalidateOrganizationName( organizationInfo.getName() );
     }
 
 
@@ -634,6 +647,7 @@ public class ManagementServiceImpl implements ManagementService {
         Entity organization = em.create( organizationId, Group.ENTITY_TYPE, properties );
         // em.addToCollection(organization, "users", new SimpleEntityRef(
         // User.ENTITY_TYPE, userId));
+        invalidateOrganizationName( organizationName );
         return new OrganizationInfo( organization.getUuid(), organizationName );
     }
 
@@ -725,12 +739,42 @@ public class ManagementServiceImpl implements ManagementService {
             return null;
         }
 
+        //aliases are case insensitive, so are the cached names
+        OrganizationInfo cached = organizationNameCache.get( organizationName.toLowerCase() );
+        if ( cached != null ) {
+            return copyOrganization( cached );
+        }
+
         EntityManager em = emf.getEntityManager( MANAGEMENT_APPLICATION_ID );
         EntityRef ref = em.getAlias( "group", organizationName );
         if ( ref == null ) {
             return null;
         }
-        return getOrganizationByUuid( ref.getUuid() );
+
+        OrganizationInfo organization = getOrganizationByUuid( ref.getUuid() );
+        if ( organization != null ) {
+            organizationNameCache.put( organizationName.toLowerCase(), copyOrganization( organization ) );
+        }
+        return organization;
+    }
+
+
+    /** Callers are free to modify the organization they get, so the cache only ever hands out copies */
+    private OrganizationInfo copyOrganization( OrganizationInfo organization ) {
+        Map<String, Object> properties = organization.getProperties();
+        return new OrganizationInfo( organization.getUuid(), organization.getName(),
+                properties != null ? new HashMap<String, Object>( properties ) : null );
+    }
+
+
+    /** Drop the cached organization, or all of them when the name isn't known */
+    private void invalidateOrganizationName( String organizationName ) {
+        if ( organizationName == null ) {
+            organizationNameCache.invalidateAll();
+        }
+        else {
+            organizationNameCache.invalidate( organizationName.toLowerCase() );
+        }
     }
 
 
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.management.export;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.batch.JobExecution;
+import org.apache.usergrid.persistence.EntityManager;
+import org.apache.usergrid.persistence.entities.Export;
+
+
+/**
+ * Tracks how far an export has got.  The counts are updated by the collection workers, and written to the {@link
+ * Export} entity along with a heartbeat of the job at most once per update interval.
+ */
+public class ExportProgress {
+
+    private static final Logger logger = LoggerFactory.getLogger( ExportProgress.class );
+
+    private final EntityManager em;
+    private final Export export;
+    private final JobExecution jobExecution;
+    private final long updateInterval;
+    private final long started = System.currentTimeMillis();
+
+    private final AtomicLong entities = new AtomicLong();
+    private final AtomicLong collections = new AtomicLong();
+    private final AtomicLong totalCollections = new AtomicLong();
+
+    private long lastUpdate = started;
+
+
+    public ExportProgress( EntityManager em, Export export, JobExecution jobExecution, long updateInterval ) {
+        this.em = em;
+        this.export = export;
+        this.jobExecution = jobExecution;
+        this.updateInterval = updateInterval;
+    }
+
+
+    public Export getExport() {
+        return export;
+    }
+
+
+    public void addCollections( int count ) {
+        totalCollections.addAndGet( count );
+    }
+
+
+    public void collectionExported() {
+        collections.incrementAndGet();
+        update( false );
+    }
+
+
+    public void entitiesExported( int count ) {
+        entities.addAndGet( count );
+        update( false );
+    }
+
+
+    public long getExportedEntities() {
+        return entities.get();
+    }
+
+
+    /** Heartbeat the job and save the progress on the export, unless it was done less than an interval ago */
+    public synchronized void update( boolean force ) {
+        long now = System.currentTimeMillis();
+
+        if ( !force && now - lastUpdate < updateInterval ) {
+            return;
+        }
+
+        lastUpdate = now;
+
+        jobExecution.heartbeat();
+
+        export.setExportedEntities( entities.get() );
+        export.setExportedCollections( collections.get() );
+        export.setTotalCollections( totalCollections.get() );
+        export.setThroughput( entities.get() * 1000d / Math.max( now - started, 1 ) );
+
+        try {
+            em.update( export );
+        }
+        catch ( Exception e ) {
+            logger.warn( "Unable to save the progress of export {}", export.getUuid(), e );
+        }
+    }
+}
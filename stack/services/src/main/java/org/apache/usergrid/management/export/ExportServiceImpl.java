@@ -17,12 +17,23 @@
 package org.apache.usergrid.management.export;
 
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
 
 import org.codehaus.jackson.JsonEncoding;
 import org.codehaus.jackson.JsonFactory;
@@ -40,12 +51,14 @@ import org.apache.usergrid.persistence.ConnectionRef;
 import org.apache.usergrid.persistence.Entity;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.EntityManagerFactory;
-import org.apache.usergrid.persistence.PagingResultsIterator;
 import org.apache.usergrid.persistence.Query;
 import org.apache.usergrid.persistence.Results;
 import org.apache.usergrid.persistence.entities.Export;
 import org.apache.usergrid.persistence.entities.JobData;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+
 import com.google.common.collect.BiMap;
 
 import static org.apache.usergrid.persistence.cassandra.CassandraService.MANAGEMENT_APPLICATION_ID;
@@ -76,8 +89,13 @@ public class ExportServiceImpl implements ExportService {
     //Amount of time that has passed before sending another heart beat in millis
     public static final int TIMESTAMP_DELTA = 5000;
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private JsonFactory jsonFactory = new JsonFactory();
 
+    //Number of collections exported at the same time
+    private int exportThreads = 4;
+
 
     @Override
     public UUID schedule( final Map<String, Object> config ) throws Exception {
@@ -205,6 +223,8 @@ public class ExportServiceImpl implements ExportService {
         //update the entity state to show that the job has officially started.
         export.setState( Export.State.STARTED );
         em.update( export );
+
+        ExportProgress progress = new ExportProgress( em, export, jobExecution, TIMESTAMP_DELTA );
         try {
             if ( s3PlaceHolder != null ) {
                 s3Export = ( S3Export ) s3PlaceHolder;
@@ -230,7 +250,7 @@ public class ExportServiceImpl implements ExportService {
         else if ( config.get( "applicationId" ) == null ) {
             //exports All the applications from an organization
             try {
-                exportApplicationsFromOrg( ( UUID ) config.get( "organizationId" ), config, jobExecution, s3Export );
+                exportApplicationsFromOrg( ( UUID ) config.get( "organizationId" ), config, progress, s3Export );
             }
             catch ( Exception e ) {
                 export.setErrorMessage( e.getMessage() );
@@ -243,7 +263,7 @@ public class ExportServiceImpl implements ExportService {
             //exports an Application from a single organization
             try {
                 exportApplicationFromOrg( ( UUID ) config.get( "organizationId" ),
-                        ( UUID ) config.get( "applicationId" ), config, jobExecution, s3Export );
+                        ( UUID ) config.get( "applicationId" ), config, progress, s3Export );
             }
             catch ( Exception e ) {
                 export.setErrorMessage( e.getMessage() );
@@ -256,8 +276,7 @@ public class ExportServiceImpl implements ExportService {
             try {
                 //exports a single collection from an app org combo
                 try {
-                    exportCollectionFromOrgApp( ( UUID ) config.get( "applicationId" ), config, jobExecution,
-                            s3Export );
+                    exportCollectionFromOrgApp( ( UUID ) config.get( "applicationId" ), config, progress, s3Export );
                 }
                 catch ( Exception e ) {
                     export.setErrorMessage( e.getMessage() );
@@ -274,6 +293,8 @@ public class ExportServiceImpl implements ExportService {
                 return;
             }
         }
+        progress.update( true );
+
         export.setState( Export.State.FINISHED );
         em.update( export );
     }
@@ -310,6 +331,11 @@ public class ExportServiceImpl implements ExportService {
     }
 
 
+    public void setExportThreads( final int exportThreads ) {
+        this.exportThreads = exportThreads;
+    }
+
+
     public Export getExportEntity( final JobExecution jobExecution ) throws Exception {
 
         UUID exportId = ( UUID ) jobExecution.getJobData().getProperty( EXPORT_ID );
@@ -323,10 +349,10 @@ public class ExportServiceImpl implements ExportService {
      * Exports All Applications from an Organization
      */
     private void exportApplicationsFromOrg( UUID organizationUUID, final Map<String, Object> config,
-                                            final JobExecution jobExecution, S3Export s3Export ) throws Exception {
+                                            final ExportProgress progress, S3Export s3Export ) throws Exception {
 
         //retrieves export entity
-        Export export = getExportEntity( jobExecution );
+        Export export = progress.getExport();
         String appFileName = null;
 
         BiMap<UUID, String> applications = managementService.getApplicationsForOrganization( organizationUUID );
@@ -340,7 +366,7 @@ public class ExportServiceImpl implements ExportService {
 
             appFileName = prepareOutputFileName( "application", application.getValue(), null );
 
-            File ephemeral = collectionExportAndQuery( application.getKey(), config, export, jobExecution );
+            File ephemeral = collectionExportAndQuery( application.getKey(), config, progress );
 
             fileTransfer( export, appFileName, ephemeral, config, s3Export );
         }
@@ -349,6 +375,10 @@ public class ExportServiceImpl implements ExportService {
 
     public void fileTransfer( Export export, String appFileName, File ephemeral, Map<String, Object> config,
                               S3Export s3Export ) {
+        if ( isCompressed( config ) ) {
+            appFileName += ".gz";
+        }
+
         try {
             s3Export.copyToS3( ephemeral, config, appFileName );
 
@@ -365,15 +395,15 @@ public class ExportServiceImpl implements ExportService {
      * Exports a specific applications from an organization
      */
     private void exportApplicationFromOrg( UUID organizationUUID, UUID applicationId, final Map<String, Object> config,
-                                           final JobExecution jobExecution, S3Export s3Export ) throws Exception {
+                                           final ExportProgress progress, S3Export s3Export ) throws Exception {
 
         //retrieves export entity
-        Export export = getExportEntity( jobExecution );
+        Export export = progress.getExport();
 
         ApplicationInfo application = managementService.getApplicationInfo( applicationId );
         String appFileName = prepareOutputFileName( "application", application.getName(), null );
 
-        File ephemeral = collectionExportAndQuery( applicationId, config, export, jobExecution );
+        File ephemeral = collectionExportAndQuery( applicationId, config, progress );
 
         fileTransfer( export, appFileName, ephemeral, config, s3Export );
     }
@@ -384,17 +414,17 @@ public class ExportServiceImpl implements ExportService {
      */
     //might be confusing, but uses the /s/ inclusion or exclusion nomenclature.
     private void exportCollectionFromOrgApp( UUID applicationUUID, final Map<String, Object> config,
-                                             final JobExecution jobExecution, S3Export s3Export ) throws Exception {
+                                             final ExportProgress progress, S3Export s3Export ) throws Exception {
 
         //retrieves export entity
-        Export export = getExportEntity( jobExecution );
+        Export export = progress.getExport();
         ApplicationInfo application = managementService.getApplicationInfo( applicationUUID );
 
         String appFileName = prepareOutputFileName( "application", application.getName(),
                 ( String ) config.get( "collectionName" ) );
 
 
-        File ephemeral = collectionExportAndQuery( applicationUUID, config, export, jobExecution );
+        File ephemeral = collectionExportAndQuery( applicationUUID, config, progress );
 
         fileTransfer( export, appFileName, ephemeral, config, s3Export );
     }
@@ -415,123 +445,324 @@ public class ExportServiceImpl implements ExportService {
     }
 
 
+
+
     /**
-     * Serialize and save the collection members of this <code>entity</code>
-     *
-     * @param em Entity Manager
-     * @param collection Collection Name
-     * @param entity entity
+     * Exports the collections of the application in parallel, each to its own segment file, and joins the segments
+     * in the order of the collections into a single JSON array.
+     * <p/>
+     * When the export config sets "compress", the segments are gzipped and the array is a multi member gzip file,
+     * so the segments are joined without being decompressed.
      */
-    private void saveCollectionMembers( JsonGenerator jg, EntityManager em, String collection, Entity entity )
+    protected File collectionExportAndQuery( UUID applicationUUID, final Map<String, Object> config,
+                                             final ExportProgress progress ) throws Exception {
+
+        final EntityManager em = emf.getEntityManager( applicationUUID );
+        Map<String, Object> metadata = em.getApplicationCollectionMetadata();
+        final boolean compress = isCompressed( config );
+
+        List<String> collectionNames = new ArrayList<String>();
+
+        for ( String collectionName : metadata.keySet() ) {
+            if ( collectionName.equals( "exports" ) ) {
+                continue;
+            }
+            //if the collection you are looping through doesn't match the name of the one you want. Don't export it.
+            if ( ( config.get( "collectionName" ) == null ) || collectionName
+                    .equals( config.get( "collectionName" ) ) ) {
+                collectionNames.add( collectionName );
+            }
+        }
+
+        progress.addCollections( collectionNames.size() );
+
+        ExecutorService workers = Executors.newFixedThreadPool( exportThreads );
+        final ExecutorService lookups = Executors.newFixedThreadPool( exportThreads );
+
+        List<Future<Segment>> segments = new ArrayList<Future<Segment>>();
+
+        File ephemeral = new File( "tempExport" + UUID.randomUUID() );
+        ephemeral.deleteOnExit();
+
+        try {
+            for ( final String collectionName : collectionNames ) {
+                segments.add( workers.submit( new Callable<Segment>() {
+                    @Override
+                    public Segment call() throws Exception {
+                        return exportCollection( em, collectionName, config, progress, lookups, compress );
+                    }
+                } ) );
+            }
+
+            OutputStream out = new BufferedOutputStream( new FileOutputStream( ephemeral ), BUFFER_SIZE );
+
+            try {
+                writeSeparator( out, "[", compress );
+
+                boolean first = true;
+
+                for ( Future<Segment> future : segments ) {
+                    Segment segment = await( future );
+
+                    if ( segment.count > 0 ) {
+                        if ( !first ) {
+                            writeSeparator( out, ",", compress );
+                        }
+                        FileUtils.copyFile( segment.file, out );
+                        first = false;
+                    }
+
+                    segment.file.delete();
+                }
+
+                writeSeparator( out, "]", compress );
+            }
+            finally {
+                out.close();
+            }
+
+            return ephemeral;
+        }
+        catch ( Exception e ) {
+            ephemeral.delete();
+
+            //stop the other collections and drop what they have written
+            workers.shutdownNow();
+
+            for ( Future<Segment> future : segments ) {
+                try {
+                    future.get().file.delete();
+                }
+                catch ( Exception ignored ) {
+                    //the collection failed or was stopped before it created its segment
+                }
+            }
+
+            throw e;
+        }
+        finally {
+            workers.shutdownNow();
+            lookups.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Writes the entities of the collection to a segment file, a page at a time.  The connections, dictionaries and
+     * collection members of the entities of a page are read concurrently on the lookup executor.
+     */
+    private Segment exportCollection( EntityManager em, String collectionName, Map<String, Object> config,
+                                      ExportProgress progress, ExecutorService lookups, boolean compress )
             throws Exception {
 
-        // Write connections
-        saveConnections( entity, em, jg );
-        // Write dictionaries
-        saveDictionaries( entity, em, jg );
+        //Query entity manager for the entities in a collection
+        Query query = null;
+        if ( config.get( "query" ) == null ) {
+            query = new Query();
+        }
+        else {
+            try {
+                query = Query.fromQL( ( String ) config.get( "query" ) );
+            }
+            catch ( Exception e ) {
+                progress.getExport().setErrorMessage( e.getMessage() );
+            }
+        }
+        query.setLimit( MAX_ENTITY_FETCH );
+        query.setResultsLevel( Results.Level.ALL_PROPERTIES );
+        query.setCollection( collectionName );
 
-        Set<String> collections = em.getCollections( entity );
+        Segment segment = new Segment( File.createTempFile( "tempExport", compress ? ".json.gz" : ".json" ) );
+        segment.file.deleteOnExit();
 
-        // If your application doesn't have any e
-        if ( ( collections == null ) || collections.isEmpty() ) {
-            return;
+        OutputStream out = new BufferedOutputStream( new FileOutputStream( segment.file ), BUFFER_SIZE );
+        if ( compress ) {
+            out = new GZIPOutputStream( out, BUFFER_SIZE );
         }
 
-        for ( String collectionName : collections ) {
+        JsonGenerator jg = getJsonGenerator( out );
+        boolean exported = false;
 
-            if ( collectionName.equals( collection ) ) {
-                jg.writeFieldName( collectionName );
-                jg.writeStartArray();
+        try {
+            String membersCollection = ( String ) config.get( "collectionName" );
 
-                //is 100000 an arbitary number?
-                Results collectionMembers =
-                        em.getCollection( entity, collectionName, null, 100000, Results.Level.IDS, false );
+            Results page = em.searchCollection( em.getApplicationRef(), collectionName, query );
 
-                List<UUID> entityIds = collectionMembers.getIds();
+            while ( page.size() > 0 ) {
 
-                if ( ( entityIds != null ) && !entityIds.isEmpty() ) {
-                    for ( UUID childEntityUUID : entityIds ) {
-                        jg.writeObject( childEntityUUID.toString() );
+                if ( Thread.currentThread().isInterrupted() ) {
+                    throw new InterruptedException( "Export of collection " + collectionName + " stopped" );
+                }
+
+                List<Entity> entities = page.getEntities();
+                List<EntityRelations> relations = loadRelations( em, membersCollection, entities, lookups );
+
+                for ( int i = 0; i < entities.size(); i++ ) {
+                    //the segments are joined into an array, so the entities are separated by commas
+                    if ( segment.count++ > 0 ) {
+                        jg.writeRaw( ',' );
                     }
+                    writeEntity( jg, entities.get( i ), relations.get( i ) );
+                }
+
+                progress.entitiesExported( entities.size() );
+
+                if ( page.getCursor() == null ) {
+                    break;
                 }
 
-                // End collection array.
-                jg.writeEndArray();
+                query.setCursor( page.getCursor() );
+
+                page = em.searchCollection( em.getApplicationRef(), collectionName, query );
+            }
+
+            exported = true;
+        }
+        finally {
+            jg.close();
+
+            if ( !exported ) {
+                segment.file.delete();
             }
         }
 
-        // Write connections
-        saveConnections( entity, em, jg );
+        progress.collectionExported();
 
-        // Write dictionaries
-        saveDictionaries( entity, em, jg );
+        return segment;
+    }
+
+
+    /** Read the connections, dictionaries and collection members of every entity of a page concurrently */
+    private List<EntityRelations> loadRelations( final EntityManager em, final String collection,
+                                                 List<Entity> entities, ExecutorService lookups ) throws Exception {
+
+        List<Future<EntityRelations>> futures = new ArrayList<Future<EntityRelations>>( entities.size() );
+
+        for ( final Entity entity : entities ) {
+            futures.add( lookups.submit( new Callable<EntityRelations>() {
+                @Override
+                public EntityRelations call() throws Exception {
+                    return loadRelations( em, collection, entity );
+                }
+            } ) );
+        }
+
+        List<EntityRelations> relations = new ArrayList<EntityRelations>( entities.size() );
+
+        for ( Future<EntityRelations> future : futures ) {
+            relations.add( await( future ) );
+        }
+
+        return relations;
     }
 
 
     /**
-     * Persists the connection for this entity.
+     * @param collection if not null, the members of the entity's collection of this name are read too
      */
-    private void saveDictionaries( Entity entity, EntityManager em, JsonGenerator jg ) throws Exception {
+    private EntityRelations loadRelations( EntityManager em, String collection, Entity entity ) throws Exception {
+        EntityRelations relations = new EntityRelations();
 
-        jg.writeFieldName( "dictionaries" );
-        jg.writeStartObject();
+        for ( String connectionType : em.getConnectionTypes( entity ) ) {
+            Results results = em.getConnectedEntities( entity.getUuid(), connectionType, null, Results.Level.IDS );
 
-        Set<String> dictionaries = em.getDictionaries( entity );
-        for ( String dictionary : dictionaries ) {
+            List<UUID> connected = new ArrayList<UUID>();
+            for ( ConnectionRef connectionRef : results.getConnections() ) {
+                connected.add( connectionRef.getConnectedEntity().getUuid() );
+            }
+
+            relations.connections.put( connectionType, connected );
+        }
 
+        for ( String dictionary : em.getDictionaries( entity ) ) {
             Map<Object, Object> dict = em.getDictionaryAsMap( entity, dictionary );
 
             // nothing to do
-            if ( dict.isEmpty() ) {
-                continue;
+            if ( !dict.isEmpty() ) {
+                relations.dictionaries.put( dictionary, dict );
             }
+        }
 
-            jg.writeFieldName( dictionary );
+        if ( collection != null ) {
+            Set<String> collections = em.getCollections( entity );
 
-            jg.writeStartObject();
+            if ( ( collections != null ) && collections.contains( collection ) ) {
+                //is 100000 an arbitary number?
+                Results collectionMembers =
+                        em.getCollection( entity, collection, null, 100000, Results.Level.IDS, false );
 
-            for ( Map.Entry<Object, Object> entry : dict.entrySet() ) {
-                jg.writeFieldName( entry.getKey().toString() );
-                jg.writeObject( entry.getValue() );
+                relations.collection = collection;
+                relations.members = collectionMembers.getIds();
             }
-
-            jg.writeEndObject();
         }
-        jg.writeEndObject();
+
+        return relations;
     }
 
 
     /**
-     * Persists the connection for this entity.
+     * Serialize the entity along with its connections, dictionaries and collection members
      */
-    private void saveConnections( Entity entity, EntityManager em, JsonGenerator jg ) throws Exception {
+    private void writeEntity( JsonGenerator jg, Entity entity, EntityRelations relations ) throws IOException {
+        jg.writeStartObject();
+        jg.writeFieldName( "Metadata" );
+        jg.writeObject( entity );
 
         jg.writeFieldName( "connections" );
         jg.writeStartObject();
 
-        Set<String> connectionTypes = em.getConnectionTypes( entity );
-        for ( String connectionType : connectionTypes ) {
-
-            jg.writeFieldName( connectionType );
+        for ( Map.Entry<String, List<UUID>> connection : relations.connections.entrySet() ) {
+            jg.writeFieldName( connection.getKey() );
             jg.writeStartArray();
 
-            Results results = em.getConnectedEntities( entity.getUuid(), connectionType, null, Results.Level.IDS );
-            List<ConnectionRef> connections = results.getConnections();
+            for ( UUID connected : connection.getValue() ) {
+                jg.writeObject( connected );
+            }
+
+            jg.writeEndArray();
+        }
+
+        jg.writeEndObject();
+
+        jg.writeFieldName( "dictionaries" );
+        jg.writeStartObject();
+
+        for ( Map.Entry<String, Map<Object, Object>> dictionary : relations.dictionaries.entrySet() ) {
+            jg.writeFieldName( dictionary.getKey() );
+            jg.writeStartObject();
+
+            for ( Map.Entry<Object, Object> entry : dictionary.getValue().entrySet() ) {
+                jg.writeFieldName( entry.getKey().toString() );
+                jg.writeObject( entry.getValue() );
+            }
+
+            jg.writeEndObject();
+        }
 
-            for ( ConnectionRef connectionRef : connections ) {
-                jg.writeObject( connectionRef.getConnectedEntity().getUuid() );
+        jg.writeEndObject();
+
+        if ( relations.collection != null ) {
+            jg.writeFieldName( relations.collection );
+            jg.writeStartArray();
+
+            if ( relations.members != null ) {
+                for ( UUID childEntityUUID : relations.members ) {
+                    jg.writeObject( childEntityUUID.toString() );
+                }
             }
 
+            // End collection array.
             jg.writeEndArray();
         }
+
         jg.writeEndObject();
     }
 
 
-    protected JsonGenerator getJsonGenerator( File ephermal ) throws IOException {
+    protected JsonGenerator getJsonGenerator( OutputStream out ) throws IOException {
         //TODO:shouldn't the below be UTF-16?
 
-        JsonGenerator jg = jsonFactory.createJsonGenerator( ephermal, JsonEncoding.UTF8 );
+        JsonGenerator jg = jsonFactory.createJsonGenerator( out, JsonEncoding.UTF8 );
         jg.setPrettyPrinter( new DefaultPrettyPrinter() );
         jg.setCodec( new ObjectMapper() );
         return jg;
@@ -560,69 +791,57 @@ public class ExportServiceImpl implements ExportService {
     }
 
 
-    /**
-     * handles the query and export of collections
-     */
-    //TODO:Needs further refactoring.
-    protected File collectionExportAndQuery( UUID applicationUUID, final Map<String, Object> config, Export export,
-                                             final JobExecution jobExecution ) throws Exception {
+    protected boolean isCompressed( Map<String, Object> config ) {
+        return Boolean.parseBoolean( String.valueOf( config.get( "compress" ) ) );
+    }
 
-        EntityManager em = emf.getEntityManager( applicationUUID );
-        Map<String, Object> metadata = em.getApplicationCollectionMetadata();
-        long starting_time = System.currentTimeMillis();
-        File ephemeral = new File( "tempExport" + UUID.randomUUID() );
-        ephemeral.deleteOnExit();
 
+    /** Write the separator to the joined export, as a gzip member of its own if the export is compressed */
+    private static void writeSeparator( OutputStream out, String separator, boolean compress ) throws IOException {
+        byte[] bytes = separator.getBytes( "UTF-8" );
 
-        JsonGenerator jg = getJsonGenerator( ephemeral );
+        if ( !compress ) {
+            out.write( bytes );
+            return;
+        }
 
-        jg.writeStartArray();
+        GZIPOutputStream gzip = new GZIPOutputStream( new CloseShieldOutputStream( out ) );
+        gzip.write( bytes );
+        gzip.close();
+    }
 
-        for ( String collectionName : metadata.keySet() ) {
-            if ( collectionName.equals( "exports" ) ) {
-                continue;
-            }
-            //if the collection you are looping through doesn't match the name of the one you want. Don't export it.
 
-            if ( ( config.get( "collectionName" ) == null ) || collectionName
-                    .equals( config.get( "collectionName" ) ) ) {
-                //Query entity manager for the entities in a collection
-                Query query = null;
-                if ( config.get( "query" ) == null ) {
-                    query = new Query();
-                }
-                else {
-                    try {
-                        query = Query.fromQL( ( String ) config.get( "query" ) );
-                    }
-                    catch ( Exception e ) {
-                        export.setErrorMessage( e.getMessage() );
-                    }
-                }
-                query.setLimit( MAX_ENTITY_FETCH );
-                query.setResultsLevel( Results.Level.ALL_PROPERTIES );
-                query.setCollection( collectionName );
-
-                Results entities = em.searchCollection( em.getApplicationRef(), collectionName, query );
-
-                //pages through the query and backs up all results.
-                PagingResultsIterator itr = new PagingResultsIterator( entities );
-                for ( Object e : itr ) {
-                    starting_time = checkTimeDelta( starting_time, jobExecution );
-                    Entity entity = ( Entity ) e;
-                    jg.writeStartObject();
-                    jg.writeFieldName( "Metadata" );
-                    jg.writeObject( entity );
-                    saveCollectionMembers( jg, em, ( String ) config.get( "collectionName" ), entity );
-                    jg.writeEndObject();
-                    jg.flush();
-                }
+    private static <T> T await( Future<T> future ) throws Exception {
+        try {
+            return future.get();
+        }
+        catch ( ExecutionException e ) {
+            if ( e.getCause() instanceof Exception ) {
+                throw ( Exception ) e.getCause();
             }
+            throw e;
+        }
+    }
+
+
+    /** The entities of one collection written to a temp file */
+    private static class Segment {
+        private final File file;
+        private long count;
+
+
+        private Segment( File file ) {
+            this.file = file;
         }
-        jg.writeEndArray();
-        jg.flush();
-        jg.close();
+    }
+
 
-        return ephemeral;
+    /** What is exported along with an entity besides its properties */
+    private static class EntityRelations {
+        private final Map<String, List<UUID>> connections = new LinkedHashMap<String, List<UUID>>();
+        private final Map<String, Map<Object, Object>> dictionaries =
+                new LinkedHashMap<String, Map<Object, Object>>();
+        private String collection;
+        private List<UUID> members;
     }
 }
@@ -17,14 +17,35 @@
 package org.apache.usergrid.security.shiro;
 
 
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.shiro.authz.Permission;
 import org.apache.shiro.authz.permission.PermissionResolver;
 
+import com.google.common.cache.CacheBuilder;
+
 
 public class CustomPermissionResolver implements PermissionResolver {
 
+    /**
+     * Parsed permissions are immutable and the same role permissions are granted to many users, so keep the most
+     * recently used ones
+     */
+    private static final int MAX_CACHED_PERMISSIONS = 10000;
+
+    private final ConcurrentMap<String, Permission> resolved =
+            CacheBuilder.newBuilder().maximumSize( MAX_CACHED_PERMISSIONS ).<String, Permission>build().asMap();
+
+
     @Override
     public Permission resolvePermission( String permissionString ) {
-        return new CustomPermission( permissionString );
+        Permission permission = resolved.get( permissionString );
+
+        if ( permission == null ) {
+            permission = new CustomPermission( permissionString );
+            resolved.put( permissionString, permission );
+        }
+
+        return permission;
     }
 }
@@ -0,0 +1,331 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.security.shiro;
+
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.shiro.authz.Permission;
+
+
+/**
+ * The resolved permissions of a subject, indexed by the application id part so that checking a permission on one
+ * application only evaluates the permissions granted on that application and those that aren't specific to any
+ * application.  Admin users hold permissions on every application of their organizations, and without the index
+ * every request would path match against all of them.
+ * <p/>
+ * Within an application, permissions are kept in a trie over the literal segments their paths start with, up to the
+ * first segment that is a pattern or is substituted with the user.  A check walks the segments of the checked path
+ * and only evaluates the permissions of the nodes it passes, so roles with many paths cost the length of the path
+ * rather than a match against every path.
+ * <p/>
+ * The index never changes the outcome of a check: a permission is only indexed when its application part is made of
+ * literal values, which can only imply a checked permission with an equal application part, and a path can only match
+ * a checked path that starts with the same literal segments.  Every candidate is still decided by
+ * {@link CustomPermission#implies(Permission)}.
+ */
+public class PermissionSet {
+
+    /** Index of the application id in "applications:operations:applicationId:paths" */
+    private static final int APPLICATION_PART = 2;
+
+    /** Index of the paths in "applications:operations:applicationId:paths" */
+    private static final int PATH_PART = 3;
+
+    private final List<Permission> all;
+    private final PathIndex unindexed = new PathIndex();
+    private final Map<String, PathIndex> byApplication = new HashMap<String, PathIndex>();
+
+
+    public PermissionSet( Collection<Permission> permissions ) {
+        this.all = new ArrayList<Permission>( permissions );
+
+        for ( Permission permission : all ) {
+            Set<String> applications = getApplicationPart( permission );
+
+            if ( applications == null ) {
+                unindexed.add( permission );
+                continue;
+            }
+
+            for ( String application : applications ) {
+                String key = application.toLowerCase();
+
+                PathIndex indexed = byApplication.get( key );
+                if ( indexed == null ) {
+                    indexed = new PathIndex();
+                    byApplication.put( key, indexed );
+                }
+
+                indexed.add( permission );
+            }
+        }
+    }
+
+
+    /** @return true if any permission in the set implies the permission */
+    public boolean implies( Permission permission ) {
+        String application = getCheckedApplication( permission );
+
+        if ( application == null ) {
+            return implies( all, permission );
+        }
+
+        List<String> path = getCheckedPath( permission );
+
+        if ( unindexed.implies( path, permission ) ) {
+            return true;
+        }
+
+        PathIndex indexed = byApplication.get( application );
+
+        return indexed != null && indexed.implies( path, permission );
+    }
+
+
+    public int size() {
+        return all.size();
+    }
+
+
+    private static boolean implies( List<Permission> permissions, Permission permission ) {
+        if ( permissions == null ) {
+            return false;
+        }
+
+        for ( Permission granted : permissions ) {
+            if ( granted.implies( permission ) ) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /** @return the literal values of the application part of a granted permission, or null if it can't be indexed */
+    private static Set<String> getApplicationPart( Permission permission ) {
+        if ( !( permission instanceof CustomPermission ) ) {
+            return null;
+        }
+
+        List<Set<String>> parts = ( ( CustomPermission ) permission ).getParts();
+
+        if ( parts.size() <= APPLICATION_PART ) {
+            return null;
+        }
+
+        Set<String> applications = parts.get( APPLICATION_PART );
+
+        for ( String application : applications ) {
+            if ( !isLiteral( application ) ) {
+                return null;
+            }
+        }
+
+        return applications;
+    }
+
+
+    /** @return the lower case application of a checked permission, or null if the whole set must be evaluated */
+    private static String getCheckedApplication( Permission permission ) {
+        if ( !( permission instanceof CustomPermission ) ) {
+            return null;
+        }
+
+        List<Set<String>> parts = ( ( CustomPermission ) permission ).getParts();
+
+        if ( parts.size() <= APPLICATION_PART || parts.get( APPLICATION_PART ).size() != 1 ) {
+            return null;
+        }
+
+        String application = parts.get( APPLICATION_PART ).iterator().next();
+
+        if ( !isLiteral( application ) ) {
+            return null;
+        }
+
+        return application.toLowerCase();
+    }
+
+
+    /**
+     * @return the lower case segments of the path of a checked application permission, or null if the permissions
+     *         must be evaluated without the path index
+     */
+    private static List<String> getCheckedPath( Permission permission ) {
+        List<Set<String>> parts = ( ( CustomPermission ) permission ).getParts();
+
+        //only application permissions have their paths compared as paths
+        if ( parts.size() <= PATH_PART || !parts.get( 0 ).contains( "applications" )
+                || parts.get( PATH_PART ).size() != 1 ) {
+            return null;
+        }
+
+        return getSegments( parts.get( PATH_PART ).iterator().next() );
+    }
+
+
+    /**
+     * @return the lower case segments of a path, split as the path matcher does, which ignores empty segments and
+     *         the whitespace around them
+     */
+    private static List<String> getSegments( String path ) {
+        List<String> segments = new ArrayList<String>();
+
+        for ( String segment : CustomPermission.makePath( path ).split( "/" ) ) {
+            segment = segment.trim();
+
+            if ( segment.length() > 0 ) {
+                segments.add( segment.toLowerCase() );
+            }
+        }
+
+        return segments;
+    }
+
+
+    /** @return the leading segments of a granted path that are only ever compared for equality */
+    private static List<String> getLiteralPrefix( String path ) {
+        List<String> prefix = new ArrayList<String>();
+
+        for ( String segment : getSegments( path ) ) {
+            //"/me/" is substituted with the user
+            if ( !isLiteral( segment ) || "me".equals( segment ) ) {
+                break;
+            }
+
+            prefix.add( segment );
+        }
+
+        return prefix;
+    }
+
+
+    /** A value only ever compared for equality, never as a pattern, path, or with user substitution */
+    private static boolean isLiteral( String value ) {
+        if ( value.length() == 0 ) {
+            return false;
+        }
+
+        for ( int i = 0; i < value.length(); i++ ) {
+            switch ( value.charAt( i ) ) {
+                case '*':
+                case '?':
+                case '{':
+                case '$':
+                case '/':
+                    return false;
+                default:
+            }
+        }
+
+        return true;
+    }
+
+
+    /** The permissions of an application, in a trie over the literal prefixes of their paths */
+    private static class PathIndex {
+
+        private final List<Permission> all = new ArrayList<Permission>();
+        private final PathNode root = new PathNode();
+
+
+        void add( Permission permission ) {
+            all.add( permission );
+
+            Set<String> paths = getPathPart( permission );
+
+            //without paths the permission implies every path
+            if ( paths == null ) {
+                root.permissions.add( permission );
+                return;
+            }
+
+            for ( String path : paths ) {
+                PathNode node = root;
+
+                for ( String segment : getLiteralPrefix( path ) ) {
+                    PathNode child = node.children.get( segment );
+                    if ( child == null ) {
+                        child = new PathNode();
+                        node.children.put( segment, child );
+                    }
+                    node = child;
+                }
+
+                node.permissions.add( permission );
+            }
+        }
+
+
+        /** @param path The segments of the checked path, or null to evaluate every permission */
+        boolean implies( List<String> path, Permission permission ) {
+            if ( path == null ) {
+                return PermissionSet.implies( all, permission );
+            }
+
+            PathNode node = root;
+
+            if ( PermissionSet.implies( node.permissions, permission ) ) {
+                return true;
+            }
+
+            for ( String segment : path ) {
+                node = node.children.get( segment );
+
+                if ( node == null ) {
+                    return false;
+                }
+
+                if ( PermissionSet.implies( node.permissions, permission ) ) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+
+        /** @return the paths of a granted permission, or null if it has none */
+        private static Set<String> getPathPart( Permission permission ) {
+            if ( !( permission instanceof CustomPermission ) ) {
+                return null;
+            }
+
+            List<Set<String>> parts = ( ( CustomPermission ) permission ).getParts();
+
+            if ( parts.size() <= PATH_PART ) {
+                return null;
+            }
+
+            return parts.get( PATH_PART );
+        }
+    }
+
+
+    private static class PathNode {
+
+        private final Map<String, PathNode> children = new HashMap<String, PathNode>();
+        private final List<Permission> permissions = new ArrayList<Permission>( 1 );
+    }
+}
@@ -17,7 +17,9 @@
 package org.apache.usergrid.security.shiro;
 
 
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -67,7 +69,9 @@ import org.apache.shiro.authc.SimpleAuthenticationInfo;
 import org.apache.shiro.authc.credential.AllowAllCredentialsMatcher;
 import org.apache.shiro.authc.credential.CredentialsMatcher;
 import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.Permission;
 import org.apache.shiro.authz.SimpleAuthorizationInfo;
+import org.apache.shiro.authz.UnauthorizedException;
 import org.apache.shiro.authz.permission.PermissionResolver;
 import org.apache.shiro.cache.CacheManager;
 import org.apache.shiro.realm.AuthorizingRealm;
@@ -226,7 +230,7 @@ public class Realm extends AuthorizingRealm {
 
     @Override
     protected AuthorizationInfo doGetAuthorizationInfo( PrincipalCollection principals ) {
-        SimpleAuthorizationInfo info = new SimpleAuthorizationInfo();
+        SimpleAuthorizationInfo info = new ResolvedAuthorizationInfo();
 
         Map<UUID, String> organizationSet = HashBiMap.create();
         Map<UUID, String> applicationSet = HashBiMap.create();
@@ -480,6 +484,75 @@ public class Realm extends AuthorizingRealm {
     }
 
 
+    @Override
+    public boolean isPermitted( PrincipalCollection principals, Permission permission ) {
+        AuthorizationInfo info = getAuthorizationInfo( principals );
+        if ( info instanceof ResolvedAuthorizationInfo ) {
+            return isPermitted( permission, ( ResolvedAuthorizationInfo ) info );
+        }
+        return super.isPermitted( principals, permission );
+    }
+
+
+    @Override
+    protected boolean[] isPermitted( List<Permission> permissions, AuthorizationInfo info ) {
+        if ( !( info instanceof ResolvedAuthorizationInfo ) || permissions == null ) {
+            return super.isPermitted( permissions, info );
+        }
+
+        boolean[] result = new boolean[permissions.size()];
+        int i = 0;
+        for ( Permission permission : permissions ) {
+            result[i++] = isPermitted( permission, ( ResolvedAuthorizationInfo ) info );
+        }
+        return result;
+    }
+
+
+    @Override
+    protected boolean isPermittedAll( Collection<Permission> permissions, AuthorizationInfo info ) {
+        if ( !( info instanceof ResolvedAuthorizationInfo ) || permissions == null ) {
+            return super.isPermittedAll( permissions, info );
+        }
+
+        for ( Permission permission : permissions ) {
+            if ( !isPermitted( permission, ( ResolvedAuthorizationInfo ) info ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    @Override
+    protected void checkPermission( Permission permission, AuthorizationInfo info ) {
+        if ( !( info instanceof ResolvedAuthorizationInfo ) ) {
+            super.checkPermission( permission, info );
+            return;
+        }
+
+        if ( !isPermitted( permission, ( ResolvedAuthorizationInfo ) info ) ) {
+            throw new UnauthorizedException( "User is not permitted [" + permission + "]" );
+        }
+    }
+
+
+    @Override
+    protected void checkPermissions( Collection<Permission> permissions, AuthorizationInfo info ) {
+        if ( permissions != null ) {
+            for ( Permission permission : permissions ) {
+                checkPermission( permission, info );
+            }
+        }
+    }
+
+
+    /** Check against the permissions resolved once for the cached authorization info */
+    private boolean isPermitted( Permission permission, ResolvedAuthorizationInfo info ) {
+        return info.getPermissionSet( getPermissionResolver() ).implies( permission );
+    }
+
+
     /** Grant all permissions for the role names on this application */
     private void grantAppRoles( SimpleAuthorizationInfo info, EntityManager em, UUID applicationId, TokenInfo token,
                                 PrincipalIdentifier principal, Set<String> rolenames ) throws Exception {
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.security.shiro;
+
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.SimpleAuthorizationInfo;
+import org.apache.shiro.authz.permission.PermissionResolver;
+
+
+/**
+ * Authorization info that resolves its string permissions once, the first time a permission is checked, rather than
+ * on every check as the realm does by default.  Since the info is held in the authorization cache for the life of
+ * the session, the permission strings are parsed once per login instead of once per request.
+ */
+public class ResolvedAuthorizationInfo extends SimpleAuthorizationInfo {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient volatile PermissionSet permissionSet;
+
+
+    /** Get the resolved permissions.  Must not be called until every permission has been granted */
+    public PermissionSet getPermissionSet( PermissionResolver resolver ) {
+        PermissionSet resolved = permissionSet;
+
+        if ( resolved == null ) {
+            //a concurrent check may resolve the same permissions, which is harmless
+            resolved = new PermissionSet( resolvePermissions( resolver ) );
+            permissionSet = resolved;
+        }
+
+        return resolved;
+    }
+
+
+    private List<Permission> resolvePermissions( PermissionResolver resolver ) {
+        List<Permission> permissions = new ArrayList<Permission>();
+
+        Collection<Permission> objectPermissions = getObjectPermissions();
+        if ( objectPermissions != null ) {
+            permissions.addAll( objectPermissions );
+        }
+
+        Collection<String> stringPermissions = getStringPermissions();
+        if ( stringPermissions != null ) {
+            for ( String permission : stringPermissions ) {
+                permissions.add( resolver.resolvePermission( permission ) );
+            }
+        }
+
+        return permissions;
+    }
+}
@@ -19,6 +19,14 @@ package org.apache.usergrid.security.tokens.cassandra;
 
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +47,10 @@ import org.apache.usergrid.security.tokens.exceptions.InvalidTokenException;
 import org.apache.usergrid.utils.JsonUtils;
 import org.apache.usergrid.utils.UUIDUtils;
 
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import me.prettyprint.hector.api.Keyspace;
 import me.prettyprint.hector.api.beans.HColumn;
 import me.prettyprint.hector.api.mutation.Mutator;
@@ -77,6 +89,10 @@ public class TokenServiceImpl implements TokenService {
     public static final String PROPERTIES_AUTH_TOKEN_EXPIRES_FROM_LAST_USE =
             "usergrid.auth.token_expires_from_last_use";
     public static final String PROPERTIES_AUTH_TOKEN_REFRESH_REUSES_ID = "usergrid.auth.token_refresh_reuses_id";
+    public static final String PROPERTIES_AUTH_TOKEN_CACHE_SIZE = "usergrid.auth.token.cache.size";
+    public static final String PROPERTIES_AUTH_TOKEN_CACHE_TTL = "usergrid.auth.token.cache.ttl";
+    public static final String PROPERTIES_AUTH_TOKEN_ACCESS_WRITE_INTERVAL =
+            "usergrid.auth.token.access.write.interval";
 
     private static final String TOKEN_UUID = "uuid";
     private static final String TOKEN_TYPE = "type";
@@ -132,6 +148,15 @@ public class TokenServiceImpl implements TokenService {
     // Long-lived token is good for 7 days
     public static final long LONG_TOKEN_AGE = 7 * 24 * 60 * 60 * 1000;
 
+    // Number of tokens held in memory, 0 disables the cache
+    public static final long DEFAULT_TOKEN_CACHE_SIZE = 10000;
+
+    // Seconds a token or application ttl is held, and so how long a revoke on another node can go unnoticed
+    public static final long DEFAULT_TOKEN_CACHE_TTL = 5;
+
+    // Milliseconds between writes of the access times, 0 writes them on every request
+    public static final long DEFAULT_ACCESS_WRITE_INTERVAL = 5000;
+
     String tokenSecretSalt = TOKEN_SECRET_SALT;
 
     long maxPersistenceTokenAge = LONG_TOKEN_AGE;
@@ -151,12 +176,58 @@ public class TokenServiceImpl implements TokenService {
 
     protected EntityManagerFactory emf;
 
+    long accessWriteInterval = DEFAULT_ACCESS_WRITE_INTERVAL;
+
+    private Cache<UUID, TokenInfo> tokenCache = buildCache( DEFAULT_TOKEN_CACHE_SIZE, DEFAULT_TOKEN_CACHE_TTL );
+
+    private Cache<UUID, Optional<Long>> applicationTtlCache =
+            buildCache( DEFAULT_TOKEN_CACHE_SIZE, DEFAULT_TOKEN_CACHE_TTL );
+
+    /** The latest access of every token that has been used since the last write, written by the access writer */
+    private final ConcurrentHashMap<UUID, TokenAccess> pendingAccesses = new ConcurrentHashMap<UUID, TokenAccess>();
+
+    private final ScheduledExecutorService accessWriter =
+            Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+                @Override
+                public Thread newThread( Runnable r ) {
+                    Thread thread = new Thread( r, "TokenAccessWriter" );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+
 
     public TokenServiceImpl() {
 
     }
 
 
+    private static <V> Cache<UUID, V> buildCache( long size, long ttl ) {
+        return CacheBuilder.newBuilder().maximumSize( Math.max( size, 0 ) )
+                           .expireAfterWrite( Math.max( ttl, 0 ), TimeUnit.SECONDS ).build();
+    }
+
+
+    @PostConstruct
+    public void init() {
+        if ( accessWriteInterval > 0 ) {
+            accessWriter.scheduleWithFixedDelay( new Runnable() {
+                @Override
+                public void run() {
+                    writeAccesses();
+                }
+            }, accessWriteInterval, accessWriteInterval, TimeUnit.MILLISECONDS );
+        }
+    }
+
+
+    @PreDestroy
+    public void destroy() {
+        accessWriter.shutdown();
+        writeAccesses();
+    }
+
+
     long getExpirationProperty( String name, long default_expiration ) {
         long expires = Long.parseLong(
                 properties.getProperty( "usergrid.auth.token." + name + ".expires", "" + default_expiration ) );
@@ -197,6 +268,17 @@ public class TokenServiceImpl implements TokenService {
             setExpirationFromProperties( "offline" );
 
             tokenSecretSalt = properties.getProperty( PROPERTIES_AUTH_TOKEN_SECRET_SALT, TOKEN_SECRET_SALT );
+
+            long cacheSize = Long.parseLong(
+                    properties.getProperty( PROPERTIES_AUTH_TOKEN_CACHE_SIZE, "" + DEFAULT_TOKEN_CACHE_SIZE ) );
+            long cacheTtl = Long.parseLong(
+                    properties.getProperty( PROPERTIES_AUTH_TOKEN_CACHE_TTL, "" + DEFAULT_TOKEN_CACHE_TTL ) );
+
+            tokenCache = buildCache( cacheSize, cacheTtl );
+            applicationTtlCache = buildCache( cacheSize, cacheTtl );
+
+            accessWriteInterval = Long.parseLong( properties.getProperty( PROPERTIES_AUTH_TOKEN_ACCESS_WRITE_INTERVAL,
+                    "" + DEFAULT_ACCESS_WRITE_INTERVAL ) );
         }
     }
 
@@ -250,38 +332,139 @@ public class TokenServiceImpl implements TokenService {
             return null;
         }
 
-        TokenInfo tokenInfo = getTokenInfo( uuid );
+        long now = currentTimeMillis();
+
+        TokenInfo cached = getCachedTokenInfo( uuid, now );
+
+        TokenInfo tokenInfo = cached != null ? cached : getTokenInfo( uuid );
 
         if ( tokenInfo == null ) {
             return null;
         }
 
         //update the token
-        long now = currentTimeMillis();
-
         long maxTokenTtl = getMaxTtl( TokenCategory.getFromBase64String( token ), tokenInfo.getPrincipal() );
 
-        Mutator<UUID> batch = createMutator( cassandra.getSystemKeyspace(), ue );
-
-        HColumn<String, Long> col =
-                createColumn( TOKEN_ACCESSED, now, calcTokenTime( tokenInfo.getExpiration( maxTokenTtl ) ),
-                        se, le );
-        batch.addInsertion( uuid, TOKENS_CF, col );
+        int ttl = calcTokenTime( tokenInfo.getExpiration( maxTokenTtl ) );
 
         long inactive = now - tokenInfo.getAccessed();
-        if ( inactive > tokenInfo.getInactive() ) {
-            col = createColumn( TOKEN_INACTIVE, inactive, calcTokenTime( tokenInfo.getExpiration( maxTokenTtl ) ),
-                    se, le );
-            batch.addInsertion( uuid, TOKENS_CF, col );
+        boolean inactiveChanged = inactive > tokenInfo.getInactive();
+
+        if ( inactiveChanged ) {
             tokenInfo.setInactive( inactive );
         }
 
-        batch.execute();
+        TokenAccess access = new TokenAccess( uuid, now, inactiveChanged ? inactive : -1, ttl );
+
+        if ( cached == null ) {
+            cacheTokenInfo( tokenInfo, now );
+        }
+
+        if ( accessWriteInterval > 0 ) {
+            deferAccess( access );
+        }
+        else {
+            Mutator<UUID> batch = createMutator( cassandra.getSystemKeyspace(), ue );
+            access.addTo( batch );
+            batch.execute();
+        }
 
         return tokenInfo;
     }
 
 
+    /**
+     * Get a copy of the cached token, and record the access on the cached version.  The returned token has the
+     * access times as they would have been read from cassandra had every access been written
+     */
+    private TokenInfo getCachedTokenInfo( UUID uuid, long now ) {
+        TokenInfo cached = tokenCache.getIfPresent( uuid );
+
+        if ( cached == null ) {
+            return null;
+        }
+
+        synchronized ( cached ) {
+            //the token columns have expired in cassandra, let the read fail as it would have
+            if ( cached.getDuration() != Long.MAX_VALUE && cached.getCreated() + cached.getDuration() < now ) {
+                tokenCache.invalidate( uuid );
+                return null;
+            }
+
+            TokenInfo copy = copyTokenInfo( cached );
+
+            cached.setInactive( Math.max( cached.getInactive(), now - cached.getAccessed() ) );
+            cached.setAccessed( now );
+
+            return copy;
+        }
+    }
+
+
+    /** Cache a copy of a token read from cassandra, with the access that is being recorded */
+    private void cacheTokenInfo( TokenInfo tokenInfo, long now ) {
+        TokenInfo copy = copyTokenInfo( tokenInfo );
+        copy.setAccessed( now );
+        tokenCache.put( copy.getUuid(), copy );
+    }
+
+
+    private TokenInfo copyTokenInfo( TokenInfo tokenInfo ) {
+        Map<String, Object> state =
+                tokenInfo.getState() == null ? null : new HashMap<String, Object>( tokenInfo.getState() );
+
+        return new TokenInfo( tokenInfo.getUuid(), tokenInfo.getType(), tokenInfo.getCreated(),
+                tokenInfo.getAccessed(), tokenInfo.getInactive(), tokenInfo.getDuration(), tokenInfo.getPrincipal(),
+                state );
+    }
+
+
+    /** Queue the access to be written, merging it with any access of the same token that's still pending */
+    private void deferAccess( TokenAccess access ) {
+        while ( true ) {
+            TokenAccess existing = pendingAccesses.putIfAbsent( access.uuid, access );
+
+            if ( existing == null ) {
+                return;
+            }
+
+            if ( pendingAccesses.replace( access.uuid, existing, existing.merge( access ) ) ) {
+                return;
+            }
+        }
+    }
+
+
+    /** Write the pending accesses of all tokens in a single batch */
+    void writeAccesses() {
+        if ( pendingAccesses.isEmpty() ) {
+            return;
+        }
+
+        Mutator<UUID> batch = createMutator( cassandra.getSystemKeyspace(), ue );
+
+        int count = 0;
+
+        for ( TokenAccess access : pendingAccesses.values() ) {
+            if ( pendingAccesses.remove( access.uuid, access ) ) {
+                access.addTo( batch );
+                count++;
+            }
+        }
+
+        if ( count == 0 ) {
+            return;
+        }
+
+        try {
+            batch.execute();
+        }
+        catch ( Exception e ) {
+            logger.error( "Unable to write the access time of {} tokens", count, e );
+        }
+    }
+
+
     /** Get the max ttl per app. This is null safe,and will return the default in the case of missing data */
     private long getMaxTtl( TokenCategory tokenCategory, AuthPrincipalInfo principal ) throws Exception {
 
@@ -290,19 +473,14 @@ public class TokenServiceImpl implements TokenService {
         }
         long defaultMaxTtlForTokenType = getExpirationForTokenType( tokenCategory );
 
-        Application application = emf.getEntityManager( principal.getApplicationId() )
-                                     .get( principal.getApplicationId(), Application.class );
-
-        if ( application == null ) {
-            return defaultMaxTtlForTokenType;
-        }
+        Optional<Long> accessTokenTtl = getApplicationTtl( principal.getApplicationId() );
 
         // set the max to the default
         long maxTokenTtl = defaultMaxTtlForTokenType;
 
         // it's been defined on the expiration, override it
-        if ( application.getAccesstokenttl() != null ) {
-            maxTokenTtl = application.getAccesstokenttl();
+        if ( accessTokenTtl.isPresent() ) {
+            maxTokenTtl = accessTokenTtl.get();
 
             // it's set to 0 which equals infinity, set our expiration to
             // LONG.MAX
@@ -315,6 +493,24 @@ public class TokenServiceImpl implements TokenService {
     }
 
 
+    /** Get the access token ttl of the application, absent if the application or the ttl doesn't exist */
+    private Optional<Long> getApplicationTtl( UUID applicationId ) throws Exception {
+        Optional<Long> accessTokenTtl = applicationTtlCache.getIfPresent( applicationId );
+
+        if ( accessTokenTtl != null ) {
+            return accessTokenTtl;
+        }
+
+        Application application = emf.getEntityManager( applicationId ).get( applicationId, Application.class );
+
+        accessTokenTtl = Optional.fromNullable( application == null ? null : application.getAccesstokenttl() );
+
+        applicationTtlCache.put( applicationId, accessTokenTtl );
+
+        return accessTokenTtl;
+    }
+
+
     /*
      * (non-Javadoc)
      *
@@ -335,6 +531,11 @@ public class TokenServiceImpl implements TokenService {
         batch.addDeletion( principalKey( principal ), PRINCIPAL_TOKEN_CF );
 
         batch.execute();
+
+        // only once the tokens are gone, so a concurrent read can't cache them again
+        for ( UUID tokenId : tokenIds ) {
+            invalidateToken( tokenId );
+        }
     }
 
 
@@ -372,6 +573,15 @@ public class TokenServiceImpl implements TokenService {
         batch.addDeletion( bytebuffer( tokenId ), TOKENS_CF );
 
         batch.execute();
+
+        invalidateToken( tokenId );
+    }
+
+
+    /** Drop the token from the cache, and any pending access so it can't recreate columns of a deleted token */
+    private void invalidateToken( UUID tokenId ) {
+        tokenCache.invalidate( tokenId );
+        pendingAccesses.remove( tokenId );
     }
 
 
@@ -632,4 +842,38 @@ public class TokenServiceImpl implements TokenService {
 
 
     private static final int MAX_TTL = 20 * 365 * 24 * 60 * 60;
+
+
+    /** The access of a token to record in cassandra */
+    private static final class TokenAccess {
+        private final UUID uuid;
+        private final long accessed;
+        private final long inactive;
+        private final int ttl;
+
+
+        /** @param inactive The new inactive time, or -1 if it hasn't increased */
+        private TokenAccess( UUID uuid, long accessed, long inactive, int ttl ) {
+            this.uuid = uuid;
+            this.accessed = accessed;
+            this.inactive = inactive;
+            this.ttl = ttl;
+        }
+
+
+        /** Combine with a later access, keeping the latest access time and the longest inactive time */
+        private TokenAccess merge( TokenAccess other ) {
+            return new TokenAccess( uuid, Math.max( accessed, other.accessed ), Math.max( inactive, other.inactive ),
+                    Math.max( ttl, other.ttl ) );
+        }
+
+
+        private void addTo( Mutator<UUID> batch ) {
+            batch.addInsertion( uuid, TOKENS_CF, createColumn( TOKEN_ACCESSED, accessed, ttl, se, le ) );
+
+            if ( inactive >= 0 ) {
+                batch.addInsertion( uuid, TOKENS_CF, createColumn( TOKEN_INACTIVE, inactive, ttl, se, le ) );
+            }
+        }
+    }
 }
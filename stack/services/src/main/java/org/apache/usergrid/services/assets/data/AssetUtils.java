@@ -17,6 +17,8 @@
 package org.apache.usergrid.services.assets.data;
 
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.HashMap;
@@ -69,6 +71,57 @@ public class AssetUtils {
     }
 
 
+    /**
+     * Parse the single byte range of an HTTP Range header, such as bytes=0-499, bytes=500- or bytes=-500
+     *
+     * @return the first and last byte of the range, or null if the header isn't a single range of the content
+     */
+    public static long[] parseRange( String rangeHeader, long contentLength ) {
+        if ( StringUtils.isEmpty( rangeHeader ) || contentLength <= 0 ) {
+            return null;
+        }
+
+        String range = rangeHeader.trim();
+        if ( !range.startsWith( "bytes=" ) || range.indexOf( ',' ) >= 0 ) {
+            return null;
+        }
+
+        range = range.substring( "bytes=".length() ).trim();
+        int dash = range.indexOf( '-' );
+        if ( dash < 0 ) {
+            return null;
+        }
+
+        long start;
+        long end = contentLength - 1;
+
+        try {
+            if ( dash == 0 ) {
+                long suffix = Long.parseLong( range.substring( 1 ).trim() );
+                if ( suffix <= 0 ) {
+                    return null;
+                }
+                start = Math.max( contentLength - suffix, 0 );
+            }
+            else {
+                start = Long.parseLong( range.substring( 0, dash ).trim() );
+                if ( dash < range.length() - 1 ) {
+                    end = Math.min( Long.parseLong( range.substring( dash + 1 ).trim() ), end );
+                }
+            }
+        }
+        catch ( NumberFormatException e ) {
+            return null;
+        }
+
+        if ( start < 0 || start > end ) {
+            return null;
+        }
+
+        return new long[] { start, end };
+    }
+
+
     /** side-effect: sets file-metadata on the entity if not present */
     public static Map<String, Object> getFileMetadata( Entity entity ) {
         Map<String, Object> metadata = ( Map<String, Object> ) entity.getProperty( AssetUtils.FILE_METADATA );
@@ -85,6 +138,17 @@ public class AssetUtils {
     }
 
 
+    /** @return a digest for the checksum of an asset */
+    public static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance( "MD5" );
+        }
+        catch ( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( "MD5 is not supported", e );
+        }
+    }
+
+
     /** @deprecated for legacy use */
     private static void addLegacyMetadata( Entity entity, Map<String, Object> metadata ) {
         if ( entity.getProperty( CONTENT_TYPE ) != null ) {
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.services.assets.data;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+
+/**
+ * The object store operations the {@link S3BinaryStore} is built on.  Keys are relative to the bucket of the client.
+ * Implementations must be safe to call from several threads at once, since parts of the same object are uploaded and
+ * downloaded concurrently.
+ */
+public interface BlobClient {
+
+    /**
+     * Store the first length bytes of data as a single object
+     *
+     * @return the etag of the object
+     */
+    String put( String key, byte[] data, int length, String contentType, String contentDisposition )
+            throws IOException;
+
+    /** @return the id of a new multipart upload for the key */
+    String initiateMultipartUpload( String key, String contentType, String contentDisposition ) throws IOException;
+
+    /**
+     * Upload the first length bytes of data as a part of a multipart upload.  Parts are numbered from 1
+     *
+     * @return the etag of the part
+     */
+    String uploadPart( String key, String uploadId, int partNumber, byte[] data, int length ) throws IOException;
+
+    /**
+     * Assemble the uploaded parts into the object
+     *
+     * @param parts the etags of the parts by part number
+     *
+     * @return the etag of the object
+     */
+    String completeMultipartUpload( String key, String uploadId, Map<Integer, String> parts ) throws IOException;
+
+    /** Discard a multipart upload and the parts uploaded so far */
+    void abortMultipartUpload( String key, String uploadId );
+
+    /** @return length bytes of the object from offset, or null if there's no object with the key */
+    InputStream get( String key, long offset, long length ) throws IOException;
+
+    /** @return the size of the object, or -1 if there's no object with the key */
+    long size( String key ) throws IOException;
+
+    void delete( String key );
+
+    void close();
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.services.assets.data;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * Reads a region of a file with positional reads on its channel, so the bytes before the region are never read.  The
+ * region can also be handed to a channel with {@link #transferTo(WritableByteChannel)}, which the OS does without
+ * copying the bytes through the heap when the target is a socket or a file.
+ */
+public class FileRegionInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+
+
+    /** Read length bytes of the file from offset, or up to the end of the file if it's shorter */
+    public FileRegionInputStream( FileChannel channel, long offset, long length ) throws IOException {
+        this.channel = channel;
+        this.position = Math.min( Math.max( offset, 0 ), channel.size() );
+        this.end = position + Math.min( Math.max( length, 0 ), channel.size() - position );
+    }
+
+
+    /** @return the number of bytes left in the region */
+    public long getRemaining() {
+        return end - position;
+    }
+
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int read = read( b, 0, 1 );
+        return read < 0 ? -1 : b[0] & 0xff;
+    }
+
+
+    @Override
+    public int read( byte[] b, int off, int len ) throws IOException {
+        if ( position >= end ) {
+            return -1;
+        }
+
+        if ( len == 0 ) {
+            return 0;
+        }
+
+        int read = channel.read( ByteBuffer.wrap( b, off, ( int ) Math.min( len, end - position ) ), position );
+
+        if ( read < 0 ) {
+            return -1;
+        }
+
+        position += read;
+        return read;
+    }
+
+
+    @Override
+    public long skip( long n ) throws IOException {
+        long skipped = Math.min( Math.max( n, 0 ), end - position );
+        position += skipped;
+        return skipped;
+    }
+
+
+    @Override
+    public int available() throws IOException {
+        return ( int ) Math.min( end - position, Integer.MAX_VALUE );
+    }
+
+
+    /**
+     * Write the rest of the region to the target
+     *
+     * @return the number of bytes written
+     */
+    public long transferTo( WritableByteChannel target ) throws IOException {
+        long transferred = 0;
+
+        while ( position < end ) {
+            long count = channel.transferTo( position, end - position, target );
+
+            if ( count <= 0 ) {
+                break;
+            }
+
+            position += count;
+            transferred += count;
+        }
+
+        return transferred;
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.services.assets.data;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.jclouds.ContextBuilder;
+import org.jclouds.aws.s3.AWSS3Client;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.BlobBuilder;
+import org.jclouds.blobstore.domain.BlobMetadata;
+import org.jclouds.blobstore.options.GetOptions;
+import org.jclouds.http.config.JavaUrlHttpCommandExecutorServiceModule;
+import org.jclouds.io.Payload;
+import org.jclouds.io.payloads.ByteArrayPayload;
+import org.jclouds.logging.log4j.config.Log4JLoggingModule;
+import org.jclouds.netty.config.NettyPayloadModule;
+import org.jclouds.s3.domain.ObjectMetadata;
+import org.jclouds.s3.domain.ObjectMetadataBuilder;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+
+
+/** {@link BlobClient} of an Amazon S3 bucket, which uses the S3 api directly for the multipart uploads */
+public class JcloudsS3BlobClient implements BlobClient {
+
+    private static final Iterable<? extends Module> MODULES = ImmutableSet
+            .of( new JavaUrlHttpCommandExecutorServiceModule(), new Log4JLoggingModule(), new NettyPayloadModule() );
+
+    private final String accessId;
+    private final String secretKey;
+    private final String bucketName;
+
+    private BlobStoreContext context;
+    private AWSS3Client s3;
+
+
+    public JcloudsS3BlobClient( String accessId, String secretKey, String bucketName ) {
+        this.accessId = accessId;
+        this.secretKey = secretKey;
+        this.bucketName = bucketName;
+    }
+
+
+    private synchronized BlobStoreContext getContext() {
+        if ( context == null ) {
+            // the blob store view and the S3 api share the context of a single injector
+            Injector injector = ContextBuilder.newBuilder( "aws-s3" ).credentials( accessId, secretKey ).modules( MODULES )
+                                              .buildInjector();
+
+            context = injector.getInstance( BlobStoreContext.class );
+            s3 = injector.getInstance( AWSS3Client.class );
+
+            BlobStore blobStore = context.getBlobStore();
+            blobStore.createContainerInLocation( null, bucketName );
+        }
+
+        return context;
+    }
+
+
+    private synchronized AWSS3Client getS3() {
+        getContext();
+        return s3;
+    }
+
+
+    @Override
+    public String put( String key, byte[] data, int length, String contentType, String contentDisposition )
+            throws IOException {
+        BlobStore blobStore = getContext().getBlobStore();
+
+        BlobBuilder.PayloadBlobBuilder bb =
+                blobStore.blobBuilder( key ).payload( copy( data, length ) ).calculateMD5().contentType( contentType );
+
+        if ( contentDisposition != null ) {
+            bb.contentDisposition( contentDisposition );
+        }
+
+        return blobStore.putBlob( bucketName, bb.build() );
+    }
+
+
+    @Override
+    public String initiateMultipartUpload( String key, String contentType, String contentDisposition ) {
+        ObjectMetadataBuilder builder = ObjectMetadataBuilder.create().key( key ).contentType( contentType );
+
+        if ( contentDisposition != null ) {
+            builder.contentDisposition( contentDisposition );
+        }
+
+        ObjectMetadata metadata = builder.build();
+
+        return getS3().initiateMultipartUpload( bucketName, metadata );
+    }
+
+
+    @Override
+    public String uploadPart( String key, String uploadId, int partNumber, byte[] data, int length ) {
+        Payload payload = new ByteArrayPayload( copy( data, length ) );
+        payload.getContentMetadata().setContentLength( ( long ) length );
+
+        return getS3().uploadPart( bucketName, key, partNumber, uploadId, payload );
+    }
+
+
+    @Override
+    public String completeMultipartUpload( String key, String uploadId, Map<Integer, String> parts ) {
+        return getS3().completeMultipartUpload( bucketName, key, uploadId, parts );
+    }
+
+
+    @Override
+    public void abortMultipartUpload( String key, String uploadId ) {
+        getS3().abortMultipartUpload( bucketName, key, uploadId );
+    }
+
+
+    @Override
+    public InputStream get( String key, long offset, long length ) throws IOException {
+        GetOptions options = GetOptions.Builder.range( offset, offset + length - 1 );
+        Blob blob = getContext().getBlobStore().getBlob( bucketName, key, options );
+
+        if ( blob == null || blob.getPayload() == null ) {
+            return null;
+        }
+
+        return blob.getPayload().getInput();
+    }
+
+
+    @Override
+    public long size( String key ) {
+        BlobMetadata metadata = getContext().getBlobStore().blobMetadata( bucketName, key );
+
+        if ( metadata == null || metadata.getContentMetadata().getContentLength() == null ) {
+            return -1;
+        }
+
+        return metadata.getContentMetadata().getContentLength();
+    }
+
+
+    @Override
+    public void delete( String key ) {
+        getContext().getBlobStore().removeBlob( bucketName, key );
+    }
+
+
+    @Override
+    public synchronized void close() {
+        if ( context != null ) {
+            context.close();
+        }
+    }
+
+
+    private static byte[] copy( byte[] data, int length ) {
+        return length == data.length ? data : Arrays.copyOf( data, length );
+    }
+}
@@ -17,21 +17,27 @@
 package org.apache.usergrid.services.assets.data;
 
 
-import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
 import java.util.Map;
 import java.util.UUID;
 
 import org.apache.usergrid.persistence.Entity;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 
 
 /** A binary store implementation using the local file system */
 public class LocalFileBinaryStore implements BinaryStore {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private String reposLocation = FileUtils.getTempDirectoryPath();
 
 
@@ -55,17 +61,49 @@ public class LocalFileBinaryStore implements BinaryStore {
     }
 
 
+    /**
+     * Streams the data to a temp file next to the asset, computing its size and MD5 on the way, and moves it in place
+     * once it's complete so readers never see a partial asset
+     */
     @Override
     public void write( UUID appId, Entity entity, InputStream inputStream ) throws IOException {
 
         File file = path( appId, entity );
+        FileUtils.forceMkdir( file.getParentFile() );
+
+        File tempFile = File.createTempFile( entity.getUuid().toString(), ".tmp", file.getParentFile() );
+
+        MessageDigest md5 = AssetUtils.md5();
+        long size = 0;
 
-        FileUtils.copyInputStreamToFile( inputStream, file );
+        OutputStream os = null;
+        try {
+            os = new FileOutputStream( tempFile );
 
-        long size = FileUtils.sizeOf( file );
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ( ( read = inputStream.read( buffer ) ) != -1 ) {
+                md5.update( buffer, 0, read );
+                os.write( buffer, 0, read );
+                size += read;
+            }
+
+            os.close();
+            os = null;
+
+            if ( !tempFile.renameTo( file ) ) {
+                FileUtils.deleteQuietly( file );
+                FileUtils.moveFile( tempFile, file );
+            }
+        }
+        finally {
+            IOUtils.closeQuietly( os );
+            FileUtils.deleteQuietly( tempFile );
+        }
 
         Map<String, Object> fileMetadata = AssetUtils.getFileMetadata( entity );
         fileMetadata.put( AssetUtils.CONTENT_LENGTH, size );
+        fileMetadata.put( AssetUtils.CHECKSUM, Hex.encodeHexString( md5.digest() ) );
         fileMetadata.put( AssetUtils.LAST_MODIFIED, System.currentTimeMillis() );
 
         // if we were successful, write the mime type
@@ -77,13 +115,15 @@ public class LocalFileBinaryStore implements BinaryStore {
 
     @Override
     public InputStream read( UUID appId, Entity entity ) throws IOException {
-        return read( appId, entity, 0, FileUtils.ONE_MB * 5 );
+        return read( appId, entity, 0, Long.MAX_VALUE );
     }
 
 
+    /** @return a {@link FileRegionInputStream} of the range, which can be transferred to a channel without copying */
     @Override
     public InputStream read( UUID appId, Entity entity, long offset, long length ) throws IOException {
-        return new BufferedInputStream( FileUtils.openInputStream( path( appId, entity ) ) );
+        return new FileRegionInputStream( FileUtils.openInputStream( path( appId, entity ) ).getChannel(), offset,
+                length );
     }
 
 
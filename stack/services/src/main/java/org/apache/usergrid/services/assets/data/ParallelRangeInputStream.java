@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.services.assets.data;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.IOUtils;
+
+
+/**
+ * Reads a region of an object as consecutive ranges that are downloaded concurrently and handed out in order.  At most
+ * readAhead ranges are fetched or buffered at a time, so a slow reader holds readAhead ranges in memory at most, no
+ * matter how large the region is.
+ */
+public class ParallelRangeInputStream extends InputStream {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final BlobClient client;
+    private final String key;
+    private final long end;
+    private final long rangeSize;
+    private final int readAhead;
+    private final ExecutorService executor;
+
+    private final LinkedList<Future<byte[]>> ranges = new LinkedList<Future<byte[]>>();
+
+    private long nextOffset;
+    private byte[] current = EMPTY;
+    private int position;
+    private boolean closed;
+
+
+    public ParallelRangeInputStream( BlobClient client, String key, long offset, long length, long rangeSize,
+                                     int readAhead, ExecutorService executor ) {
+        this.client = client;
+        this.key = key;
+        this.nextOffset = offset;
+        this.end = offset + length;
+        this.rangeSize = rangeSize;
+        this.readAhead = Math.max( readAhead, 1 );
+        this.executor = executor;
+
+        fetchAhead();
+    }
+
+
+    @Override
+    public int read() throws IOException {
+        if ( !nextRange() ) {
+            return -1;
+        }
+
+        return current[position++] & 0xff;
+    }
+
+
+    @Override
+    public int read( byte[] b, int off, int len ) throws IOException {
+        if ( len == 0 ) {
+            return 0;
+        }
+
+        if ( !nextRange() ) {
+            return -1;
+        }
+
+        int read = Math.min( len, current.length - position );
+        System.arraycopy( current, position, b, off, read );
+        position += read;
+
+        return read;
+    }
+
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+
+    @Override
+    public void close() {
+        closed = true;
+
+        for ( Future<byte[]> range : ranges ) {
+            range.cancel( true );
+        }
+
+        ranges.clear();
+        current = EMPTY;
+    }
+
+
+    /** @return false if every range has been read */
+    private boolean nextRange() throws IOException {
+        if ( closed ) {
+            throw new IOException( "Stream closed" );
+        }
+
+        while ( position >= current.length ) {
+            if ( ranges.isEmpty() ) {
+                return false;
+            }
+
+            current = await( ranges.removeFirst() );
+            position = 0;
+
+            fetchAhead();
+        }
+
+        return true;
+    }
+
+
+    private void fetchAhead() {
+        while ( ranges.size() < readAhead && nextOffset < end ) {
+            final long offset = nextOffset;
+            final long length = Math.min( rangeSize, end - offset );
+
+            ranges.add( executor.submit( new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    InputStream in = client.get( key, offset, length );
+
+                    if ( in == null ) {
+                        throw new IOException( "Object " + key + " not found" );
+                    }
+
+                    try {
+                        return IOUtils.toByteArray( in );
+                    }
+                    finally {
+                        IOUtils.closeQuietly( in );
+                    }
+                }
+            } ) );
+
+            nextOffset += length;
+        }
+    }
+
+
+    /** Wait for the result of a transfer, rethrowing its failure as an IOException */
+    static <T> T await( Future<T> future ) throws IOException {
+        try {
+            return future.get();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted waiting for a transfer" );
+        }
+        catch ( ExecutionException e ) {
+            if ( e.getCause() instanceof IOException ) {
+                throw ( IOException ) e.getCause();
+            }
+            throw new IOException( "Transfer failed", e.getCause() );
+        }
+    }
+}
@@ -17,202 +17,442 @@
 package org.apache.usergrid.services.assets.data;
 
 
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InterruptedIOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.jclouds.ContextBuilder;
-import org.jclouds.blobstore.AsyncBlobStore;
-import org.jclouds.blobstore.BlobStore;
-import org.jclouds.blobstore.BlobStoreContext;
-import org.jclouds.blobstore.domain.Blob;
-import org.jclouds.blobstore.domain.BlobBuilder;
-import org.jclouds.blobstore.options.GetOptions;
-import org.jclouds.blobstore.options.PutOptions;
-import org.jclouds.http.config.JavaUrlHttpCommandExecutorServiceModule;
-import org.jclouds.logging.log4j.config.Log4JLoggingModule;
-import org.jclouds.netty.config.NettyPayloadModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.apache.usergrid.persistence.Entity;
-import org.apache.usergrid.persistence.EntityManager;
-import org.apache.usergrid.persistence.EntityManagerFactory;
 
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
-import com.google.common.collect.ImmutableSet;
-import com.google.common.util.concurrent.ListenableFuture;
-import com.google.inject.Module;
-
 
+/**
+ * Stores assets in S3.  Uploads larger than a part are streamed as a multipart upload whose parts are sent
+ * concurrently while the next ones are read from the client, and large reads are split into ranges that are downloaded
+ * concurrently and reassembled in order.
+ * <p/>
+ * Parts of multipart uploads are read into buffers of a pool shared by every upload, so at most maxBufferedParts parts
+ * are held in memory however many uploads are running; an upload waits for a buffer once the pool is exhausted.  The
+ * first part is read into a buffer of the size of the data, so uploads smaller than a part never take a pooled buffer.
+ */
 public class S3BinaryStore implements BinaryStore {
 
-    private static final Iterable<? extends Module> MODULES = ImmutableSet
-            .of( new JavaUrlHttpCommandExecutorServiceModule(), new Log4JLoggingModule(), new NettyPayloadModule() );
-
     private static final Logger LOG = LoggerFactory.getLogger( S3BinaryStore.class );
     private static final long FIVE_MB = ( FileUtils.ONE_MB * 5 );
 
-    private BlobStoreContext context;
-    private String accessId;
-    private String secretKey;
-    private String bucketName;
-    private ExecutorService executor = Executors.newFixedThreadPool( 10 );
+    /** The number of bytes of the first part used to detect the content type */
+    private static final int MIME_DETECT_LENGTH = 64 * 1024;
+
+    private final BlobClient client;
+
+    private int partSize = ( int ) FIVE_MB;
+    private int maxBufferedParts = 20;
+    private long rangeSize = FIVE_MB;
+    private int readAhead = 4;
+    private int transferThreads = 10;
 
-    @Autowired
-    private EntityManagerFactory emf;
+    private ExecutorService executor;
+    private PartBufferPool bufferPool;
 
 
     public S3BinaryStore( String accessId, String secretKey, String bucketName ) {
-        this.accessId = accessId;
-        this.secretKey = secretKey;
-        this.bucketName = bucketName;
+        this( new JcloudsS3BlobClient( accessId, secretKey, bucketName ) );
+    }
+
+
+    public S3BinaryStore( BlobClient client ) {
+        this.client = client;
+    }
+
+
+    /** Set the size of the parts of multipart uploads.  S3 requires at least 5MB for every part but the last */
+    public void setPartSize( int partSize ) {
+        this.partSize = partSize;
+    }
+
+
+    /** Set the max number of parts buffered in memory by all uploads */
+    public void setMaxBufferedParts( int maxBufferedParts ) {
+        this.maxBufferedParts = maxBufferedParts;
+    }
+
+
+    /** Set the size of the ranges large reads are split into */
+    public void setRangeSize( long rangeSize ) {
+        this.rangeSize = rangeSize;
+    }
+
+
+    /** Set the max number of ranges each read downloads ahead of the reader */
+    public void setReadAhead( int readAhead ) {
+        this.readAhead = readAhead;
     }
 
 
-    private BlobStoreContext getContext() {
-        if ( context == null ) {
-            context = ContextBuilder.newBuilder( "aws-s3" ).credentials( accessId, secretKey ).modules( MODULES )
-                                    .buildView( BlobStoreContext.class );
+    /** Set the number of threads uploading parts and downloading ranges */
+    public void setTransferThreads( int transferThreads ) {
+        this.transferThreads = transferThreads;
+    }
+
 
-            BlobStore blobStore = context.getBlobStore();
-            blobStore.createContainerInLocation( null, bucketName );
+    private synchronized ExecutorService getExecutor() {
+        if ( executor == null ) {
+            final AtomicInteger count = new AtomicInteger();
+
+            executor = Executors.newFixedThreadPool( transferThreads, new ThreadFactory() {
+                @Override
+                public Thread newThread( Runnable r ) {
+                    Thread thread = new Thread( r, "S3BinaryStore-transfer-" + count.incrementAndGet() );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
         }
 
-        return context;
+        return executor;
     }
 
 
-    public void destroy() {
-        if ( context != null ) {
-            context.close();
+    private synchronized PartBufferPool getBufferPool() {
+        if ( bufferPool == null ) {
+            bufferPool = new PartBufferPool( partSize, maxBufferedParts );
         }
+
+        return bufferPool;
+    }
+
+
+    /** Exposed for testing, the buffers waiting in the pool */
+    synchronized List<byte[]> getFreeBuffers() {
+        return bufferPool == null ? new ArrayList<byte[]>() : new ArrayList<byte[]>( bufferPool.free );
+    }
+
+
+    public synchronized void destroy() {
+        if ( executor != null ) {
+            executor.shutdownNow();
+        }
+
+        client.close();
     }
 
 
     @Override
     public void write( final UUID appId, final Entity entity, InputStream inputStream ) throws IOException {
 
-        String uploadFileName = AssetUtils.buildAssetKey( appId, entity );
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        long written = IOUtils.copyLarge( inputStream, baos, 0, FIVE_MB );
-        byte[] data = baos.toByteArray();
+        String key = AssetUtils.buildAssetKey( appId, entity );
 
         final Map<String, Object> fileMetadata = AssetUtils.getFileMetadata( entity );
         fileMetadata.put( AssetUtils.LAST_MODIFIED, System.currentTimeMillis() );
 
-        String mimeType = AssetMimeHandler.get().getMimeType( entity, data );
+        String contentDisposition = null;
+        if ( fileMetadata.get( AssetUtils.CONTENT_DISPOSITION ) != null ) {
+            contentDisposition = fileMetadata.get( AssetUtils.CONTENT_DISPOSITION ).toString();
+        }
 
-        if ( written < FIVE_MB ) { // total smaller than 5mb
+        MessageDigest md5 = AssetUtils.md5();
 
-            BlobStore blobStore = getContext().getBlobStore();
-            BlobBuilder.PayloadBlobBuilder bb =
-                    blobStore.blobBuilder( uploadFileName ).payload( data ).calculateMD5().contentType( mimeType );
+        byte[] buffer = readFirstPart( inputStream );
+        int length = buffer.length;
 
-            fileMetadata.put( AssetUtils.CONTENT_LENGTH, written );
-            if ( fileMetadata.get( AssetUtils.CONTENT_DISPOSITION ) != null ) {
-                bb.contentDisposition( fileMetadata.get( AssetUtils.CONTENT_DISPOSITION ).toString() );
-            }
-            final Blob blob = bb.build();
+        md5.update( buffer, 0, length );
+
+        byte[] head = Arrays.copyOf( buffer, Math.min( length, MIME_DETECT_LENGTH ) );
+        String mimeType = AssetMimeHandler.get().getMimeType( entity, head );
+
+        long written = length;
+        String eTag;
 
-            String md5sum = Hex.encodeHexString( blob.getMetadata().getContentMetadata().getContentMD5() );
-            fileMetadata.put( AssetUtils.CHECKSUM, md5sum );
+        if ( length < partSize ) { // smaller than a part, a single put
 
-            String eTag = blobStore.putBlob( bucketName, blob );
-            fileMetadata.put( AssetUtils.E_TAG, eTag );
+            eTag = client.put( key, buffer, length, mimeType, contentDisposition );
         }
-        else { // bigger than 5mb... dump 5 mb tmp files and upload from them
+        else {
+
+            PartBufferPool pool = getBufferPool();
+            MultipartUpload upload =
+                    new MultipartUpload( key, client.initiateMultipartUpload( key, mimeType, contentDisposition ) );
 
-            // todo: yes, AsyncBlobStore is deprecated, but there appears to be no replacement yet
-            final AsyncBlobStore blobStore = getContext().getAsyncBlobStore();
+            byte[] part = null;
 
-            File tempFile = File.createTempFile( entity.getUuid().toString(), "tmp" );
-            tempFile.deleteOnExit();
-            OutputStream os = null;
             try {
-                os = new BufferedOutputStream( new FileOutputStream( tempFile.getAbsolutePath() ) );
-                os.write( data );
-                written += IOUtils.copyLarge( inputStream, os, 0, ( FileUtils.ONE_GB * 5 ) );
+                part = pool.take();
+                System.arraycopy( buffer, 0, part, 0, length );
+                buffer = null;
+
+                while ( true ) {
+                    //the part is released here until the upload has taken it
+                    upload.uploadPart( part, length );
+                    part = null;
+
+                    if ( length < partSize ) {
+                        break;
+                    }
+
+                    part = pool.take();
+                    length = IOUtils.read( inputStream, part );
+
+                    if ( length == 0 ) {
+                        break;
+                    }
+
+                    md5.update( part, 0, length );
+                    written += length;
+                }
+
+                eTag = upload.complete();
+            }
+            catch ( IOException e ) {
+                upload.abort();
+                throw e;
+            }
+            catch ( RuntimeException e ) {
+                upload.abort();
+                throw e;
             }
             finally {
-                IOUtils.closeQuietly( os );
+                if ( part != null ) {
+                    pool.release( part );
+                }
             }
+        }
 
-            BlobBuilder.PayloadBlobBuilder bb =
-                    blobStore.blobBuilder( uploadFileName ).payload( tempFile ).calculateMD5().contentType( mimeType );
+        fileMetadata.put( AssetUtils.CONTENT_LENGTH, written );
+        fileMetadata.put( AssetUtils.CHECKSUM, Hex.encodeHexString( md5.digest() ) );
+        fileMetadata.put( AssetUtils.E_TAG, eTag );
+    }
 
-            fileMetadata.put( AssetUtils.CONTENT_LENGTH, written );
-            if ( fileMetadata.get( AssetUtils.CONTENT_DISPOSITION ) != null ) {
-                bb.contentDisposition( fileMetadata.get( AssetUtils.CONTENT_DISPOSITION ).toString() );
-            }
-            final Blob blob = bb.build();
 
-            final File finalTempFile = tempFile;
-            final ListenableFuture<String> future =
-                    blobStore.putBlob( bucketName, blob, PutOptions.Builder.multipart() );
+    /**
+     * Read up to a part from the stream into a buffer of the size of the data, which grows as it's read so that small
+     * uploads never hold a pooled part buffer
+     */
+    private byte[] readFirstPart( InputStream inputStream ) throws IOException {
+        byte[] buffer = new byte[Math.min( MIME_DETECT_LENGTH, partSize )];
+        int length = 0;
 
-            Runnable listener = new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        String eTag = future.get();
-                        fileMetadata.put( AssetUtils.E_TAG, eTag );
-                        EntityManager em = emf.getEntityManager( appId );
-                        em.update( entity );
-                        finalTempFile.delete();
-                    }
-                    catch ( Exception e ) {
-                        LOG.error( "error uploading", e );
-                    }
-                    if ( finalTempFile != null && finalTempFile.exists() ) {
-                        finalTempFile.delete();
-                    }
-                }
-            };
-            future.addListener( listener, executor );
+        while ( true ) {
+            length += IOUtils.read( inputStream, buffer, length, buffer.length - length );
+
+            if ( length < buffer.length || buffer.length == partSize ) {
+                break;
+            }
+
+            buffer = Arrays.copyOf( buffer, ( int ) Math.min( buffer.length * 2L, partSize ) );
         }
+
+        return length == buffer.length ? buffer : Arrays.copyOf( buffer, length );
     }
 
 
     @Override
     public InputStream read( UUID appId, Entity entity, long offset, long length ) throws IOException {
-        BlobStore blobStore = getContext().getBlobStore();
-        Blob blob;
-        if ( offset == 0 && length == FIVE_MB ) {
-            blob = blobStore.getBlob( bucketName, AssetUtils.buildAssetKey( appId, entity ) );
-        }
-        else {
-            GetOptions options = GetOptions.Builder.range( offset, length );
-            blob = blobStore.getBlob( bucketName, AssetUtils.buildAssetKey( appId, entity ), options );
+        String key = AssetUtils.buildAssetKey( appId, entity );
+
+        if ( length <= rangeSize ) {
+            return client.get( key, offset, length );
         }
-        if ( blob == null || blob.getPayload() == null ) {
+
+        long size = getSize( key, entity );
+        if ( size < 0 ) {
             return null;
         }
-        return blob.getPayload().getInput();
+
+        return read( key, offset, Math.min( length, size - offset ) );
     }
 
 
     @Override
     public InputStream read( UUID appId, Entity entity ) throws IOException {
-        return read( appId, entity, 0, FIVE_MB );
+        String key = AssetUtils.buildAssetKey( appId, entity );
+
+        long size = getSize( key, entity );
+        if ( size < 0 ) {
+            return null;
+        }
+
+        return read( key, 0, size );
+    }
+
+
+    private InputStream read( String key, long offset, long length ) throws IOException {
+        if ( length <= 0 ) {
+            return new ByteArrayInputStream( new byte[0] );
+        }
+
+        if ( length <= rangeSize ) {
+            return client.get( key, offset, length );
+        }
+
+        return new ParallelRangeInputStream( client, key, offset, length, rangeSize, readAhead, getExecutor() );
+    }
+
+
+    /** @return the size of the asset from its metadata, or from the store if it isn't known */
+    private long getSize( String key, Entity entity ) throws IOException {
+        Object contentLength = AssetUtils.getFileMetadata( entity ).get( AssetUtils.CONTENT_LENGTH );
+
+        if ( contentLength instanceof Number ) {
+            return ( ( Number ) contentLength ).longValue();
+        }
+
+        return client.size( key );
     }
 
 
     @Override
     public void delete( UUID appId, Entity entity ) {
-        BlobStore blobStore = getContext().getBlobStore();
-        blobStore.removeBlob( bucketName, AssetUtils.buildAssetKey( appId, entity ) );
+        client.delete( AssetUtils.buildAssetKey( appId, entity ) );
     }
-}
 
+
+    /** The parts of a multipart upload that have been handed to the transfer threads */
+    private class MultipartUpload {
+
+        private final String key;
+        private final String uploadId;
+        private final List<Future<String>> parts = new ArrayList<Future<String>>();
+        private final AtomicBoolean aborted = new AtomicBoolean();
+
+
+        private MultipartUpload( String key, String uploadId ) {
+            this.key = key;
+            this.uploadId = uploadId;
+        }
+
+
+        /**
+         * Upload the part in the background.  Once this returns, the buffer is returned to the pool after it has been
+         * sent, if this throws the caller still owns it
+         */
+        private void uploadPart( final byte[] buffer, final int length ) throws IOException {
+            checkFailures();
+
+            final int partNumber = parts.size() + 1;
+
+            parts.add( getExecutor().submit( new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    try {
+                        if ( aborted.get() ) {
+                            return null;
+                        }
+                        return client.uploadPart( key, uploadId, partNumber, buffer, length );
+                    }
+                    finally {
+                        getBufferPool().release( buffer );
+                    }
+                }
+            } ) );
+        }
+
+
+        private String complete() throws IOException {
+            Map<Integer, String> eTags = new TreeMap<Integer, String>();
+
+            for ( int i = 0; i < parts.size(); i++ ) {
+                eTags.put( i + 1, ParallelRangeInputStream.await( parts.get( i ) ) );
+            }
+
+            return client.completeMultipartUpload( key, uploadId, eTags );
+        }
+
+
+        /** Stop sending parts, wait for the ones being sent and discard the upload */
+        private void abort() {
+            aborted.set( true );
+
+            for ( Future<String> part : parts ) {
+                try {
+                    part.get();
+                }
+                catch ( Exception e ) {
+                    LOG.debug( "Part of aborted upload {} failed", uploadId, e );
+                }
+            }
+
+            try {
+                client.abortMultipartUpload( key, uploadId );
+            }
+            catch ( RuntimeException e ) {
+                LOG.error( "Unable to abort upload {} of {}", new Object[] { uploadId, key, e } );
+            }
+        }
+
+
+        /** Fail fast instead of reading the rest of the upload once a part has failed */
+        private void checkFailures() throws IOException {
+            for ( Future<String> part : parts ) {
+                if ( part.isDone() ) {
+                    ParallelRangeInputStream.await( part );
+                }
+            }
+        }
+    }
+
+
+    /** Buffers of the size of a part, allocated on demand up to the max number of buffered parts */
+    private static class PartBufferPool {
+
+        private final int partSize;
+        private final BlockingQueue<byte[]> free;
+        private final AtomicInteger allocated = new AtomicInteger();
+        private final int maxBuffers;
+
+
+        private PartBufferPool( int partSize, int maxBuffers ) {
+            this.partSize = partSize;
+            this.maxBuffers = Math.max( maxBuffers, 1 );
+            this.free = new ArrayBlockingQueue<byte[]>( this.maxBuffers );
+        }
+
+
+        private byte[] take() throws IOException {
+            byte[] buffer = free.poll();
+
+            if ( buffer != null ) {
+                return buffer;
+            }
+
+            if ( allocated.incrementAndGet() <= maxBuffers ) {
+                return new byte[partSize];
+            }
+
+            allocated.decrementAndGet();
+
+            try {
+                return free.take();
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "Interrupted waiting for an upload buffer" );
+            }
+        }
+
+
+        private void release( byte[] buffer ) {
+            free.offer( buffer );
+        }
+    }
+}
@@ -19,13 +19,19 @@ package org.apache.usergrid.management.cassandra;
 
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
+import java.io.InputStream;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 
+import org.apache.commons.io.IOUtils;
 import org.jclouds.ContextBuilder;
 import org.jclouds.blobstore.BlobStore;
 import org.jclouds.blobstore.BlobStoreContext;
@@ -59,6 +65,7 @@ import org.apache.usergrid.management.export.S3Export;
 import org.apache.usergrid.management.export.S3ExportImpl;
 import org.apache.usergrid.persistence.Entity;
 import org.apache.usergrid.persistence.EntityManager;
+import org.apache.usergrid.persistence.entities.Export;
 import org.apache.usergrid.persistence.entities.JobData;
 
 import com.google.common.collect.ImmutableSet;
@@ -67,6 +74,8 @@ import com.google.inject.Module;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.apache.usergrid.persistence.cassandra.CassandraService.MANAGEMENT_APPLICATION_ID;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -623,6 +632,123 @@ public class ExportServiceIT {
     }
 
 
+    //every collection is exported to its own segment, the joined array must hold each entity exactly once
+    @Test
+    public void testExportSegmentsOnce() throws Exception {
+
+        File f = new File( "exportSegments.json" );
+        f.deleteOnExit();
+
+        UUID appId = setup.getEmf().createApplication( organization.getName(), "testAppSegments" );
+        Set<UUID> created = createSegmentEntities( appId );
+
+        HashMap<String, Object> payload = payloadBuilder();
+        payload.put( "organizationId", organization.getUuid() );
+        payload.put( "applicationId", appId );
+
+        UUID exportUUID = runExport( payload, new MockS3ExportImpl( "exportSegments.json" ) );
+
+        org.json.simple.JSONArray a = ( org.json.simple.JSONArray ) new JSONParser().parse( new FileReader( f ) );
+
+        assertExportedOnce( a, created );
+        assertProgressComplete( exportUUID, a.size() );
+    }
+
+
+    //compressed segments are joined as gzip members, the file must decompress as a single stream
+    @Test
+    public void testExportSegmentsCompressed() throws Exception {
+
+        File f = new File( "exportSegments.json.gz" );
+        f.deleteOnExit();
+
+        UUID appId = setup.getEmf().createApplication( organization.getName(), "testAppSegmentsCompressed" );
+        Set<UUID> created = createSegmentEntities( appId );
+
+        HashMap<String, Object> payload = payloadBuilder();
+        payload.put( "organizationId", organization.getUuid() );
+        payload.put( "applicationId", appId );
+        payload.put( "compress", true );
+
+        UUID exportUUID = runExport( payload, new MockS3ExportImpl( "exportSegments.json.gz" ) );
+
+        InputStream in = new GZIPInputStream( new FileInputStream( f ) );
+        String json;
+
+        try {
+            json = IOUtils.toString( in, "UTF-8" );
+        }
+        finally {
+            in.close();
+        }
+
+        org.json.simple.JSONArray a = ( org.json.simple.JSONArray ) new JSONParser().parse( json );
+
+        assertExportedOnce( a, created );
+        assertProgressComplete( exportUUID, a.size() );
+    }
+
+
+    /** Create entities in several collections so the export is made of several segments */
+    private Set<UUID> createSegmentEntities( UUID appId ) throws Exception {
+        EntityManager em = setup.getEmf().getEntityManager( appId );
+
+        Set<UUID> created = new HashSet<UUID>();
+
+        for ( String type : new String[] { "cat", "dog", "bird" } ) {
+            for ( int i = 0; i < 5; i++ ) {
+                Map<String, Object> properties = new LinkedHashMap<String, Object>();
+                properties.put( "name", type + i );
+                created.add( em.create( type, properties ).getUuid() );
+            }
+        }
+
+        return created;
+    }
+
+
+    private UUID runExport( HashMap<String, Object> payload, S3Export s3Export ) throws Exception {
+        ExportService exportService = setup.getExportService();
+
+        UUID exportUUID = exportService.schedule( payload );
+
+        JobData jobData = jobDataCreator( payload, exportUUID, s3Export );
+
+        JobExecution jobExecution = mock( JobExecution.class );
+        when( jobExecution.getJobData() ).thenReturn( jobData );
+
+        exportService.doExport( jobExecution );
+
+        return exportUUID;
+    }
+
+
+    private static void assertExportedOnce( org.json.simple.JSONArray a, Set<UUID> created ) {
+        Set<UUID> exported = new HashSet<UUID>();
+
+        for ( int i = 0; i < a.size(); i++ ) {
+            JSONObject entityData = ( JSONObject ) ( ( JSONObject ) a.get( i ) ).get( "Metadata" );
+            UUID id = UUID.fromString( ( String ) entityData.get( "uuid" ) );
+
+            assertTrue( "Entity " + id + " exported more than once", exported.add( id ) );
+        }
+
+        assertTrue( exported.containsAll( created ) );
+    }
+
+
+    /** The progress saved on the export must reach the totals once the export has finished */
+    private void assertProgressComplete( UUID exportUUID, int exportedEntities ) throws Exception {
+        Export export = setup.getEmf().getEntityManager( MANAGEMENT_APPLICATION_ID ).get( exportUUID, Export.class );
+
+        assertEquals( Export.State.FINISHED, export.getState() );
+        assertEquals( Long.valueOf( exportedEntities ), export.getExportedEntities() );
+        assertNotNull( export.getTotalCollections() );
+        assertEquals( export.getTotalCollections(), export.getExportedCollections() );
+        assertTrue( export.getThroughput() > 0 );
+    }
+
+
     @Test
     public void testExportDoJob() throws Exception {
 
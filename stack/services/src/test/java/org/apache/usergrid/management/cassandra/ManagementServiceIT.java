@@ -36,7 +36,7 @@ import org.apache.usergrid.ServiceITSuite;
 import org.apache.usergrid.cassandra.CassandraResource;
 import org.apache.usergrid.cassandra.ClearShiroSubject;
 import org.apache.usergrid.cassandra.Concurrent;
-import org.apache.usergrid.count.SimpleBatcher;
+import org.apache.usergrid.count.CoalescingBatcher;
 import org.apache.usergrid.management.OrganizationInfo;
 import org.apache.usergrid.management.UserInfo;
 import org.apache.usergrid.persistence.CredentialsInfo;
@@ -132,7 +132,7 @@ public class ManagementServiceIT {
 
     @Test
     public void testCountAdminUserAction() throws Exception {
-        SimpleBatcher batcher = cassandraResource.getBean( SimpleBatcher.class );
+        CoalescingBatcher batcher = cassandraResource.getBean( CoalescingBatcher.class );
 
         batcher.setBlockingSubmit( true );
         batcher.setBatchSize( 1 );
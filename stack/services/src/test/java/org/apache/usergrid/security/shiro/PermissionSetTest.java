@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.security.shiro;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.apache.shiro.authz.Permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class PermissionSetTest {
+
+    private static final String APP1 = "00000000-0000-0000-0000-000000000001";
+    private static final String APP2 = "00000000-0000-0000-0000-000000000002";
+
+
+    @Test
+    public void indexedByApplication() {
+        PermissionSet set = set( "applications:get:" + APP1 + ":/users/**", "applications:*:" + APP2 + ":/**" );
+
+        assertTrue( set.implies( permission( "applications:get:" + APP1 + ":/users/fred" ) ) );
+        assertFalse( set.implies( permission( "applications:put:" + APP1 + ":/users/fred" ) ) );
+        assertTrue( set.implies( permission( "applications:put:" + APP2 + ":/users/fred" ) ) );
+        assertFalse( set.implies( permission( "applications:get:00000000-0000-0000-0000-000000000003:/users" ) ) );
+    }
+
+
+    @Test
+    public void unindexedAlwaysChecked() {
+        PermissionSet set = set( "applications:get:*:/status", "organizations:access:*" );
+
+        assertTrue( set.implies( permission( "applications:get:" + APP1 + ":/status" ) ) );
+        assertTrue( set.implies( permission( "organizations:access:" + APP1 ) ) );
+        assertFalse( set.implies( permission( "applications:get:" + APP1 + ":/users" ) ) );
+    }
+
+
+    @Test
+    public void sameAsLinearScan() {
+        List<Permission> granted = new ArrayList<Permission>();
+        granted.add( permission( "applications:get:" + APP1 + ":/users/*/activities" ) );
+        granted.add( permission( "applications:get,put:" + APP1 + "," + APP2 + ":/groups/**" ) );
+        granted.add( permission( "applications:*:" + APP2 ) );
+        granted.add( permission( "applications:get:*:/devices/*" ) );
+        granted.add( permission( "applications" ) );
+
+        PermissionSet set = new PermissionSet( granted );
+
+        String[] checks = {
+                "applications:get:" + APP1 + ":/users/fred/activities", "applications:post:" + APP1 + ":/users",
+                "applications:put:" + APP2 + ":/groups/a/b", "applications:delete:" + APP2 + ":/anything",
+                "applications:get:" + APP1 + ":/devices/d1", "applications:get:" + APP1 + "," + APP2 + ":/groups/g",
+                "applications:get:*:/users", "applications:get", "organizations:access:" + APP1
+        };
+
+        for ( String check : checks ) {
+            Permission permission = permission( check );
+
+            boolean linear = false;
+            for ( Permission p : granted ) {
+                linear |= p.implies( permission );
+            }
+
+            assertEquals( check, linear, set.implies( permission ) );
+        }
+    }
+
+
+    @Test
+    public void pathIndexSameAsLinearScan() {
+        List<Permission> granted = new ArrayList<Permission>();
+        granted.add( permission( "applications:get:" + APP1 + ":/users/*/activities" ) );
+        granted.add( permission( "applications:get:" + APP1 + ":/users/fred" ) );
+        granted.add( permission( "applications:put:" + APP1 + ":/Groups/**" ) );
+        granted.add( permission( "applications:get:" + APP1 + ":/devices//d2,/assets/*.jpg" ) );
+        granted.add( permission( "applications:get:" + APP1 + ":devices/d1" ) );
+        granted.add( permission( "applications:get:" + APP1 + ":/a/b/c" ) );
+        granted.add( permission( "applications:get:" + APP1 + ":/a/{name}/d" ) );
+        granted.add( permission( "applications:post:" + APP1 ) );
+        granted.add( permission( "applications:delete:*:/status/**" ) );
+
+        PermissionSet set = new PermissionSet( granted );
+
+        String[] checks = {
+                "applications:get:" + APP1 + ":/users/fred/activities", "applications:get:" + APP1 + ":/users/fred",
+                "applications:get:" + APP1 + ":/users/FRED/", "applications:get:" + APP1 + ":/users/bob",
+                "applications:put:" + APP1 + ":/groups/a/b", "applications:put:" + APP1 + ":/groups",
+                "applications:get:" + APP1 + ":/devices/d2", "applications:get:" + APP1 + ":/devices/d1",
+                "applications:get:" + APP1 + ":/assets/x.jpg", "applications:get:" + APP1 + ":/assets/x.png",
+                "applications:get:" + APP1 + ":/a/b/c", "applications:get:" + APP1 + ":/a/b",
+                "applications:get:" + APP1 + ":/a/x/d", "applications:post:" + APP1 + ":/anything",
+                "applications:delete:" + APP1 + ":/status/1", "applications:delete:" + APP1 + ":/users/fred",
+                "applications:get:" + APP1 + ":/users/fred,/a/b/c", "applications:get:" + APP1 + ":*"
+        };
+
+        for ( String check : checks ) {
+            Permission permission = permission( check );
+
+            boolean linear = false;
+            for ( Permission p : granted ) {
+                linear |= p.implies( permission );
+            }
+
+            assertEquals( check, linear, set.implies( permission ) );
+        }
+    }
+
+
+    @Test
+    public void pathIndexSkipsOtherPaths() {
+        final int[] evaluated = { 0 };
+
+        List<Permission> granted = new ArrayList<Permission>();
+        for ( int i = 0; i < 1000; i++ ) {
+            granted.add( new CustomPermission( "applications:get:" + APP1 + ":/users/user" + i + "/**" ) {
+                @Override
+                public boolean implies( Permission p ) {
+                    evaluated[0]++;
+                    return super.implies( p );
+                }
+            } );
+        }
+
+        PermissionSet set = new PermissionSet( granted );
+
+        assertTrue( set.implies( permission( "applications:get:" + APP1 + ":/users/user500/activities" ) ) );
+        assertEquals( 1, evaluated[0] );
+
+        assertFalse( set.implies( permission( "applications:get:" + APP1 + ":/groups/g" ) ) );
+        assertEquals( 1, evaluated[0] );
+    }
+
+
+    private static PermissionSet set( String... permissions ) {
+        List<Permission> resolved = new ArrayList<Permission>();
+        for ( String permission : permissions ) {
+            resolved.add( permission( permission ) );
+        }
+        return new PermissionSet( resolved );
+    }
+
+
+    private static Permission permission( String permission ) {
+        return new CustomPermission( permission );
+    }
+}
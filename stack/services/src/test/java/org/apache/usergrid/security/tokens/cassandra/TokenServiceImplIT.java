@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.security.tokens.cassandra;
+
+
+import java.nio.ByteBuffer;
+import java.util.Properties;
+
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.apache.usergrid.ServiceITSetup;
+import org.apache.usergrid.ServiceITSetupImpl;
+import org.apache.usergrid.ServiceITSuite;
+import org.apache.usergrid.cassandra.ClearShiroSubject;
+import org.apache.usergrid.cassandra.Concurrent;
+import org.apache.usergrid.security.AuthPrincipalInfo;
+import org.apache.usergrid.security.AuthPrincipalType;
+import org.apache.usergrid.security.tokens.TokenCategory;
+import org.apache.usergrid.security.tokens.TokenInfo;
+import org.apache.usergrid.security.tokens.exceptions.InvalidTokenException;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import me.prettyprint.hector.api.mutation.Mutator;
+
+import static me.prettyprint.hector.api.factory.HFactory.createMutator;
+import static org.apache.usergrid.persistence.cassandra.CassandraService.TOKENS_CF;
+import static org.apache.usergrid.persistence.cassandra.Serializers.be;
+import static org.apache.usergrid.utils.ConversionUtils.bytebuffer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/** Tests of the token cache and the deferred access time writes, each with its own token service */
+@Concurrent()
+public class TokenServiceImplIT {
+
+    @Rule
+    public ClearShiroSubject clearShiroSubject = new ClearShiroSubject();
+
+    @ClassRule
+    public static ServiceITSetup setup = new ServiceITSetupImpl( ServiceITSuite.cassandraResource );
+
+
+    @Test
+    public void cachedTokenNotReread() throws Exception {
+        TokenServiceImpl cached = newTokenService( 1000 );
+        TokenServiceImpl uncached = newTokenService( 0 );
+
+        String token = createToken( cached );
+        TokenInfo info = cached.getTokenInfo( token );
+
+        //remove the token behind the service's back, only a cached copy can still be found
+        Mutator<ByteBuffer> batch = createMutator( setup.getCassSvc().getSystemKeyspace(), be );
+        batch.addDeletion( bytebuffer( info.getUuid() ), TOKENS_CF );
+        batch.execute();
+
+        assertEquals( info.getUuid(), cached.getTokenInfo( token ).getUuid() );
+        assertInvalid( uncached, token );
+    }
+
+
+    @Test
+    public void revokeInvalidatesCache() throws Exception {
+        TokenServiceImpl cached = newTokenService( 1000 );
+        TokenServiceImpl uncached = newTokenService( 0 );
+
+        String token = createToken( cached );
+        assertNotNull( cached.getTokenInfo( token ) );
+
+        cached.revokeToken( token );
+
+        assertInvalid( cached, token );
+
+        //the access of the revoked token was dropped, so writing accesses doesn't bring back its columns
+        cached.writeAccesses();
+
+        assertInvalid( uncached, token );
+    }
+
+
+    @Test
+    public void deferredAccessesWritten() throws Exception {
+        TokenServiceImpl cached = newTokenService( 1000 );
+        TokenServiceImpl uncached = newTokenService( 0 );
+
+        String token = createToken( cached );
+        long created = cached.getTokenInfo( token ).getCreated();
+
+        Thread.sleep( 10 );
+        cached.getTokenInfo( token );
+        Thread.sleep( 10 );
+
+        //nothing has been written yet
+        assertEquals( created, uncached.getTokenInfo( token ).getAccessed() );
+
+        cached.writeAccesses();
+
+        TokenInfo written = uncached.getTokenInfo( token );
+
+        //the cached copy has the access of the last read, which is the one that was written
+        TokenInfo last = cached.getTokenInfo( token );
+
+        assertTrue( written.getAccessed() > created );
+        assertEquals( last.getAccessed(), written.getAccessed() );
+    }
+
+
+    /** A token service with its own cache that only writes accesses when told to */
+    private TokenServiceImpl newTokenService( long cacheSize ) {
+        Properties properties = new Properties();
+        properties.putAll( setup.getProps() );
+        properties.setProperty( TokenServiceImpl.PROPERTIES_AUTH_TOKEN_CACHE_SIZE, String.valueOf( cacheSize ) );
+        properties.setProperty( TokenServiceImpl.PROPERTIES_AUTH_TOKEN_CACHE_TTL, "60" );
+        properties.setProperty( TokenServiceImpl.PROPERTIES_AUTH_TOKEN_ACCESS_WRITE_INTERVAL, "60000" );
+
+        TokenServiceImpl tokenService = new TokenServiceImpl();
+        tokenService.setCassandraService( setup.getCassSvc() );
+        tokenService.setEntityManagerFactory( setup.getEmf() );
+        tokenService.setProperties( properties );
+
+        return tokenService;
+    }
+
+
+    private String createToken( TokenServiceImpl tokenService ) throws Exception {
+        AuthPrincipalInfo principal =
+                new AuthPrincipalInfo( AuthPrincipalType.ADMIN_USER, UUIDUtils.newTimeUUID(), UUIDUtils.newTimeUUID() );
+
+        return tokenService.createToken( TokenCategory.ACCESS, null, principal, null, 0 );
+    }
+
+
+    private void assertInvalid( TokenServiceImpl tokenService, String token ) throws Exception {
+        try {
+            tokenService.getTokenInfo( token );
+            fail( "Token should not be found" );
+        }
+        catch ( InvalidTokenException e ) {
+            //expected
+        }
+    }
+}
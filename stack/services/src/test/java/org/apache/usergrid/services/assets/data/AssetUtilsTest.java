@@ -23,6 +23,7 @@ import org.junit.Test;
 import org.apache.usergrid.persistence.entities.Asset;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
 
 
 /** @author zznate */
@@ -57,4 +58,32 @@ public class AssetUtilsTest {
         asset.setUuid( UUID.randomUUID() );
         AssetUtils.buildAssetKey( null, asset );
     }
+
+
+    @Test
+    public void parseRange() {
+        assertRange( 0, 499, AssetUtils.parseRange( "bytes=0-499", 1000 ) );
+        assertRange( 500, 999, AssetUtils.parseRange( "bytes=500-", 1000 ) );
+        assertRange( 900, 999, AssetUtils.parseRange( "bytes=-100", 1000 ) );
+        assertRange( 500, 999, AssetUtils.parseRange( "bytes=500-5000", 1000 ) );
+        assertRange( 0, 999, AssetUtils.parseRange( "bytes=-5000", 1000 ) );
+    }
+
+
+    @Test
+    public void parseInvalidRange() {
+        assertNull( AssetUtils.parseRange( null, 1000 ) );
+        assertNull( AssetUtils.parseRange( "bytes=1000-", 1000 ) );
+        assertNull( AssetUtils.parseRange( "bytes=500-100", 1000 ) );
+        assertNull( AssetUtils.parseRange( "bytes=0-1,5-6", 1000 ) );
+        assertNull( AssetUtils.parseRange( "bytes=a-b", 1000 ) );
+        assertNull( AssetUtils.parseRange( "items=0-10", 1000 ) );
+        assertNull( AssetUtils.parseRange( "bytes=0-10", 0 ) );
+    }
+
+
+    private static void assertRange( long start, long end, long[] range ) {
+        assertEquals( start, range[0] );
+        assertEquals( end, range[1] );
+    }
 }
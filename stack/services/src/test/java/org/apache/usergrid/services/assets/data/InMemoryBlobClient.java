@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.services.assets.data;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+
+/**
+ * {@link BlobClient} that keeps the objects in memory, standing in for S3 in tests.  Transfers can be slowed down to
+ * make them overlap, and the number of transfers running at the same time is recorded.
+ */
+public class InMemoryBlobClient implements BlobClient {
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<String, byte[]>();
+    private final Map<String, ConcurrentSkipListMap<Integer, byte[]>> uploads =
+            new ConcurrentHashMap<String, ConcurrentSkipListMap<Integer, byte[]>>();
+
+    private final AtomicInteger activeTransfers = new AtomicInteger();
+    private final AtomicInteger maxActiveTransfers = new AtomicInteger();
+    private final AtomicInteger puts = new AtomicInteger();
+    private final AtomicInteger parts = new AtomicInteger();
+    private final AtomicInteger gets = new AtomicInteger();
+    private final AtomicInteger aborts = new AtomicInteger();
+
+    private volatile long transferDelay;
+    private volatile int failingPart;
+
+
+    /** Make every part upload and get take at least the delay */
+    public void setTransferDelay( long transferDelay ) {
+        this.transferDelay = transferDelay;
+    }
+
+
+    /** Fail the upload of the part with the number */
+    public void setFailingPart( int failingPart ) {
+        this.failingPart = failingPart;
+    }
+
+
+    @Override
+    public String put( String key, byte[] data, int length, String contentType, String contentDisposition ) {
+        puts.incrementAndGet();
+        byte[] object = Arrays.copyOf( data, length );
+        objects.put( key, object );
+        return DigestUtils.md5Hex( object );
+    }
+
+
+    @Override
+    public String initiateMultipartUpload( String key, String contentType, String contentDisposition ) {
+        String uploadId = UUID.randomUUID().toString();
+        uploads.put( uploadId, new ConcurrentSkipListMap<Integer, byte[]>() );
+        return uploadId;
+    }
+
+
+    @Override
+    public String uploadPart( String key, String uploadId, int partNumber, byte[] data, int length )
+            throws IOException {
+        transferStarted();
+        try {
+            if ( partNumber == failingPart ) {
+                throw new IOException( "Part " + partNumber + " failed" );
+            }
+
+            byte[] part = Arrays.copyOf( data, length );
+            uploads.get( uploadId ).put( partNumber, part );
+            parts.incrementAndGet();
+
+            return DigestUtils.md5Hex( part );
+        }
+        finally {
+            transferFinished();
+        }
+    }
+
+
+    @Override
+    public String completeMultipartUpload( String key, String uploadId, Map<Integer, String> eTags )
+            throws IOException {
+        ConcurrentSkipListMap<Integer, byte[]> uploaded = uploads.remove( uploadId );
+        ByteArrayOutputStream object = new ByteArrayOutputStream();
+
+        for ( Map.Entry<Integer, String> eTag : eTags.entrySet() ) {
+            byte[] part = uploaded.get( eTag.getKey() );
+
+            if ( part == null || !DigestUtils.md5Hex( part ).equals( eTag.getValue() ) ) {
+                throw new IOException( "Invalid part " + eTag.getKey() );
+            }
+
+            object.write( part );
+        }
+
+        objects.put( key, object.toByteArray() );
+
+        return DigestUtils.md5Hex( object.toByteArray() ) + "-" + eTags.size();
+    }
+
+
+    @Override
+    public void abortMultipartUpload( String key, String uploadId ) {
+        aborts.incrementAndGet();
+        uploads.remove( uploadId );
+    }
+
+
+    @Override
+    public InputStream get( String key, long offset, long length ) {
+        byte[] object = objects.get( key );
+
+        if ( object == null ) {
+            return null;
+        }
+
+        transferStarted();
+        try {
+            gets.incrementAndGet();
+
+            int start = ( int ) Math.min( offset, object.length );
+            int end = ( int ) Math.min( offset + length, object.length );
+
+            return new ByteArrayInputStream( object, start, end - start );
+        }
+        finally {
+            transferFinished();
+        }
+    }
+
+
+    @Override
+    public long size( String key ) {
+        byte[] object = objects.get( key );
+        return object == null ? -1 : object.length;
+    }
+
+
+    @Override
+    public void delete( String key ) {
+        objects.remove( key );
+    }
+
+
+    @Override
+    public void close() {
+    }
+
+
+    public boolean contains( String key ) {
+        return objects.containsKey( key );
+    }
+
+
+    public int getPendingUploadCount() {
+        return uploads.size();
+    }
+
+
+    public int getMaxActiveTransfers() {
+        return maxActiveTransfers.get();
+    }
+
+
+    public int getPutCount() {
+        return puts.get();
+    }
+
+
+    public int getPartCount() {
+        return parts.get();
+    }
+
+
+    public int getGetCount() {
+        return gets.get();
+    }
+
+
+    public int getAbortCount() {
+        return aborts.get();
+    }
+
+
+    private void transferStarted() {
+        int active = activeTransfers.incrementAndGet();
+
+        int max = maxActiveTransfers.get();
+        while ( active > max && !maxActiveTransfers.compareAndSet( max, active ) ) {
+            max = maxActiveTransfers.get();
+        }
+
+        if ( transferDelay > 0 ) {
+            try {
+                Thread.sleep( transferDelay );
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    private void transferFinished() {
+        activeTransfers.decrementAndGet();
+    }
+}
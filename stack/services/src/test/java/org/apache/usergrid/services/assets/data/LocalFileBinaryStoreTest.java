@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.services.assets.data;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.apache.usergrid.persistence.entities.Asset;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class LocalFileBinaryStoreTest {
+
+    private static UUID appId = new UUID( 0, 1 );
+
+    private File repos;
+    private LocalFileBinaryStore store;
+    private byte[] data;
+
+
+    @Before
+    public void setUp() throws Exception {
+        repos = new File( FileUtils.getTempDirectory(), "binarystore-" + UUID.randomUUID() );
+
+        store = new LocalFileBinaryStore();
+        store.setReposLocation( repos.getAbsolutePath() );
+
+        data = new byte[200 * 1024];
+        for ( int i = 0; i < data.length; i++ ) {
+            data[i] = ( byte ) ( i % 251 );
+        }
+    }
+
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly( repos );
+    }
+
+
+    @Test
+    public void writeComputesMetadata() throws Exception {
+        Asset asset = asset();
+
+        store.write( appId, asset, new ByteArrayInputStream( data ) );
+
+        Map<String, Object> fileMetadata = AssetUtils.getFileMetadata( asset );
+        assertEquals( ( long ) data.length, fileMetadata.get( AssetUtils.CONTENT_LENGTH ) );
+        assertEquals( DigestUtils.md5Hex( data ), fileMetadata.get( AssetUtils.CHECKSUM ) );
+
+        //only the asset is left in the directory
+        assertEquals( 1, new File( repos, appId.toString() ).list().length );
+
+        assertArrayEquals( data, IOUtils.toByteArray( store.read( appId, asset ) ) );
+    }
+
+
+    @Test
+    public void rangedRead() throws Exception {
+        Asset asset = asset();
+        store.write( appId, asset, new ByteArrayInputStream( data ) );
+
+        InputStream in = store.read( appId, asset, 1000, 5000 );
+        assertArrayEquals( slice( 1000, 5000 ), IOUtils.toByteArray( in ) );
+        in.close();
+
+        //a range past the end of the file stops at the end
+        in = store.read( appId, asset, data.length - 10, 100 );
+        assertArrayEquals( slice( data.length - 10, 10 ), IOUtils.toByteArray( in ) );
+        in.close();
+    }
+
+
+    @Test
+    public void transferRange() throws Exception {
+        Asset asset = asset();
+        store.write( appId, asset, new ByteArrayInputStream( data ) );
+
+        InputStream in = store.read( appId, asset, 100000, 50000 );
+        assertTrue( in instanceof FileRegionInputStream );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long transferred = ( ( FileRegionInputStream ) in ).transferTo( Channels.newChannel( out ) );
+        in.close();
+
+        assertEquals( 50000, transferred );
+        assertArrayEquals( slice( 100000, 50000 ), out.toByteArray() );
+    }
+
+
+    private Asset asset() {
+        Asset asset = new Asset();
+        asset.setUuid( UUID.randomUUID() );
+        asset.setPath( "path/to/file" );
+        return asset;
+    }
+
+
+    private byte[] slice( int offset, int length ) {
+        byte[] slice = new byte[length];
+        System.arraycopy( data, offset, slice, 0, length );
+        return slice;
+    }
+}
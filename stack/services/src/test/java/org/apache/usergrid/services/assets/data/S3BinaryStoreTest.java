@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.services.assets.data;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.apache.usergrid.persistence.entities.Asset;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class S3BinaryStoreTest {
+
+    private static final int PART_SIZE = 64 * 1024;
+
+    private static UUID appId = new UUID( 0, 1 );
+
+    private InMemoryBlobClient client;
+    private S3BinaryStore store;
+    private byte[] data;
+
+
+    @Before
+    public void setUp() {
+        client = new InMemoryBlobClient();
+
+        store = new S3BinaryStore( client );
+        store.setPartSize( PART_SIZE );
+        store.setMaxBufferedParts( 4 );
+        store.setRangeSize( PART_SIZE );
+        store.setReadAhead( 4 );
+        store.setTransferThreads( 4 );
+
+        data = new byte[PART_SIZE * 10 + 1234];
+        for ( int i = 0; i < data.length; i++ ) {
+            data[i] = ( byte ) ( i % 251 );
+        }
+    }
+
+
+    @After
+    public void tearDown() {
+        store.destroy();
+    }
+
+
+    @Test
+    public void smallWrite() throws Exception {
+        Asset asset = asset();
+        byte[] small = slice( 0, 1000 );
+
+        store.write( appId, asset, new ByteArrayInputStream( small ) );
+
+        assertEquals( 1, client.getPutCount() );
+        assertEquals( 0, client.getPartCount() );
+
+        Map<String, Object> fileMetadata = AssetUtils.getFileMetadata( asset );
+        assertEquals( 1000L, fileMetadata.get( AssetUtils.CONTENT_LENGTH ) );
+        assertEquals( DigestUtils.md5Hex( small ), fileMetadata.get( AssetUtils.CHECKSUM ) );
+
+        assertArrayEquals( small, IOUtils.toByteArray( store.read( appId, asset ) ) );
+    }
+
+
+    @Test
+    public void multipartWrite() throws Exception {
+        client.setTransferDelay( 20 );
+        Asset asset = asset();
+
+        store.write( appId, asset, new ByteArrayInputStream( data ) );
+
+        assertEquals( 0, client.getPutCount() );
+        assertEquals( 11, client.getPartCount() );
+        assertEquals( 0, client.getPendingUploadCount() );
+
+        //parts are sent while the next ones are read
+        assertTrue( client.getMaxActiveTransfers() > 1 );
+
+        Map<String, Object> fileMetadata = AssetUtils.getFileMetadata( asset );
+        assertEquals( ( long ) data.length, fileMetadata.get( AssetUtils.CONTENT_LENGTH ) );
+        assertEquals( DigestUtils.md5Hex( data ), fileMetadata.get( AssetUtils.CHECKSUM ) );
+        assertTrue( fileMetadata.get( AssetUtils.E_TAG ).toString().endsWith( "-11" ) );
+
+        assertArrayEquals( data, IOUtils.toByteArray( store.read( appId, asset ) ) );
+    }
+
+
+    @Test
+    public void exactPartMultiple() throws Exception {
+        Asset asset = asset();
+        byte[] parts = slice( 0, PART_SIZE * 3 );
+
+        store.write( appId, asset, new ByteArrayInputStream( parts ) );
+
+        assertEquals( 3, client.getPartCount() );
+        assertArrayEquals( parts, IOUtils.toByteArray( store.read( appId, asset ) ) );
+    }
+
+
+    @Test
+    public void failedPartAbortsUpload() throws Exception {
+        client.setFailingPart( 3 );
+        Asset asset = asset();
+
+        try {
+            store.write( appId, asset, new ByteArrayInputStream( data ) );
+            fail( "The upload should have failed" );
+        }
+        catch ( IOException e ) {
+            //expected
+        }
+
+        assertEquals( 1, client.getAbortCount() );
+        assertEquals( 0, client.getPendingUploadCount() );
+        assertFalse( client.contains( AssetUtils.buildAssetKey( appId, asset ) ) );
+
+        //the buffers of the failed upload went back to the pool
+        client.setFailingPart( 0 );
+        store.write( appId, asset, new ByteArrayInputStream( data ) );
+        assertArrayEquals( data, IOUtils.toByteArray( store.read( appId, asset ) ) );
+    }
+
+
+    @Test
+    public void rejectedPartReleasedOnce() throws Exception {
+        //a single part leaves room in the pool, where a buffer released twice would sit twice
+        store.write( appId, asset(), new ByteArrayInputStream( slice( 0, PART_SIZE ) ) );
+
+        //the transfer threads are gone, so the first part can't be handed off
+        store.destroy();
+
+        try {
+            store.write( appId, asset(), new ByteArrayInputStream( data ) );
+            fail( "The upload should have been rejected" );
+        }
+        catch ( RejectedExecutionException e ) {
+            //expected
+        }
+
+        assertEquals( 1, client.getAbortCount() );
+
+        Set<byte[]> distinct = Collections.newSetFromMap( new IdentityHashMap<byte[], Boolean>() );
+        List<byte[]> free = store.getFreeBuffers();
+        distinct.addAll( free );
+
+        assertEquals( free.size(), distinct.size() );
+    }
+
+
+    @Test
+    public void parallelRangedRead() throws Exception {
+        Asset asset = asset();
+        store.write( appId, asset, new ByteArrayInputStream( data ) );
+
+        client.setTransferDelay( 20 );
+
+        InputStream in = store.read( appId, asset, 1000, PART_SIZE * 5 );
+        assertTrue( in instanceof ParallelRangeInputStream );
+        assertArrayEquals( slice( 1000, PART_SIZE * 5 ), IOUtils.toByteArray( in ) );
+        in.close();
+
+        assertTrue( client.getMaxActiveTransfers() > 1 );
+
+        //a range past the end of the object stops at the end
+        in = store.read( appId, asset, data.length - PART_SIZE * 2, PART_SIZE * 4 );
+        assertArrayEquals( slice( data.length - PART_SIZE * 2, PART_SIZE * 2 ), IOUtils.toByteArray( in ) );
+        in.close();
+
+        //small ranges are a single get
+        int gets = client.getGetCount();
+        in = store.read( appId, asset, 10, 100 );
+        assertArrayEquals( slice( 10, 100 ), IOUtils.toByteArray( in ) );
+        assertEquals( gets + 1, client.getGetCount() );
+    }
+
+
+    @Test
+    public void missingAsset() throws Exception {
+        Asset asset = asset();
+
+        assertNull( store.read( appId, asset ) );
+
+        store.write( appId, asset, new ByteArrayInputStream( data ) );
+        store.delete( appId, asset );
+
+        assertNull( store.read( appId, asset, 0, 100 ) );
+    }
+
+
+    private Asset asset() {
+        Asset asset = new Asset();
+        asset.setUuid( UUID.randomUUID() );
+        asset.setPath( "path/to/file" );
+        return asset;
+    }
+
+
+    private byte[] slice( int offset, int length ) {
+        byte[] slice = new byte[length];
+        System.arraycopy( data, offset, slice, 0, length );
+        return slice;
+    }
+}
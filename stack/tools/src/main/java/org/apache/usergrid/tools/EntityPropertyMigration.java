@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.tools;
+
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.usergrid.management.ApplicationInfo;
+import org.apache.usergrid.persistence.EntityManager;
+import org.apache.usergrid.persistence.EntityManagerFactory;
+import org.apache.usergrid.persistence.Identifier;
+import org.apache.usergrid.persistence.IndexBucketLocator;
+import org.apache.usergrid.persistence.cassandra.CassandraService;
+import org.apache.usergrid.persistence.cassandra.EntityManagerImpl;
+import org.apache.usergrid.persistence.cassandra.PropertyValueCodec;
+import org.apache.usergrid.persistence.cassandra.index.IndexScanner;
+import org.apache.usergrid.persistence.query.ir.result.ScanColumn;
+import org.apache.usergrid.persistence.query.ir.result.SliceIterator;
+import org.apache.usergrid.persistence.query.ir.result.UUIDIndexSliceParser;
+import org.apache.usergrid.utils.ConversionUtils;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+
+import me.prettyprint.hector.api.Keyspace;
+import me.prettyprint.hector.api.beans.HColumn;
+import me.prettyprint.hector.api.mutation.Mutator;
+
+import static me.prettyprint.hector.api.factory.HFactory.createColumn;
+import static me.prettyprint.hector.api.factory.HFactory.createMutator;
+import static org.apache.usergrid.persistence.Schema.DICTIONARY_COLLECTIONS;
+import static org.apache.usergrid.persistence.Schema.PROPERTY_TYPE;
+import static org.apache.usergrid.persistence.Schema.PROPERTY_UUID;
+import static org.apache.usergrid.persistence.Schema.deserializeEntityProperty;
+import static org.apache.usergrid.persistence.Schema.serializeEntityProperty;
+import static org.apache.usergrid.persistence.cassandra.ApplicationCF.ENTITY_PROPERTIES;
+import static org.apache.usergrid.persistence.cassandra.CassandraPersistenceUtils.key;
+import static org.apache.usergrid.persistence.cassandra.Serializers.be;
+import static org.apache.usergrid.utils.ConversionUtils.bytebuffer;
+
+
+/**
+ * Rewrites the Entity_Properties columns of every entity in the collections of an application so that primitive values
+ * are stored in the typed format of {@link PropertyValueCodec}.  Values are readable in either format, so running this
+ * is optional and only reclaims space and decoding time for existing data.
+ * <p/>
+ * Each column is rewritten with a timestamp one microsecond after its current one, so a write made by a client after
+ * the column was read always wins over the migrated value.
+ * <p/>
+ * EntityPropertyMigration -host [host] -app [appid or name] -col [collectionname] -dryrun
+ */
+public class EntityPropertyMigration extends ToolBase {
+
+    private static final int PAGE_SIZE = 100;
+
+    private static final Logger logger = LoggerFactory.getLogger( EntityPropertyMigration.class );
+
+    private static final String APPLICATION_ARG = "app";
+
+    private static final String COLLECTION_ARG = "col";
+
+    private static final String DRY_RUN_ARG = "dryrun";
+
+
+    @Override
+    @SuppressWarnings("static-access")
+    public Options createOptions() {
+
+        Options options = new Options();
+
+        Option hostOption =
+                OptionBuilder.withArgName( "host" ).hasArg().isRequired( true ).withDescription( "Cassandra host" )
+                             .create( "host" );
+
+        options.addOption( hostOption );
+
+        Option appOption = OptionBuilder.withArgName( APPLICATION_ARG ).hasArg().isRequired( false )
+                                        .withDescription( "application id or app name" ).create( APPLICATION_ARG );
+
+        options.addOption( appOption );
+
+        Option collectionOption = OptionBuilder.withArgName( COLLECTION_ARG ).hasArg().isRequired( false )
+                                               .withDescription( "collection name" ).create( COLLECTION_ARG );
+
+        options.addOption( collectionOption );
+
+        Option dryRunOption = OptionBuilder.withArgName( DRY_RUN_ARG ).isRequired( false )
+                                           .withDescription( "count the columns to migrate without writing them" )
+                                           .create( DRY_RUN_ARG );
+
+        options.addOption( dryRunOption );
+
+        return options;
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.usergrid.tools.ToolBase#runTool(org.apache.commons.cli.CommandLine)
+     */
+    @Override
+    public void runTool( CommandLine line ) throws Exception {
+        startSpring();
+
+        if ( !PropertyValueCodec.isTypedEnabled() ) {
+            logger.error( "The typed property format is disabled, enable usergrid.entity.properties.typed to migrate" );
+            return;
+        }
+
+        boolean dryRun = line.hasOption( DRY_RUN_ARG );
+
+        logger.info( "Starting entity property migration, dry run {}", dryRun );
+
+        for ( Entry<String, UUID> app : getApplications( emf, line ).entrySet() ) {
+
+            logger.info( "Starting migration for app {}", app.getKey() );
+
+            UUID applicationId = app.getValue();
+            EntityManagerImpl em = ( EntityManagerImpl ) emf.getEntityManager( applicationId );
+
+            CassandraService cass = em.getCass();
+            IndexBucketLocator indexBucketLocator = em.getIndexBucketLocator();
+
+            Keyspace ko = cass.getApplicationKeyspace( applicationId );
+
+            long entities = 0;
+            long bytesBefore = 0;
+            long bytesAfter = 0;
+            long migrated = 0;
+
+            for ( String collectionName : getCollectionNames( em, line ) ) {
+
+                IndexScanner scanner =
+                        cass.getIdList( ko, key( applicationId, DICTIONARY_COLLECTIONS, collectionName ), null, null,
+                                PAGE_SIZE, false, indexBucketLocator, applicationId, collectionName, false );
+
+                SliceIterator itr = new SliceIterator( null, scanner, new UUIDIndexSliceParser() );
+
+                while ( itr.hasNext() ) {
+
+                    Mutator<ByteBuffer> m = createMutator( ko, be );
+                    int pending = 0;
+
+                    for ( ScanColumn col : itr.next() ) {
+
+                        List<HColumn<String, ByteBuffer>> columns =
+                                cass.getAllColumns( ko, ENTITY_PROPERTIES, key( col.getUUID() ) );
+
+                        String entityType = getEntityType( columns );
+
+                        if ( entityType == null ) {
+                            continue;
+                        }
+
+                        entities++;
+
+                        for ( HColumn<String, ByteBuffer> column : columns ) {
+                            String propertyName = column.getName();
+
+                            if ( PROPERTY_UUID.equals( propertyName ) || PROPERTY_TYPE.equals( propertyName ) ) {
+                                continue;
+                            }
+
+                            ByteBuffer current = column.getValue();
+
+                            ByteBuffer rewritten = serializeEntityProperty( entityType, propertyName,
+                                    deserializeEntityProperty( entityType, propertyName, current.duplicate() ) );
+
+                            if ( rewritten == null || rewritten.equals( current ) ) {
+                                continue;
+                            }
+
+                            bytesBefore += current.remaining();
+                            bytesAfter += rewritten.remaining();
+                            migrated++;
+
+                            if ( !dryRun ) {
+                                m.addInsertion( bytebuffer( key( col.getUUID() ) ), ENTITY_PROPERTIES.toString(),
+                                        createColumn( bytebuffer( propertyName ), rewritten, column.getClock() + 1, be,
+                                                be ) );
+                                pending++;
+                            }
+                        }
+                    }
+
+                    if ( pending > 0 ) {
+                        m.execute();
+                    }
+                }
+
+                logger.info( "Migrated {} columns of {} entities in collection {}", new Object[] {
+                        migrated, entities, collectionName
+                } );
+            }
+
+            logger.info( "Finished app {}. {} columns rewritten, {} bytes before, {} bytes after", new Object[] {
+                    app.getKey(), migrated, bytesBefore, bytesAfter
+            } );
+        }
+    }
+
+
+    private String getEntityType( List<HColumn<String, ByteBuffer>> columns ) {
+        for ( HColumn<String, ByteBuffer> column : columns ) {
+            if ( PROPERTY_TYPE.equals( column.getName() ) ) {
+                return ConversionUtils.string( column.getValue() );
+            }
+        }
+
+        return null;
+    }
+
+
+    private Map<String, UUID> getApplications( EntityManagerFactory emf, CommandLine line ) throws Exception {
+        String appName = line.getOptionValue( APPLICATION_ARG );
+
+        if ( appName == null ) {
+            return emf.getApplications();
+        }
+
+        ApplicationInfo app = managementService.getApplicationInfo( Identifier.from( appName ) );
+
+        if ( app == null ) {
+            logger.error( "Could not find application with id or name {}", appName );
+            System.exit( 3 );
+        }
+
+        Map<String, UUID> apps = new HashMap<String, UUID>();
+
+        apps.put( app.getName(), app.getId() );
+
+        return apps;
+    }
+
+
+    private Set<String> getCollectionNames( EntityManager em, CommandLine line ) throws Exception {
+
+        String collectionName = line.getOptionValue( COLLECTION_ARG );
+
+        if ( collectionName == null ) {
+            return em.getApplicationCollections();
+        }
+
+        Set<String> names = new HashSet<String>();
+        names.add( collectionName );
+
+        return names;
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.tools;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.usergrid.management.ApplicationInfo;
+import org.apache.usergrid.persistence.EntityManager;
+import org.apache.usergrid.persistence.EntityManagerFactory;
+import org.apache.usergrid.persistence.Identifier;
+import org.apache.usergrid.persistence.IndexBucketLocator;
+import org.apache.usergrid.persistence.Schema;
+import org.apache.usergrid.persistence.SimpleEntityRef;
+import org.apache.usergrid.persistence.cassandra.CassandraService;
+import org.apache.usergrid.persistence.cassandra.EntityManagerImpl;
+import org.apache.usergrid.persistence.cassandra.index.IndexScanner;
+import org.apache.usergrid.persistence.geo.EntityLocationRef;
+import org.apache.usergrid.persistence.geo.GeocellManager;
+import org.apache.usergrid.persistence.query.ir.result.ScanColumn;
+import org.apache.usergrid.persistence.query.ir.result.SliceIterator;
+import org.apache.usergrid.persistence.query.ir.result.UUIDIndexSliceParser;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+
+import me.prettyprint.hector.api.Keyspace;
+import me.prettyprint.hector.api.beans.DynamicComposite;
+import me.prettyprint.hector.api.beans.HColumn;
+import me.prettyprint.hector.api.mutation.Mutator;
+
+import static me.prettyprint.hector.api.factory.HFactory.createMutator;
+import static org.apache.usergrid.persistence.Schema.DICTIONARY_COLLECTIONS;
+import static org.apache.usergrid.persistence.Schema.TYPE_APPLICATION;
+import static org.apache.usergrid.persistence.cassandra.ApplicationCF.ENTITY_INDEX_ENTRIES;
+import static org.apache.usergrid.persistence.cassandra.CassandraPersistenceUtils.key;
+import static org.apache.usergrid.persistence.cassandra.CassandraService.INDEX_ENTRY_LIST_COUNT;
+import static org.apache.usergrid.persistence.cassandra.GeoIndexManager.batchRemoveLocationFromCollectionIndex;
+import static org.apache.usergrid.persistence.cassandra.GeoIndexManager.batchStoreLocationInCollectionIndex;
+import static org.apache.usergrid.persistence.cassandra.Serializers.be;
+import static org.apache.usergrid.utils.CompositeUtils.setGreaterThanEqualityFlag;
+
+
+/**
+ * Rebuilds the geocell index of the locations of every entity in the collections of an application after the indexed
+ * resolutions of a collection have changed.  The location is indexed at every resolution that is configured and
+ * removed from every resolution that isn't, so searches find all entities again once the tool has run.
+ * <p/>
+ * Since the index columns keep the timestamp of the location they were written for, a location updated by a client
+ * while the tool runs is never overwritten.
+ * <p/>
+ * GeoIndexRebuild -host [host] -app [appid or name] -col [collectionname]
+ */
+public class GeoIndexRebuild extends ToolBase {
+
+    private static final int PAGE_SIZE = 100;
+
+    private static final Logger logger = LoggerFactory.getLogger( GeoIndexRebuild.class );
+
+    private static final String APPLICATION_ARG = "app";
+
+    private static final String COLLECTION_ARG = "col";
+
+    private static final String LOCATION_PROPERTY = "location";
+
+    private static final String LOCATION_PATH = "location.coordinates";
+
+
+    @Override
+    @SuppressWarnings("static-access")
+    public Options createOptions() {
+
+        Options options = new Options();
+
+        Option hostOption =
+                OptionBuilder.withArgName( "host" ).hasArg().isRequired( true ).withDescription( "Cassandra host" )
+                             .create( "host" );
+
+        options.addOption( hostOption );
+
+        Option appOption = OptionBuilder.withArgName( APPLICATION_ARG ).hasArg().isRequired( false )
+                                        .withDescription( "application id or app name" ).create( APPLICATION_ARG );
+
+        options.addOption( appOption );
+
+        Option collectionOption = OptionBuilder.withArgName( COLLECTION_ARG ).hasArg().isRequired( false )
+                                               .withDescription( "collection name" ).create( COLLECTION_ARG );
+
+        options.addOption( collectionOption );
+
+        return options;
+    }
+
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.usergrid.tools.ToolBase#runTool(org.apache.commons.cli.CommandLine)
+     */
+    @Override
+    public void runTool( CommandLine line ) throws Exception {
+        startSpring();
+
+        logger.info( "Starting geo index rebuild" );
+
+        Schema schema = Schema.getDefaultSchema();
+
+        for ( Entry<String, UUID> app : getApplications( emf, line ).entrySet() ) {
+
+            logger.info( "Starting rebuild for app {}", app.getKey() );
+
+            UUID applicationId = app.getValue();
+            EntityManagerImpl em = ( EntityManagerImpl ) emf.getEntityManager( applicationId );
+
+            CassandraService cass = em.getCass();
+            IndexBucketLocator indexBucketLocator = em.getIndexBucketLocator();
+
+            Keyspace ko = cass.getApplicationKeyspace( applicationId );
+
+            for ( String collectionName : getCollectionNames( em, line ) ) {
+
+                int[] resolutions = schema.getCollectionGeocellResolutions( TYPE_APPLICATION, collectionName );
+                int[] unindexed = unindexedResolutions( resolutions );
+
+                String entityType = schema.getCollectionType( TYPE_APPLICATION, collectionName );
+                Object indexKey = key( applicationId, collectionName, LOCATION_PATH );
+
+                long locations = 0;
+
+                IndexScanner scanner =
+                        cass.getIdList( ko, key( applicationId, DICTIONARY_COLLECTIONS, collectionName ), null, null,
+                                PAGE_SIZE, false, indexBucketLocator, applicationId, collectionName, false );
+
+                SliceIterator itr = new SliceIterator( null, scanner, new UUIDIndexSliceParser() );
+
+                while ( itr.hasNext() ) {
+
+                    Mutator<ByteBuffer> m = createMutator( ko, be );
+                    int pending = 0;
+
+                    for ( ScanColumn col : itr.next() ) {
+
+                        for ( EntityLocationRef location : getLocations( cass, ko, entityType, col.getUUID() ) ) {
+
+                            if ( unindexed.length > 0 ) {
+                                batchRemoveLocationFromCollectionIndex( m, indexBucketLocator, applicationId,
+                                        indexKey, location, unindexed );
+                            }
+
+                            batchStoreLocationInCollectionIndex( m, indexBucketLocator, applicationId, indexKey,
+                                    location.getUuid(), location, resolutions );
+
+                            locations++;
+                            pending++;
+                        }
+                    }
+
+                    if ( pending > 0 ) {
+                        m.execute();
+                    }
+                }
+
+                logger.info( "Rebuilt {} locations in collection {}", locations, collectionName );
+            }
+
+            logger.info( "Finished app {}", app.getKey() );
+        }
+    }
+
+
+    /** @return the locations of the entity, read from its index entries */
+    private List<EntityLocationRef> getLocations( CassandraService cass, Keyspace ko, String entityType,
+                                                  UUID entityId ) throws Exception {
+
+        List<HColumn<ByteBuffer, ByteBuffer>> entries =
+                cass.getColumns( ko, ENTITY_INDEX_ENTRIES, entityId, new DynamicComposite( LOCATION_PROPERTY ),
+                        setGreaterThanEqualityFlag( new DynamicComposite( LOCATION_PROPERTY ) ),
+                        INDEX_ENTRY_LIST_COUNT, false );
+
+        List<EntityLocationRef> locations = new ArrayList<EntityLocationRef>();
+
+        // composite(entryName, value_code, value, timestamp, obj_path)
+        for ( HColumn<ByteBuffer, ByteBuffer> entry : entries ) {
+            DynamicComposite composite = DynamicComposite.fromByteBuffer( entry.getName().duplicate() );
+
+            if ( composite.size() < 5 || !LOCATION_PATH.equals( LOCATION_PROPERTY + "." + composite.get( 4 ) )
+                    || composite.get( 2 ) == null ) {
+                continue;
+            }
+
+            locations.add( new EntityLocationRef( new SimpleEntityRef( entityType, entityId ),
+                    ( UUID ) composite.get( 3 ), composite.get( 2 ).toString() ) );
+        }
+
+        return locations;
+    }
+
+
+    /** @return every resolution that isn't in the given ones */
+    private int[] unindexedResolutions( int[] resolutions ) {
+        Set<Integer> indexed = new HashSet<Integer>();
+        for ( int resolution : resolutions ) {
+            indexed.add( resolution );
+        }
+
+        int[] all = GeocellManager.allResolutions();
+        int[] unindexed = new int[all.length - indexed.size()];
+        int i = 0;
+        for ( int resolution : all ) {
+            if ( !indexed.contains( resolution ) ) {
+                unindexed[i++] = resolution;
+            }
+        }
+        return unindexed;
+    }
+
+
+    private Map<String, UUID> getApplications( EntityManagerFactory emf, CommandLine line ) throws Exception {
+        String appName = line.getOptionValue( APPLICATION_ARG );
+
+        if ( appName == null ) {
+            return emf.getApplications();
+        }
+
+        ApplicationInfo app = managementService.getApplicationInfo( Identifier.from( appName ) );
+
+        if ( app == null ) {
+            logger.error( "Could not find application with id or name {}", appName );
+            System.exit( 3 );
+        }
+
+        Map<String, UUID> apps = new HashMap<String, UUID>();
+
+        apps.put( app.getName(), app.getId() );
+
+        return apps;
+    }
+
+
+    private Set<String> getCollectionNames( EntityManager em, CommandLine line ) throws Exception {
+
+        String collectionName = line.getOptionValue( COLLECTION_ARG );
+
+        if ( collectionName == null ) {
+            return em.getApplicationCollections();
+        }
+
+        Set<String> names = new HashSet<String>();
+        names.add( collectionName );
+
+        return names;
+    }
+}